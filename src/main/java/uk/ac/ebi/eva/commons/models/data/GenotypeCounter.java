@@ -0,0 +1,255 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.models.data;
+
+import org.opencb.biodata.models.feature.AllelesCode;
+import org.opencb.biodata.models.feature.Genotype;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the genotypes of the samples of a variant, to calculate its {@link VariantStats} with
+ * {@link VariantStats#calculate(GenotypeCounter, Map)} without building a {@link Genotype} per sample.
+ * <p>
+ * Every genotype is counted as an int code, the index of its count in an array. The first codes are a table of the
+ * genotypes of biallelic sites ("0", "1", "0/1", "1|1", "./."...), which are recognized without parsing them, and
+ * whose alleles and {@link AllelesCode} are taken once from a {@link Genotype}, so that they are processed exactly as
+ * if every sample was parsed. Any other genotype gets the next free code the first time it is counted, and is parsed
+ * only when the statistics are calculated. The order in which the genotypes are first counted is kept, so that the
+ * statistics are the same as the ones calculated sample by sample.
+ * <p>
+ * A counter can be reused for several variants with {@link #clear()}, but it is not thread-safe.
+ */
+public class GenotypeCounter {
+
+    private static final char[] ALLELES = {'.', '0', '1'};
+
+    private static final char[] SEPARATORS = {'/', '|'};
+
+    private static final int NO_CODE = -1;
+
+    private static final String[] TABLE_GENOTYPES;
+
+    private static final AllelesCode[] TABLE_ALLELES_CODES;
+
+    private static final int[][] TABLE_ALLELES;
+
+    /**
+     * Codes of the haploid genotypes, by allele
+     */
+    private static final int[] HAPLOID_CODES;
+
+    /**
+     * Codes of the diploid genotypes, by separator, first allele and second allele
+     */
+    private static final int[][][] DIPLOID_CODES;
+
+    private int[] counts;
+
+    private int[] countedCodes;
+
+    private int numCountedCodes;
+
+    private List<String> otherGenotypes;
+
+    private Map<String, Integer> otherCodes;
+
+    static {
+        List<String> genotypes = new ArrayList<>();
+        List<AllelesCode> allelesCodes = new ArrayList<>();
+        List<int[]> alleles = new ArrayList<>();
+
+        HAPLOID_CODES = new int[ALLELES.length];
+        for (int i = 0; i < ALLELES.length; i++) {
+            HAPLOID_CODES[i] = addToTable(String.valueOf(ALLELES[i]), genotypes, allelesCodes, alleles);
+        }
+
+        DIPLOID_CODES = new int[SEPARATORS.length][ALLELES.length][ALLELES.length];
+        for (int separator = 0; separator < SEPARATORS.length; separator++) {
+            for (int first = 0; first < ALLELES.length; first++) {
+                for (int second = 0; second < ALLELES.length; second++) {
+                    String genotype = "" + ALLELES[first] + SEPARATORS[separator] + ALLELES[second];
+                    DIPLOID_CODES[separator][first][second] = addToTable(genotype, genotypes, allelesCodes, alleles);
+                }
+            }
+        }
+
+        TABLE_GENOTYPES = genotypes.toArray(new String[genotypes.size()]);
+        TABLE_ALLELES_CODES = allelesCodes.toArray(new AllelesCode[allelesCodes.size()]);
+        TABLE_ALLELES = alleles.toArray(new int[alleles.size()][]);
+    }
+
+    /**
+     * Only the genotypes with all the alleles that {@link VariantStats} reads according to their {@link AllelesCode}
+     * are part of the table. The rest are counted as any other genotype, so they are parsed as they would be sample by
+     * sample.
+     *
+     * @return the code of the genotype in the table, or NO_CODE if it is not part of it
+     */
+    private static int addToTable(String genotype, List<String> genotypes, List<AllelesCode> allelesCodes,
+                                  List<int[]> alleles) {
+        // the alleles don't depend on the reference and alternate when they are written as indexes
+        Genotype parsedGenotype = new Genotype(genotype, "A", "C");
+        int numAlleles = parsedGenotype.getAllelesIdx().length;
+        switch (parsedGenotype.getCode()) {
+            case HAPLOID:
+                if (numAlleles < 1) {
+                    return NO_CODE;
+                }
+                break;
+            case MULTIPLE_ALTERNATES:
+                break;
+            default:
+                if (numAlleles < 2) {
+                    return NO_CODE;
+                }
+                break;
+        }
+
+        genotypes.add(genotype);
+        allelesCodes.add(parsedGenotype.getCode());
+        alleles.add(parsedGenotype.getAllelesIdx());
+        return genotypes.size() - 1;
+    }
+
+    public GenotypeCounter() {
+        counts = new int[TABLE_GENOTYPES.length];
+        countedCodes = new int[TABLE_GENOTYPES.length];
+        numCountedCodes = 0;
+    }
+
+    /**
+     * @return the code of the genotype, to count it with {@link #add(int)}
+     */
+    public int getCode(String genotype) {
+        int code = getTableCode(genotype);
+        return code != NO_CODE ? code : getOtherCode(genotype);
+    }
+
+    private static int getTableCode(String genotype) {
+        if (genotype == null) {
+            return NO_CODE;
+        }
+        if (genotype.length() == 1) {
+            int allele = indexOf(ALLELES, genotype.charAt(0));
+            return allele != NO_CODE ? HAPLOID_CODES[allele] : NO_CODE;
+        }
+        if (genotype.length() == 3) {
+            int first = indexOf(ALLELES, genotype.charAt(0));
+            int separator = indexOf(SEPARATORS, genotype.charAt(1));
+            int second = indexOf(ALLELES, genotype.charAt(2));
+            if (first != NO_CODE && separator != NO_CODE && second != NO_CODE) {
+                return DIPLOID_CODES[separator][first][second];
+            }
+        }
+        return NO_CODE;
+    }
+
+    private static int indexOf(char[] characters, char character) {
+        for (int i = 0; i < characters.length; i++) {
+            if (characters[i] == character) {
+                return i;
+            }
+        }
+        return NO_CODE;
+    }
+
+    private int getOtherCode(String genotype) {
+        if (otherCodes == null) {
+            otherGenotypes = new ArrayList<>();
+            otherCodes = new HashMap<>();
+        }
+        Integer code = otherCodes.get(genotype);
+        if (code == null) {
+            code = TABLE_GENOTYPES.length + otherGenotypes.size();
+            otherGenotypes.add(genotype);
+            otherCodes.put(genotype, code);
+            counts = Arrays.copyOf(counts, code + 1);
+            countedCodes = Arrays.copyOf(countedCodes, code + 1);
+        }
+        return code;
+    }
+
+    public void add(String genotype) {
+        add(getCode(genotype), 1);
+    }
+
+    public void add(String genotype, int count) {
+        add(getCode(genotype), count);
+    }
+
+    public void add(int code) {
+        add(code, 1);
+    }
+
+    public void add(int code, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (counts[code] == 0) {
+            countedCodes[numCountedCodes++] = code;
+        }
+        counts[code] += count;
+    }
+
+    /**
+     * Sets all the counts to zero. The codes of the genotypes out of the table are kept.
+     */
+    public void clear() {
+        for (int i = 0; i < numCountedCodes; i++) {
+            counts[countedCodes[i]] = 0;
+        }
+        numCountedCodes = 0;
+    }
+
+    /**
+     * @return the number of different genotypes counted
+     */
+    public int size() {
+        return numCountedCodes;
+    }
+
+    /**
+     * @return the code of the i-th different genotype counted, in the order they were first counted
+     */
+    public int getCountedCode(int i) {
+        return countedCodes[i];
+    }
+
+    public int getCount(int code) {
+        return code < counts.length ? counts[code] : 0;
+    }
+
+    public String getGenotype(int code) {
+        return isTableCode(code) ? TABLE_GENOTYPES[code] : otherGenotypes.get(code - TABLE_GENOTYPES.length);
+    }
+
+    boolean isTableCode(int code) {
+        return code < TABLE_GENOTYPES.length;
+    }
+
+    AllelesCode getAllelesCode(int code) {
+        return TABLE_ALLELES_CODES[code];
+    }
+
+    int[] getAlleles(int code) {
+        return TABLE_ALLELES[code];
+    }
+}
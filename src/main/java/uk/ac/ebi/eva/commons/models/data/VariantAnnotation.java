@@ -135,4 +135,30 @@ public class VariantAnnotation {
     public void setConsequenceTypes(List<ConsequenceType> consequenceTypes) {
         this.consequenceTypes = consequenceTypes;
     }
+
+    public Map<String, Object> getAdditionalAttributes() {
+        return additionalAttributes;
+    }
+
+    public void setAdditionalAttributes(Map<String, Object> additionalAttributes) {
+        this.additionalAttributes = additionalAttributes;
+    }
+
+    /**
+     * Appends another annotation of the same variant, as the ones VEP writes for every feature it overlaps. Updated
+     * fields are ConsequenceTypes and Hgvs.
+     *
+     * @param annotationToAppend annotation of the same variant
+     */
+    public void append(VariantAnnotation annotationToAppend) {
+        if (annotationToAppend.getConsequenceTypes() != null) {
+            consequenceTypes.addAll(annotationToAppend.getConsequenceTypes());
+        }
+        if (annotationToAppend.getHgvs() != null) {
+            if (hgvs == null) {
+                hgvs = new ArrayList<>();
+            }
+            hgvs.addAll(annotationToAppend.getHgvs());
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2016 EMBL - European Bioinformatics Institute
+ * Copyright 2014-2017 EMBL - European Bioinformatics Institute
  * Copyright 2015 OpenCB
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -481,16 +481,7 @@ public class VariantStats {
         this.getHw().calculate();
 
         // Update variables finally used to update file_stats_t structure
-        if ("PASS".equalsIgnoreCase(attributes.get("FILTER"))) {
-            this.setPassedFilters(true);
-        }
-
-        if (attributes.containsKey("QUAL") && !(".").equals(attributes.get("QUAL"))) {
-            float qualAux = Float.valueOf(attributes.get("QUAL"));
-            if (qualAux >= 0) {
-                this.setQuality(qualAux);
-            }
-        }
+        this.calculateFilterAndQuality(attributes);
 
         if (pedigree != null) {
             // Once all samples have been traversed, calculate % that follow inheritance model
@@ -508,6 +499,124 @@ public class VariantStats {
         return this;
     }
 
+    /**
+     * Calculates the same statistics as {@link #calculate(List, Map, Pedigree)} without pedigree, from the number of
+     * samples with each genotype instead of the genotype of every sample. This is how the genotypes are stored in the
+     * database (see {@link uk.ac.ebi.eva.commons.models.converters.data.SamplesToDBObjectConverter}), so they don't
+     * need to be expanded into one map per sample. The genotypes without samples are ignored.
+     *
+     * @param genotypesCount Number of samples with each genotype, as written in a VCF ("0|1", "./.")
+     * @param attributes     Attributes of the variant in the file, used for the FILTER and QUAL
+     * @return this object, with the statistics calculated
+     */
+    public VariantStats calculate(Map<String, Integer> genotypesCount, Map<String, String> attributes) {
+        GenotypeCounter genotypeCounter = new GenotypeCounter();
+        for (Map.Entry<String, Integer> genotypeCount : genotypesCount.entrySet()) {
+            genotypeCounter.add(genotypeCount.getKey(), genotypeCount.getValue());
+        }
+        return calculate(genotypeCounter, attributes);
+    }
+
+    /**
+     * Calculates the same statistics as {@link #calculate(List, Map, Pedigree)} without pedigree, from the genotypes
+     * counted by a {@link GenotypeCounter}. The alleles are added up with the codes of the genotypes, and a
+     * {@link Genotype} is only built for every different genotype when the counts are published in
+     * {@link #getGenotypesCount()}.
+     *
+     * @param genotypeCounter Genotypes of the samples, as written in a VCF ("0|1", "./.")
+     * @param attributes      Attributes of the variant in the file, used for the FILTER and QUAL
+     * @return this object, with the statistics calculated
+     */
+    public VariantStats calculate(GenotypeCounter genotypeCounter, Map<String, String> attributes) {
+        int[] allelesCount = new int[2];
+        int totalAllelesCount = 0, totalGenotypesCount = 0, numSamples = 0;
+        int numMissingAlleles = 0, numMissingGenotypes = 0;
+        int homozygousReferenceCount = 0, heterozygousCount = 0, homozygousAlternateCount = 0;
+        Genotype[] genotypes = new Genotype[genotypeCounter.size()];
+
+        for (int i = 0; i < genotypeCounter.size(); i++) {
+            int code = genotypeCounter.getCountedCode(i);
+            int count = genotypeCounter.getCount(code);
+            numSamples += count;
+
+            AllelesCode allelesCode;
+            int[] alleles;
+            if (genotypeCounter.isTableCode(code)) {
+                allelesCode = genotypeCounter.getAllelesCode(code);
+                alleles = genotypeCounter.getAlleles(code);
+            } else {
+                genotypes[i] = new Genotype(genotypeCounter.getGenotype(code), this.getRefAllele(),
+                                            this.getAltAllele());
+                allelesCode = genotypes[i].getCode();
+                alleles = genotypes[i].getAllelesIdx();
+            }
+
+            // Same cases as in the calculation per sample, with every sample of the genotype at once
+            switch (allelesCode) {
+                case ALLELES_OK:
+                    allelesCount[alleles[0]] += count;
+                    allelesCount[alleles[1]] += count;
+
+                    totalAllelesCount += 2 * count;
+                    totalGenotypesCount += count;
+
+                    if (alleles[0] == 0 && alleles[1] == 0) { // 0|0
+                        homozygousReferenceCount += count;
+                    } else if ((alleles[0] == 0 && alleles[1] == 1)
+                            || (alleles[0] == 1 && alleles[1] == 0)) {  // 0|1, 1|0
+                        heterozygousCount += count;
+                    } else if (alleles[0] == 1 && alleles[1] == 1) {
+                        homozygousAlternateCount += count;
+                    }
+                    break;
+                case HAPLOID:
+                    allelesCount[alleles[0]] += count;
+                    totalAllelesCount += count;
+                    break;
+                case MULTIPLE_ALTERNATES:
+                    break;
+                default:
+                    numMissingGenotypes += count;
+                    for (int j = 0; j < 2; j++) {
+                        if (alleles[j] < 0) {
+                            numMissingAlleles += count;
+                        } else {
+                            allelesCount[alleles[j]] += count;
+                            totalAllelesCount += count;
+                        }
+                    }
+                    break;
+            }
+        }
+
+        // Publish the counts in the order the genotypes were first found, as the calculation per sample does
+        for (int i = 0; i < genotypes.length; i++) {
+            int code = genotypeCounter.getCountedCode(i);
+            Genotype genotype = genotypes[i] != null ? genotypes[i] : new Genotype(
+                    genotypeCounter.getGenotype(code), this.getRefAllele(), this.getAltAllele());
+            this.addGenotype(genotype, genotypeCounter.getCount(code));
+        }
+
+        this.setNumSamples(numSamples);
+        this.setMissingAlleles(numMissingAlleles);
+        this.setMissingGenotypes(numMissingGenotypes);
+        this.setRefAlleleCount(allelesCount[0]);
+        this.setAltAlleleCount(allelesCount[1]);
+
+        // Hardy-Weinberg counts of all the samples at once, instead of one increment per sample
+        VariantHardyWeinbergStats hw = this.getHw();
+        hw.setN_AA(hw.getN_AA() + homozygousReferenceCount);
+        hw.setN_Aa(hw.getN_Aa() + heterozygousCount);
+        hw.setN_aa(hw.getN_aa() + homozygousAlternateCount);
+
+        this.calculateAlleleFrequencies(totalAllelesCount);
+        this.calculateGenotypeFrequencies(totalGenotypesCount);
+        hw.calculate();
+        this.calculateFilterAndQuality(attributes);
+
+        return this;
+    }
+
     /**
      * Calculates the statistics for some variants read from a set of files, and
      * optionally given pedigree information. Some statistics like inheritance
@@ -526,6 +635,19 @@ public class VariantStats {
         }
     }
 
+    private void calculateFilterAndQuality(Map<String, String> attributes) {
+        if ("PASS".equalsIgnoreCase(attributes.get("FILTER"))) {
+            this.setPassedFilters(true);
+        }
+
+        if (attributes.containsKey("QUAL") && !(".").equals(attributes.get("QUAL"))) {
+            float qualAux = Float.valueOf(attributes.get("QUAL"));
+            if (qualAux >= 0) {
+                this.setQuality(qualAux);
+            }
+        }
+    }
+
     private void calculateAlleleFrequencies(int totalAllelesCount) {
         if (totalAllelesCount < 0) {
             throw new IllegalArgumentException("The number of alleles must be equals or greater than zero");
@@ -18,6 +18,10 @@ package uk.ac.ebi.eva.commons.models.metadata;
 
 import org.springframework.data.mongodb.core.mapping.Document;
 
+/**
+ * VEP and VEP cache versions used to annotate the variants of a database. If the annotations are written in their own
+ * collection instead of inside the variants, its name is also stored.
+ */
 @Document
 public class AnnotationMetadata {
 
@@ -27,6 +31,8 @@ public class AnnotationMetadata {
 
     private String cacheVersion;
 
+    private String annotationsCollection;
+
     AnnotationMetadata() {
     }
 
@@ -57,4 +63,12 @@ public class AnnotationMetadata {
     public void setCacheVersion(String cacheVersion) {
         this.cacheVersion = cacheVersion;
     }
+
+    public String getAnnotationsCollection() {
+        return annotationsCollection;
+    }
+
+    public void setAnnotationsCollection(String annotationsCollection) {
+        this.annotationsCollection = annotationsCollection;
+    }
 }
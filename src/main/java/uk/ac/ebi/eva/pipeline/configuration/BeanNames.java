@@ -24,15 +24,40 @@ public class BeanNames {
     public static final String NON_ANNOTATED_VARIANTS_READER = "non-annotated-variants-reader";
     public static final String VARIANT_ANNOTATION_READER = "variant-annotation-reader";
     public static final String VARIANT_READER = "variant-reader";
+    public static final String GENOTYPED_VARIANTS_READER = "genotyped-variants-reader";
+    public static final String VARIANT_STATISTICS_FILE_READER = "variant-statistics-file-reader";
+    public static final String VARIANT_STATISTICS_MONGO_READER = "variant-statistics-mongo-reader";
 
     public static final String GENE_WRITER = "gene-writer";
     public static final String VEP_INPUT_WRITER = "vep-input-writer";
     public static final String VARIANT_ANNOTATION_WRITER = "variant-annotation-writer";
     public static final String VARIANT_WRITER = "variant-writer";
+    public static final String VARIANT_STATISTICS_WRITER = "variant-statistics-writer";
+    public static final String VARIANT_STATISTICS_FILE_WRITER = "variant-statistics-file-writer";
+    public static final String POPULATION_STATISTICS_WRITER = "population-statistics-writer";
+
+    public static final String VARIANT_STATISTICS_PROCESSOR = "variant-statistics-processor";
+    public static final String VARIANT_COHORT_STATISTICS_PROCESSOR = "variant-cohort-statistics-processor";
+    public static final String POPULATION_STATISTICS_PROCESSOR = "population-statistics-processor";
+
+    public static final String SOURCE_STATISTICS_LISTENER = "source-statistics-listener";
+    public static final String SOURCE_STATISTICS_PARTITIONED_LISTENER = "source-statistics-partitioned-listener";
+    public static final String SOURCE_STATISTICS_FILE_LISTENER = "source-statistics-file-listener";
+    public static final String SOURCE_STATISTICS_INLINE_LISTENER = "source-statistics-inline-listener";
+    public static final String SOURCE_STATISTICS_COUNTER = "source-statistics-counter";
 
     public static final String ANNOTATION_SKIP_STEP_DECIDER = "annotation-skip-step-decider";
     public static final String STATISTICS_SKIP_STEP_DECIDER = "statistics-skip-step-decider";
 
+    public static final String VEP_OUTPUT_PARTITIONER = "vep-output-partitioner";
+    public static final String ANNOTATION_LOADER_TASK_EXECUTOR = "annotation-loader-task-executor";
+    public static final String VEP_INPUT_PARTITIONER = "vep-input-partitioner";
+    public static final String VEP_INPUT_GENERATOR_TASK_EXECUTOR = "vep-input-generator-task-executor";
+    public static final String STATISTICS_PARTITIONER = "statistics-partitioner";
+    public static final String STATISTICS_TASK_EXECUTOR = "statistics-task-executor";
+    public static final String COMPRESSION_EXECUTOR = "compression-executor";
+    public static final String STATISTICS_LOAD_EXECUTOR = "statistics-load-executor";
+
     public static final String VEP_ANNOTATION_FLOW = "vep-annotation-flow";
     public static final String VEP_ANNOTATION_OPTIONAL_FLOW = "vep-annotation-optional.flow";
     public static final String PARALLEL_STATISTICS_AND_ANNOTATION = "parallel-statistics-and-annotation-flow";
@@ -40,14 +65,25 @@ public class BeanNames {
     public static final String CALCULATE_STATISTICS_OPTIONAL_FLOW = "calculate-statistics-optional-flow";
 
     public static final String LOAD_VEP_ANNOTATION_STEP = "load-vep-annotation-step";
+    public static final String LOAD_VEP_ANNOTATION_PARTITIONED_STEP = "load-vep-annotation-partitioned-step";
+    public static final String LOAD_VEP_ANNOTATION_PARTITION_STEP = "load-vep-annotation-partition-step";
     public static final String CALCULATE_STATISTICS_STEP = "calculate-statistics-step";
+    public static final String CALCULATE_AND_LOAD_STATISTICS_STEP = "calculate-and-load-statistics-step";
+    public static final String CALCULATE_AND_LOAD_STATISTICS_PARTITIONED_STEP =
+            "calculate-and-load-statistics-partitioned-step";
+    public static final String CALCULATE_AND_LOAD_STATISTICS_PARTITION_STEP =
+            "calculate-and-load-statistics-partition-step";
+    public static final String BACKFILL_ANNOTATION_MARKERS_STEP = "backfill-annotation-markers-step";
     public static final String CREATE_DATABASE_INDEXES_STEP = "create-database-indexes-step";
     public static final String GENES_LOAD_STEP = "genes-load-step";
     public static final String GENERATE_VEP_ANNOTATION_STEP = "generate-vep-annotation";
     public static final String LOAD_STATISTICS_STEP = "load-statistics-step";
+    public static final String LOAD_POPULATION_STATISTICS_STEP = "load-population-statistics-step";
     public static final String LOAD_VARIANTS_STEP = "load-variants-step";
     public static final String LOAD_FILE_STEP = "load-file-step";
     public static final String GENERATE_VEP_INPUT_STEP = "generate-vep-input-step";
+    public static final String GENERATE_VEP_INPUT_PARTITIONED_STEP = "generate-vep-input-partitioned-step";
+    public static final String GENERATE_VEP_INPUT_PARTITION_STEP = "generate-vep-input-partition-step";
     public static final String DROP_SINGLE_STUDY_VARIANTS_STEP = "drop-single-study-variants-step";
     public static final String PULL_FILES_AND_STATISTICS_BY_STUDY_STEP = "pull-files-and-statistics-by-study-step";
     public static final String DROP_FILES_BY_STUDY_STEP = "drop-files-by-study-step";
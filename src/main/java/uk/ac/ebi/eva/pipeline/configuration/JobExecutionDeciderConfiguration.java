@@ -20,6 +20,7 @@ import org.springframework.batch.core.job.flow.JobExecutionDecider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import uk.ac.ebi.eva.pipeline.jobs.deciders.SkipStepDecider;
+import uk.ac.ebi.eva.pipeline.jobs.deciders.StatisticsSkipStepDecider;
 import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
 
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.ANNOTATION_SKIP_STEP_DECIDER;
@@ -39,7 +40,7 @@ public class JobExecutionDeciderConfiguration {
 
     @Bean(STATISTICS_SKIP_STEP_DECIDER)
     public JobExecutionDecider statisticsSkipStepDecider() {
-        return new SkipStepDecider(JobParametersNames.STATISTICS_SKIP);
+        return new StatisticsSkipStepDecider();
     }
 
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.configuration;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.STATISTICS_LOAD_EXECUTOR;
+
+/**
+ * Spring configuration to inject the threads that write the precomputed statistics into the database, see
+ * {@link uk.ac.ebi.eva.pipeline.io.writers.VariantStatsWrapperMongoWriter}.
+ */
+@Configuration
+public class StatisticsLoadExecutorConfiguration {
+
+    /**
+     * Singleton, so all the jobs run by the application share the same threads
+     */
+    @Bean(name = STATISTICS_LOAD_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService statisticsLoadExecutor(JobOptions jobOptions) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(jobOptions.getStatisticsLoadThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "statistics-load-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.configuration.readers;
+
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import uk.ac.ebi.eva.pipeline.io.readers.GenotypedVariantsMongoReader;
+import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
+import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
+
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.GENOTYPED_VARIANTS_READER;
+
+/**
+ * Configuration to inject a GenotypedVariantsMongoReader bean that reads the variants of the file of the job, with
+ * their genotypes, from a mongo database in the pipeline.
+ * The cursor batch size, the prefetching and the lazy decoding of the variants are taken from the database parameters.
+ * In a partitioned step, only the range of ids of the partition is read.
+ */
+@Configuration
+public class GenotypedVariantsMongoReaderConfiguration {
+
+    @Bean(GENOTYPED_VARIANTS_READER)
+    @StepScope
+    public GenotypedVariantsMongoReader genotypedVariantsMongoReader(MongoOperations mongoOperations,
+                                                                     DatabaseParameters databaseParameters,
+                                                                     InputParameters inputParameters,
+            @Value("#{stepExecutionContext['" + ExecutionContextParametersNames.MONGO_PARTITION_MIN_ID + "']}")
+                    Object minId,
+            @Value("#{stepExecutionContext['" + ExecutionContextParametersNames.MONGO_PARTITION_MAX_ID + "']}")
+                    Object maxId) {
+        GenotypedVariantsMongoReader reader = new GenotypedVariantsMongoReader(
+                mongoOperations,
+                databaseParameters.getCollectionVariantsName(),
+                inputParameters.getStudyId(),
+                inputParameters.getVcfId());
+        reader.setBatchSize(databaseParameters.getCursorBatchSize());
+        reader.setPrefetchSize(databaseParameters.getReadPrefetch());
+        reader.setLazyDecoding(databaseParameters.isReadLazyDecoding());
+        reader.setIdRange(minId, maxId);
+        return reader;
+    }
+
+}
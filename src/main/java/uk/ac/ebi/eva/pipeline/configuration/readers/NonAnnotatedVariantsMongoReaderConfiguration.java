@@ -16,18 +16,28 @@
 package uk.ac.ebi.eva.pipeline.configuration.readers;
 
 import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.core.MongoOperations;
 
 import uk.ac.ebi.eva.pipeline.io.readers.NonAnnotatedVariantsMongoReader;
+import uk.ac.ebi.eva.pipeline.parameters.AnnotationParameters;
 import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
 import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
 
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.NON_ANNOTATED_VARIANTS_READER;
 
 /**
- * Configuration to inject a NonAnnotatedVariantsMongoReader bean that reads from a mongo database in the pipeline
+ * Configuration to inject a NonAnnotatedVariantsMongoReader bean that reads from a mongo database in the pipeline.
+ * If annotations are overwritten, it also reads the variants annotated with other VEP or VEP cache versions.
+ * The cursor batch size, the prefetching and the lazy decoding of the variants are taken from the database parameters.
+ * In a partitioned step, only the range of ids of the partition is read.
+ * <p>
+ * With an annotation cache, the variants found in the cache are annotated while they are read, so the reader doesn't
+ * save the number of variants read, and a restarted step reads again the variants still not annotated
+ * ({@link uk.ac.ebi.eva.pipeline.io.writers.AnnotationCacheVepInputWriter}).
  */
 @Configuration
 public class NonAnnotatedVariantsMongoReaderConfiguration {
@@ -36,11 +46,34 @@ public class NonAnnotatedVariantsMongoReaderConfiguration {
     @StepScope
     public NonAnnotatedVariantsMongoReader nonAnnotatedVariantsMongoReader(MongoOperations mongoOperations,
                                                                            DatabaseParameters databaseParameters,
-                                                                           InputParameters inputParameters) {
-        return new NonAnnotatedVariantsMongoReader(
-                mongoOperations,
-                databaseParameters.getCollectionVariantsName(),
-                inputParameters.getStudyId());
+                                                                           InputParameters inputParameters,
+                                                                           AnnotationParameters annotationParameters,
+            @Value("#{stepExecutionContext['" + ExecutionContextParametersNames.MONGO_PARTITION_MIN_ID + "']}")
+                    Object minId,
+            @Value("#{stepExecutionContext['" + ExecutionContextParametersNames.MONGO_PARTITION_MAX_ID + "']}")
+                    Object maxId) {
+        NonAnnotatedVariantsMongoReader reader;
+        if (annotationParameters.getAnnotationOverwrite()) {
+            reader = new NonAnnotatedVariantsMongoReader(
+                    mongoOperations,
+                    databaseParameters.getCollectionVariantsName(),
+                    inputParameters.getStudyId(),
+                    databaseParameters.getReadThreads(),
+                    annotationParameters.getVepVersion(),
+                    annotationParameters.getVepCacheVersion());
+        } else {
+            reader = new NonAnnotatedVariantsMongoReader(
+                    mongoOperations,
+                    databaseParameters.getCollectionVariantsName(),
+                    inputParameters.getStudyId(),
+                    databaseParameters.getReadThreads());
+        }
+        reader.setBatchSize(databaseParameters.getCursorBatchSize());
+        reader.setPrefetchSize(databaseParameters.getReadPrefetch());
+        reader.setLazyDecoding(databaseParameters.isReadLazyDecoding());
+        reader.setIdRange(minId, maxId);
+        reader.setSaveState(annotationParameters.getVepAnnotationCachePath() == null);
+        return reader;
     }
 
 }
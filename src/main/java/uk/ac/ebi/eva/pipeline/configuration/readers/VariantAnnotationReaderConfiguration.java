@@ -17,25 +17,40 @@ package uk.ac.ebi.eva.pipeline.configuration.readers;
 
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
 import uk.ac.ebi.eva.pipeline.io.readers.AnnotationFlatFileReader;
+import uk.ac.ebi.eva.pipeline.io.readers.VariantAnnotationGroupingReader;
 import uk.ac.ebi.eva.pipeline.parameters.AnnotationParameters;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
+
+import java.io.File;
 
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_ANNOTATION_READER;
 
 /**
- * Configuration to inject a AnnotationFlatFileReader as a Variant Annotation Reader in the pipeline.
+ * Configuration to inject a AnnotationFlatFileReader as a Variant Annotation Reader in the pipeline. The lines of the
+ * same variant are merged into a single annotation by a {@link VariantAnnotationGroupingReader}.
+ * <p>
+ * In the partitions of the partitioned annotation loading step, only the shard of the VEP output assigned to the
+ * partition is read.
  */
 @Configuration
 public class VariantAnnotationReaderConfiguration {
 
     @Bean(VARIANT_ANNOTATION_READER)
     @StepScope
-    public ItemStreamReader<VariantAnnotation> variantAnnotationReader(AnnotationParameters annotationParameters) {
-        return new AnnotationFlatFileReader(annotationParameters.getVepOutput());
+    public ItemStreamReader<VariantAnnotation> variantAnnotationReader(
+            AnnotationParameters annotationParameters,
+            @Value("#{stepExecutionContext['" + ExecutionContextParametersNames.VEP_OUTPUT_SHARD + "']}")
+                    String vepOutputShard) {
+        if (vepOutputShard != null) {
+            return new VariantAnnotationGroupingReader(new AnnotationFlatFileReader(new File(vepOutputShard), false));
+        }
+        return new VariantAnnotationGroupingReader(new AnnotationFlatFileReader(annotationParameters.getVepOutput()));
     }
 
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.configuration.readers;
+
+import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import uk.ac.ebi.eva.pipeline.io.readers.VariantStatsJsonReader;
+import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
+import uk.ac.ebi.eva.pipeline.parameters.OutputParameters;
+import uk.ac.ebi.eva.utils.URLHelper;
+
+import java.io.File;
+import java.net.URISyntaxException;
+
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_STATISTICS_FILE_READER;
+
+/**
+ * Configuration to inject a VariantStatsJsonReader that reads the statistics of the variants of a file, as
+ * precomputed by OpenCGA in the statistics output directory.
+ */
+@Configuration
+public class VariantStatsJsonReaderConfiguration {
+
+    @Bean(VARIANT_STATISTICS_FILE_READER)
+    @StepScope
+    public ItemStreamReader<VariantStatsWrapper> variantStatsJsonReader(InputParameters inputParameters,
+                                                                       OutputParameters outputParameters)
+            throws URISyntaxException {
+        return new VariantStatsJsonReader(new File(URLHelper.getVariantsStatsUri(
+                outputParameters.getOutputDirStatistics(), inputParameters.getStudyId(),
+                inputParameters.getVcfId()).getPath()));
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.configuration.readers;
+
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import uk.ac.ebi.eva.pipeline.io.readers.VariantStatsMongoReader;
+import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
+import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
+
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_STATISTICS_MONGO_READER;
+
+/**
+ * Configuration to inject a VariantStatsMongoReader bean that reads the variants with statistics of the file of the
+ * job from a mongo database in the pipeline.
+ */
+@Configuration
+public class VariantStatsMongoReaderConfiguration {
+
+    @Bean(VARIANT_STATISTICS_MONGO_READER)
+    @StepScope
+    public VariantStatsMongoReader variantStatsMongoReader(MongoOperations mongoOperations,
+                                                           DatabaseParameters databaseParameters,
+                                                           InputParameters inputParameters) {
+        VariantStatsMongoReader reader = new VariantStatsMongoReader(
+                mongoOperations,
+                databaseParameters.getCollectionVariantsName(),
+                inputParameters.getStudyId(),
+                inputParameters.getVcfId());
+        reader.setBatchSize(databaseParameters.getCursorBatchSize());
+        reader.setPrefetchSize(databaseParameters.getReadPrefetch());
+        reader.setLazyDecoding(databaseParameters.isReadLazyDecoding());
+        return reader;
+    }
+
+}
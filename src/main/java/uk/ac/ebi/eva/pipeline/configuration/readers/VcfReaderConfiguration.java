@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,13 +16,20 @@
 package uk.ac.ebi.eva.pipeline.configuration.readers;
 
 import org.opencb.biodata.models.variant.VariantSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemStreamException;
 import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntity;
+import uk.ac.ebi.eva.pipeline.io.mappers.VcfAnnotationInfoParser;
+import uk.ac.ebi.eva.pipeline.io.mappers.VcfLineMapper;
 import uk.ac.ebi.eva.pipeline.io.readers.AggregatedVcfReader;
 import uk.ac.ebi.eva.pipeline.io.readers.UnwindingItemStreamReader;
+import uk.ac.ebi.eva.pipeline.io.readers.VcfHeaderReader;
 import uk.ac.ebi.eva.pipeline.io.readers.VcfReader;
 import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
 
@@ -37,6 +44,8 @@ import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_READER;
 @Configuration
 public class VcfReaderConfiguration {
 
+    private static final Logger logger = LoggerFactory.getLogger(VcfReaderConfiguration.class);
+
     @Bean(VARIANT_READER)
     @StepScope
     public ItemStreamReader<Variant> unwindingReader(VcfReader vcfReader) {
@@ -59,11 +68,36 @@ public class VcfReaderConfiguration {
         VariantSource.Aggregation vcfAggregation = parameters.getVcfAggregation();
 
         if (VariantSource.Aggregation.NONE.equals(vcfAggregation)) {
-            return new VcfReader(fileId, studyId, vcfFile);
+            VcfAnnotationInfoParser annotationParser = null;
+            if (parameters.getVcfImportAnnotation()) {
+                annotationParser = VcfAnnotationInfoParser.fromHeader(readHeader(parameters, vcfFile));
+                if (annotationParser == null) {
+                    logger.info("The VCF {} has no annotation to import", vcfFile);
+                } else {
+                    logger.info("Importing the annotation in the INFO field {} of the VCF {}",
+                                annotationParser.getInfoKey(), vcfFile);
+                }
+            }
+            return new VcfReader(new VcfLineMapper(fileId, studyId, annotationParser), vcfFile);
         } else {
             return new AggregatedVcfReader(fileId, studyId, vcfAggregation, parameters.getAggregatedMappingFile(),
                     vcfFile);
         }
     }
 
+    private String readHeader(InputParameters parameters, File vcfFile) {
+        VcfHeaderReader headerReader = new VcfHeaderReader(vcfFile, parameters.getVcfId(), parameters.getStudyId(),
+                                                           parameters.getStudyName(), parameters.getStudyType(),
+                                                           parameters.getVcfAggregation());
+        headerReader.open(null);
+        try {
+            VariantSourceEntity source = headerReader.read();
+            return (String) source.getMetadata().get(VcfHeaderReader.VARIANT_FILE_HEADER_KEY);
+        } catch (Exception e) {
+            throw new ItemStreamException("Couldn't read the header of the VCF " + vcfFile, e);
+        } finally {
+            headerReader.close();
+        }
+    }
+
 }
@@ -16,7 +16,9 @@
 package uk.ac.ebi.eva.pipeline.configuration.writers;
 
 import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.CompositeItemWriter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -24,9 +26,17 @@ import org.springframework.data.mongodb.core.MongoOperations;
 
 import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
 import uk.ac.ebi.eva.pipeline.Application;
+import uk.ac.ebi.eva.pipeline.io.AnnotationCache;
+import uk.ac.ebi.eva.pipeline.io.writers.AnnotationCacheWriter;
+import uk.ac.ebi.eva.pipeline.io.writers.AnnotationWriteStrategy;
 import uk.ac.ebi.eva.pipeline.io.writers.VepAnnotationMongoWriter;
+import uk.ac.ebi.eva.pipeline.parameters.AnnotationParameters;
 import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_ANNOTATION_WRITER;
 
 @Configuration
@@ -35,8 +45,25 @@ public class VariantAnnotationWriterConfiguration {
     @Bean(VARIANT_ANNOTATION_WRITER)
     @StepScope
     @Profile(Application.VARIANT_ANNOTATION_MONGO_PROFILE)
-    public ItemWriter<VariantAnnotation> variantAnnotationItemWriter(MongoOperations mongoOperations,
-                                                                     DatabaseParameters databaseParameters) {
-        return new VepAnnotationMongoWriter(mongoOperations, databaseParameters.getCollectionVariantsName());
+    public ItemStreamWriter<VariantAnnotation> variantAnnotationItemWriter(MongoOperations mongoOperations,
+                                                                           DatabaseParameters databaseParameters,
+                                                                           AnnotationParameters annotationParameters) {
+        List<ItemWriter<? super VariantAnnotation>> writers = new ArrayList<>();
+        writers.add(new VepAnnotationMongoWriter(mongoOperations, databaseParameters.getCollectionVariantsName(),
+                                                 databaseParameters.getCollectionAnnotationsName(),
+                                                 annotationParameters.getVepVersion(),
+                                                 annotationParameters.getVepCacheVersion(),
+                                                 annotationParameters.getAnnotationWriteStrategy()
+                                                         == AnnotationWriteStrategy.REPLACE));
+
+        if (annotationParameters.getVepAnnotationCachePath() != null) {
+            writers.add(new AnnotationCacheWriter(new AnnotationCache(
+                    new File(annotationParameters.getVepAnnotationCachePath()), annotationParameters.getVepVersion(),
+                    annotationParameters.getVepCacheVersion(), annotationParameters.getVepAnnotationCacheMaxEntries())));
+        }
+
+        CompositeItemWriter<VariantAnnotation> writer = new CompositeItemWriter<>();
+        writer.setDelegates(writers);
+        return writer;
     }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.configuration.writers;
+
+import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import uk.ac.ebi.eva.pipeline.io.writers.VariantStatsWrapperMongoWriter;
+import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
+import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
+import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
+import uk.ac.ebi.eva.pipeline.parameters.OutputParameters;
+
+import java.util.concurrent.ExecutorService;
+
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.STATISTICS_LOAD_EXECUTOR;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_STATISTICS_FILE_WRITER;
+
+@Configuration
+public class VariantStatsWrapperWriterConfiguration {
+
+    @Bean(VARIANT_STATISTICS_FILE_WRITER)
+    @StepScope
+    public ItemWriter<VariantStatsWrapper> variantStatsWrapperItemWriter(
+            MongoOperations mongoOperations, DatabaseParameters databaseParameters, InputParameters inputParameters,
+            OutputParameters outputParameters, JobOptions jobOptions,
+            @Qualifier(STATISTICS_LOAD_EXECUTOR) ExecutorService statisticsLoadExecutor) {
+        return new VariantStatsWrapperMongoWriter(mongoOperations, databaseParameters.getCollectionVariantsName(),
+                                                  inputParameters.getStudyId(), inputParameters.getVcfId(),
+                                                  outputParameters.getStatisticsOverwrite(), statisticsLoadExecutor,
+                                                  jobOptions.getStatisticsLoadThreads());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.configuration.writers;
+
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.pipeline.io.writers.SourceStatisticsCounter;
+import uk.ac.ebi.eva.pipeline.io.writers.VariantStatsMergeMongoWriter;
+import uk.ac.ebi.eva.pipeline.io.writers.VariantStatsMongoWriter;
+import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
+import uk.ac.ebi.eva.pipeline.parameters.OutputParameters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_STATISTICS_WRITER;
+
+/**
+ * Configuration to inject a VariantStatsMongoWriter, that writes the statistics of the variants of a file. With the
+ * incremental statistics option, they are also merged into the statistics of the study by a
+ * {@link VariantStatsMergeMongoWriter}. The statistics of the file are counted by a {@link SourceStatisticsCounter}
+ * once the statistics of its variants are written.
+ */
+@Configuration
+public class VariantStatsWriterConfiguration {
+
+    @Bean(VARIANT_STATISTICS_WRITER)
+    @StepScope
+    public ItemStreamWriter<Variant> variantStatsItemWriter(MongoOperations mongoOperations,
+                                                            DatabaseParameters databaseParameters,
+                                                            OutputParameters outputParameters) {
+        List<ItemWriter<? super Variant>> delegates = new ArrayList<>();
+        delegates.add(new VariantStatsMongoWriter(mongoOperations, databaseParameters.getCollectionVariantsName()));
+        if (outputParameters.getStatisticsIncremental()) {
+            delegates.add(new VariantStatsMergeMongoWriter(mongoOperations,
+                                                           databaseParameters.getCollectionVariantsName()));
+        }
+        delegates.add(new SourceStatisticsCounter());
+
+        CompositeItemWriter<Variant> compositeWriter = new CompositeItemWriter<>();
+        compositeWriter.setDelegates(delegates);
+        return compositeWriter;
+    }
+}
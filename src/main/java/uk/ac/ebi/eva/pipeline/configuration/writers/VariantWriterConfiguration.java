@@ -26,8 +26,10 @@ import uk.ac.ebi.eva.commons.models.data.Variant;
 import uk.ac.ebi.eva.pipeline.Application;
 import uk.ac.ebi.eva.pipeline.io.writers.VariantMongoWriter;
 import uk.ac.ebi.eva.pipeline.model.converters.data.VariantToMongoDbObjectConverter;
+import uk.ac.ebi.eva.pipeline.parameters.AnnotationParameters;
 import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
 import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
+import uk.ac.ebi.eva.pipeline.parameters.OutputParameters;
 
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_WRITER;
 
@@ -37,19 +39,23 @@ public class VariantWriterConfiguration {
     @Bean(VARIANT_WRITER)
     @StepScope
     @Profile(Application.VARIANT_WRITER_MONGO_PROFILE)
-    public ItemWriter<Variant> variantMongoWriter(InputParameters inputParameters, MongoOperations mongoOperations,
-                                                  DatabaseParameters databaseParameters) {
+    public ItemWriter<Variant> variantMongoWriter(InputParameters inputParameters, OutputParameters outputParameters,
+                                                  MongoOperations mongoOperations,
+                                                  DatabaseParameters databaseParameters,
+                                                  AnnotationParameters annotationParameters) {
         return new VariantMongoWriter(databaseParameters.getCollectionVariantsName(), mongoOperations,
-                variantToMongoDbObjectConverter(inputParameters));
+                variantToMongoDbObjectConverter(inputParameters, outputParameters),
+                databaseParameters.getCollectionAnnotationsName(), annotationParameters.getVepVersion());
     }
 
     @Bean
     @StepScope
-    public VariantToMongoDbObjectConverter variantToMongoDbObjectConverter(InputParameters inputParameters) {
+    public VariantToMongoDbObjectConverter variantToMongoDbObjectConverter(InputParameters inputParameters,
+                                                                           OutputParameters outputParameters) {
         boolean includeSamples, includeStats;
         if (VariantSource.Aggregation.NONE.equals(inputParameters.getVcfAggregation())) {
             includeSamples = true;
-            includeStats = false;
+            includeStats = outputParameters.getStatisticsInline();
         } else {
             includeSamples = false;
             includeStats = true;
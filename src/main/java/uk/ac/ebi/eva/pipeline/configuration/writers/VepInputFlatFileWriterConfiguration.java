@@ -17,12 +17,26 @@ package uk.ac.ebi.eva.pipeline.configuration.writers;
 
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoOperations;
+import uk.ac.ebi.eva.pipeline.io.AnnotationCache;
+import uk.ac.ebi.eva.pipeline.io.writers.AnnotationCacheVepInputWriter;
+import uk.ac.ebi.eva.pipeline.io.writers.AnnotationWriteStrategy;
+import uk.ac.ebi.eva.pipeline.io.writers.VepAnnotationMongoWriter;
 import uk.ac.ebi.eva.pipeline.io.writers.VepInputFlatFileWriter;
 import uk.ac.ebi.eva.pipeline.model.VariantWrapper;
 import uk.ac.ebi.eva.pipeline.parameters.AnnotationParameters;
+import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
+import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
 
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.COMPRESSION_EXECUTOR;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VEP_INPUT_WRITER;
 
 @Configuration
@@ -30,8 +44,29 @@ public class VepInputFlatFileWriterConfiguration {
 
     @Bean(VEP_INPUT_WRITER)
     @StepScope
-    public ItemStreamWriter<VariantWrapper> vepInputFlatFileWriter(AnnotationParameters annotationParameters) {
-        return new VepInputFlatFileWriter(annotationParameters.getVepInput());
+    public ItemStreamWriter<VariantWrapper> vepInputFlatFileWriter(AnnotationParameters annotationParameters,
+                                                                   MongoOperations mongoOperations,
+                                                                   DatabaseParameters databaseParameters,
+                                                                   JobOptions jobOptions,
+            @Qualifier(COMPRESSION_EXECUTOR) ExecutorService compressionExecutor,
+            @Value("#{stepExecutionContext['" + ExecutionContextParametersNames.VEP_INPUT_PART + "']}")
+                    String vepInputPart) {
+        VepInputFlatFileWriter vepInputWriter = new VepInputFlatFileWriter(
+                new File(vepInputPart != null ? vepInputPart : annotationParameters.getVepInput()),
+                compressionExecutor, jobOptions.getCompressionThreads());
+        if (annotationParameters.getVepAnnotationCachePath() == null) {
+            return vepInputWriter;
+        }
+
+        AnnotationCache annotationCache = new AnnotationCache(
+                new File(annotationParameters.getVepAnnotationCachePath()), annotationParameters.getVepVersion(),
+                annotationParameters.getVepCacheVersion(), annotationParameters.getVepAnnotationCacheMaxEntries());
+        VepAnnotationMongoWriter annotationWriter = new VepAnnotationMongoWriter(
+                mongoOperations, databaseParameters.getCollectionVariantsName(),
+                databaseParameters.getCollectionAnnotationsName(), annotationParameters.getVepVersion(),
+                annotationParameters.getVepCacheVersion(),
+                annotationParameters.getAnnotationWriteStrategy() == AnnotationWriteStrategy.REPLACE);
+        return new AnnotationCacheVepInputWriter(vepInputWriter, annotationWriter, annotationCache);
     }
 
 }
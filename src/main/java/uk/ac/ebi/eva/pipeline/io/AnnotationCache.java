@@ -0,0 +1,355 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
+import org.bson.BasicBSONEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.ebi.eva.commons.models.converters.data.AnnotationFieldNames;
+import uk.ac.ebi.eva.commons.models.converters.data.DBObjectToVariantAnnotationConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantAnnotationToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+import uk.ac.ebi.eva.utils.MongoDBHelper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local, on-disk cache of variant annotations, so variants already annotated for another study don't need to go
+ * through VEP again.
+ * <p>
+ * The annotations are stored in an embedded HSQLDB database inside the cache directory, keyed by the storage id of the
+ * variant plus the VEP and VEP cache versions they were annotated with. The value is the same document that
+ * {@link uk.ac.ebi.eva.pipeline.io.writers.VepAnnotationMongoWriter} sends to MongoDB, encoded as BSON.
+ * <p>
+ * The cache keeps at most a given number of entries: as soon as an insertion goes over the limit, the least recently
+ * used ones are evicted, so the limit holds during long runs and after crashed jobs too. The hits and misses of
+ * {@link #getAll(Collection)} are counted to report the hit rate.
+ * <p>
+ * A cache directory can only be opened by one process at a time, which is enforced by the lock file of HSQLDB. All
+ * the instances of the same process share the same database, each with its own connection, so every partition of a
+ * step can open its own instance.
+ */
+public class AnnotationCache implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationCache.class);
+
+    private static final String DATABASE_NAME = "annotations";
+
+    private static final String TABLE_NAME = "ANNOTATIONS";
+
+    private static final String CREATE_TABLE = "CREATE CACHED TABLE ANNOTATIONS ("
+            + "STORAGE_ID VARCHAR(1024) NOT NULL, "
+            + "VEP_VERSION VARCHAR(64) NOT NULL, "
+            + "VEP_CACHE_VERSION VARCHAR(64) NOT NULL, "
+            + "ANNOTATION VARBINARY(16777216) NOT NULL, "
+            + "LAST_ACCESS BIGINT NOT NULL, "
+            + "PRIMARY KEY (STORAGE_ID, VEP_VERSION, VEP_CACHE_VERSION))";
+
+    private static final String CREATE_LAST_ACCESS_INDEX =
+            "CREATE INDEX ANNOTATIONS_LAST_ACCESS ON ANNOTATIONS (LAST_ACCESS)";
+
+    private static final String KEY_CONDITION = " WHERE STORAGE_ID = ? AND VEP_VERSION = ? AND VEP_CACHE_VERSION = ?";
+
+    private static final String SELECT_ANNOTATION = "SELECT ANNOTATION FROM ANNOTATIONS" + KEY_CONDITION;
+
+    private static final String UPDATE_LAST_ACCESS = "UPDATE ANNOTATIONS SET LAST_ACCESS = ?" + KEY_CONDITION;
+
+    private static final String UPDATE_ANNOTATION = "UPDATE ANNOTATIONS SET ANNOTATION = ?, LAST_ACCESS = ?"
+            + KEY_CONDITION;
+
+    private static final String INSERT_ANNOTATION = "INSERT INTO ANNOTATIONS "
+            + "(ANNOTATION, LAST_ACCESS, STORAGE_ID, VEP_VERSION, VEP_CACHE_VERSION) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String COUNT_ANNOTATIONS = "SELECT COUNT(*) FROM ANNOTATIONS";
+
+    private static final String SELECT_EVICTION_THRESHOLD =
+            "SELECT LAST_ACCESS FROM ANNOTATIONS ORDER BY LAST_ACCESS LIMIT 1 OFFSET ?";
+
+    private static final String DELETE_LEAST_RECENTLY_USED = "DELETE FROM ANNOTATIONS WHERE LAST_ACCESS <= ?";
+
+    private final File directory;
+
+    private final String vepVersion;
+
+    private final String vepCacheVersion;
+
+    private final long maxEntries;
+
+    private final VariantAnnotationToDBObjectConverter toDBObjectConverter;
+
+    private final DBObjectToVariantAnnotationConverter fromDBObjectConverter;
+
+    private Connection connection;
+
+    private long entries;
+
+    private long hits;
+
+    private long misses;
+
+    public AnnotationCache(File directory, String vepVersion, String vepCacheVersion, long maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maximum number of cached annotations must be positive, not "
+                                                       + maxEntries);
+        }
+        this.directory = directory;
+        this.vepVersion = vepVersion;
+        this.vepCacheVersion = vepCacheVersion;
+        this.maxEntries = maxEntries;
+        this.toDBObjectConverter = new VariantAnnotationToDBObjectConverter();
+        this.fromDBObjectConverter = new DBObjectToVariantAnnotationConverter();
+    }
+
+    public void open() throws SQLException {
+        String url = "jdbc:hsqldb:file:" + new File(directory, DATABASE_NAME).getAbsolutePath() + ";shutdown=true";
+        try {
+            connection = DriverManager.getConnection(url, "SA", "");
+        } catch (SQLException e) {
+            if (e.getMessage() != null && e.getMessage().contains("lock")) {
+                throw new SQLException("The annotation cache at " + directory + " is already open in another process."
+                                               + " Please use a different cache path for each process", e);
+            }
+            throw e;
+        }
+
+        boolean tableExists;
+        try (ResultSet tables = connection.getMetaData().getTables(null, null, TABLE_NAME, null)) {
+            tableExists = tables.next();
+        }
+        if (!tableExists) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_TABLE);
+                statement.execute(CREATE_LAST_ACCESS_INDEX);
+            }
+        }
+        entries = countEntries();
+        hits = 0;
+        misses = 0;
+        logger.debug("Annotation cache opened at {} for VEP version {} and cache version {}", directory, vepVersion,
+                     vepCacheVersion);
+    }
+
+    /**
+     * @return the cached annotations, by storage id, of the given variants. Variants not in the cache are not
+     * included. The returned annotations only contain the consequence types and the cross-references.
+     */
+    public Map<String, VariantAnnotation> getAll(Collection<String> storageIds) throws SQLException {
+        Map<String, VariantAnnotation> annotations = new HashMap<>();
+        long now = System.currentTimeMillis();
+
+        try (PreparedStatement select = connection.prepareStatement(SELECT_ANNOTATION);
+             PreparedStatement touch = connection.prepareStatement(UPDATE_LAST_ACCESS)) {
+            for (String storageId : storageIds) {
+                DBObject annotation = find(select, storageId);
+                if (annotation == null) {
+                    misses++;
+                } else {
+                    hits++;
+                    annotations.put(storageId, fromDBObjectConverter.convert(annotation));
+                    touch.setLong(1, now);
+                    setKey(touch, 2, storageId);
+                    touch.addBatch();
+                }
+            }
+            if (!annotations.isEmpty()) {
+                touch.executeBatch();
+            }
+        }
+
+        return annotations;
+    }
+
+    /**
+     * Adds the annotations to the cache. Several annotations of the same variant, in the same call or not, are
+     * merged, keeping the distinct consequence types and cross-references. If the new annotations take the cache over
+     * its maximum number of entries, the least recently used ones are evicted.
+     */
+    public void putAll(List<? extends VariantAnnotation> variantAnnotations) throws SQLException {
+        Map<String, DBObject> annotationsByStorageId = new LinkedHashMap<>();
+        for (VariantAnnotation variantAnnotation : variantAnnotations) {
+            String storageId = MongoDBHelper.buildStorageId(variantAnnotation.getChromosome(),
+                                                            variantAnnotation.getStart(),
+                                                            variantAnnotation.getReferenceAllele(),
+                                                            variantAnnotation.getAlternativeAllele());
+            DBObject annotation = toDBObjectConverter.convert(variantAnnotation);
+            DBObject previous = annotationsByStorageId.get(storageId);
+            annotationsByStorageId.put(storageId, previous == null ? annotation : merge(previous, annotation));
+        }
+
+        long now = System.currentTimeMillis();
+        BasicBSONEncoder encoder = new BasicBSONEncoder();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement select = connection.prepareStatement(SELECT_ANNOTATION);
+             PreparedStatement update = connection.prepareStatement(UPDATE_ANNOTATION);
+             PreparedStatement insert = connection.prepareStatement(INSERT_ANNOTATION)) {
+            int inserted = 0;
+            for (Map.Entry<String, DBObject> entry : annotationsByStorageId.entrySet()) {
+                DBObject cached = find(select, entry.getKey());
+                PreparedStatement statement = cached == null ? insert : update;
+                DBObject annotation = cached == null ? entry.getValue() : merge(cached, entry.getValue());
+
+                statement.setBytes(1, encoder.encode(annotation));
+                statement.setLong(2, now);
+                setKey(statement, 3, entry.getKey());
+                statement.executeUpdate();
+                if (cached == null) {
+                    inserted++;
+                }
+            }
+            connection.commit();
+            entries += inserted;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+
+        if (entries > maxEntries) {
+            evict();
+        }
+    }
+
+    /**
+     * Removes the least recently used annotations, of any VEP version, until there are at most the maximum number
+     * of entries. Entries last used at the same time as the last one removed are removed as well.
+     * <p>
+     * The entries are counted again, because other instances of the same process may have added or evicted some.
+     */
+    public void evict() throws SQLException {
+        entries = countEntries();
+
+        long excess = entries - maxEntries;
+        if (excess <= 0) {
+            return;
+        }
+
+        try (PreparedStatement threshold = connection.prepareStatement(SELECT_EVICTION_THRESHOLD);
+             PreparedStatement delete = connection.prepareStatement(DELETE_LEAST_RECENTLY_USED)) {
+            threshold.setLong(1, excess - 1);
+            try (ResultSet resultSet = threshold.executeQuery()) {
+                resultSet.next();
+                delete.setLong(1, resultSet.getLong(1));
+            }
+            int evicted = delete.executeUpdate();
+            entries -= evicted;
+            logger.info("Evicted {} annotations from the annotation cache, which had {} out of {} allowed", evicted,
+                        entries + evicted, maxEntries);
+        }
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * Evicts the least recently used annotations if needed, and closes the connection. The database is closed when
+     * the last connection of the process is closed.
+     */
+    @Override
+    public void close() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            evict();
+        } catch (SQLException e) {
+            logger.warn("Could not evict annotations from the annotation cache: {}", e.getMessage());
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Could not close the annotation cache: {}", e.getMessage());
+        }
+        connection = null;
+    }
+
+    private long countEntries() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(COUNT_ANNOTATIONS)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private DBObject find(PreparedStatement select, String storageId) throws SQLException {
+        setKey(select, 1, storageId);
+        try (ResultSet resultSet = select.executeQuery()) {
+            if (resultSet.next()) {
+                return new DefaultDBDecoder().decode(resultSet.getBytes(1), (DBCollection) null);
+            }
+            return null;
+        }
+    }
+
+    private void setKey(PreparedStatement statement, int firstParameterIndex, String storageId) throws SQLException {
+        statement.setString(firstParameterIndex, storageId);
+        statement.setString(firstParameterIndex + 1, vepVersion);
+        statement.setString(firstParameterIndex + 2, vepCacheVersion);
+    }
+
+    private DBObject merge(DBObject annotation, DBObject other) {
+        DBObject merged = new BasicDBObject();
+        mergeField(merged, annotation, other, AnnotationFieldNames.CONSEQUENCE_TYPE_FIELD);
+        mergeField(merged, annotation, other, AnnotationFieldNames.XREFS_FIELD);
+        return merged;
+    }
+
+    private void mergeField(DBObject merged, DBObject annotation, DBObject other, String field) {
+        Set<Object> values = new LinkedHashSet<>();
+        addAll(values, annotation.get(field));
+        addAll(values, other.get(field));
+        if (!values.isEmpty()) {
+            merged.put(field, new ArrayList<>(values));
+        }
+    }
+
+    private void addAll(Set<Object> values, Object field) {
+        if (field instanceof Collection) {
+            values.addAll((Collection<?>) field);
+        }
+    }
+}
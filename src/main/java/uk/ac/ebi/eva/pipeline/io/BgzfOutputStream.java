@@ -0,0 +1,264 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream that compresses its content in the BGZF format: a sequence of gzip members of at most 64 KB, each of
+ * them with its compressed size in an extra field of its header, and an empty member at the end. Any gzip reader
+ * decompresses it as a single stream, and the readers that know the format can split it at the members.
+ * <p>
+ * The content is cut into blocks of {@link #MAX_BLOCK_INPUT_SIZE} bytes, which are deflated in the threads of an
+ * executor, usually shared by all the jobs in the application, while more content is written. The compressed blocks
+ * are written in order, and at most a fixed number of them are pending, so a slow output holds back the writer instead
+ * of filling the memory. Without an executor, every block is deflated in the writing thread.
+ * <p>
+ * {@link #flush()} cuts a block at the current position and waits until all the blocks are written, so the underlying
+ * output ends at a member boundary and can be truncated there. {@link #finish()} also writes the final empty member.
+ */
+public class BgzfOutputStream extends OutputStream {
+
+    /**
+     * Uncompressed bytes per block. The same as other BGZF writers, so a block always fits in 64 KB even if its
+     * content can't be compressed.
+     */
+    public static final int MAX_BLOCK_INPUT_SIZE = 0xff00;
+
+    private static final int MAX_BLOCK_SIZE = 0x10000;
+
+    private static final int HEADER_SIZE = 18;
+
+    private static final int FOOTER_SIZE = 8;
+
+    private static final byte[] EOF_BLOCK = {
+            0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 0x42, 0x43, 2, 0, 0x1b, 0,
+            3, 0, 0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    private static final int DEFAULT_MAX_PENDING_BLOCKS_PER_THREAD = 2;
+
+    private final OutputStream outputStream;
+
+    private final ExecutorService executor;
+
+    private final int maxPendingBlocks;
+
+    private final int compressionLevel;
+
+    private final Deque<Future<byte[]>> pendingBlocks;
+
+    private byte[] buffer;
+
+    private int count;
+
+    private boolean finished;
+
+    /**
+     * Deflates the blocks in the writing thread.
+     */
+    public BgzfOutputStream(OutputStream outputStream) {
+        this(outputStream, null, 1);
+    }
+
+    /**
+     * @param executor threads that deflate the blocks, or null to deflate them in the writing thread
+     * @param threads number of threads of the executor, used to decide how many blocks can be pending
+     */
+    public BgzfOutputStream(OutputStream outputStream, ExecutorService executor, int threads) {
+        this(outputStream, executor, threads * DEFAULT_MAX_PENDING_BLOCKS_PER_THREAD, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param maxPendingBlocks blocks submitted to the executor but not written yet, before the writer has to wait
+     * @param compressionLevel level of the {@link Deflater}, from 0 to 9
+     */
+    public BgzfOutputStream(OutputStream outputStream, ExecutorService executor, int maxPendingBlocks,
+                            int compressionLevel) {
+        if (maxPendingBlocks <= 0) {
+            throw new IllegalArgumentException("The maximum number of pending blocks must be positive, not "
+                                                       + maxPendingBlocks);
+        }
+        this.outputStream = outputStream;
+        this.executor = executor;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.compressionLevel = compressionLevel;
+        this.pendingBlocks = new ArrayDeque<>(maxPendingBlocks);
+        this.buffer = new byte[MAX_BLOCK_INPUT_SIZE];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer[count++] = (byte) b;
+        if (count == MAX_BLOCK_INPUT_SIZE) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            int copied = Math.min(length, MAX_BLOCK_INPUT_SIZE - count);
+            System.arraycopy(bytes, offset, buffer, count, copied);
+            count += copied;
+            offset += copied;
+            length -= copied;
+            if (count == MAX_BLOCK_INPUT_SIZE) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the content received so far as complete blocks.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            submitBlock();
+        }
+        while (!pendingBlocks.isEmpty()) {
+            writeNextBlock();
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Writes the content received so far and the final empty block, without closing the underlying output.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        flush();
+        outputStream.write(EOF_BLOCK);
+        outputStream.flush();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            for (Future<byte[]> pendingBlock : pendingBlocks) {
+                pendingBlock.cancel(false);
+            }
+            pendingBlocks.clear();
+            outputStream.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        if (finished) {
+            throw new IOException("The BGZF stream is already finished");
+        }
+        byte[] block = buffer;
+        int length = count;
+        buffer = new byte[MAX_BLOCK_INPUT_SIZE];
+        count = 0;
+
+        if (executor == null) {
+            outputStream.write(compressBlock(block, length, compressionLevel));
+            return;
+        }
+        if (pendingBlocks.size() == maxPendingBlocks) {
+            writeNextBlock();
+        }
+        pendingBlocks.add(executor.submit(() -> compressBlock(block, length, compressionLevel)));
+    }
+
+    private void writeNextBlock() throws IOException {
+        Future<byte[]> pendingBlock = pendingBlocks.poll();
+        try {
+            outputStream.write(pendingBlock.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a BGZF block to be compressed");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not compress a BGZF block", e.getCause());
+        }
+    }
+
+    /**
+     * @return a whole BGZF block with the content deflated, or stored if it can't be compressed into 64 KB
+     */
+    static byte[] compressBlock(byte[] content, int length, int compressionLevel) {
+        byte[] block = new byte[MAX_BLOCK_SIZE];
+        int compressedSize = deflate(content, length, compressionLevel, block);
+        if (compressedSize < 0) {
+            compressedSize = deflate(content, length, Deflater.NO_COMPRESSION, block);
+        }
+        int blockSize = HEADER_SIZE + compressedSize + FOOTER_SIZE;
+
+        block[0] = 0x1f;
+        block[1] = (byte) 0x8b;
+        block[2] = Deflater.DEFLATED;
+        block[3] = 4;       // FEXTRA
+        block[9] = (byte) 0xff;     // unknown OS
+        block[10] = 6;      // extra field length
+        block[12] = 'B';
+        block[13] = 'C';
+        block[14] = 2;      // subfield length
+        writeShort(block, 16, blockSize - 1);
+
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, length);
+        writeInt(block, HEADER_SIZE + compressedSize, (int) crc.getValue());
+        writeInt(block, HEADER_SIZE + compressedSize + 4, length);
+        return Arrays.copyOf(block, blockSize);
+    }
+
+    /**
+     * @return the size of the deflated content, written after the header, or -1 if it doesn't fit in the block
+     */
+    private static int deflate(byte[] content, int length, int compressionLevel, byte[] block) {
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setInput(content, 0, length);
+            deflater.finish();
+            int maxCompressedSize = MAX_BLOCK_SIZE - HEADER_SIZE - FOOTER_SIZE;
+            int compressedSize = 0;
+            while (!deflater.finished() && compressedSize < maxCompressedSize) {
+                compressedSize += deflater.deflate(block, HEADER_SIZE + compressedSize,
+                                                   maxCompressedSize - compressedSize);
+            }
+            return deflater.finished() ? compressedSize : -1;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeShort(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        writeShort(bytes, offset, value);
+        writeShort(bytes, offset + 2, value >>> 16);
+    }
+}
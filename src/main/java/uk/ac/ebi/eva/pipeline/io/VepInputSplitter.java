@@ -0,0 +1,285 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Splits a VEP input file into shards of contiguous lines, so that several VEP processes can annotate them
+ * concurrently and their outputs can be concatenated in the same order.
+ * <p>
+ * All the shards have roughly the same number of lines. A shard is never closed between two lines of the same
+ * chromosome and start position, so a region always goes to a single shard.
+ * <p>
+ * The shards are written uncompressed in the given folder as {@code input_0.tsv}, {@code input_1.tsv}... The VEP input
+ * can be compressed with gzip, if its name ends with {@code .gz}.
+ * <p>
+ * Every shard keeps its number of lines and the identifier VEP gives to its last variant, so the output of VEP can be
+ * checked against its input.
+ */
+public class VepInputSplitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(VepInputSplitter.class);
+
+    private static final String SHARD_PREFIX = "input_";
+
+    private static final String SHARD_SUFFIX = ".tsv";
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    /**
+     * Number of lines read before splitting, to estimate the number of lines of the whole input.
+     */
+    private static final int SAMPLE_LINES = 100000;
+
+    private final int numShards;
+
+    public VepInputSplitter(int numShards) {
+        if (numShards <= 0) {
+            throw new IllegalArgumentException("The number of shards must be positive, not " + numShards);
+        }
+        this.numShards = numShards;
+    }
+
+    /**
+     * The input is read only once. The lines of a small input are kept in memory until its end is reached, so the
+     * shards are exact. For a larger input, the number of lines is estimated from the size of the file and the bytes
+     * of the file read for the first {@link #SAMPLE_LINES} lines, and the last shard takes the lines left.
+     *
+     * @return the list of shards, in the same order as the lines in the VEP input. There may be less shards than
+     * requested if the input file has not enough lines.
+     */
+    public List<Shard> split(File vepInput, File shardsFolder) throws IOException {
+        ShardsWriter shardsWriter = new ShardsWriter(shardsFolder);
+        try (CountingInputStream fileInputStream = new CountingInputStream(new FileInputStream(vepInput));
+             BufferedReader reader = openReader(vepInput, fileInputStream)) {
+            List<String> sample = new ArrayList<>();
+            String line;
+            while (sample.size() < SAMPLE_LINES && (line = reader.readLine()) != null) {
+                sample.add(line);
+            }
+
+            long totalLines = sample.size();
+            if (sample.size() == SAMPLE_LINES) {
+                totalLines = sample.size() * vepInput.length() / Math.max(1, fileInputStream.getCount());
+            }
+            shardsWriter.linesPerShard = Math.max(1, (totalLines + numShards - 1) / numShards);
+            logger.debug("Splitting {}{} lines of {} into shards of {} lines", sample.size() == SAMPLE_LINES ?
+                    "about " : "", totalLines, vepInput, shardsWriter.linesPerShard);
+
+            for (String sampleLine : sample) {
+                shardsWriter.write(sampleLine);
+            }
+            sample.clear();
+            while ((line = reader.readLine()) != null) {
+                shardsWriter.write(line);
+            }
+        } finally {
+            shardsWriter.close();
+        }
+
+        return shardsWriter.shards;
+    }
+
+    /**
+     * Reads the VEP input without splitting it, for the number of lines and the last variant of a single shard.
+     */
+    public Shard readAsSingleShard(File vepInput) throws IOException {
+        Shard shard = new Shard(vepInput);
+        try (InputStream fileInputStream = new FileInputStream(vepInput);
+             BufferedReader reader = openReader(vepInput, fileInputStream)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                shard.lines++;
+                shard.lastVariant = getVariantId(line);
+            }
+        }
+        return shard;
+    }
+
+    private BufferedReader openReader(File file, InputStream fileInputStream) throws IOException {
+        InputStream inputStream = fileInputStream;
+        if (file.getName().endsWith(GZIP_SUFFIX)) {
+            inputStream = new GZIPInputStream(inputStream);
+        }
+        return new BufferedReader(new InputStreamReader(inputStream));
+    }
+
+    /**
+     * The region of a VEP input line is made of its two first columns: chromosome and start.
+     */
+    private String getRegion(String line) {
+        int firstTab = line.indexOf('\t');
+        if (firstTab < 0) {
+            return line;
+        }
+        int secondTab = line.indexOf('\t', firstTab + 1);
+        return secondTab < 0 ? line : line.substring(0, secondTab);
+    }
+
+    /**
+     * The identifier of a variant in the VEP output is the one in the sixth column of its input line, or its
+     * chromosome, start and alleles, joined by underscores.
+     */
+    private static String getVariantId(String line) {
+        String[] columns = line.split("\t");
+        if (columns.length > 5 && !columns[5].isEmpty()) {
+            return columns[5];
+        }
+        if (columns.length < 4) {
+            return line;
+        }
+        return columns[0] + "_" + columns[1] + "_" + columns[3];
+    }
+
+    /**
+     * Writes the lines into consecutive shards of about {@link #linesPerShard} lines, never closing a shard between two
+     * lines of the same region, and never opening more than {@link #numShards} shards.
+     */
+    private class ShardsWriter {
+
+        private final File shardsFolder;
+
+        private final List<Shard> shards = new ArrayList<>();
+
+        private long linesPerShard;
+
+        private BufferedWriter writer;
+
+        private Shard shard;
+
+        private String previousRegion;
+
+        private String previousLine;
+
+        ShardsWriter(File shardsFolder) {
+            this.shardsFolder = shardsFolder;
+        }
+
+        void write(String line) throws IOException {
+            String region = getRegion(line);
+            boolean shardIsFull = shard != null && shard.lines >= linesPerShard && shards.size() < numShards
+                    && !region.equals(previousRegion);
+
+            if (writer == null || shardIsFull) {
+                close();
+                shard = new Shard(new File(shardsFolder, SHARD_PREFIX + shards.size() + SHARD_SUFFIX));
+                shards.add(shard);
+                writer = new BufferedWriter(new FileWriter(shard.file));
+            }
+
+            writer.write(line);
+            writer.newLine();
+            shard.lines++;
+            previousRegion = region;
+            previousLine = line;
+        }
+
+        void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+                shard.lastVariant = getVariantId(previousLine);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read from the file, before they are decompressed.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * A part of the VEP input, with its number of lines and the identifier of its last variant in the VEP output.
+     */
+    public static class Shard {
+
+        private final File file;
+
+        private long lines;
+
+        private String lastVariant;
+
+        Shard(File file) {
+            this.file = file;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * @return the identifier of the last variant, or null if the shard is empty
+         */
+        public String getLastVariant() {
+            return lastVariant;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Splits a compressed VEP output file into shards of contiguous lines, so that several readers and writers can load
+ * the annotations concurrently.
+ * <p>
+ * All the shards have roughly the same size. The comment lines of the VEP header are not copied. A shard is never
+ * closed between two lines of the same variant (the first column of the VEP output), so all the annotations of a
+ * variant go to a single shard and are merged by the same
+ * {@link uk.ac.ebi.eva.pipeline.io.readers.VariantAnnotationGroupingReader}.
+ * <p>
+ * The VEP output is only decompressed once when it is compressed in BGZF, like the output written by
+ * {@link uk.ac.ebi.eva.pipeline.jobs.steps.tasklets.VepAnnotationGeneratorStep}: the uncompressed size of every block
+ * is in its footer, so the size of the shards is known before reading any line. Other gzip files are decompressed a
+ * first time to measure them.
+ * <p>
+ * The split is deterministic, so the shards of a restarted step have the same contents. They are written uncompressed
+ * in the given folder as {@code output_0.txt}, {@code output_1.txt}...
+ */
+public class VepOutputSplitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(VepOutputSplitter.class);
+
+    private static final String SHARD_PREFIX = "output_";
+
+    private static final String SHARD_SUFFIX = ".txt";
+
+    private static final String COMMENT_PREFIX = "#";
+
+    private static final int BGZF_HEADER_SIZE = 18;
+
+    private final int numShards;
+
+    public VepOutputSplitter(int numShards) {
+        if (numShards <= 0) {
+            throw new IllegalArgumentException("The number of shards must be positive, not " + numShards);
+        }
+        this.numShards = numShards;
+    }
+
+    /**
+     * @return the list of shards, in the same order as the lines in the VEP output. There may be less shards than
+     * requested if the VEP output has not enough variants.
+     */
+    public List<File> split(File vepOutput, File shardsFolder) throws IOException {
+        long totalBytes = getUncompressedSize(vepOutput);
+        logger.debug("Splitting {} ({} bytes uncompressed) into {} shards", vepOutput, totalBytes, numShards);
+
+        List<File> shards = new ArrayList<>();
+        try (BufferedReader reader = openReader(vepOutput)) {
+            BufferedWriter writer = null;
+            String previousVariant = null;
+            long headerBytes = 0;
+            long bytesPerShard = 0;
+            long bytesRead = 0;
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                bytesRead += line.length() + 1;
+                if (line.startsWith(COMMENT_PREFIX)) {
+                    if (writer == null) {
+                        headerBytes = bytesRead;
+                    }
+                    continue;
+                }
+                if (writer == null) {
+                    bytesPerShard = Math.max(1, (totalBytes - headerBytes + numShards - 1) / numShards);
+                }
+                String variant = getVariant(line);
+                long linesBytes = bytesRead - headerBytes - (line.length() + 1);
+                boolean shardIsFull = linesBytes >= shards.size() * bytesPerShard && shards.size() < numShards
+                        && !variant.equals(previousVariant);
+
+                if (writer == null || shardIsFull) {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                    File shard = new File(shardsFolder, getShardName(shards.size()));
+                    shards.add(shard);
+                    writer = new BufferedWriter(new FileWriter(shard));
+                }
+
+                writer.write(line);
+                writer.newLine();
+                previousVariant = variant;
+            }
+
+            if (writer != null) {
+                writer.close();
+            }
+        }
+
+        return shards;
+    }
+
+    /**
+     * @return the name of a shard file in the shards folder
+     */
+    public static String getShardName(int index) {
+        return SHARD_PREFIX + index + SHARD_SUFFIX;
+    }
+
+    /**
+     * @return the size of the decompressed file in bytes, from the footers of the blocks if it is compressed in BGZF,
+     * or decompressing it otherwise
+     */
+    private long getUncompressedSize(File file) throws IOException {
+        long size = getBgzfUncompressedSize(file);
+        if (size >= 0) {
+            return size;
+        }
+
+        logger.debug("{} is not compressed in BGZF, it will be decompressed twice", file);
+        size = 0;
+        try (BufferedReader reader = openReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                size += line.length() + 1;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Jumps from block to block, reading the size of every block from its header and its uncompressed size from its
+     * footer.
+     *
+     * @return the uncompressed size, or -1 if any block is not a BGZF block
+     */
+    private long getBgzfUncompressedSize(File file) throws IOException {
+        long size = 0;
+        byte[] header = new byte[BGZF_HEADER_SIZE];
+        byte[] footer = new byte[4];
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            long position = 0;
+            long length = input.length();
+            while (position < length) {
+                input.seek(position);
+                if (length - position < BGZF_HEADER_SIZE + footer.length) {
+                    return -1;
+                }
+                input.readFully(header);
+                if ((header[0] & 0xff) != 31 || (header[1] & 0xff) != 139 || (header[3] & 4) == 0
+                        || header[12] != 'B' || header[13] != 'C') {
+                    return -1;
+                }
+                int blockSize = ((header[16] & 0xff) | (header[17] & 0xff) << 8) + 1;
+                if (position + blockSize > length) {
+                    return -1;
+                }
+                input.seek(position + blockSize - footer.length);
+                input.readFully(footer);
+                size += (footer[0] & 0xffL) | (footer[1] & 0xffL) << 8 | (footer[2] & 0xffL) << 16
+                        | (footer[3] & 0xffL) << 24;
+                position += blockSize;
+            }
+        }
+        return size;
+    }
+
+    private BufferedReader openReader(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file))));
+    }
+
+    /**
+     * The variant of a VEP output line is its first column, e.g. 20_60343_G/A
+     */
+    private String getVariant(String line) {
+        int firstTab = line.indexOf('\t');
+        return firstTab < 0 ? line : line.substring(0, firstTab);
+    }
+}
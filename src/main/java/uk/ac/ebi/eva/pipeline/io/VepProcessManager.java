@@ -0,0 +1,523 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Runs the VEP processes of all the jobs in the application as long-lived workers, so the cost of starting perl and
+ * loading the VEP cache is paid once per worker instead of once per batch.
+ * <p>
+ * Every worker reads the variants from its standard input and writes their annotation to its standard output. A batch
+ * (a VEP input file) is sent to an idle worker started with the same command, followed by a few copies of its last
+ * variant with the identifier {@link #BATCH_END_PREFIX} plus a batch number. VEP only writes the annotation of a buffer
+ * of variants when the buffer is full, so there are as many copies as needed to fill the buffer of the worker, and the
+ * first annotation line of one of them marks the end of the batch in the output. The annotation lines of the copies are
+ * never written into the output of the batch. The header written by a worker when it starts is repeated at the
+ * beginning of the output of every batch, so each of them looks like the output of a whole VEP run.
+ * <p>
+ * At most a fixed number of workers run at the same time. An idle worker started with another command is stopped when
+ * a new worker is needed and there is no room for it. A worker that dies, or that is killed by the health check, is
+ * replaced by a new one, and its batch is attempted again, up to {@link #MAX_ATTEMPTS} times. The virtual memory of
+ * every worker can be capped, so a VEP process that grows too much fails on its own instead of bringing the machine
+ * down.
+ * <p>
+ * The health check only considers a worker hung once it has written something, because VEP can spend a long time
+ * loading its cache before writing anything. After that, a worker that is annotating a batch and hasn't written any
+ * line for the stall timeout, counted from its last line or from the start of the batch, is killed.
+ */
+public class VepProcessManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(VepProcessManager.class);
+
+    public static final int MAX_ATTEMPTS = 3;
+
+    public static final String BATCH_END_PREFIX = "EVA_BATCH_END_";
+
+    private static final String COMMENT_PREFIX = "#";
+
+    private static final String GZIP_EXTENSION = ".gz";
+
+    private static final int ID_COLUMN = 5;
+
+    private static final int IO_BUFFER_SIZE = 1024 * 1024;
+
+    private static final long ERRORS_DRAIN_TIMEOUT_MILLIS = 1000;
+
+    private final int maxWorkers;
+
+    private final int bufferSize;
+
+    private final Integer maxMemory;
+
+    private final long stallTimeoutMillis;
+
+    private final Semaphore workerSlots;
+
+    private final Map<List<String>, Deque<Worker>> idleWorkers;
+
+    private final Set<Worker> workers;
+
+    private final ScheduledExecutorService healthChecker;
+
+    private boolean shutdown;
+
+    /**
+     * @param maxWorkers maximum number of VEP processes running at the same time
+     * @param bufferSize number of variants that VEP annotates at once, as given with its --buffer_size option
+     * @param maxMemory maximum virtual memory of every process in megabytes, or null for no limit
+     * @param stallTimeoutMillis time a process annotating a batch can go without writing anything before it is killed,
+     * once it has written its first line
+     * @param healthCheckPeriodMillis time between two checks of the running processes
+     */
+    public VepProcessManager(int maxWorkers, int bufferSize, Integer maxMemory, long stallTimeoutMillis,
+                             long healthCheckPeriodMillis) {
+        if (maxWorkers <= 0) {
+            throw new IllegalArgumentException("The maximum number of VEP workers must be positive, not "
+                                                       + maxWorkers);
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("The buffer size of the VEP workers must be positive, not "
+                                                       + bufferSize);
+        }
+        if (stallTimeoutMillis <= 0 || healthCheckPeriodMillis <= 0) {
+            throw new IllegalArgumentException("The stall timeout and the health check period of the VEP workers must "
+                                                       + "be positive");
+        }
+        this.maxWorkers = maxWorkers;
+        this.bufferSize = bufferSize;
+        this.maxMemory = maxMemory;
+        this.stallTimeoutMillis = stallTimeoutMillis;
+        this.workerSlots = new Semaphore(maxWorkers, true);
+        this.idleWorkers = new HashMap<>();
+        this.workers = ConcurrentHashMap.newKeySet();
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vep-health-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkWorkers, healthCheckPeriodMillis, healthCheckPeriodMillis,
+                                             TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the number of variants that the commands run by this manager have to annotate at once
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Annotates a batch of variants in a worker started with the given command, as soon as there is a free slot.
+     * The batch is attempted up to {@link #MAX_ATTEMPTS} times, each of them in a new worker if the previous one
+     * died or hung.
+     *
+     * @param command command of a VEP process that reads the variants from its standard input and writes their
+     * annotation to its standard output
+     * @param input VEP input with the variants of the batch, optionally gzipped
+     * @param output file where the header of the worker and the annotation of the batch are written
+     * @param errors file where the standard error of the worker is written while it annotates the batch
+     * @throws IOException if none of the attempts could annotate the batch
+     */
+    public void annotate(List<String> command, File input, File output, File errors) throws IOException,
+            InterruptedException {
+        if (isEmpty(input)) {
+            new FileWriter(output).close();
+            new FileWriter(errors).close();
+            return;
+        }
+
+        workerSlots.acquire();
+        try {
+            IOException lastError = null;
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                Worker worker = takeWorker(command);
+                try {
+                    worker.annotate(input, output, errors);
+                    releaseWorker(worker);
+                    return;
+                } catch (IOException e) {
+                    stopWorker(worker);
+                    lastError = e;
+                    logger.warn("VEP worker failed to annotate {} (attempt {} of {}): {}. See {}", input, attempt,
+                                MAX_ATTEMPTS, e.getMessage(), errors);
+                } catch (InterruptedException | RuntimeException e) {
+                    stopWorker(worker);
+                    throw e;
+                }
+            }
+            throw new IOException("VEP could not annotate " + input + " after " + MAX_ATTEMPTS + " attempts. See "
+                                          + errors + " for the errors description from VEP", lastError);
+        } finally {
+            workerSlots.release();
+        }
+    }
+
+    private boolean isEmpty(File input) throws IOException {
+        try (InputStream inputStream = openInput(input)) {
+            return inputStream.read() < 0;
+        }
+    }
+
+    private static InputStream openInput(File input) throws IOException {
+        InputStream inputStream = new FileInputStream(input);
+        return input.getName().endsWith(GZIP_EXTENSION) ? new GZIPInputStream(inputStream) : inputStream;
+    }
+
+    /**
+     * Takes an idle worker started with the command, or starts a new one, stopping an idle worker of another command
+     * if all the workers are already running. The caller holds a worker slot, so at most maxWorkers - 1 workers are
+     * busy and there is always an idle one to stop.
+     */
+    private synchronized Worker takeWorker(List<String> command) throws IOException {
+        if (shutdown) {
+            throw new IllegalStateException("The VEP workers were shut down");
+        }
+        Deque<Worker> sameCommandWorkers = idleWorkers.get(command);
+        while (sameCommandWorkers != null && !sameCommandWorkers.isEmpty()) {
+            Worker worker = sameCommandWorkers.poll();
+            if (worker.process.isAlive()) {
+                return worker;
+            }
+            workers.remove(worker);
+        }
+
+        if (workers.size() >= maxWorkers) {
+            stopIdleWorker();
+        }
+        Worker worker = new Worker(command, new ProcessBuilder(limitMemory(command)).start());
+        workers.add(worker);
+        logger.info("Started VEP worker {} of {}", workers.size(), maxWorkers);
+        return worker;
+    }
+
+    private void stopIdleWorker() {
+        for (Deque<Worker> commandWorkers : idleWorkers.values()) {
+            Worker worker = commandWorkers.poll();
+            if (worker != null) {
+                logger.info("Stopping an idle VEP worker to make room for a worker with another command");
+                stopWorker(worker);
+                return;
+            }
+        }
+    }
+
+    private synchronized void releaseWorker(Worker worker) {
+        if (shutdown) {
+            stopWorker(worker);
+            return;
+        }
+        idleWorkers.computeIfAbsent(worker.command, command -> new ArrayDeque<>()).push(worker);
+    }
+
+    private void stopWorker(Worker worker) {
+        workers.remove(worker);
+        worker.process.destroyForcibly();
+    }
+
+    private List<String> limitMemory(List<String> command) {
+        if (maxMemory == null) {
+            return command;
+        }
+        List<String> limitedCommand = new ArrayList<>();
+        limitedCommand.add("/bin/sh");
+        limitedCommand.add("-c");
+        limitedCommand.add("ulimit -v " + maxMemory * 1024L + " && exec \"$0\" \"$@\"");
+        limitedCommand.addAll(command);
+        return limitedCommand;
+    }
+
+    private void checkWorkers() {
+        long now = System.currentTimeMillis();
+        for (Worker worker : workers) {
+            if (worker.isStalled(now, stallTimeoutMillis)) {
+                logger.warn("VEP worker didn't write anything in {} ms while annotating a batch, it will be restarted",
+                            stallTimeoutMillis);
+                worker.process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Kills the workers and stops checking them.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        healthChecker.shutdownNow();
+        for (Worker worker : workers) {
+            worker.process.destroyForcibly();
+        }
+        workers.clear();
+        idleWorkers.clear();
+    }
+
+    private static String getVariantId(String line) {
+        int firstTab = line.indexOf('\t');
+        return firstTab < 0 ? line : line.substring(0, firstTab);
+    }
+
+    /**
+     * A VEP process that annotates batches of variants, one at a time. Its standard error is copied into the errors
+     * file of the current batch by a thread of its own, so the process can't block if nobody is reading it.
+     */
+    private class Worker {
+
+        private final List<String> command;
+
+        private final Process process;
+
+        private final BufferedReader output;
+
+        private final BufferedWriter input;
+
+        private final Thread errorsCopier;
+
+        private final List<String> header;
+
+        private final List<String> startErrors;
+
+        private long variantsWritten;
+
+        private int batches;
+
+        private boolean errorsOpened;
+
+        private BufferedWriter errorsWriter;
+
+        private volatile boolean busy;
+
+        private volatile long batchStart;
+
+        private volatile long lastOutput;
+
+        Worker(List<String> command, Process process) {
+            this.command = command;
+            this.process = process;
+            this.output = new BufferedReader(new InputStreamReader(process.getInputStream()), IO_BUFFER_SIZE);
+            this.input = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()), IO_BUFFER_SIZE);
+            this.header = new ArrayList<>();
+            this.startErrors = new ArrayList<>();
+            this.errorsCopier = new Thread(this::copyErrors, "vep-worker-errors");
+            errorsCopier.setDaemon(true);
+            errorsCopier.start();
+        }
+
+        /**
+         * Writes the batch to the worker in another thread while its annotation is read, so neither of them blocks
+         * the other when the pipes are full.
+         */
+        void annotate(File batchInput, File batchOutput, File batchErrors) throws IOException, InterruptedException {
+            String batchEnd = BATCH_END_PREFIX + (++batches);
+            openErrors(batchErrors);
+            BatchWriter batchWriter = new BatchWriter(batchInput, batchEnd);
+            Thread batchWriterThread = new Thread(batchWriter, "vep-worker-input");
+            batchWriterThread.setDaemon(true);
+
+            boolean ended;
+            batchStart = System.currentTimeMillis();
+            busy = true;
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(batchOutput), IO_BUFFER_SIZE)) {
+                batchWriterThread.start();
+                for (String headerLine : header) {
+                    writer.write(headerLine);
+                    writer.newLine();
+                }
+                ended = copyBatchOutput(batchEnd, writer);
+            } catch (IOException e) {
+                logger.debug("Could not read the output of a VEP worker: {}", e.getMessage());
+                ended = false;
+            } finally {
+                busy = false;
+            }
+
+            if (!ended) {
+                process.destroyForcibly();
+                closeErrors(true);
+                throw new IOException("the VEP worker stopped before the end of the batch"
+                                              + (process.waitFor(1, TimeUnit.SECONDS) ? " with exit status "
+                                              + process.exitValue() : ""));
+            }
+            batchWriterThread.join();
+            closeErrors(false);
+            if (batchWriter.error != null) {
+                throw batchWriter.error;
+            }
+        }
+
+        /**
+         * @return whether the end of the batch was found before the worker stopped
+         */
+        private boolean copyBatchOutput(String batchEnd, BufferedWriter writer) throws IOException {
+            String line;
+            while ((line = output.readLine()) != null) {
+                lastOutput = System.currentTimeMillis();
+                if (line.startsWith(COMMENT_PREFIX)) {
+                    header.add(line);
+                } else {
+                    String variantId = getVariantId(line);
+                    if (variantId.equals(batchEnd)) {
+                        return true;
+                    }
+                    if (variantId.startsWith(BATCH_END_PREFIX)) {
+                        // the rest of the copies that ended a previous batch
+                        continue;
+                    }
+                }
+                writer.write(line);
+                writer.newLine();
+            }
+            return false;
+        }
+
+        boolean isStalled(long now, long stallTimeoutMillis) {
+            return busy && lastOutput > 0 && now - Math.max(lastOutput, batchStart) > stallTimeoutMillis
+                    && process.isAlive();
+        }
+
+        /**
+         * The errors written by the worker before its first batch, like the ones about loading the cache, go to the
+         * errors file of that batch.
+         */
+        private synchronized void openErrors(File batchErrors) throws IOException {
+            errorsWriter = new BufferedWriter(new FileWriter(batchErrors));
+            for (String line : startErrors) {
+                errorsWriter.write(line);
+                errorsWriter.newLine();
+            }
+            startErrors.clear();
+            errorsOpened = true;
+        }
+
+        /**
+         * @param workerStopped whether the worker was stopped, so its last errors are waited for
+         */
+        private void closeErrors(boolean workerStopped) throws InterruptedException {
+            if (workerStopped) {
+                errorsCopier.join(ERRORS_DRAIN_TIMEOUT_MILLIS);
+            }
+            synchronized (this) {
+                try {
+                    errorsWriter.close();
+                } catch (IOException e) {
+                    logger.warn("Could not write the errors of a VEP worker: {}", e.getMessage());
+                }
+                errorsWriter = null;
+            }
+        }
+
+        private void copyErrors() {
+            try (BufferedReader errors = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+                String line;
+                while ((line = errors.readLine()) != null) {
+                    synchronized (this) {
+                        if (errorsWriter != null) {
+                            errorsWriter.write(line);
+                            errorsWriter.newLine();
+                            errorsWriter.flush();
+                        } else if (!errorsOpened) {
+                            startErrors.add(line);
+                        } else {
+                            logger.warn("VEP worker: {}", line);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("Stopped reading the errors of a VEP worker: {}", e.getMessage());
+            }
+        }
+
+        /**
+         * Writes the variants of a batch and the copies of its last variant that mark its end.
+         */
+        private class BatchWriter implements Runnable {
+
+            private final File batchInput;
+
+            private final String batchEnd;
+
+            private IOException error;
+
+            BatchWriter(File batchInput, String batchEnd) {
+                this.batchInput = batchInput;
+                this.batchEnd = batchEnd;
+            }
+
+            @Override
+            public void run() {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(openInput(batchInput)),
+                                                                IO_BUFFER_SIZE)) {
+                    String lastVariant = null;
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.isEmpty()) {
+                            input.write(line);
+                            input.newLine();
+                            variantsWritten++;
+                            lastVariant = line;
+                        }
+                    }
+
+                    if (lastVariant == null) {
+                        throw new IOException("there are no variants in " + batchInput);
+                    }
+                    String batchEndVariant = withId(lastVariant, batchEnd);
+                    long copies = bufferSize - variantsWritten % bufferSize;
+                    for (long i = 0; i < copies; i++) {
+                        input.write(batchEndVariant);
+                        input.newLine();
+                    }
+                    variantsWritten += copies;
+                    input.flush();
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+
+            private String withId(String variant, String id) {
+                String[] columns = variant.split("\t", -1);
+                StringBuilder line = new StringBuilder();
+                for (int i = 0; i < ID_COLUMN; i++) {
+                    line.append(i < columns.length ? columns[i] : "").append('\t');
+                }
+                return line.append(id).toString();
+            }
+        }
+    }
+}
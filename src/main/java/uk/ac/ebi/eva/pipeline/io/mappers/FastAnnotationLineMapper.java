@@ -0,0 +1,472 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.mappers;
+
+import org.opencb.biodata.models.variant.annotation.ConsequenceType;
+import org.opencb.biodata.models.variant.annotation.ConsequenceTypeMappings;
+import org.opencb.biodata.models.variant.annotation.Score;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.file.LineMapper;
+
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map a line in VEP output file to {@link VariantAnnotation} in a single pass over the line.
+ * <p>
+ * The result is the same as the one of {@link AnnotationLineMapper}, but the columns are located by their offsets in
+ * the line and only the values that are kept are copied out of it, without regular expressions or intermediate maps:
+ * - The SO names are resolved to accessions through a table precomputed from {@link ConsequenceTypeMappings}.
+ * - The keys of the Extra column are matched against a dictionary of the keys that are kept, ignoring case.
+ * <p>
+ * Example of VEP output line
+ * 20_60479_C/T	20:60479	T	-	-	-	intergenic_variant	-	-	-	-	-	rs149529999	GMAF=T:0.0018;AFR_MAF=T:0.01
+ */
+public class FastAnnotationLineMapper implements LineMapper<VariantAnnotation> {
+
+    private static final Logger logger = LoggerFactory.getLogger(FastAnnotationLineMapper.class);
+
+    private static final int VARIANT_COLUMN = 0;
+
+    private static final int COORDINATES_COLUMN = 1;
+
+    private static final int GENE_COLUMN = 3;
+
+    private static final int FEATURE_COLUMN = 4;
+
+    private static final int FEATURE_TYPE_COLUMN = 5;
+
+    private static final int CONSEQUENCE_COLUMN = 6;
+
+    private static final int CDNA_POSITION_COLUMN = 7;
+
+    private static final int CDS_POSITION_COLUMN = 8;
+
+    private static final int PROTEIN_POSITION_COLUMN = 9;
+
+    private static final int AMINO_ACIDS_COLUMN = 10;
+
+    private static final int CODONS_COLUMN = 11;
+
+    private static final int EXTRA_COLUMN = 13;
+
+    private static final int COLUMNS_WITH_EXTRA = 14;
+
+    private static final String TRANSCRIPT_FEATURE = "transcript";
+
+    private static final String EMPTY_VALUE = "-";
+
+    private static final String UNKNOWN_POSITION = "?";
+
+    private static final Map<String, ConsequenceType.ConsequenceTypeEntry> SO_TERMS = new ConcurrentHashMap<>();
+
+    static {
+        for (String soName : ConsequenceTypeMappings.termToAccession.keySet()) {
+            resolveSoTerm(soName);
+        }
+    }
+
+    /**
+     * Keys of the Extra column that are kept in the annotation. The rest (ALLELE_NUM, FREQS, IND, ZYG...) are skipped.
+     */
+    private enum ExtraKey {
+        BIOTYPE, HGVSC, HGVSP, POLYPHEN, SIFT, STRAND, SYMBOL;
+
+        private static final ExtraKey[][] KEYS_BY_LENGTH = buildKeysByLength();
+
+        private static ExtraKey[][] buildKeysByLength() {
+            int maxLength = 0;
+            for (ExtraKey key : values()) {
+                maxLength = Math.max(maxLength, key.name().length());
+            }
+            List<List<ExtraKey>> keysByLength = new ArrayList<>();
+            for (int length = 0; length <= maxLength; length++) {
+                keysByLength.add(new ArrayList<>());
+            }
+            for (ExtraKey key : values()) {
+                keysByLength.get(key.name().length()).add(key);
+            }
+            ExtraKey[][] dictionary = new ExtraKey[maxLength + 1][];
+            for (int length = 0; length <= maxLength; length++) {
+                dictionary[length] = keysByLength.get(length).toArray(new ExtraKey[0]);
+            }
+            return dictionary;
+        }
+
+        /**
+         * @return the key in line[from, to), ignoring case, or null if it is not kept
+         */
+        static ExtraKey lookup(String line, int from, int to) {
+            int length = to - from;
+            if (length >= KEYS_BY_LENGTH.length) {
+                return null;
+            }
+            for (ExtraKey key : KEYS_BY_LENGTH[length]) {
+                if (line.regionMatches(true, from, key.name(), 0, length)) {
+                    return key;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public VariantAnnotation mapLine(String line, int lineNumber) {
+        // like String.split, empty columns at the end of the line are not counted
+        int lineEnd = line.length();
+        while (lineEnd > 0 && line.charAt(lineEnd - 1) == '\t') {
+            lineEnd--;
+        }
+
+        int[] columnStarts = new int[COLUMNS_WITH_EXTRA + 1];
+        int columns = 0;
+        int columnStart = 0;
+        while (true) {
+            if (columns < columnStarts.length) {
+                columnStarts[columns] = columnStart;
+            }
+            columns++;
+            int tab = line.indexOf('\t', columnStart);
+            if (tab < 0 || tab >= lineEnd) {
+                break;
+            }
+            columnStart = tab + 1;
+        }
+        Columns lineColumns = new Columns(line, columnStarts, columns, lineEnd);
+
+        VariantAnnotation currentAnnotation = parseVariant(lineColumns);
+        ConsequenceType consequenceType = new ConsequenceType();
+
+        if (columns == COLUMNS_WITH_EXTRA) {
+            parseExtraField(consequenceType, lineColumns, currentAnnotation);
+        }
+
+        lineColumns.check(CONSEQUENCE_COLUMN);
+        if (lineColumns.hasValueIgnoreCase(FEATURE_TYPE_COLUMN, TRANSCRIPT_FEATURE)) {
+            parseTranscriptFields(consequenceType, lineColumns);
+        } else {
+            consequenceType.setSoTerms(parseSoTerms(lineColumns));
+        }
+        currentAnnotation.getConsequenceTypes().add(consequenceType);
+
+        return currentAnnotation;
+    }
+
+    /**
+     * Column 1 is "chromosome_start_reference/alternate", where the chromosome may contain '_', and column 2 is
+     * "chromosome:start" or "chromosome:start-end"
+     */
+    private VariantAnnotation parseVariant(Columns columns) {
+        String line = columns.line;
+
+        columns.check(COORDINATES_COLUMN);
+        int coordinatesStart = columns.start(COORDINATES_COLUMN);
+        int coordinatesEnd = columns.end(COORDINATES_COLUMN);
+        int startSeparator = indexOfCoordinatesSeparator(line, coordinatesStart, coordinatesEnd);
+        int endSeparator = indexOfCoordinatesSeparator(line, startSeparator + 1, coordinatesEnd);
+        int end;
+        if (startSeparator < 0 || (endSeparator < 0 && startSeparator + 1 == coordinatesEnd)) {
+            logger.error("Unexpected format for column 2: " + columns.get(COORDINATES_COLUMN));
+            throw new ArrayIndexOutOfBoundsException("Unexpected format for column 2: "
+                                                             + columns.get(COORDINATES_COLUMN));
+        } else if (endSeparator >= 0 && endSeparator + 1 < coordinatesEnd) {
+            int nextSeparator = indexOfCoordinatesSeparator(line, endSeparator + 1, coordinatesEnd);
+            end = parseInt(line, endSeparator + 1, nextSeparator < 0 ? coordinatesEnd : nextSeparator);
+        } else {
+            end = parseInt(line, startSeparator + 1, endSeparator < 0 ? coordinatesEnd : endSeparator);
+        }
+
+        int variantStart = columns.start(VARIANT_COLUMN);
+        int variantEnd = columns.end(VARIANT_COLUMN);
+        int allelesSeparator = indexOf(line, '/', variantStart, variantEnd);
+        int referenceSeparator = allelesSeparator < 0 ? -1 : line.lastIndexOf('_', allelesSeparator - 1);
+        if (allelesSeparator < 0 || allelesSeparator + 1 == variantEnd || referenceSeparator < variantStart) {
+            logger.error("Unexpected variant format for column 1: " + columns.get(VARIANT_COLUMN));
+            throw new ArrayIndexOutOfBoundsException("Unexpected variant format for column 1: "
+                                                             + columns.get(VARIANT_COLUMN));
+        }
+        int startSeparatorInVariant = line.lastIndexOf('_', referenceSeparator - 1);
+        int chromosomeEnd = startSeparatorInVariant < variantStart ? referenceSeparator : startSeparatorInVariant;
+        int alternateEnd = indexOf(line, '/', allelesSeparator + 1, variantEnd);
+
+        return new VariantAnnotation(line.substring(variantStart, chromosomeEnd),
+                                     parseInt(line, chromosomeEnd == referenceSeparator ? variantStart
+                                             : startSeparatorInVariant + 1, referenceSeparator),
+                                     end,
+                                     line.substring(referenceSeparator + 1, allelesSeparator),
+                                     line.substring(allelesSeparator + 1, alternateEnd < 0 ? variantEnd : alternateEnd));
+    }
+
+    private void parseTranscriptFields(ConsequenceType consequenceType, Columns columns) {
+        columns.check(CODONS_COLUMN);
+        consequenceType.setEnsemblGeneId(columns.get(GENE_COLUMN));
+        consequenceType.setEnsemblTranscriptId(columns.get(FEATURE_COLUMN));
+        if (!columns.isEmpty(CONSEQUENCE_COLUMN) && !columns.hasValue(CONSEQUENCE_COLUMN, EMPTY_VALUE)) {
+            consequenceType.setSoTerms(parseSoTerms(columns));
+        }
+        if (!columns.hasValue(CDNA_POSITION_COLUMN, EMPTY_VALUE)) {
+            consequenceType.setcDnaPosition(parseStringInterval(columns, CDNA_POSITION_COLUMN));
+        }
+        if (!columns.hasValue(CDS_POSITION_COLUMN, EMPTY_VALUE)) {
+            consequenceType.setCdsPosition(parseStringInterval(columns, CDS_POSITION_COLUMN));
+        }
+        if (!columns.hasValue(PROTEIN_POSITION_COLUMN, EMPTY_VALUE)) {
+            consequenceType.setAaPosition(parseStringInterval(columns, PROTEIN_POSITION_COLUMN));
+        }
+        consequenceType.setAaChange(columns.get(AMINO_ACIDS_COLUMN));
+        consequenceType.setCodon(columns.get(CODONS_COLUMN));
+    }
+
+    /**
+     * "start-end" where any of them may be "?": the first known one is returned
+     */
+    private Integer parseStringInterval(Columns columns, int column) {
+        String line = columns.line;
+        int from = columns.start(column);
+        int to = columns.end(column);
+        int separator = indexOf(line, '-', from, to);
+        int firstEnd = separator < 0 ? to : separator;
+        if (!isUnknownPosition(line, from, firstEnd)) {
+            return parseInt(line, from, firstEnd);
+        }
+        if (separator >= 0 && separator + 1 < to) {
+            int secondEnd = indexOf(line, '-', separator + 1, to);
+            secondEnd = secondEnd < 0 ? to : secondEnd;
+            if (!isUnknownPosition(line, separator + 1, secondEnd)) {
+                return parseInt(line, separator + 1, secondEnd);
+            }
+        }
+        return null;
+    }
+
+    private boolean isUnknownPosition(String line, int from, int to) {
+        return to - from == UNKNOWN_POSITION.length() && line.startsWith(UNKNOWN_POSITION, from);
+    }
+
+    /**
+     * The consequences are separated by ','. Like String.split, empty consequences at the end are not counted.
+     */
+    private List<ConsequenceType.ConsequenceTypeEntry> parseSoTerms(Columns columns) {
+        String line = columns.line;
+        int from = columns.start(CONSEQUENCE_COLUMN);
+        int to = columns.end(CONSEQUENCE_COLUMN);
+        if (from == to) {
+            return new ArrayList<>(Collections.singletonList(resolveSoTerm("")));
+        }
+        while (to > from && line.charAt(to - 1) == ',') {
+            to--;
+        }
+
+        List<ConsequenceType.ConsequenceTypeEntry> soTerms = new ArrayList<>();
+        int termStart = from;
+        while (termStart < to) {
+            int termEnd = indexOf(line, ',', termStart, to);
+            termEnd = termEnd < 0 ? to : termEnd;
+            soTerms.add(resolveSoTerm(line.substring(termStart, termEnd)));
+            termStart = termEnd + 1;
+        }
+        return soTerms;
+    }
+
+    /**
+     * Fields are "KEY=value" separated by ';'. Only the keys in {@link ExtraKey} are kept.
+     */
+    private void parseExtraField(ConsequenceType consequenceType, Columns columns,
+                                 VariantAnnotation currentAnnotation) {
+        String line = columns.line;
+        int extraEnd = columns.end(EXTRA_COLUMN);
+        int fieldStart = columns.start(EXTRA_COLUMN);
+        while (fieldStart < extraEnd) {
+            int fieldEnd = indexOf(line, ';', fieldStart, extraEnd);
+            fieldEnd = fieldEnd < 0 ? extraEnd : fieldEnd;
+
+            int keyEnd = indexOf(line, '=', fieldStart, fieldEnd);
+            ExtraKey key = ExtraKey.lookup(line, fieldStart, keyEnd < 0 ? fieldEnd : keyEnd);
+            if (key != null) {
+                if (keyEnd < 0 || keyEnd + 1 == fieldEnd) {
+                    throw new ArrayIndexOutOfBoundsException("Missing value in Extra field: "
+                                                                     + line.substring(fieldStart, fieldEnd));
+                }
+                int valueEnd = indexOf(line, '=', keyEnd + 1, fieldEnd);
+                parseExtraValue(consequenceType, currentAnnotation, key, line, keyEnd + 1,
+                                valueEnd < 0 ? fieldEnd : valueEnd);
+            }
+            fieldStart = fieldEnd + 1;
+        }
+    }
+
+    private void parseExtraValue(ConsequenceType consequenceType, VariantAnnotation currentAnnotation, ExtraKey key,
+                                 String line, int from, int to) {
+        switch (key) {
+            case BIOTYPE:
+                consequenceType.setBiotype(line.substring(from, to));
+                break;
+            case HGVSC:
+            case HGVSP:
+                currentAnnotation.getHgvs().add(line.substring(from, to));
+                break;
+            case POLYPHEN: // Format is PolyPhen=possibly_damaging(0.859)
+                consequenceType.addProteinSubstitutionScore(
+                        parseProteinSubstitutionScore("Polyphen", line, from, to));
+                break;
+            case SIFT: // Format is SIFT=tolerated(0.07)
+                consequenceType.addProteinSubstitutionScore(parseProteinSubstitutionScore("Sift", line, from, to));
+                break;
+            case STRAND:
+                consequenceType.setStrand(to - from == 1 && line.charAt(from) == '1' ? "+" : "-");
+                break;
+            case SYMBOL:
+                consequenceType.setGeneName(line.substring(from, to));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private Score parseProteinSubstitutionScore(String predictorName, String line, int from, int to) {
+        int scoreStart = indexOfParenthesis(line, from, to);
+        int scoreEnd = scoreStart < 0 ? -1 : indexOfParenthesis(line, scoreStart + 1, to);
+        scoreEnd = scoreEnd < 0 ? to : scoreEnd;
+        if (scoreStart < 0 || scoreStart + 1 == scoreEnd) {
+            throw new ArrayIndexOutOfBoundsException("Missing score in protein substitution prediction: "
+                                                             + line.substring(from, to));
+        }
+        return new Score(Double.valueOf(line.substring(scoreStart + 1, scoreEnd)), predictorName,
+                         line.substring(from, scoreStart));
+    }
+
+    /**
+     * Resolves the SO accession of a SO name through the precomputed table. Names that are not in the table are
+     * resolved by {@link ConsequenceType} itself, and added to it.
+     */
+    static ConsequenceType.ConsequenceTypeEntry resolveSoTerm(String soName) {
+        ConsequenceType.ConsequenceTypeEntry soTerm = SO_TERMS.get(soName);
+        if (soTerm == null) {
+            ConsequenceType consequenceType = new ConsequenceType();
+            consequenceType.setSoTermsFromSoNames(Collections.singletonList(soName));
+            soTerm = consequenceType.getSoTerms().get(0);
+            SO_TERMS.put(soName, soTerm);
+        }
+        return new ConsequenceType.ConsequenceTypeEntry(soTerm.getSoName(), soTerm.getSoAccession());
+    }
+
+    private static int indexOf(String line, char character, int from, int to) {
+        int index = line.indexOf(character, from);
+        return index < to ? index : -1;
+    }
+
+    private static int indexOfCoordinatesSeparator(String line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char character = line.charAt(i);
+            if (character == ':' || character == '-') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfParenthesis(String line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char character = line.charAt(i);
+            if (character == '(' || character == ')') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Same as Integer.valueOf(line.substring(from, to)), without the substring
+     */
+    private static int parseInt(String line, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        if (i == to) {
+            throw new NumberFormatException("For input string: \"" + line.substring(from, to) + "\"");
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + line.substring(from, to) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Offsets of the columns of a line
+     */
+    private static class Columns {
+
+        private final String line;
+
+        private final int[] starts;
+
+        private final int count;
+
+        private final int lineEnd;
+
+        Columns(String line, int[] starts, int count, int lineEnd) {
+            this.line = line;
+            this.starts = starts;
+            this.count = count;
+            this.lineEnd = lineEnd;
+        }
+
+        void check(int column) {
+            if (column >= count) {
+                throw new ArrayIndexOutOfBoundsException("Missing column " + (column + 1) + " in VEP output line");
+            }
+        }
+
+        int start(int column) {
+            return starts[column];
+        }
+
+        int end(int column) {
+            return column + 1 < count ? starts[column + 1] - 1 : lineEnd;
+        }
+
+        String get(int column) {
+            return line.substring(start(column), end(column));
+        }
+
+        boolean isEmpty(int column) {
+            return start(column) == end(column);
+        }
+
+        boolean hasValue(int column, String value) {
+            return end(column) - start(column) == value.length() && line.startsWith(value, start(column));
+        }
+
+        boolean hasValueIgnoreCase(int column, String value) {
+            return end(column) - start(column) == value.length()
+                    && line.regionMatches(true, start(column), value, 0, value.length());
+        }
+    }
+}
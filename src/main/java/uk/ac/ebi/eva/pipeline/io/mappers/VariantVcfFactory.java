@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2016 EMBL - European Bioinformatics Institute
+ * Copyright 2014-2017 EMBL - European Bioinformatics Institute
  * Copyright 2015 OpenCB
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -23,6 +23,7 @@ import org.opencb.biodata.models.variant.exceptions.NonStandardCompliantSampleFi
 import org.opencb.biodata.models.variant.exceptions.NotAVariantException;
 
 import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
 import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
 
 import java.util.ArrayList;
@@ -40,9 +41,26 @@ import static java.lang.Math.max;
 
 /**
  * Class that parses VCF lines to create Variants.
+ * <p>
+ * If the VCF was annotated by VEP or SnpEff, the annotation in the INFO field can be parsed too, so the variants
+ * are loaded already annotated.
  */
 public class VariantVcfFactory {
 
+    private final VcfAnnotationInfoParser annotationParser;
+
+    public VariantVcfFactory() {
+        this(null);
+    }
+
+    /**
+     * @param annotationParser Nullable. Parser of the annotation in the INFO field of every line. If it's null, the
+     * annotation is kept in the INFO attributes like any other field.
+     */
+    public VariantVcfFactory(VcfAnnotationInfoParser annotationParser) {
+        this.annotationParser = annotationParser;
+    }
+
     /**
      * Creates a list of Variant objects using the fields in a record of a VCF
      * file. A new Variant object is created per allele, so several of them can
@@ -74,6 +92,10 @@ public class VariantVcfFactory {
         String info = getInfo(fields);
         String format = getFormat(fields);
 
+        // the normalization below modifies the alternates, but the annotation refers to the ones in the VCF
+        String[] vcfAlternates = annotationParser == null ? null : alternateAlleles.clone();
+        String annotationInfo = annotationParser == null ? null : getAnnotationInfo(info);
+
         List<VariantKeyFields> generatedKeyFields = buildVariantKeyFields(chromosome, position, reference,
                 alternateAlleles);
 
@@ -92,6 +114,9 @@ public class VariantVcfFactory {
                 // Fill the rest of fields (after samples because INFO depends on them)
                 setOtherFields(variant, fileId, studyId, ids, quality, filter, info, format, keyFields.getNumAllele(),
                                alternateAlleles, line);
+                if (annotationInfo != null) {
+                    parseAnnotation(variant, annotationInfo, reference, vcfAlternates, keyFields.getNumAllele());
+                }
                 variants.add(variant);
             } catch (NonStandardCompliantSampleField ex) {
                 Logger.getLogger(VariantFactory.class.getName())
@@ -160,6 +185,29 @@ public class VariantVcfFactory {
         return (fields.length <= 8 || fields[8].equals(".")) ? "" : fields[8];
     }
 
+    private String getAnnotationInfo(String info) {
+        String annotationPrefix = annotationParser.getInfoKey() + "=";
+        for (String field : info.split(";")) {
+            if (field.startsWith(annotationPrefix)) {
+                return field.substring(annotationPrefix.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The annotation of the alternate allele replaces the empty one of the variant. Variants whose allele is not
+     * annotated in the line keep the empty annotation.
+     */
+    private void parseAnnotation(Variant variant, String annotationInfo, String vcfReference, String[] vcfAlternates,
+                                 int numAllele) {
+        VariantAnnotation annotation = annotationParser.parse(annotationInfo, variant, vcfReference, vcfAlternates,
+                                                              numAllele);
+        if (annotation != null) {
+            variant.setAnnotation(annotation);
+        }
+    }
+
     private List<VariantKeyFields> buildVariantKeyFields(String chromosome, int position, String reference,
             String[] alternateAlleles) {
         List<VariantKeyFields> generatedKeyFields = new ArrayList<>();
@@ -377,7 +425,10 @@ public class VariantVcfFactory {
                         file.addAttribute("MQ0", String.valueOf(mq0));
                         break;
                     default:
-                        file.addAttribute(splits[0], splits[1]);
+                        // the annotation parsed into the variant is not duplicated in the attributes
+                        if (annotationParser == null || !splits[0].equals(annotationParser.getInfoKey())) {
+                            file.addAttribute(splits[0], splits[1]);
+                        }
                         break;
                 }
             } else {
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.mappers;
+
+import org.opencb.biodata.models.variant.annotation.ConsequenceType;
+import org.opencb.biodata.models.variant.annotation.Score;
+
+import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses the annotation written by VEP (INFO field CSQ) or SnpEff (INFO field ANN) in the VCFs they annotate, into
+ * the same {@link VariantAnnotation} that {@link FastAnnotationLineMapper} builds from the VEP output.
+ * <p>
+ * The fields of the annotation are described in the header of the VCF, so they are located by name:
+ * ##INFO=<ID=CSQ,Number=.,Type=String,Description="Consequence annotations from Ensembl VEP. Format: Allele|Consequence|...">
+ * ##INFO=<ID=ANN,Number=.,Type=String,Description="Functional annotations: 'Allele | Annotation | ...' ">
+ * The version of the annotator is taken from the header too, from the lines "##VEP=" and "##SnpEffVersion=".
+ * <p>
+ * The INFO value is a list of annotations separated by ',', one for every allele and feature, with the fields
+ * separated by '|'. The consequences of an annotation are separated by '&'.
+ */
+public class VcfAnnotationInfoParser {
+
+    public static final String VEP_INFO_KEY = "CSQ";
+
+    public static final String SNPEFF_INFO_KEY = "ANN";
+
+    /**
+     * Keys of the additional attributes of the parsed {@link VariantAnnotation} with the versions of the annotator
+     */
+    public static final String ANNOTATOR_VERSION_ATTRIBUTE = "annotatorVersion";
+
+    public static final String ANNOTATOR_CACHE_VERSION_ATTRIBUTE = "annotatorCacheVersion";
+
+    private static final String VEP_HEADER_PREFIX = "##VEP=";
+
+    private static final String SNPEFF_HEADER_PREFIX = "##SnpEffVersion=";
+
+    private static final String INFO_HEADER_PREFIX = "##INFO=<ID=";
+
+    private static final String DESCRIPTION_PREFIX = "Description=\"";
+
+    private static final String VEP_LAYOUT_PREFIX = "Format: ";
+
+    private static final String VEP_CACHE_PREFIX = "cache=";
+
+    private static final String TRANSCRIPT_FEATURE = "transcript";
+
+    private static final String UNKNOWN_POSITION = "?";
+
+    /**
+     * Fields of the annotation that are kept, with their names in the CSQ and ANN layouts (null if there is none)
+     */
+    private enum Field {
+        ALLELE("Allele", "Allele"),
+        ALLELE_NUM("ALLELE_NUM", null),
+        CONSEQUENCE("Consequence", "Annotation"),
+        SYMBOL("SYMBOL", "Gene_Name"),
+        GENE("Gene", "Gene_ID"),
+        FEATURE_TYPE("Feature_type", "Feature_Type"),
+        FEATURE("Feature", "Feature_ID"),
+        BIOTYPE("BIOTYPE", "Transcript_BioType"),
+        HGVSC("HGVSc", "HGVS.c"),
+        HGVSP("HGVSp", "HGVS.p"),
+        CDNA_POSITION("cDNA_position", "cDNA.pos / cDNA.length"),
+        CDS_POSITION("CDS_position", "CDS.pos / CDS.length"),
+        PROTEIN_POSITION("Protein_position", "AA.pos / AA.length"),
+        AMINO_ACIDS("Amino_acids", null),
+        CODONS("Codons", null),
+        STRAND("STRAND", null),
+        SIFT("SIFT", null),
+        POLYPHEN("PolyPhen", null);
+
+        private final String vepName;
+
+        private final String snpEffName;
+
+        Field(String vepName, String snpEffName) {
+            this.vepName = vepName;
+            this.snpEffName = snpEffName;
+        }
+    }
+
+    private final String infoKey;
+
+    private final String annotatorVersion;
+
+    private final String annotatorCacheVersion;
+
+    /**
+     * Index of every {@link Field} in the annotation, or -1 if the annotation doesn't have it
+     */
+    private final int[] fieldIndexes;
+
+    private VcfAnnotationInfoParser(String infoKey, List<String> layout, String annotatorVersion,
+                                    String annotatorCacheVersion) {
+        this.infoKey = infoKey;
+        this.annotatorVersion = annotatorVersion;
+        this.annotatorCacheVersion = annotatorCacheVersion;
+        this.fieldIndexes = new int[Field.values().length];
+        for (Field field : Field.values()) {
+            String name = VEP_INFO_KEY.equals(infoKey) ? field.vepName : field.snpEffName;
+            fieldIndexes[field.ordinal()] = indexOfIgnoreCase(layout, name);
+        }
+    }
+
+    /**
+     * @param header the header of the VCF, as read by {@link uk.ac.ebi.eva.pipeline.io.readers.VcfHeaderReader}
+     * @return a parser for the annotation described in the header, or null if the VCF is not annotated. When it has
+     * both, the annotation of VEP is preferred over the one of SnpEff.
+     */
+    public static VcfAnnotationInfoParser fromHeader(String header) {
+        List<String> vepLayout = null;
+        List<String> snpEffLayout = null;
+        String vepHeader = null;
+        String snpEffHeader = null;
+        for (String line : header.split("\n")) {
+            line = line.trim();
+            if (line.startsWith(INFO_HEADER_PREFIX + VEP_INFO_KEY + ",")) {
+                vepLayout = parseLayout(getDescription(line), VEP_INFO_KEY);
+            } else if (line.startsWith(INFO_HEADER_PREFIX + SNPEFF_INFO_KEY + ",")) {
+                snpEffLayout = parseLayout(getDescription(line), SNPEFF_INFO_KEY);
+            } else if (line.startsWith(VEP_HEADER_PREFIX)) {
+                vepHeader = line.substring(VEP_HEADER_PREFIX.length());
+            } else if (line.startsWith(SNPEFF_HEADER_PREFIX)) {
+                snpEffHeader = line.substring(SNPEFF_HEADER_PREFIX.length());
+            }
+        }
+
+        if (vepLayout != null) {
+            return new VcfAnnotationInfoParser(VEP_INFO_KEY, vepLayout, parseVepVersion(vepHeader),
+                                               parseVepCacheVersion(vepHeader));
+        } else if (snpEffLayout != null) {
+            return new VcfAnnotationInfoParser(SNPEFF_INFO_KEY, snpEffLayout, parseSnpEffVersion(snpEffHeader),
+                                               null);
+        }
+        return null;
+    }
+
+    private static String getDescription(String infoHeaderLine) {
+        int descriptionStart = infoHeaderLine.indexOf(DESCRIPTION_PREFIX);
+        if (descriptionStart < 0) {
+            return "";
+        }
+        descriptionStart += DESCRIPTION_PREFIX.length();
+        int descriptionEnd = infoHeaderLine.lastIndexOf('"');
+        return descriptionEnd > descriptionStart ? infoHeaderLine.substring(descriptionStart, descriptionEnd) : "";
+    }
+
+    /**
+     * VEP describes the fields after "Format: ", and SnpEff between single quotes
+     */
+    private static List<String> parseLayout(String description, String infoKey) {
+        String layout;
+        if (VEP_INFO_KEY.equals(infoKey)) {
+            int layoutStart = description.indexOf(VEP_LAYOUT_PREFIX);
+            layout = layoutStart < 0 ? description : description.substring(layoutStart + VEP_LAYOUT_PREFIX.length());
+        } else {
+            int layoutStart = description.indexOf('\'');
+            int layoutEnd = description.lastIndexOf('\'');
+            layout = layoutEnd > layoutStart ? description.substring(layoutStart + 1, layoutEnd)
+                    : description.substring(description.indexOf(':') + 1);
+        }
+
+        List<String> fields = new ArrayList<>();
+        for (String field : layout.split("\\|")) {
+            fields.add(field.trim());
+        }
+        return fields;
+    }
+
+    /**
+     * "v78 cache=..." or "\"v90\" time=..." is the version "78" or "90"
+     */
+    private static String parseVepVersion(String vepHeader) {
+        if (vepHeader == null) {
+            return null;
+        }
+        String version = unquote(vepHeader.split(" ")[0]);
+        if (version.startsWith("v")) {
+            version = version.substring(1);
+        }
+        return version.isEmpty() ? null : version;
+    }
+
+    /**
+     * The cache version is the one in the name of the cache folder: "cache=/path/to/homo_sapiens/78_GRCh37" is
+     * version "78"
+     */
+    private static String parseVepCacheVersion(String vepHeader) {
+        if (vepHeader == null) {
+            return null;
+        }
+        for (String property : vepHeader.split(" ")) {
+            if (property.startsWith(VEP_CACHE_PREFIX)) {
+                String cachePath = unquote(property.substring(VEP_CACHE_PREFIX.length()));
+                while (cachePath.endsWith("/")) {
+                    cachePath = cachePath.substring(0, cachePath.length() - 1);
+                }
+                String cacheFolder = cachePath.substring(cachePath.lastIndexOf('/') + 1);
+                int versionEnd = cacheFolder.indexOf('_');
+                String version = versionEnd < 0 ? cacheFolder : cacheFolder.substring(0, versionEnd);
+                return version.isEmpty() ? null : version;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * "\"4.3t (build 2017-11-24 10:18), by Pablo Cingolani\"" is the version "SnpEff 4.3t"
+     */
+    private static String parseSnpEffVersion(String snpEffHeader) {
+        if (snpEffHeader == null) {
+            return null;
+        }
+        String version = unquote(snpEffHeader).split(" ")[0];
+        return version.isEmpty() ? null : "SnpEff " + version;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private static int indexOfIgnoreCase(List<String> layout, String name) {
+        if (name != null) {
+            for (int i = 0; i < layout.size(); i++) {
+                if (layout.get(i).equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the INFO key of the annotation, CSQ or ANN
+     */
+    public String getInfoKey() {
+        return infoKey;
+    }
+
+    /**
+     * @return the VEP version, like "78", or the SnpEff version, like "SnpEff 4.3t". Null if the header doesn't have it
+     */
+    public String getAnnotatorVersion() {
+        return annotatorVersion;
+    }
+
+    /**
+     * @return the VEP cache version, or null if the header doesn't have it
+     */
+    public String getAnnotatorCacheVersion() {
+        return annotatorCacheVersion;
+    }
+
+    /**
+     * @param info the value of the INFO field of the annotation
+     * @param variant one of the variants created from the VCF line, with its normalized coordinates and alleles
+     * @param vcfReference the reference allele as it is written in the VCF line
+     * @param vcfAlternates the alternate alleles as they are written in the VCF line
+     * @param alternateIndex index in vcfAlternates of the alternate allele of the variant
+     * @return the annotation of the alternate allele, or null if the INFO field has none for it
+     */
+    public VariantAnnotation parse(String info, Variant variant, String vcfReference, String[] vcfAlternates,
+                                   int alternateIndex) {
+        String annotatedAllele = getAnnotatedAllele(vcfReference, vcfAlternates, alternateIndex);
+        String alleleNumber = String.valueOf(alternateIndex + 1);
+
+        VariantAnnotation variantAnnotation = null;
+        for (String annotation : info.split(",")) {
+            String[] values = annotation.split("\\|", -1);
+            String allele = get(values, Field.ALLELE_NUM);
+            if (allele != null ? !allele.equals(alleleNumber) : !annotatedAllele.equals(get(values, Field.ALLELE))) {
+                continue;
+            }
+
+            if (variantAnnotation == null) {
+                variantAnnotation = new VariantAnnotation(variant.getChromosome(), variant.getStart(),
+                                                          variant.getEnd(), variant.getReference(),
+                                                          variant.getAlternate());
+                variantAnnotation.getAdditionalAttributes().put(ANNOTATOR_VERSION_ATTRIBUTE, annotatorVersion);
+                variantAnnotation.getAdditionalAttributes().put(ANNOTATOR_CACHE_VERSION_ATTRIBUTE,
+                                                                annotatorCacheVersion);
+            }
+            variantAnnotation.getConsequenceTypes().add(parseConsequenceType(values, variantAnnotation));
+        }
+        return variantAnnotation;
+    }
+
+    /**
+     * SnpEff writes the alternate allele as it is in the VCF. VEP removes the first base of the alleles of indels
+     * when it is the same in all of them, and writes empty alleles as "-".
+     */
+    private String getAnnotatedAllele(String vcfReference, String[] vcfAlternates, int alternateIndex) {
+        String alternate = vcfAlternates[alternateIndex];
+        if (!VEP_INFO_KEY.equals(infoKey) || vcfReference.isEmpty()) {
+            return alternate;
+        }
+
+        boolean isIndel = false;
+        boolean sameFirstBase = true;
+        char firstBase = vcfReference.charAt(0);
+        for (String vcfAlternate : vcfAlternates) {
+            isIndel |= vcfAlternate.length() != vcfReference.length();
+            sameFirstBase &= !vcfAlternate.isEmpty() && vcfAlternate.charAt(0) == firstBase;
+        }
+        if (isIndel && sameFirstBase) {
+            return alternate.length() == 1 ? "-" : alternate.substring(1);
+        }
+        return alternate;
+    }
+
+    private ConsequenceType parseConsequenceType(String[] values, VariantAnnotation variantAnnotation) {
+        ConsequenceType consequenceType = new ConsequenceType();
+
+        String consequences = get(values, Field.CONSEQUENCE);
+        if (consequences != null) {
+            List<ConsequenceType.ConsequenceTypeEntry> soTerms = new ArrayList<>();
+            for (String soName : consequences.split("&")) {
+                soTerms.add(FastAnnotationLineMapper.resolveSoTerm(soName));
+            }
+            consequenceType.setSoTerms(soTerms);
+        }
+
+        if (TRANSCRIPT_FEATURE.equalsIgnoreCase(get(values, Field.FEATURE_TYPE))) {
+            consequenceType.setEnsemblGeneId(get(values, Field.GENE));
+            consequenceType.setEnsemblTranscriptId(get(values, Field.FEATURE));
+            consequenceType.setcDnaPosition(parsePosition(get(values, Field.CDNA_POSITION)));
+            consequenceType.setCdsPosition(parsePosition(get(values, Field.CDS_POSITION)));
+            consequenceType.setAaPosition(parsePosition(get(values, Field.PROTEIN_POSITION)));
+            consequenceType.setAaChange(get(values, Field.AMINO_ACIDS));
+            consequenceType.setCodon(get(values, Field.CODONS));
+        }
+
+        consequenceType.setGeneName(get(values, Field.SYMBOL));
+        consequenceType.setBiotype(get(values, Field.BIOTYPE));
+        String strand = get(values, Field.STRAND);
+        if (strand != null) {
+            consequenceType.setStrand(strand.equals("1") ? "+" : "-");
+        }
+
+        addProteinSubstitutionScore(consequenceType, "Sift", get(values, Field.SIFT));
+        addProteinSubstitutionScore(consequenceType, "Polyphen", get(values, Field.POLYPHEN));
+
+        for (Field hgvsField : Arrays.asList(Field.HGVSC, Field.HGVSP)) {
+            String hgvs = get(values, hgvsField);
+            if (hgvs != null) {
+                variantAnnotation.getHgvs().add(hgvs);
+            }
+        }
+
+        return consequenceType;
+    }
+
+    private String get(String[] values, Field field) {
+        int index = fieldIndexes[field.ordinal()];
+        if (index < 0 || index >= values.length || values[index].isEmpty()) {
+            return null;
+        }
+        return values[index];
+    }
+
+    /**
+     * VEP writes "start-end", where any of them may be "?", and SnpEff writes "position/length". The first known
+     * position is returned.
+     */
+    private Integer parsePosition(String position) {
+        if (position == null) {
+            return null;
+        }
+        int lengthSeparator = position.indexOf('/');
+        String interval = lengthSeparator < 0 ? position : position.substring(0, lengthSeparator);
+        for (String value : interval.split("-")) {
+            if (!value.isEmpty() && !value.equals(UNKNOWN_POSITION)) {
+                try {
+                    return Integer.valueOf(value.trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Format is "tolerated(0.07)". Predictions without score (VEP run with "--sift p" or "--polyphen p") are skipped.
+     */
+    private void addProteinSubstitutionScore(ConsequenceType consequenceType, String predictorName, String value) {
+        if (value == null) {
+            return;
+        }
+        int scoreStart = value.indexOf('(');
+        int scoreEnd = scoreStart < 0 ? -1 : value.indexOf(')', scoreStart + 1);
+        if (scoreEnd < 0) {
+            return;
+        }
+        Double score = Double.valueOf(value.substring(scoreStart + 1, scoreEnd));
+        consequenceType.addProteinSubstitutionScore(new Score(score, predictorName, value.substring(0, scoreStart)));
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -33,9 +33,16 @@ public class VcfLineMapper implements LineMapper<List<Variant>> {
     private final VariantVcfFactory factory;
 
     public VcfLineMapper(String fileId, String studyId) {
+        this(fileId, studyId, null);
+    }
+
+    /**
+     * @param annotationParser Nullable. If provided, the variants are created with the annotation in the INFO field.
+     */
+    public VcfLineMapper(String fileId, String studyId, VcfAnnotationInfoParser annotationParser) {
         this.fileId = fileId;
         this.studyId = studyId;
-        this.factory = new VariantVcfFactory();
+        this.factory = new VariantVcfFactory(annotationParser);
     }
 
     @Override
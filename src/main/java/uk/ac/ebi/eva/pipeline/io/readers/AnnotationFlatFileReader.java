@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,16 +16,18 @@
 package uk.ac.ebi.eva.pipeline.io.readers;
 
 import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 
 import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
 import uk.ac.ebi.eva.pipeline.io.GzipLazyResource;
-import uk.ac.ebi.eva.pipeline.io.mappers.AnnotationLineMapper;
+import uk.ac.ebi.eva.pipeline.io.mappers.FastAnnotationLineMapper;
 
 import java.io.File;
 
 /**
- * Reader of VEP output annotation flat file. The file should be zipped.
+ * Reader of VEP output annotation flat file. The file should be zipped, unless it is one of the uncompressed shards
+ * written by {@link uk.ac.ebi.eva.pipeline.io.VepOutputSplitter}.
  * <p>
  * VEP output format:
  * <p>
@@ -37,9 +39,13 @@ import java.io.File;
 public class AnnotationFlatFileReader extends FlatFileItemReader<VariantAnnotation> {
 
     public AnnotationFlatFileReader(File file) {
-        Resource resource = new GzipLazyResource(file);
+        this(file, true);
+    }
+
+    public AnnotationFlatFileReader(File file, boolean compressed) {
+        Resource resource = compressed ? new GzipLazyResource(file) : new FileSystemResource(file);
         setResource(resource);
-        setLineMapper(new AnnotationLineMapper());
+        setLineMapper(new FastAnnotationLineMapper());
     }
 
     public AnnotationFlatFileReader(String string) {
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.readers;
+
+import org.opencb.biodata.models.pedigree.Individual;
+import org.opencb.biodata.models.pedigree.Pedigree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
+import uk.ac.ebi.eva.pipeline.model.Cohort;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the cohorts whose statistics are calculated besides the default one, with all the samples of a file.
+ * <p>
+ * The cohorts can be defined in a PED file, grouping its individuals by family or phenotype (see
+ * {@link PedigreeGrouping}), and in a cohorts file, with a sample and the name of a cohort in the first two columns of
+ * every line, separated by tabs or spaces, like the panel files of the 1000 Genomes Project. Lines starting with "#"
+ * are ignored, and a sample can be in several cohorts. The cohorts with the same name in both files are merged.
+ * <p>
+ * Every cohort is compiled into a bitset over the positions of its samples in the file. The samples that are not in
+ * the file are ignored, as well as the cohorts without any of them and any cohort named as the default one.
+ */
+public class CohortsReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(CohortsReader.class);
+
+    private static final String COMMENT_PREFIX = "#";
+
+    private static final String COLUMN_SEPARATOR = "\\s+";
+
+    private final String pedigreePath;
+
+    private final PedigreeGrouping pedigreeGrouping;
+
+    private final String cohortsPath;
+
+    /**
+     * @param pedigreePath     PED file, or null
+     * @param pedigreeGrouping How the individuals of the PED file are grouped into cohorts
+     * @param cohortsPath      Cohorts file, or null
+     */
+    public CohortsReader(String pedigreePath, PedigreeGrouping pedigreeGrouping, String cohortsPath) {
+        this.pedigreePath = pedigreePath;
+        this.pedigreeGrouping = pedigreeGrouping;
+        this.cohortsPath = cohortsPath;
+    }
+
+    /**
+     * @param samplesPosition Position of every sample in the file
+     * @return the cohorts, in the order they are first defined
+     */
+    public List<Cohort> read(Map<String, Integer> samplesPosition) throws Exception {
+        Map<String, BitSet> cohortsSamples = new LinkedHashMap<>();
+        if (isDefined(pedigreePath)) {
+            addPedigreeCohorts(readPedigree(), samplesPosition, cohortsSamples);
+        }
+        if (isDefined(cohortsPath)) {
+            addFileCohorts(samplesPosition, cohortsSamples);
+        }
+
+        List<Cohort> cohorts = new ArrayList<>();
+        for (Map.Entry<String, BitSet> cohortSamples : cohortsSamples.entrySet()) {
+            if (VariantSourceEntry.DEFAULT_COHORT.equals(cohortSamples.getKey())) {
+                logger.warn("The cohort {} has the name of the default cohort and its statistics won't be calculated",
+                            cohortSamples.getKey());
+            } else if (cohortSamples.getValue().isEmpty()) {
+                logger.debug("None of the samples of the cohort {} are in the file", cohortSamples.getKey());
+            } else {
+                cohorts.add(new Cohort(cohortSamples.getKey(), cohortSamples.getValue()));
+            }
+        }
+        return cohorts;
+    }
+
+    private boolean isDefined(String path) {
+        return path != null && !path.isEmpty();
+    }
+
+    private Pedigree readPedigree() throws Exception {
+        PedReader pedReader = new PedReader(pedigreePath);
+        pedReader.open(null);
+        try {
+            return pedReader.read();
+        } finally {
+            pedReader.close();
+        }
+    }
+
+    private void addPedigreeCohorts(Pedigree pedigree, Map<String, Integer> samplesPosition,
+                                    Map<String, BitSet> cohortsSamples) {
+        for (Individual individual : pedigree.getIndividuals().values()) {
+            String cohortName;
+            if (pedigreeGrouping == PedigreeGrouping.PHENOTYPE) {
+                cohortName = individual.getCondition() == null ? null : individual.getCondition().name();
+            } else {
+                cohortName = individual.getFamily();
+            }
+            if (cohortName != null) {
+                addSample(cohortName, individual.getId(), samplesPosition, cohortsSamples);
+            }
+        }
+    }
+
+    private void addFileCohorts(Map<String, Integer> samplesPosition,
+                                Map<String, BitSet> cohortsSamples) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(cohortsPath))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith(COMMENT_PREFIX)) {
+                    continue;
+                }
+                String[] columns = line.split(COLUMN_SEPARATOR);
+                if (columns.length < 2) {
+                    throw new IllegalArgumentException("Line without a sample and a cohort in the cohorts file "
+                                                               + cohortsPath + ": " + line);
+                }
+                addSample(columns[1], columns[0], samplesPosition, cohortsSamples);
+            }
+        }
+    }
+
+    private void addSample(String cohortName, String sample, Map<String, Integer> samplesPosition,
+                           Map<String, BitSet> cohortsSamples) {
+        BitSet samples = cohortsSamples.computeIfAbsent(cohortName, name -> new BitSet());
+        Integer position = samplesPosition.get(sample);
+        if (position != null) {
+            samples.set(position);
+        }
+    }
+}
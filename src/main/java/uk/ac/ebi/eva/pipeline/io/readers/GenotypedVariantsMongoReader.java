@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.readers;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantSourceEntryToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+
+/**
+ * Reads the variants of a file with the genotypes of its samples, to calculate their statistics.
+ * <p>
+ * Only the coordinates of the variants and, from their files, the ids, the genotypes and the FILTER and QUAL
+ * attributes are brought from the database. The other files of the variant are brought too, so the file of the step
+ * has to be chosen by the processor.
+ */
+public class GenotypedVariantsMongoReader extends MongoDbCursorItemReader {
+
+    private static final String FILES_PREFIX = VariantToDBObjectConverter.FILES_FIELD + ".";
+
+    private static final String ATTRIBUTES_PREFIX = FILES_PREFIX + VariantSourceEntryToDBObjectConverter.ATTRIBUTES_FIELD
+            + ".";
+
+    private static final String[] FIELDS = {
+            VariantToDBObjectConverter.CHROMOSOME_FIELD,
+            VariantToDBObjectConverter.START_FIELD,
+            VariantToDBObjectConverter.END_FIELD,
+            VariantToDBObjectConverter.REFERENCE_FIELD,
+            VariantToDBObjectConverter.ALTERNATE_FIELD,
+            FILES_PREFIX + VariantSourceEntryToDBObjectConverter.STUDYID_FIELD,
+            FILES_PREFIX + VariantSourceEntryToDBObjectConverter.FILEID_FIELD,
+            FILES_PREFIX + VariantSourceEntryToDBObjectConverter.SAMPLES_FIELD,
+            ATTRIBUTES_PREFIX + "FILTER",
+            ATTRIBUTES_PREFIX + "QUAL"};
+
+    public GenotypedVariantsMongoReader(MongoOperations template, String collectionVariantsName, String studyId,
+                                        String fileId) {
+        setTemplate(template);
+        setCollection(collectionVariantsName);
+        setQuery(buildQuery(studyId, fileId));
+        setFields(FIELDS);
+    }
+
+    /**
+     * @return the query of the variants read, with the same parameters as the constructor. It can be used to split
+     * the variants into ranges before creating the readers.
+     */
+    public static DBObject buildQuery(String studyId, String fileId) {
+        BasicDBObject file = new BasicDBObject(VariantSourceEntryToDBObjectConverter.STUDYID_FIELD, studyId)
+                .append(VariantSourceEntryToDBObjectConverter.FILEID_FIELD, fileId);
+        return new BasicDBObject(VariantToDBObjectConverter.FILES_FIELD, new BasicDBObject("$elemMatch", file));
+    }
+}
@@ -22,6 +22,9 @@ import com.mongodb.BasicDBObjectBuilder;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.LazyDBDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.data.domain.Sort;
@@ -29,7 +32,11 @@ import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -39,10 +46,30 @@ import java.util.Map;
  * Its implementation is based on the one available in
  * <a href="https://github.com/acogoluegnes/Spring-Batch-MongoDB/blob/master/src/main/java/com/zenika/batch/item/database/mongo/MongoDbCursorItemReader.java</a>
  * but replaces the direct access to Mongo with a {@link MongoOperations}, following the Spring Data MongoDB model.
+ * <p>
+ * Optionally, the documents can be prefetched by a background thread into a bounded queue, so the step doesn't wait
+ * for the round trip to the server every time the cursor runs out of documents in its current batch. The documents
+ * are returned in the same order, so a restarted step skips the ones already read as usual.
+ * <p>
+ * The documents can also be decoded lazily: they are returned as read-only {@link com.mongodb.LazyDBObject}s that
+ * keep the raw BSON and only decode a field when it is accessed, which saves time and memory when only a few fields
+ * of big documents are used.
+ * <p>
+ * The query can be restricted to a range of ids, so several readers can read disjoint parts of the same query in
+ * parallel, as in the partitions created by a
+ * {@link uk.ac.ebi.eva.pipeline.jobs.steps.partitioners.MongoIdRangePartitioner}.
  */
 public class MongoDbCursorItemReader extends AbstractItemCountingItemStreamItemReader<DBObject>
         implements InitializingBean {
 
+    private static final Logger logger = LoggerFactory.getLogger(MongoDbCursorItemReader.class);
+
+    private static final String ID_FIELD = "_id";
+
+    private static final DBObject END_OF_CURSOR = new BasicDBObject();
+
+    private static final long PREFETCH_THREAD_JOIN_TIMEOUT_MILLIS = 10000;
+
     private MongoOperations template;
     private String collectionName;
 
@@ -50,8 +77,28 @@ public class MongoDbCursorItemReader extends AbstractItemCountingItemStreamItemR
     private DBObject sort;
     private String[] fields;
 
+    private int batchSize;
+
+    private int prefetchSize;
+
+    private boolean lazyDecoding;
+
+    private boolean idExcluded;
+
+    private Object minId;
+
+    private Object maxId;
+
     private DBCursor cursor;
 
+    private BlockingQueue<DBObject> prefetchBuffer;
+
+    private Thread prefetchThread;
+
+    private AtomicReference<Exception> prefetchError;
+
+    private boolean prefetchFinished;
+
     public MongoDbCursorItemReader() {
         super();
         setName(ClassUtils.getShortName(MongoDbCursorItemReader.class));
@@ -90,6 +137,14 @@ public class MongoDbCursorItemReader extends AbstractItemCountingItemStreamItemR
         this.fields = fields;
     }
 
+    /**
+     * @param idExcluded Whether the _id is left out of the returned documents, so a query whose filter and fields are
+     * all in one index can be answered from the index alone.
+     */
+    public void setIdExcluded(boolean idExcluded) {
+        this.idExcluded = idExcluded;
+    }
+
     /**
      * {@link Map} of property names/
      * {@link org.springframework.data.domain.Sort.Direction} values to sort the
@@ -110,17 +165,128 @@ public class MongoDbCursorItemReader extends AbstractItemCountingItemStreamItemR
         this.collectionName = collection;
     }
 
+    /**
+     * Number of documents the cursor brings from the server in every round trip. If not set, the server decides.
+     *
+     * @param batchSize Number of documents per batch
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Number of documents read ahead by a background thread. If not set, the documents are read from the cursor
+     * only when they are requested.
+     *
+     * @param prefetchSize Maximum number of documents read but not returned yet
+     */
+    public void setPrefetchSize(int prefetchSize) {
+        this.prefetchSize = prefetchSize;
+    }
+
+    /**
+     * Whether the documents are decoded only when their fields are accessed. The returned documents can't be modified.
+     *
+     * @param lazyDecoding True to return lazily decoded documents
+     */
+    public void setLazyDecoding(boolean lazyDecoding) {
+        this.lazyDecoding = lazyDecoding;
+    }
+
+    /**
+     * Restricts the query to the documents whose id is in [minId, maxId).
+     *
+     * @param minId Lowest id read, or null to read from the first document
+     * @param maxId First id not read, or null to read until the last document
+     */
+    public void setIdRange(Object minId, Object maxId) {
+        this.minId = minId;
+        this.maxId = maxId;
+    }
+
+    /**
+     * @return the query of this reader restricted to its range of ids, if any.
+     */
+    protected DBObject getQueryInRange() {
+        if (minId == null && maxId == null) {
+            return query;
+        }
+
+        BasicDBObject idRange = new BasicDBObject();
+        if (minId != null) {
+            idRange.append("$gte", minId);
+        }
+        if (maxId != null) {
+            idRange.append("$lt", maxId);
+        }
+        if (query.containsField(ID_FIELD)) {
+            return new BasicDBObject("$and", Arrays.asList(query, new BasicDBObject(ID_FIELD, idRange)));
+        }
+        BasicDBObject queryInRange = new BasicDBObject(query.toMap());
+        queryInRange.put(ID_FIELD, idRange);
+        return queryInRange;
+    }
+
+    /**
+     * Applies the batch size and the decoding of this reader to a cursor.
+     */
+    protected DBCursor configureCursor(DBCursor cursor) {
+        if (batchSize > 0) {
+            cursor = cursor.batchSize(batchSize);
+        }
+        if (lazyDecoding) {
+            cursor = cursor.setDecoderFactory(LazyDBDecoder.FACTORY);
+        }
+        return cursor;
+    }
+
     @Override
     protected void doOpen() throws Exception {
         DBCollection collection = template.getCollection(collectionName);
-        cursor = collection.find(query, createDbObjectKeys());
+        cursor = collection.find(getQueryInRange(), createDbObjectKeys());
         if (sort != null) {
             cursor = cursor.sort(sort);
         }
+        cursor = configureCursor(cursor);
+        if (prefetchSize > 0) {
+            startPrefetch();
+        }
+    }
+
+    private void startPrefetch() {
+        prefetchBuffer = new ArrayBlockingQueue<>(prefetchSize);
+        prefetchError = new AtomicReference<>();
+        prefetchFinished = false;
+        prefetchThread = new Thread(this::prefetch, getClass().getSimpleName() + "-prefetch");
+        prefetchThread.setDaemon(true);
+        prefetchThread.start();
+    }
+
+    /**
+     * Only the prefetch thread uses the cursor after it starts, and it closes the cursor when it finishes.
+     */
+    private void prefetch() {
+        try {
+            while (cursor.hasNext()) {
+                prefetchBuffer.put(cursor.next());
+            }
+            prefetchBuffer.put(END_OF_CURSOR);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            prefetchError.set(e);
+            prefetchBuffer.clear();
+            prefetchBuffer.offer(END_OF_CURSOR);
+        } finally {
+            cursor.close();
+        }
     }
 
     @Override
     protected DBObject doRead() throws Exception {
+        if (prefetchThread != null) {
+            return readPrefetched();
+        }
         if (!cursor.hasNext()) {
             return null;
         } else {
@@ -128,9 +294,40 @@ public class MongoDbCursorItemReader extends AbstractItemCountingItemStreamItemR
         }
     }
 
+    private DBObject readPrefetched() throws Exception {
+        if (prefetchFinished) {
+            return null;
+        }
+        DBObject document = prefetchBuffer.take();
+        if (document != END_OF_CURSOR) {
+            return document;
+        }
+        prefetchFinished = true;
+        if (prefetchError.get() != null) {
+            throw prefetchError.get();
+        }
+        return null;
+    }
+
     @Override
     protected void doClose() throws Exception {
-        cursor.close();
+        if (prefetchThread != null) {
+            stopPrefetch();
+        } else {
+            cursor.close();
+        }
+    }
+
+    private void stopPrefetch() throws InterruptedException {
+        prefetchThread.interrupt();
+        prefetchThread.join(PREFETCH_THREAD_JOIN_TIMEOUT_MILLIS);
+        if (prefetchThread.isAlive()) {
+            logger.warn("The thread prefetching documents from collection {} did not finish, closing its cursor",
+                        collectionName);
+            cursor.close();
+        }
+        prefetchThread = null;
+        prefetchBuffer = null;
     }
 
     /**
@@ -146,15 +343,16 @@ public class MongoDbCursorItemReader extends AbstractItemCountingItemStreamItemR
     }
 
     private DBObject createDbObjectKeys() {
-        if (fields == null) {
-            return new BasicDBObject();
-        } else {
-            BasicDBObjectBuilder builder = BasicDBObjectBuilder.start();
+        BasicDBObjectBuilder builder = BasicDBObjectBuilder.start();
+        if (fields != null) {
             for (String field : fields) {
                 builder.add(field, 1);
             }
-            return builder.get();
         }
+        if (idExcluded) {
+            builder.add(ID_FIELD, 0);
+        }
+        return builder.get();
     }
 
     private DBObject convertToSort(Map<String, Sort.Direction> sorts) {
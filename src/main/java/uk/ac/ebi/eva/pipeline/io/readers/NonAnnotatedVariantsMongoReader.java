@@ -17,48 +17,176 @@ package uk.ac.ebi.eva.pipeline.io.readers;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.BasicDBObjectBuilder;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.mongodb.core.MongoOperations;
 
 import uk.ac.ebi.eva.commons.models.converters.data.VariantSourceEntryToDBObjectConverter;
 import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+import uk.ac.ebi.eva.pipeline.io.writers.VepAnnotationMongoWriter;
+import uk.ac.ebi.eva.utils.MongoDBHelper;
 
 import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Mongo variant reader using an ItemReader cursor based. This is speeding up
  * the reading of the variant in big collections. The
  * {@link org.springframework.batch.item.data.MongoItemReader} is using
  * pagination and it is slow with large collections
+ * <p>
+ * The non-annotated variants are the ones without the annotation marker written by {@link VepAnnotationMongoWriter}.
+ * The reader creates an index that starts with the markers and the study, followed by the fields read, so the query
+ * only scans the index entries of the variants it returns, and the documents don't have to be fetched when the study
+ * is not filtered (the study is in an array, and MongoDB never covers a query on an array field with an index). The
+ * study makes the index multikey, so the query is only covered by MongoDB 3.4 or later, which tracks which fields of
+ * an index are arrays; older versions fetch the documents of every variant read.
+ * <p>
+ * The variants annotated before the markers existed have to be marked by
+ * {@link uk.ac.ebi.eva.pipeline.jobs.steps.tasklets.AnnotationMarkersBackfillerStep}, or they are read again.
+ * <p>
+ * When VEP or its cache are upgraded, the reader can also bring the variants annotated with other versions, so they
+ * are annotated again. The variants already annotated with the current versions are skipped, so a re-annotation that
+ * stops halfway continues from the variants not updated yet.
+ * <p>
+ * When the annotations are written in their own collection, the variant documents keep the markers in the summary of
+ * their annotation, so the same queries are used for both layouts.
+ * <p>
+ * The variants can be read with several cursors in parallel, one per chromosome. Every chromosome is buffered in its
+ * own queue and the chromosomes are returned one after the other in a fixed order, so the variants of a chromosome are
+ * always contiguous and a restarted step finds them in the same order. With a single cursor, the variants can be
+ * prefetched instead, as in any {@link MongoDbCursorItemReader}. The variants can be decoded lazily in both cases.
  */
 public class NonAnnotatedVariantsMongoReader extends MongoDbCursorItemReader {
 
+    private static final Logger logger = LoggerFactory.getLogger(NonAnnotatedVariantsMongoReader.class);
+
     private static final String STUDY_KEY = VariantToDBObjectConverter.FILES_FIELD + "."
             + VariantSourceEntryToDBObjectConverter.STUDYID_FIELD;
 
+    private static final String[] FIELDS = {"chr", "start", "end", "ref", "alt"};
+
+    private static final int CHROMOSOME_BUFFER_SIZE = 1000;
+
+    private static final DBObject END_OF_CHROMOSOME = new BasicDBObject();
+
+    private final MongoOperations template;
+
+    private final String collectionsVariantsName;
+
+    private final int readThreads;
+
+    private ExecutorService executor;
+
+    private List<BlockingQueue<DBObject>> chromosomeBuffers;
+
+    private int currentChromosome;
+
+    private AtomicReference<Exception> readError;
+
     /**
      * @param studyId Can be the empty string, meaning to bring all non-annotated variants in the collection.
      *  If the studyId string is not empty, bring only non-annotated variants from that study. This parameter should
      *  not be null in any case.
      */
     public NonAnnotatedVariantsMongoReader(MongoOperations template, String collectionsVariantsName, String studyId) {
+        this(template, collectionsVariantsName, studyId, 1);
+    }
+
+    /**
+     * @param readThreads Number of chromosomes read in parallel. With only one, the variants are read with a single
+     *  cursor over the whole collection.
+     */
+    public NonAnnotatedVariantsMongoReader(MongoOperations template, String collectionsVariantsName, String studyId,
+                                           int readThreads) {
+        this(template, collectionsVariantsName, studyId, readThreads, null, null);
+    }
+
+    /**
+     * @param vepVersion If not null, bring also the variants annotated with a different VEP version, or with a
+     *  different VEP cache version.
+     * @param vepCacheVersion VEP cache version of the current annotation, used only with a vepVersion.
+     */
+    public NonAnnotatedVariantsMongoReader(MongoOperations template, String collectionsVariantsName, String studyId,
+                                           int readThreads, String vepVersion, String vepCacheVersion) {
         if (studyId == null) {
             throw new IllegalArgumentException("NonAnnotatedVariantsMongoReader needs a non-null studyId " +
                     "(it can take a studyId or an empty string for reading every study)");
         }
+        if (readThreads <= 0) {
+            throw new IllegalArgumentException("NonAnnotatedVariantsMongoReader needs a positive number of threads");
+        }
 
         setTemplate(template);
         setCollection(collectionsVariantsName);
 
+        setQuery(buildQuery(studyId, vepVersion, vepCacheVersion));
+        setFields(FIELDS);
+        setIdExcluded(true);
+        createIndex(template, collectionsVariantsName);
+
+        this.template = template;
+        this.collectionsVariantsName = collectionsVariantsName;
+        this.readThreads = readThreads;
+    }
+
+    /**
+     * @return the query of the variants read, with the same parameters as the constructor. It can be used to split
+     * the variants into ranges before creating the readers.
+     */
+    public static DBObject buildQuery(String studyId, String vepVersion, String vepCacheVersion) {
         BasicDBObjectBuilder queryBuilder = BasicDBObjectBuilder.start();
         if (!studyId.isEmpty()) {
             queryBuilder.add(STUDY_KEY, studyId);
         }
-        DBObject query = queryBuilder.add("annot.ct.so", new BasicDBObject("$exists", false)).get();
-        setQuery(query);
+        if (vepVersion == null) {
+            // null matches the missing marker, and unlike $exists: false it can use the index bounds directly
+            queryBuilder.add(VepAnnotationMongoWriter.ANNOTATION_VEP_VERSION_FIELD, null);
+        } else {
+            queryBuilder.add("$or", buildOutdatedAnnotationQuery(vepVersion, vepCacheVersion));
+        }
+        return queryBuilder.get();
+    }
 
-        String[] fields = { "chr", "start", "end", "ref", "alt" };
-        setFields(fields);
+    /**
+     * Creates the index used by the query of the reader, if it doesn't exist yet. It is called by the constructor, and
+     * can be called before splitting the variants into ranges with the same query. The index only covers the query
+     * with MongoDB 3.4 or later.
+     */
+    public static void createIndex(MongoOperations template, String collectionsVariantsName) {
+        BasicDBObject index = new BasicDBObject(VepAnnotationMongoWriter.ANNOTATION_VEP_VERSION_FIELD, 1)
+                .append(VepAnnotationMongoWriter.ANNOTATION_VEP_CACHE_VERSION_FIELD, 1)
+                .append(STUDY_KEY, 1);
+        for (String field : FIELDS) {
+            index.append(field, 1);
+        }
+        template.getCollection(collectionsVariantsName).createIndex(
+                index, new BasicDBObject(MongoDBHelper.BACKGROUND_INDEX, true));
+    }
+
+    /**
+     * Both branches are bounded by the index on the markers: any VEP version but the current one (including the
+     * missing marker), or the current VEP version with any other cache version.
+     */
+    private static List<DBObject> buildOutdatedAnnotationQuery(String vepVersion, String vepCacheVersion) {
+        String cacheVersion = vepCacheVersion == null ? VepAnnotationMongoWriter.UNKNOWN_VERSION : vepCacheVersion;
+        List<DBObject> branches = new ArrayList<>();
+        branches.add(new BasicDBObject(VepAnnotationMongoWriter.ANNOTATION_VEP_VERSION_FIELD,
+                                       new BasicDBObject("$ne", vepVersion)));
+        branches.add(new BasicDBObject(VepAnnotationMongoWriter.ANNOTATION_VEP_VERSION_FIELD, vepVersion)
+                             .append(VepAnnotationMongoWriter.ANNOTATION_VEP_CACHE_VERSION_FIELD,
+                                     new BasicDBObject("$ne", cacheVersion)));
+        return branches;
     }
 
     @PostConstruct
@@ -66,4 +194,92 @@ public class NonAnnotatedVariantsMongoReader extends MongoDbCursorItemReader {
     public void afterPropertiesSet() throws Exception {
         super.afterPropertiesSet();
     }
+
+    @Override
+    protected void doOpen() throws Exception {
+        if (readThreads == 1) {
+            super.doOpen();
+            return;
+        }
+
+        DBCollection collection = template.getCollection(collectionsVariantsName);
+        DBObject queryInRange = getQueryInRange();
+        List<Object> chromosomes = new ArrayList<>(collection.distinct(VariantToDBObjectConverter.CHROMOSOME_FIELD,
+                                                                       queryInRange));
+        chromosomes.sort(Comparator.comparing(Object::toString));
+        logger.debug("Reading non-annotated variants of {} chromosome(s) with {} thread(s)", chromosomes.size(),
+                     readThreads);
+
+        chromosomeBuffers = new ArrayList<>(chromosomes.size());
+        currentChromosome = 0;
+        readError = new AtomicReference<>();
+        executor = Executors.newFixedThreadPool(readThreads, runnable -> {
+            Thread thread = new Thread(runnable, "non-annotated-variants-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // the pool takes the chromosomes in order, so the one being returned is always being read or already read
+        for (Object chromosome : chromosomes) {
+            BlockingQueue<DBObject> buffer = new ArrayBlockingQueue<>(CHROMOSOME_BUFFER_SIZE);
+            chromosomeBuffers.add(buffer);
+            executor.submit(() -> readChromosome(collection, queryInRange, chromosome, buffer));
+        }
+        executor.shutdown();
+    }
+
+    private void readChromosome(DBCollection collection, DBObject queryInRange, Object chromosome,
+                                BlockingQueue<DBObject> buffer) {
+        BasicDBObject chromosomeQuery = new BasicDBObject(queryInRange.toMap());
+        chromosomeQuery.put(VariantToDBObjectConverter.CHROMOSOME_FIELD, chromosome);
+        BasicDBObject keys = new BasicDBObject();
+        for (String field : FIELDS) {
+            keys.put(field, 1);
+        }
+        keys.put("_id", 0);
+
+        try (DBCursor cursor = configureCursor(collection.find(chromosomeQuery, keys))) {
+            while (cursor.hasNext()) {
+                buffer.put(cursor.next());
+            }
+            buffer.put(END_OF_CHROMOSOME);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            readError.compareAndSet(null, e);
+            buffer.clear();
+            buffer.offer(END_OF_CHROMOSOME);
+        }
+    }
+
+    @Override
+    protected DBObject doRead() throws Exception {
+        if (readThreads == 1) {
+            return super.doRead();
+        }
+
+        while (currentChromosome < chromosomeBuffers.size()) {
+            DBObject variant = chromosomeBuffers.get(currentChromosome).take();
+            if (variant != END_OF_CHROMOSOME) {
+                return variant;
+            }
+            if (readError.get() != null) {
+                throw readError.get();
+            }
+            currentChromosome++;
+        }
+        return null;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (readThreads == 1) {
+            super.doClose();
+            return;
+        }
+
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
 }
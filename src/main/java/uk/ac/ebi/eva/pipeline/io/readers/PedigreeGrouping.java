@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.readers;
+
+/**
+ * How {@link CohortsReader} groups the individuals of a PED file into cohorts.
+ */
+public enum PedigreeGrouping {
+
+    /**
+     * One cohort per family, named after the family id.
+     */
+    FAMILY,
+
+    /**
+     * One cohort per phenotype, named after the condition of the individuals (AFFECTED, UNAFFECTED...).
+     */
+    PHENOTYPE
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.readers;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.support.SingleItemPeekableItemReader;
+
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+
+/**
+ * VEP writes a line for every feature (transcript, regulatory region...) overlapping a variant, and all the lines of a
+ * variant are consecutive. This reader merges the consecutive annotations of the same variant read by the delegate
+ * (usually an {@link AnnotationFlatFileReader}) into a single {@link VariantAnnotation}, so a variant is never split
+ * across chunks and its document is updated only once.
+ * <p>
+ * The annotations are merged with {@link VariantAnnotation#append}, like in
+ * {@link uk.ac.ebi.eva.pipeline.io.writers.VepAnnotationMongoWriter}.
+ * <p>
+ * The delegate is read one annotation ahead to know where a variant ends. The state saved for restarts is the one
+ * before that annotation, so it is read again after a restart. If that annotation can't be read, the annotations of
+ * the previous variant are returned and the error is thrown in the next read, so it can be skipped.
+ */
+public class VariantAnnotationGroupingReader implements ItemStreamReader<VariantAnnotation> {
+
+    private final SingleItemPeekableItemReader<VariantAnnotation> reader;
+
+    private Exception nextReadException;
+
+    public VariantAnnotationGroupingReader(ItemStreamReader<VariantAnnotation> delegate) {
+        this.reader = new SingleItemPeekableItemReader<>();
+        this.reader.setDelegate(delegate);
+    }
+
+    @Override
+    public VariantAnnotation read() throws Exception {
+        if (nextReadException != null) {
+            Exception exception = nextReadException;
+            nextReadException = null;
+            throw exception;
+        }
+
+        VariantAnnotation variantAnnotation = reader.read();
+        if (variantAnnotation == null) {
+            return null;
+        }
+
+        while (true) {
+            VariantAnnotation nextAnnotation;
+            try {
+                nextAnnotation = reader.peek();
+            } catch (Exception e) {
+                nextReadException = e;
+                return variantAnnotation;
+            }
+            if (nextAnnotation == null || !isSameVariant(variantAnnotation, nextAnnotation)) {
+                return variantAnnotation;
+            }
+            variantAnnotation.append(reader.read());
+        }
+    }
+
+    private boolean isSameVariant(VariantAnnotation variantAnnotation, VariantAnnotation other) {
+        return variantAnnotation.getStart() == other.getStart()
+                && variantAnnotation.getChromosome().equals(other.getChromosome())
+                && variantAnnotation.getReferenceAllele().equals(other.getReferenceAllele())
+                && variantAnnotation.getAlternativeAllele().equals(other.getAlternativeAllele());
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        nextReadException = null;
+        reader.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        reader.update(executionContext);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        reader.close();
+    }
+}
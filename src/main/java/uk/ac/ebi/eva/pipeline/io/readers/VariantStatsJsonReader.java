@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.readers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.opencga.storage.core.variant.io.json.VariantStatsJsonMixin;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.util.ClassUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams the statistics of the variants of a file, as written by OpenCGA in a .variants.stats.json.gz file, one
+ * {@link VariantStatsWrapper} per JSON object.
+ * <p>
+ * The objects are bound one at a time from a streaming parser, so the file is never loaded as a whole. The number of
+ * objects read is saved in the execution context, and a restarted step skips the objects already loaded by moving the
+ * parser past them, without binding them.
+ */
+public class VariantStatsJsonReader extends AbstractItemCountingItemStreamItemReader<VariantStatsWrapper> {
+
+    private final File file;
+
+    private final ObjectMapper objectMapper;
+
+    private JsonParser parser;
+
+    public VariantStatsJsonReader(File file) {
+        setName(ClassUtils.getShortName(VariantStatsJsonReader.class));
+        this.file = file;
+        this.objectMapper = new ObjectMapper(new JsonFactory());
+        this.objectMapper.addMixIn(VariantStats.class, VariantStatsJsonMixin.class);
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        parser = objectMapper.getFactory().createParser(new GZIPInputStream(new FileInputStream(file)));
+    }
+
+    @Override
+    protected VariantStatsWrapper doRead() throws Exception {
+        if (parser.nextToken() == null) {
+            return null;
+        }
+        return parser.readValueAs(VariantStatsWrapper.class);
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) throws Exception {
+        for (int i = 0; i < itemIndex; i++) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return;
+            }
+            parser.skipChildren();
+        }
+    }
+
+    @Override
+    protected void doClose() throws IOException {
+        if (parser != null) {
+            parser.close();
+            parser = null;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.readers;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantStatsToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+
+/**
+ * Reads the variants that have statistics of a file, to copy them into the population statistics collection.
+ * <p>
+ * Only the coordinates of the variants and their statistics are brought from the database. The statistics of other
+ * files are brought too, so the file of the step has to be chosen by the processor.
+ */
+public class VariantStatsMongoReader extends MongoDbCursorItemReader {
+
+    private static final String[] FIELDS = {
+            VariantToDBObjectConverter.CHROMOSOME_FIELD,
+            VariantToDBObjectConverter.START_FIELD,
+            VariantToDBObjectConverter.REFERENCE_FIELD,
+            VariantToDBObjectConverter.ALTERNATE_FIELD,
+            VariantToDBObjectConverter.STATS_FIELD};
+
+    public VariantStatsMongoReader(MongoOperations template, String collectionVariantsName, String studyId,
+                                   String fileId) {
+        setTemplate(template);
+        setCollection(collectionVariantsName);
+        setQuery(buildQuery(studyId, fileId));
+        setFields(FIELDS);
+    }
+
+    private static DBObject buildQuery(String studyId, String fileId) {
+        BasicDBObject stats = new BasicDBObject(VariantStatsToDBObjectConverter.STUDY_ID, studyId)
+                .append(VariantStatsToDBObjectConverter.FILE_ID, fileId);
+        return new BasicDBObject(VariantToDBObjectConverter.STATS_FIELD, new BasicDBObject("$elemMatch", stats));
+    }
+}
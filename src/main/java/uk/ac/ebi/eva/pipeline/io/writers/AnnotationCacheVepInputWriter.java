@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.writers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+import uk.ac.ebi.eva.pipeline.io.AnnotationCache;
+import uk.ac.ebi.eva.pipeline.model.VariantWrapper;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
+import uk.ac.ebi.eva.utils.MongoDBHelper;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks up the variants to annotate in the {@link AnnotationCache}. The annotations found are written straight away
+ * with the annotation writer, and only the variants not found are written in the VEP input.
+ * <p>
+ * The hits and misses of the cache are kept in the step {@link ExecutionContext}. If the cache can't be opened, all
+ * the variants are written in the VEP input.
+ * <p>
+ * The variants found are marked as annotated as soon as they are written, so they are not returned again by the query
+ * of the non-annotated variants, and the number of variants read before a failure is no longer a position in that
+ * query. The reader of a step with this writer doesn't save its state: a restarted step reads again every variant
+ * not annotated yet, and the VEP input is written again from the beginning instead of being truncated at the last
+ * committed chunk.
+ */
+public class AnnotationCacheVepInputWriter implements ItemStreamWriter<VariantWrapper> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationCacheVepInputWriter.class);
+
+    private final ItemStreamWriter<VariantWrapper> vepInputWriter;
+
+    private final ItemWriter<VariantAnnotation> annotationWriter;
+
+    private final AnnotationCache annotationCache;
+
+    private boolean enabled;
+
+    public AnnotationCacheVepInputWriter(ItemStreamWriter<VariantWrapper> vepInputWriter,
+                                         ItemWriter<VariantAnnotation> annotationWriter,
+                                         AnnotationCache annotationCache) {
+        this.vepInputWriter = vepInputWriter;
+        this.annotationWriter = annotationWriter;
+        this.annotationCache = annotationCache;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        // the variants already in the VEP input are read again, see the class comment
+        executionContext.remove(ExecutionContextParametersNames.VEP_INPUT_POSITION);
+        vepInputWriter.open(executionContext);
+        try {
+            annotationCache.open();
+            enabled = true;
+        } catch (SQLException e) {
+            logger.warn("Annotation cache could not be opened, all variants will be annotated with VEP: {}",
+                        e.getMessage());
+            enabled = false;
+        }
+    }
+
+    @Override
+    public void write(List<? extends VariantWrapper> variants) throws Exception {
+        if (!enabled) {
+            vepInputWriter.write(variants);
+            return;
+        }
+
+        List<String> storageIds = new ArrayList<>(variants.size());
+        for (VariantWrapper variant : variants) {
+            storageIds.add(buildStorageId(variant));
+        }
+        Map<String, VariantAnnotation> cachedAnnotations = annotationCache.getAll(storageIds);
+
+        List<VariantAnnotation> hits = new ArrayList<>(cachedAnnotations.size());
+        List<VariantWrapper> misses = new ArrayList<>(variants.size() - cachedAnnotations.size());
+        for (int i = 0; i < variants.size(); i++) {
+            VariantWrapper variant = variants.get(i);
+            VariantAnnotation cachedAnnotation = cachedAnnotations.get(storageIds.get(i));
+            if (cachedAnnotation == null) {
+                misses.add(variant);
+            } else {
+                VariantAnnotation annotation = new VariantAnnotation(variant.getChr(), variant.getStart(),
+                                                                     variant.getEnd(), variant.getReference(),
+                                                                     variant.getAlternate());
+                annotation.setConsequenceTypes(cachedAnnotation.getConsequenceTypes());
+                annotation.setXrefs(cachedAnnotation.getXrefs());
+                hits.add(annotation);
+            }
+        }
+
+        if (!hits.isEmpty()) {
+            annotationWriter.write(hits);
+        }
+        vepInputWriter.write(misses);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        vepInputWriter.update(executionContext);
+        executionContext.putLong(ExecutionContextParametersNames.ANNOTATION_CACHE_HITS, annotationCache.getHits());
+        executionContext.putLong(ExecutionContextParametersNames.ANNOTATION_CACHE_MISSES, annotationCache.getMisses());
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        vepInputWriter.close();
+        if (enabled) {
+            logger.info("Annotation cache hit rate: {}% ({} hits, {} misses)",
+                        String.format("%.2f", annotationCache.getHitRate() * 100), annotationCache.getHits(),
+                        annotationCache.getMisses());
+        }
+        annotationCache.close();
+    }
+
+    private String buildStorageId(VariantWrapper variant) {
+        return MongoDBHelper.buildStorageId(variant.getChr(), variant.getStart(), variant.getReference(),
+                                            variant.getAlternate());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.writers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+import uk.ac.ebi.eva.pipeline.io.AnnotationCache;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Stores the annotations coming from VEP in the {@link AnnotationCache}, so they can be reused by other studies.
+ * <p>
+ * The cache is just an optimisation: if it can't be opened (for instance, because another job is using it) a warning
+ * is logged and the annotations are not cached.
+ */
+public class AnnotationCacheWriter implements ItemStreamWriter<VariantAnnotation> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationCacheWriter.class);
+
+    private final AnnotationCache annotationCache;
+
+    private boolean enabled;
+
+    public AnnotationCacheWriter(AnnotationCache annotationCache) {
+        this.annotationCache = annotationCache;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        try {
+            annotationCache.open();
+            enabled = true;
+        } catch (SQLException e) {
+            logger.warn("Annotation cache could not be opened, annotations will not be cached: {}", e.getMessage());
+            enabled = false;
+        }
+    }
+
+    @Override
+    public void write(List<? extends VariantAnnotation> variantAnnotations) throws Exception {
+        if (enabled) {
+            annotationCache.putAll(variantAnnotations);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        annotationCache.close();
+    }
+}
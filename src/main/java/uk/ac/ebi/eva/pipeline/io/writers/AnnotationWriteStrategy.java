@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.writers;
+
+/**
+ * How {@link VepAnnotationMongoWriter} writes the annotation of a variant into its document.
+ */
+public enum AnnotationWriteStrategy {
+
+    /**
+     * The consequence types and xrefs are added to the ones already in the document with $addToSet, so the annotation
+     * of a variant can be split across several writes. The server compares every new element with every element of
+     * the array, which gets slow for variants with many transcripts.
+     */
+    MERGE,
+
+    /**
+     * The whole annotation, deduplicated in the writer, is set in a single $set. The previous annotation is discarded,
+     * so all the annotations of a variant must be in the same write.
+     */
+    REPLACE
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.writers;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+
+import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntity;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
+import uk.ac.ebi.eva.commons.models.data.VariantStats;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
+
+import java.util.List;
+
+/**
+ * Counts the variants of a file with statistics, by type, passing the filters, and their transitions and
+ * transversions, and accumulates their quality when known. It doesn't write anything itself: it is meant to be the
+ * last delegate of a {@link org.springframework.batch.item.support.CompositeItemWriter}, so only the variants actually
+ * written by the previous delegates are counted.
+ * <p>
+ * The counts are saved in the execution context, with the keys {@link #getCountKey} and
+ * {@link ExecutionContextParametersNames#SOURCE_STATISTICS_ACCUMULATED_QUALITY}, so they survive restarts and can be
+ * summed into the statistics of the file by {@link uk.ac.ebi.eva.pipeline.listeners.SourceStatisticsListener}.
+ */
+public class SourceStatisticsCounter implements ItemStreamWriter<Variant> {
+
+    public static final String[] COUNTED_FIELDS = {
+            VariantSourceEntity.STATISTICS_NUMVARIANTS_FIELD,
+            VariantSourceEntity.STATISTICS_NUMSNPS_FIELD,
+            VariantSourceEntity.STATISTICS_NUMINDELS_FIELD,
+            VariantSourceEntity.STATISTICS_NUMSTRUCTURAL_FIELD,
+            VariantSourceEntity.STATISTICS_NUMPASSFILTERS_FIELD,
+            VariantSourceEntity.STATISTICS_NUMTRANSITIONS_FIELD,
+            VariantSourceEntity.STATISTICS_NUMTRANSVERSIONS_FIELD};
+
+    private static final int VARIANTS = 0;
+
+    private static final int SNPS = 1;
+
+    private static final int INDELS = 2;
+
+    private static final int STRUCTURAL = 3;
+
+    private static final int PASS_FILTERS = 4;
+
+    private static final int TRANSITIONS = 5;
+
+    private static final int TRANSVERSIONS = 6;
+
+    private final long[] counts;
+
+    private double accumulatedQuality;
+
+    public SourceStatisticsCounter() {
+        this.counts = new long[COUNTED_FIELDS.length];
+    }
+
+    public static String getCountKey(String countedField) {
+        return ExecutionContextParametersNames.SOURCE_STATISTICS_PREFIX + countedField;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        for (int i = 0; i < COUNTED_FIELDS.length; i++) {
+            counts[i] = executionContext.getLong(getCountKey(COUNTED_FIELDS[i]), 0);
+        }
+        accumulatedQuality = executionContext.getDouble(
+                ExecutionContextParametersNames.SOURCE_STATISTICS_ACCUMULATED_QUALITY, 0);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        for (int i = 0; i < COUNTED_FIELDS.length; i++) {
+            executionContext.putLong(getCountKey(COUNTED_FIELDS[i]), counts[i]);
+        }
+        executionContext.putDouble(ExecutionContextParametersNames.SOURCE_STATISTICS_ACCUMULATED_QUALITY,
+                                   accumulatedQuality);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+    }
+
+    @Override
+    public void write(List<? extends Variant> variants) throws Exception {
+        for (Variant variant : variants) {
+            for (VariantSourceEntry sourceEntry : variant.getSourceEntries().values()) {
+                VariantStats stats = sourceEntry.getStats();
+                if (stats != null) {
+                    count(variant, stats);
+                    if (stats.getQuality() >= 0) {
+                        accumulatedQuality += stats.getQuality();
+                    }
+                }
+            }
+        }
+    }
+
+    private void count(Variant variant, VariantStats stats) {
+        counts[VARIANTS]++;
+        switch (variant.getType()) {
+            case SNV:
+                counts[SNPS]++;
+                if (stats.isTransition()) {
+                    counts[TRANSITIONS]++;
+                }
+                if (stats.isTransversion()) {
+                    counts[TRANSVERSIONS]++;
+                }
+                break;
+            case INDEL:
+                counts[INDELS]++;
+                break;
+            case SV:
+            case CNV:
+                counts[STRUCTURAL]++;
+                break;
+            default:
+                break;
+        }
+        if (stats.hasPassedFilters()) {
+            counts[PASS_FILTERS]++;
+        }
+    }
+}
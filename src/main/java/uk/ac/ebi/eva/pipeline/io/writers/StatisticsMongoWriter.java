@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,18 +16,71 @@
 
 package uk.ac.ebi.eva.pipeline.io.writers;
 
-import org.springframework.batch.item.data.MongoItemWriter;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ItemWriter;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.util.Assert;
+
 import uk.ac.ebi.eva.pipeline.model.PopulationStatistics;
+import uk.ac.ebi.eva.pipeline.model.converters.data.PopulationStatisticsToMongoDbObjectConverter;
+
+import java.util.List;
 
 /**
  * Write a list of {@link PopulationStatistics} into MongoDB
+ * <p>
+ * Every chunk is written in an unordered bulk of upserts keyed on the unique index of the collection (coordinates of
+ * the variant, study, file and cohort), so writing the statistics of a variant again replaces the previous ones instead
+ * of failing, and a restarted step can write the same chunk twice. The statistics of every file of a study are kept
+ * apart.
  */
-public class StatisticsMongoWriter extends MongoItemWriter<PopulationStatistics> {
+public class StatisticsMongoWriter implements ItemWriter<PopulationStatistics> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsMongoWriter.class);
+
+    public static final String UNIQUE_INDEX_NAME = "vsfcid";
+
+    private final DBCollection collection;
+
+    private final PopulationStatisticsToMongoDbObjectConverter converter;
 
     public StatisticsMongoWriter(MongoOperations mongoOperations, String collection) {
-        super();
-        setCollection(collection);
-        setTemplate(mongoOperations);
+        Assert.notNull(mongoOperations, "A Mongo instance is required");
+        Assert.hasText(collection, "A collection name is required");
+
+        this.collection = mongoOperations.getCollection(collection);
+        this.converter = new PopulationStatisticsToMongoDbObjectConverter();
+
+        createIndexes();
+    }
+
+    @Override
+    public void write(List<? extends PopulationStatistics> populationStatistics) {
+        if (populationStatistics.isEmpty()) {
+            return;
+        }
+
+        BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+        for (PopulationStatistics statistics : populationStatistics) {
+            bulk.find(converter.buildKey(statistics)).upsert().replaceOne(converter.convert(statistics));
+        }
+        logger.trace("Execute bulk. BulkSize : " + populationStatistics.size());
+        bulk.execute();
+    }
+
+    private void createIndexes() {
+        collection.createIndex(
+                new BasicDBObject(PopulationStatisticsToMongoDbObjectConverter.CHROMOSOME_FIELD, 1)
+                        .append(PopulationStatisticsToMongoDbObjectConverter.START_FIELD, 1)
+                        .append(PopulationStatisticsToMongoDbObjectConverter.REFERENCE_FIELD, 1)
+                        .append(PopulationStatisticsToMongoDbObjectConverter.ALTERNATE_FIELD, 1)
+                        .append(PopulationStatisticsToMongoDbObjectConverter.STUDY_ID_FIELD, 1)
+                        .append(PopulationStatisticsToMongoDbObjectConverter.FILE_ID_FIELD, 1)
+                        .append(PopulationStatisticsToMongoDbObjectConverter.COHORT_ID_FIELD, 1),
+                new BasicDBObject("name", UNIQUE_INDEX_NAME).append("unique", true));
     }
 }
@@ -27,14 +27,27 @@ import org.springframework.util.Assert;
 import uk.ac.ebi.eva.commons.models.converters.data.VariantSourceEntryToDBObjectConverter;
 import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
 import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+import uk.ac.ebi.eva.pipeline.io.mappers.VcfAnnotationInfoParser;
 import uk.ac.ebi.eva.pipeline.model.converters.data.VariantToMongoDbObjectConverter;
 import uk.ac.ebi.eva.utils.MongoDBHelper;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Write a list of {@link Variant} into MongoDB
  * See also {@link org.opencb.opencga.storage.mongodb.variant.VariantMongoDBWriter}
+ * <p>
+ * The annotations read from the VCF (see {@link VcfAnnotationInfoParser}) are written after the variants, with a
+ * {@link VepAnnotationMongoWriter} per annotator version, so they have the same layout as the annotations written by
+ * the annotation steps, in the variants collection or in the annotations collection. They replace any previous
+ * annotation of the variant. Only the annotations written by the current VEP version mark the variants as annotated;
+ * the variants with other annotations, like the ones of SnpEff, are still annotated with VEP.
  */
 public class VariantMongoWriter extends MongoItemWriter<Variant> {
 
@@ -50,14 +63,35 @@ public class VariantMongoWriter extends MongoItemWriter<Variant> {
 
     private final VariantToMongoDbObjectConverter variantToMongoDbObjectConverter;
 
+    private final String annotationsCollection;
+
+    private final String vepVersion;
+
+    private final Map<List<String>, VepAnnotationMongoWriter> annotationWriters;
+
     public VariantMongoWriter(String collection, MongoOperations mongoOperations,
                               VariantToMongoDbObjectConverter variantToMongoDbObjectConverter) {
+        this(collection, mongoOperations, variantToMongoDbObjectConverter, null, null);
+    }
+
+    /**
+     * @param annotationsCollection Nullable. If not null, the annotations read from the VCF are written in this
+     *  collection, and only their summary in the variants collection.
+     * @param vepVersion Nullable. Version of VEP used by the annotation steps; the annotations read from the VCF mark
+     *  the variants as annotated only if they were written by this version.
+     */
+    public VariantMongoWriter(String collection, MongoOperations mongoOperations,
+                              VariantToMongoDbObjectConverter variantToMongoDbObjectConverter,
+                              String annotationsCollection, String vepVersion) {
         Assert.notNull(mongoOperations, "A Mongo instance is required");
         Assert.hasText(collection, "A collection name is required");
 
         this.variantToMongoDbObjectConverter = variantToMongoDbObjectConverter;
         this.mongoOperations = mongoOperations;
         this.collection = collection;
+        this.annotationsCollection = annotationsCollection;
+        this.vepVersion = vepVersion;
+        this.annotationWriters = new HashMap<>();
         setTemplate(mongoOperations);
 
         createIndexes();
@@ -66,7 +100,14 @@ public class VariantMongoWriter extends MongoItemWriter<Variant> {
     @Override
     protected void doWrite(List<? extends Variant> variants) {
         BulkWriteOperation bulk = mongoOperations.getCollection(collection).initializeUnorderedBulkOperation();
+        List<VariantAnnotation> annotations = new ArrayList<>();
         for (Variant variant : variants) {
+            // the converter leaves the annotation out of the variant document
+            VariantAnnotation annotation = variant.getAnnotation();
+            if (annotation != null && !annotation.getConsequenceTypes().isEmpty()) {
+                annotations.add(annotation);
+            }
+
             String id = MongoDBHelper.buildStorageId(variant.getChromosome(), variant.getStart(),
                                                      variant.getReference(), variant.getAlternate());
 
@@ -82,6 +123,31 @@ public class VariantMongoWriter extends MongoItemWriter<Variant> {
         }
 
         executeBulk(bulk, variants.size());
+        writeAnnotations(annotations);
+    }
+
+    private void writeAnnotations(List<VariantAnnotation> annotations) {
+        Map<List<String>, List<VariantAnnotation>> annotationsByVersions = new LinkedHashMap<>();
+        for (VariantAnnotation annotation : annotations) {
+            Map<String, Object> attributes = annotation.getAdditionalAttributes();
+            List<String> versions = Arrays.asList(
+                    (String) attributes.get(VcfAnnotationInfoParser.ANNOTATOR_VERSION_ATTRIBUTE),
+                    (String) attributes.get(VcfAnnotationInfoParser.ANNOTATOR_CACHE_VERSION_ATTRIBUTE));
+            annotationsByVersions.computeIfAbsent(versions, key -> new ArrayList<>()).add(annotation);
+        }
+        for (Map.Entry<List<String>, List<VariantAnnotation>> versionAnnotations : annotationsByVersions.entrySet()) {
+            getAnnotationWriter(versionAnnotations.getKey()).doWrite(versionAnnotations.getValue());
+        }
+    }
+
+    private VepAnnotationMongoWriter getAnnotationWriter(List<String> versions) {
+        return annotationWriters.computeIfAbsent(versions, key -> {
+            String annotatorVersion = key.get(0);
+            VepAnnotationMongoWriter annotationWriter = new VepAnnotationMongoWriter(
+                    mongoOperations, collection, annotationsCollection, annotatorVersion, key.get(1), true);
+            annotationWriter.setAnnotationMarked(annotatorVersion != null && annotatorVersion.equals(vepVersion));
+            return annotationWriter;
+        });
     }
 
     private void executeBulk(BulkWriteOperation bulk, int currentBulkSize) {
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.writers;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.opencb.biodata.models.feature.Genotype;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantStatsToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
+import uk.ac.ebi.eva.commons.models.data.VariantStats;
+import uk.ac.ebi.eva.utils.MongoDBHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges the statistics of the variants of a file into the statistics of its study, so that adding a file to a study
+ * only costs as much as the variants of the new file.
+ * <p>
+ * The number of samples of every genotype is kept per study and cohort in the "mst" field of every variant:
+ * {@code mst.<study>.cohorts.<cohort>.numGt.<genotype>}. The counts of the file of every variant are added with
+ * {@code $inc}, only if the file is not in {@code mst.<study>.fids} yet, and the file is added and the version of the
+ * statistics {@code mst.<study>.v} increased in the same atomic update, so writing a chunk again after a restart
+ * doesn't count its genotypes twice. The updates of a whole chunk are sent in one bulk, and the merged counts of its
+ * variants are read back with a single query by their ids. They are used to calculate the frequencies and missing
+ * values of every cohort (maf, mgf, mafAl, mgfGt, missAl, missGt), which are set next to the counts, again in one bulk,
+ * only if the version is still the one read. If another file of the study has been merged into the variant in
+ * between, its job derives the statistics from the newer counts instead, so the statistics derived are never older
+ * than the counts, even when several files of a study are merged at the same time. A file that was already merged, as
+ * when a chunk is written again after a restart, derives the statistics from the current counts.
+ * <p>
+ * The merged statistics don't use the FILTER and QUAL of the files. The counts of a file are merged only once, so a
+ * file whose statistics change must be removed from the study and loaded again.
+ * <p>
+ * The merged statistics are not read by any step of the pipeline, and are not published in the "st" field of the
+ * variants; they are kept in "mst" for the applications that query the statistics of a whole study.
+ */
+public class VariantStatsMergeMongoWriter implements ItemWriter<Variant> {
+
+    public static final String MERGED_STATS_FIELD = "mst";
+
+    public static final String MERGED_FILES_FIELD = "fids";
+
+    public static final String MERGED_COHORTS_FIELD = "cohorts";
+
+    public static final String MERGED_VERSION_FIELD = "v";
+
+    private static final String MISSING_ALLELE = ".";
+
+    private static final String STORED_MISSING_ALLELE = "-1";
+
+    private final MongoOperations mongoOperations;
+
+    private final String collection;
+
+    public VariantStatsMergeMongoWriter(MongoOperations mongoOperations, String collection) {
+        this.mongoOperations = mongoOperations;
+        this.collection = collection;
+    }
+
+    @Override
+    public void write(List<? extends Variant> variants) throws Exception {
+        DBCollection variantsCollection = mongoOperations.getCollection(collection);
+        BulkWriteOperation incrementBulk = variantsCollection.initializeUnorderedBulkOperation();
+        Map<String, Variant> variantsById = new LinkedHashMap<>();
+        Map<String, Set<String>> studiesById = new HashMap<>();
+        BasicDBObject projection = new BasicDBObject();
+        int increments = 0;
+
+        for (Variant variant : variants) {
+            String id = MongoDBHelper.buildStorageId(variant.getChromosome(), variant.getStart(),
+                                                     variant.getReference(), variant.getAlternate());
+            for (VariantSourceEntry sourceEntry : variant.getSourceEntries().values()) {
+                BasicDBObject counts = buildIncrements(sourceEntry);
+                if (counts.isEmpty()) {
+                    continue;
+                }
+                String study = sourceEntry.getStudyId();
+                String filesField = getStudyField(study) + "." + MERGED_FILES_FIELD;
+                counts.append(getStudyField(study) + "." + MERGED_VERSION_FIELD, 1);
+                BasicDBObject query = new BasicDBObject("_id", id)
+                        .append(filesField, new BasicDBObject("$ne", sourceEntry.getFileId()));
+                BasicDBObject update = new BasicDBObject("$inc", counts)
+                        .append("$addToSet", new BasicDBObject(filesField, sourceEntry.getFileId()));
+                incrementBulk.find(query).updateOne(update);
+                increments++;
+
+                variantsById.put(id, variant);
+                studiesById.computeIfAbsent(id, key -> new HashSet<>()).add(study);
+                projection.append(getStudyField(study), 1);
+            }
+        }
+
+        if (increments == 0) {
+            return;
+        }
+        incrementBulk.execute();
+
+        BulkWriteOperation setBulk = variantsCollection.initializeUnorderedBulkOperation();
+        int updates = 0;
+        DBCursor documents = variantsCollection.find(
+                new BasicDBObject("_id", new BasicDBObject("$in", new ArrayList<>(variantsById.keySet()))),
+                projection);
+        try {
+            for (DBObject document : documents) {
+                String id = (String) document.get("_id");
+                DBObject mergedStats = (DBObject) document.get(MERGED_STATS_FIELD);
+                if (mergedStats == null) {
+                    continue;
+                }
+                for (String study : studiesById.get(id)) {
+                    DBObject studyStats = (DBObject) mergedStats.get(study);
+                    if (studyStats == null) {
+                        continue;
+                    }
+                    BasicDBObject derivedStats = new BasicDBObject();
+                    deriveStatistics(variantsById.get(id), study, (DBObject) studyStats.get(MERGED_COHORTS_FIELD),
+                                     derivedStats);
+                    if (!derivedStats.isEmpty()) {
+                        BasicDBObject sameVersion = new BasicDBObject("_id", id)
+                                .append(getStudyField(study) + "." + MERGED_VERSION_FIELD,
+                                        studyStats.get(MERGED_VERSION_FIELD));
+                        setBulk.find(sameVersion).updateOne(new BasicDBObject("$set", derivedStats));
+                        updates++;
+                    }
+                }
+            }
+        } finally {
+            documents.close();
+        }
+
+        if (updates > 0) {
+            setBulk.execute();
+        }
+    }
+
+    private BasicDBObject buildIncrements(VariantSourceEntry sourceEntry) {
+        String cohortsField = getStudyField(sourceEntry.getStudyId()) + "." + MERGED_COHORTS_FIELD;
+        BasicDBObject increments = new BasicDBObject();
+        for (Map.Entry<String, VariantStats> cohortStats : sourceEntry.getCohortStats().entrySet()) {
+            String genotypesField = cohortsField + "." + checkFieldName(cohortStats.getKey()) + "."
+                    + VariantStatsToDBObjectConverter.NUMGT_FIELD;
+            for (Map.Entry<Genotype, Integer> genotypeCount : cohortStats.getValue().getGenotypesCount().entrySet()) {
+                if (genotypeCount.getValue() > 0) {
+                    String genotype = genotypeCount.getKey().toString().replace(MISSING_ALLELE,
+                                                                                 STORED_MISSING_ALLELE);
+                    increments.append(genotypesField + "." + genotype, genotypeCount.getValue());
+                }
+            }
+        }
+        return increments;
+    }
+
+    private void deriveStatistics(Variant variant, String study, DBObject cohorts, BasicDBObject derivedStats) {
+        if (cohorts == null) {
+            return;
+        }
+        for (String cohort : cohorts.keySet()) {
+            DBObject genotypes = (DBObject) ((DBObject) cohorts.get(cohort)).get(
+                    VariantStatsToDBObjectConverter.NUMGT_FIELD);
+            Map<String, Integer> genotypesCount = new HashMap<>();
+            if (genotypes != null) {
+                for (String genotype : genotypes.keySet()) {
+                    genotypesCount.put(genotype.replace(STORED_MISSING_ALLELE, MISSING_ALLELE),
+                                       ((Number) genotypes.get(genotype)).intValue());
+                }
+            }
+            VariantStats stats = new VariantStats(variant).calculate(genotypesCount,
+                                                                     Collections.<String, String>emptyMap());
+
+            String cohortField = getStudyField(study) + "." + MERGED_COHORTS_FIELD + "." + cohort + ".";
+            derivedStats.append(cohortField + VariantStatsToDBObjectConverter.MAF_FIELD, stats.getMaf())
+                        .append(cohortField + VariantStatsToDBObjectConverter.MGF_FIELD, stats.getMgf())
+                        .append(cohortField + VariantStatsToDBObjectConverter.MAFALLELE_FIELD, stats.getMafAllele())
+                        .append(cohortField + VariantStatsToDBObjectConverter.MGFGENOTYPE_FIELD,
+                                stats.getMgfGenotype())
+                        .append(cohortField + VariantStatsToDBObjectConverter.MISSALLELE_FIELD,
+                                stats.getMissingAlleles())
+                        .append(cohortField + VariantStatsToDBObjectConverter.MISSGENOTYPE_FIELD,
+                                stats.getMissingGenotypes());
+        }
+    }
+
+    private String getStudyField(String studyId) {
+        return MERGED_STATS_FIELD + "." + checkFieldName(studyId);
+    }
+
+    private String checkFieldName(String name) {
+        if (name.isEmpty() || name.contains(".") || name.startsWith("$")) {
+            throw new IllegalArgumentException("The statistics of '" + name + "' can't be merged, because it is not "
+                                                       + "a valid name for a field in MongoDB");
+        }
+        return name;
+    }
+}
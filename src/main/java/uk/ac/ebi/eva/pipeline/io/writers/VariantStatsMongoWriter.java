@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.writers;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBObject;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantStatsToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
+import uk.ac.ebi.eva.utils.MongoDBHelper;
+
+import java.util.List;
+
+/**
+ * Writes the statistics of the variants of a file, as calculated by
+ * {@link uk.ac.ebi.eva.pipeline.jobs.steps.processors.VariantStatsProcessor}, into their "st" array.
+ * <p>
+ * The previous statistics of the same study, file and cohorts are pulled before pushing the new ones, in an ordered
+ * bulk operation that runs the pull and the push of every variant in turn and stops at the first error, so writing a
+ * chunk again after a restart replaces its statistics instead of duplicating them, and the statistics don't need to
+ * be dropped with the "statistics.overwrite" parameter.
+ * <p>
+ * The statistics of the file are counted by a {@link SourceStatisticsCounter} written after this writer.
+ */
+public class VariantStatsMongoWriter implements ItemWriter<Variant> {
+
+    private final MongoOperations mongoOperations;
+
+    private final String collection;
+
+    private final VariantStatsToDBObjectConverter statsConverter;
+
+    public VariantStatsMongoWriter(MongoOperations mongoOperations, String collection) {
+        this.mongoOperations = mongoOperations;
+        this.collection = collection;
+        this.statsConverter = new VariantStatsToDBObjectConverter();
+    }
+
+    @Override
+    public void write(List<? extends Variant> variants) throws Exception {
+        BulkWriteOperation bulk = mongoOperations.getCollection(collection).initializeOrderedBulkOperation();
+        int operations = 0;
+
+        for (Variant variant : variants) {
+            BasicDBObject find = new BasicDBObject("_id", MongoDBHelper.buildStorageId(
+                    variant.getChromosome(), variant.getStart(), variant.getReference(), variant.getAlternate()));
+
+            for (VariantSourceEntry sourceEntry : variant.getSourceEntries().values()) {
+                bulk.find(find).updateOne(new BasicDBObject("$pull", new BasicDBObject(
+                        VariantToDBObjectConverter.STATS_FIELD, buildStatsQuery(sourceEntry))));
+                bulk.find(find).updateOne(new BasicDBObject("$push", new BasicDBObject(
+                        VariantToDBObjectConverter.STATS_FIELD,
+                        new BasicDBObject("$each", statsConverter.convert(sourceEntry)))));
+                operations++;
+            }
+        }
+
+        if (operations > 0) {
+            bulk.execute();
+        }
+    }
+
+    private DBObject buildStatsQuery(VariantSourceEntry sourceEntry) {
+        return new BasicDBObject(VariantStatsToDBObjectConverter.STUDY_ID, sourceEntry.getStudyId())
+                .append(VariantStatsToDBObjectConverter.FILE_ID, sourceEntry.getFileId())
+                .append(VariantStatsToDBObjectConverter.COHORT_ID,
+                        new BasicDBObject("$in", sourceEntry.getCohortStats().keySet()));
+    }
+}
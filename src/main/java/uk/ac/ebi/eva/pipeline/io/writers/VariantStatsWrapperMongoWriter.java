@@ -0,0 +1,232 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.writers;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.DBObject;
+import org.opencb.biodata.models.feature.Genotype;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantStatsToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+import uk.ac.ebi.eva.utils.MongoDBHelper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the statistics of the variants of a file, as read from the statistics file written by OpenCGA, into their
+ * "st" array.
+ * <p>
+ * Every chunk is split into bulks that are converted into update operations and sent to the database by the threads
+ * of an executor, usually shared by all the jobs in the application, while the next bulks are submitted. At most a
+ * fixed number of bulks are pending, and the chunk is only complete when all of them have been written, so the chunks
+ * committed by the step have always been loaded and a restarted step can continue after the last one.
+ * <p>
+ * With the "statistics.overwrite" parameter, the previous statistics of the same study, file and cohorts are pulled
+ * before pushing the new ones, in an ordered bulk operation that runs the pull and the push of every variant in turn
+ * and stops at the first error. Otherwise, the statistics are only pushed into the variants that don't have
+ * statistics of any of those cohorts yet, and the existing ones are kept. Either way, writing a chunk again after a
+ * restart doesn't duplicate its statistics.
+ */
+public class VariantStatsWrapperMongoWriter implements ItemWriter<VariantStatsWrapper> {
+
+    private static final Logger logger = LoggerFactory.getLogger(VariantStatsWrapperMongoWriter.class);
+
+    private static final String STORED_MISSING_ALLELE = "-1";
+
+    private static final String MISSING_ALLELE = ".";
+
+    private static final int DEFAULT_BULK_SIZE = 100;
+
+    private static final int DEFAULT_MAX_PENDING_BULKS_PER_THREAD = 2;
+
+    private final MongoOperations mongoOperations;
+
+    private final String collection;
+
+    private final String studyId;
+
+    private final String fileId;
+
+    private final ExecutorService executor;
+
+    private final int bulkSize;
+
+    private final int maxPendingBulks;
+
+    private final boolean overwrite;
+
+    /**
+     * @param overwrite whether the previous statistics of the cohorts are replaced, or kept
+     * @param executor  threads that convert and write the bulks, or null to write them in the writing thread
+     * @param threads   number of threads of the executor
+     */
+    public VariantStatsWrapperMongoWriter(MongoOperations mongoOperations, String collection, String studyId,
+                                          String fileId, boolean overwrite, ExecutorService executor,
+                                          int threads) {
+        this(mongoOperations, collection, studyId, fileId, overwrite, executor, DEFAULT_BULK_SIZE,
+             threads * DEFAULT_MAX_PENDING_BULKS_PER_THREAD);
+    }
+
+    /**
+     * @param overwrite       whether the previous statistics of the cohorts are replaced, or kept
+     * @param executor        threads that convert and write the bulks, or null to write them in the writing thread
+     * @param bulkSize        variants per bulk update
+     * @param maxPendingBulks bulks submitted to the executor but not written yet, before the writer has to wait
+     */
+    public VariantStatsWrapperMongoWriter(MongoOperations mongoOperations, String collection, String studyId,
+                                          String fileId, boolean overwrite, ExecutorService executor, int bulkSize,
+                                          int maxPendingBulks) {
+        if (bulkSize <= 0 || maxPendingBulks <= 0) {
+            throw new IllegalArgumentException("The bulk size and the maximum number of pending bulks must be "
+                                                       + "positive, not " + bulkSize + " and " + maxPendingBulks);
+        }
+        this.mongoOperations = mongoOperations;
+        this.collection = collection;
+        this.studyId = studyId;
+        this.fileId = fileId;
+        this.executor = executor;
+        this.bulkSize = bulkSize;
+        this.maxPendingBulks = maxPendingBulks;
+        this.overwrite = overwrite;
+    }
+
+    @Override
+    public void write(List<? extends VariantStatsWrapper> variantsStats) throws Exception {
+        Deque<Future<Integer>> pendingBulks = new ArrayDeque<>(maxPendingBulks);
+        int updatedVariants = 0;
+        try {
+            for (int start = 0; start < variantsStats.size(); start += bulkSize) {
+                List<? extends VariantStatsWrapper> bulk = variantsStats.subList(
+                        start, Math.min(start + bulkSize, variantsStats.size()));
+                if (executor == null) {
+                    updatedVariants += writeBulk(bulk);
+                    continue;
+                }
+                if (pendingBulks.size() == maxPendingBulks) {
+                    updatedVariants += waitForBulk(pendingBulks.poll());
+                }
+                pendingBulks.add(executor.submit(() -> writeBulk(bulk)));
+            }
+            while (!pendingBulks.isEmpty()) {
+                updatedVariants += waitForBulk(pendingBulks.poll());
+            }
+        } finally {
+            for (Future<Integer> pendingBulk : pendingBulks) {
+                pendingBulk.cancel(false);
+            }
+        }
+
+        if (updatedVariants < variantsStats.size()) {
+            logger.warn("Provided statistics of {} variants, but only {} were updated. Maybe those variants are not "
+                                + "in the study{}?", variantsStats.size(), updatedVariants,
+                        overwrite ? "" : ", or they already had statistics of the same cohorts");
+        }
+    }
+
+    private int waitForBulk(Future<Integer> pendingBulk) throws Exception {
+        try {
+            return pendingBulk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private int writeBulk(List<? extends VariantStatsWrapper> variantsStats) {
+        BulkWriteOperation bulk = mongoOperations.getCollection(collection).initializeOrderedBulkOperation();
+        int operations = 0;
+
+        for (VariantStatsWrapper variantStats : variantsStats) {
+            Map<String, VariantStats> cohortStats = variantStats.getCohortStats();
+            if (cohortStats == null || cohortStats.isEmpty()) {
+                continue;
+            }
+            VariantStats anyStats = cohortStats.values().iterator().next();
+            BasicDBObject find = new BasicDBObject("_id", MongoDBHelper.buildStorageId(
+                    variantStats.getChromosome(), variantStats.getPosition(), anyStats.getRefAllele(),
+                    anyStats.getAltAllele()));
+            DBObject cohortsQuery = new BasicDBObject(VariantStatsToDBObjectConverter.STUDY_ID, studyId)
+                    .append(VariantStatsToDBObjectConverter.FILE_ID, fileId)
+                    .append(VariantStatsToDBObjectConverter.COHORT_ID,
+                            new BasicDBObject("$in", cohortStats.keySet()));
+
+            if (overwrite) {
+                bulk.find(find).updateOne(new BasicDBObject("$pull", new BasicDBObject(
+                        VariantToDBObjectConverter.STATS_FIELD, cohortsQuery)));
+            } else {
+                find.append(VariantToDBObjectConverter.STATS_FIELD, new BasicDBObject(
+                        "$not", new BasicDBObject("$elemMatch", cohortsQuery)));
+            }
+            bulk.find(find).updateOne(new BasicDBObject("$push", new BasicDBObject(
+                    VariantToDBObjectConverter.STATS_FIELD, new BasicDBObject("$each", convert(cohortStats)))));
+            operations++;
+        }
+
+        if (operations == 0) {
+            return 0;
+        }
+        BulkWriteResult result = bulk.execute();
+        // the pull and the push of a variant match the same document, so every updated variant is matched twice
+        return overwrite ? result.getMatchedCount() / 2 : result.getMatchedCount();
+    }
+
+    private List<DBObject> convert(Map<String, VariantStats> cohortStats) {
+        List<DBObject> cohortStatsList = new ArrayList<>(cohortStats.size());
+        for (Map.Entry<String, VariantStats> cohort : cohortStats.entrySet()) {
+            VariantStats stats = cohort.getValue();
+            BasicDBObject genotypes = new BasicDBObject();
+            for (Map.Entry<Genotype, Integer> genotypeCount : stats.getGenotypesCount().entrySet()) {
+                genotypes.append(genotypeCount.getKey().toString().replace(MISSING_ALLELE, STORED_MISSING_ALLELE),
+                                 genotypeCount.getValue());
+            }
+            cohortStatsList.add(new BasicDBObject(VariantStatsToDBObjectConverter.MAF_FIELD, stats.getMaf())
+                                        .append(VariantStatsToDBObjectConverter.MGF_FIELD, stats.getMgf())
+                                        .append(VariantStatsToDBObjectConverter.MAFALLELE_FIELD,
+                                                stats.getMafAllele())
+                                        .append(VariantStatsToDBObjectConverter.MGFGENOTYPE_FIELD,
+                                                stats.getMgfGenotype())
+                                        .append(VariantStatsToDBObjectConverter.MISSALLELE_FIELD,
+                                                stats.getMissingAlleles())
+                                        .append(VariantStatsToDBObjectConverter.MISSGENOTYPE_FIELD,
+                                                stats.getMissingGenotypes())
+                                        .append(VariantStatsToDBObjectConverter.NUMGT_FIELD, genotypes)
+                                        .append(VariantStatsToDBObjectConverter.COHORT_ID, cohort.getKey())
+                                        .append(VariantStatsToDBObjectConverter.STUDY_ID, studyId)
+                                        .append(VariantStatsToDBObjectConverter.FILE_ID, fileId));
+        }
+        return cohortStatsList;
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package uk.ac.ebi.eva.pipeline.io.writers;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
 
 import org.slf4j.Logger;
@@ -24,14 +25,19 @@ import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.data.MongoItemWriter;
 import org.springframework.data.mongodb.core.MongoOperations;
 
+import uk.ac.ebi.eva.commons.models.converters.data.AnnotationFieldNames;
 import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
 import uk.ac.ebi.eva.commons.models.converters.data.VariantAnnotationToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
 import uk.ac.ebi.eva.utils.MongoDBHelper;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Write a list of {@link VariantAnnotation} into MongoDB
@@ -54,23 +60,117 @@ import java.util.Map;
  *      { "id" : "ENST00000382410", "src" : "ensemblTranscript" },
  *      { "id" : "ENST00000608838", "src" : "ensemblTranscript" },
  *      { "id" : "ENSG00000178591", "src" : "ensemblGene"
+ *
+ * Every annotated variant is also marked with the VEP and VEP cache versions used ("annot.vepv" and "annot.cachev"),
+ * so the variants still to annotate can be found using an index on the marker instead of scanning the collection.
+ * <p>
+ * When re-annotating variants annotated with other versions, or when the job chooses the
+ * {@link AnnotationWriteStrategy#REPLACE} strategy, the whole "annot" subdocument is replaced instead, with its
+ * consequence types deduplicated in the writer. This expects all the annotations of a variant in the same write, like
+ * the ones merged by {@link uk.ac.ebi.eva.pipeline.io.readers.VariantAnnotationGroupingReader}, and avoids the
+ * comparisons of $addToSet between every new consequence type and the ones already in the document.
+ * <p>
+ * The annotations can also be written in their own collection, one document per variant and VEP and VEP cache
+ * versions, so the variant documents don't grow with them. The "_id" of an annotation starts with the storage id of its
+ * variant, so all the annotations of a variant can be found with a prefix of the "_id":
+ *
+ * { "_id" : "20_63963_G_A_78_78", "vepv" : "78", "cachev" : "78", "ct" : [ ... ], "xrefs" : [ ... ] }
+ *
+ * Only the markers and a summary of the annotation are kept in the variant document, with the SO accessions and the
+ * Ensembl gene ids of all its consequence types:
+ *
+ * "annot" : { "vepv" : "78", "cachev" : "78", "so" : [ 1631 ], "gene" : [ "ENSG00000178591" ] }
+ * <p>
+ * The markers can be left out of the variant documents, for annotations that should not prevent the variants from
+ * being annotated with the current VEP, like the ones imported from a VCF annotated by another tool. The version of
+ * the annotator is then kept in "annotv" instead, so these annotations can be told apart from the ones written
+ * before the markers existed:
+ *
+ * "annot" : { "annotv" : "4.3", "ct" : [ ... ], "xrefs" : [ ... ] }
  */
 public class VepAnnotationMongoWriter extends MongoItemWriter<VariantAnnotation> {
     private static final Logger logger = LoggerFactory.getLogger(VepAnnotationMongoWriter.class);
 
+    private static final String ANNOTATION_VEP_VERSION_SUBFIELD = "vepv";
+
+    private static final String ANNOTATION_VEP_CACHE_VERSION_SUBFIELD = "cachev";
+
+    public static final String ANNOTATION_VEP_VERSION_FIELD = VariantToDBObjectConverter.ANNOTATION_FIELD + "."
+            + ANNOTATION_VEP_VERSION_SUBFIELD;
+
+    public static final String ANNOTATION_VEP_CACHE_VERSION_FIELD = VariantToDBObjectConverter.ANNOTATION_FIELD + "."
+            + ANNOTATION_VEP_CACHE_VERSION_SUBFIELD;
+
+    private static final String ANNOTATION_ANNOTATOR_VERSION_SUBFIELD = "annotv";
+
+    public static final String ANNOTATION_ANNOTATOR_VERSION_FIELD = VariantToDBObjectConverter.ANNOTATION_FIELD + "."
+            + ANNOTATION_ANNOTATOR_VERSION_SUBFIELD;
+
+    public static final String UNKNOWN_VERSION = "unknown";
+
+    public static final String ANNOTATION_SO_SUMMARY_FIELD = VariantToDBObjectConverter.ANNOTATION_FIELD + "."
+            + VariantToDBObjectConverter.SOTERM_FIELD;
+
+    public static final String ANNOTATION_GENE_SUMMARY_FIELD = VariantToDBObjectConverter.ANNOTATION_FIELD + "."
+            + VariantToDBObjectConverter.GENE_FIELD;
+
     private MongoOperations mongoOperations;
     private String collection;
+    private String annotationsCollection;
     private VariantAnnotationToDBObjectConverter converter;
+    private String vepVersion;
+    private String vepCacheVersion;
+    private boolean replaceAnnotation;
+    private boolean annotationMarked = true;
 
     public VepAnnotationMongoWriter(MongoOperations mongoOperations) {
         this.mongoOperations = mongoOperations;
         this.converter = new VariantAnnotationToDBObjectConverter();
+        this.vepVersion = UNKNOWN_VERSION;
+        this.vepCacheVersion = UNKNOWN_VERSION;
+    }
+
+    public VepAnnotationMongoWriter(MongoOperations mongoOperations, String collection, String vepVersion,
+                                    String vepCacheVersion) {
+        this(mongoOperations, collection, vepVersion, vepCacheVersion, false);
     }
 
-    public VepAnnotationMongoWriter(MongoOperations mongoOperations, String collection){
+    /**
+     * @param replaceAnnotation whether the previous annotation of the variants is replaced, instead of extended
+     */
+    public VepAnnotationMongoWriter(MongoOperations mongoOperations, String collection, String vepVersion,
+                                    String vepCacheVersion, boolean replaceAnnotation) {
+        this(mongoOperations, collection, null, vepVersion, vepCacheVersion, replaceAnnotation);
+    }
+
+    /**
+     * @param annotationsCollection Nullable. If not null, the annotations are written in this collection, and only
+     *  their summary in the variants collection.
+     * @param replaceAnnotation whether the previous annotation of the variants is replaced, instead of extended
+     */
+    public VepAnnotationMongoWriter(MongoOperations mongoOperations, String collection, String annotationsCollection,
+                                    String vepVersion, String vepCacheVersion, boolean replaceAnnotation) {
         this(mongoOperations);
+        this.annotationsCollection = annotationsCollection;
+        this.replaceAnnotation = replaceAnnotation;
         setCollection(collection);
         setTemplate(mongoOperations);
+        if (vepVersion != null) {
+            this.vepVersion = vepVersion;
+        }
+        if (vepCacheVersion != null) {
+            this.vepCacheVersion = vepCacheVersion;
+        }
+
+        createIndexes();
+    }
+
+    /**
+     * @param annotationMarked whether the variant documents are marked with the VEP and VEP cache versions of the
+     *  annotations written, so they are not annotated again with the same versions. True by default.
+     */
+    public void setAnnotationMarked(boolean annotationMarked) {
+        this.annotationMarked = annotationMarked;
     }
 
     @Override
@@ -107,10 +207,8 @@ public class VepAnnotationMongoWriter extends MongoItemWriter<VariantAnnotation>
             List<VariantAnnotation> annotations = annotationsIn.getValue();
 
             VariantAnnotation variantAnnotation = annotations.get(0);
-
-            if(annotations.size()>1){
-                variantAnnotation = concatenateOtherAnnotations(
-                        variantAnnotation, annotations.subList(1, annotations.size()));
+            for (VariantAnnotation annotationToAppend : annotations.subList(1, annotations.size())) {
+                variantAnnotation.append(annotationToAppend);
             }
 
             writeVariantAnnotationInMongoDb(storageId, variantAnnotation);
@@ -118,55 +216,182 @@ public class VepAnnotationMongoWriter extends MongoItemWriter<VariantAnnotation>
 
     }
 
-    /**
-     * Append multiple annotation into a single {@link VariantAnnotation}
-     * Updated fields are ConsequenceTypes and Hgvs
-     *
-     * @param variantAnnotation annotation where other annotations will be appended
-     * @param otherAnnotationsToConcatenate annotations to be appended
-     * @return a single {@link VariantAnnotation} ready to be persisted
-     */
-    private VariantAnnotation concatenateOtherAnnotations(VariantAnnotation variantAnnotation,
-                                                          List<VariantAnnotation> otherAnnotationsToConcatenate){
+    private void writeVariantAnnotationInMongoDb(String storageId, VariantAnnotation variantAnnotation){
+        logger.trace("Writing annotations into mongo id: {}", storageId);
 
-        for (VariantAnnotation annotationToAppend : otherAnnotationsToConcatenate) {
+        DBObject storageVariantAnnotation = converter.convert(variantAnnotation);
 
-            //update ConsequenceTypes
-            if(annotationToAppend.getConsequenceTypes() != null){
-                variantAnnotation.getConsequenceTypes().addAll(annotationToAppend.getConsequenceTypes());
-            }
+        BasicDBObject find = new BasicDBObject("_id", storageId);
+
+        if (annotationsCollection != null) {
+            writeIntoAnnotationsCollection(storageId, storageVariantAnnotation);
+            return;
+        }
 
-            //update Hgvs
-            if(annotationToAppend.getHgvs() != null){
-                if(variantAnnotation.getHgvs() == null){
-                    variantAnnotation.setHgvs(new ArrayList<>());
-                }
-                variantAnnotation.getHgvs().addAll(annotationToAppend.getHgvs());
+        if (replaceAnnotation) {
+            DBObject annotation = buildAnnotation(storageVariantAnnotation, vepVersion, vepCacheVersion);
+            if (!annotationMarked) {
+                unmark(annotation);
             }
+            BasicDBObject update = new BasicDBObject("$set", new BasicDBObject(
+                    VariantToDBObjectConverter.ANNOTATION_FIELD, annotation));
+            mongoOperations.getCollection(collection).update(find, update);
+            return;
         }
 
-        return variantAnnotation;
+        BasicDBObject addToSet = new BasicDBObject();
+        if(storageVariantAnnotation.get("ct") != null){
+            addToSet.append("annot.ct", new BasicDBObject("$each", storageVariantAnnotation.get("ct")));
+        }
+        if(storageVariantAnnotation.get("xrefs") != null){
+            addToSet.append("annot.xrefs", new BasicDBObject("$each", storageVariantAnnotation.get("xrefs")));
+        }
+
+        BasicDBObject update = new BasicDBObject("$set", buildMarkers());
+        if (!addToSet.isEmpty()) {
+            update.append("$addToSet", addToSet);
+        }
+        mongoOperations.getCollection(collection).update(find, update);
     }
 
-    private void writeVariantAnnotationInMongoDb(String storageId, VariantAnnotation variantAnnotation){
-        logger.trace("Writing annotations into mongo id: {}", storageId);
+    private void writeIntoAnnotationsCollection(String storageId, DBObject storageVariantAnnotation) {
+        BasicDBObject findAnnotation = new BasicDBObject("_id", buildAnnotationId(storageId, vepVersion,
+                                                                                  vepCacheVersion));
+        BasicDBObject findVariant = new BasicDBObject("_id", storageId);
+        List<Object> soAccessions = new ArrayList<>();
+        List<Object> geneIds = new ArrayList<>();
+        collectSummary(storageVariantAnnotation, soAccessions, geneIds);
+
+        if (replaceAnnotation) {
+            DBObject annotation = buildAnnotation(storageVariantAnnotation, vepVersion, vepCacheVersion);
+            mongoOperations.getCollection(annotationsCollection).update(findAnnotation, annotation, true, false);
+
+            BasicDBObject summary = new BasicDBObject(ANNOTATION_VEP_VERSION_SUBFIELD, vepVersion)
+                    .append(ANNOTATION_VEP_CACHE_VERSION_SUBFIELD, vepCacheVersion)
+                    .append(VariantToDBObjectConverter.SOTERM_FIELD, soAccessions)
+                    .append(VariantToDBObjectConverter.GENE_FIELD, geneIds);
+            if (!annotationMarked) {
+                unmark(summary);
+            }
+            mongoOperations.getCollection(collection).update(
+                    findVariant, new BasicDBObject("$set", new BasicDBObject(
+                            VariantToDBObjectConverter.ANNOTATION_FIELD, summary)));
+            return;
+        }
 
-        DBObject storageVariantAnnotation = converter.convert(variantAnnotation);
+        BasicDBObject addToSet = new BasicDBObject();
+        if (storageVariantAnnotation.get("ct") != null) {
+            addToSet.append("ct", new BasicDBObject("$each", storageVariantAnnotation.get("ct")));
+        }
+        if (storageVariantAnnotation.get("xrefs") != null) {
+            addToSet.append("xrefs", new BasicDBObject("$each", storageVariantAnnotation.get("xrefs")));
+        }
+        BasicDBObject annotationUpdate = new BasicDBObject("$set", new BasicDBObject(
+                ANNOTATION_VEP_VERSION_SUBFIELD, vepVersion).append(ANNOTATION_VEP_CACHE_VERSION_SUBFIELD,
+                                                                    vepCacheVersion));
+        if (!addToSet.isEmpty()) {
+            annotationUpdate.append("$addToSet", addToSet);
+        }
+        mongoOperations.getCollection(annotationsCollection).update(findAnnotation, annotationUpdate, true, false);
 
-        BasicDBObject find = new BasicDBObject("_id", storageId);
+        BasicDBObject variantUpdate = new BasicDBObject("$addToSet", new BasicDBObject(
+                ANNOTATION_SO_SUMMARY_FIELD, new BasicDBObject("$each", soAccessions))
+                .append(ANNOTATION_GENE_SUMMARY_FIELD, new BasicDBObject("$each", geneIds)))
+                .append("$set", buildMarkers());
+        mongoOperations.getCollection(collection).update(findVariant, variantUpdate);
+    }
 
-        if(storageVariantAnnotation.get("ct") != null){
-            BasicDBObject updateCt = new BasicDBObject("$addToSet", new BasicDBObject("annot.ct",
-                    new BasicDBObject("$each", storageVariantAnnotation.get("ct")) ));
-            mongoOperations.getCollection(collection).update(find, updateCt);
+    /**
+     * Fields of the variant document set by every update: the markers of the VEP and VEP cache versions, or the
+     * version of the annotator when the annotation is not marked.
+     */
+    private BasicDBObject buildMarkers() {
+        if (annotationMarked) {
+            return new BasicDBObject(ANNOTATION_VEP_VERSION_FIELD, vepVersion)
+                    .append(ANNOTATION_VEP_CACHE_VERSION_FIELD, vepCacheVersion);
         }
+        return new BasicDBObject(ANNOTATION_ANNOTATOR_VERSION_FIELD, vepVersion);
+    }
 
-        if(storageVariantAnnotation.get("xrefs") != null){
-            BasicDBObject updateXrefs = new BasicDBObject("$addToSet", new BasicDBObject("annot.xrefs",
-                    new BasicDBObject("$each", storageVariantAnnotation.get("xrefs"))));
-            mongoOperations.getCollection(collection).update(find, updateXrefs);
+    private void unmark(DBObject annotation) {
+        annotation.removeField(ANNOTATION_VEP_VERSION_SUBFIELD);
+        annotation.removeField(ANNOTATION_VEP_CACHE_VERSION_SUBFIELD);
+        annotation.put(ANNOTATION_ANNOTATOR_VERSION_SUBFIELD, vepVersion);
+    }
+
+    /**
+     * Collects the distinct SO accessions and Ensembl gene ids of the consequence types of a converted annotation.
+     */
+    private static void collectSummary(DBObject storageVariantAnnotation, List<Object> soAccessions,
+                                       List<Object> geneIds) {
+        Object consequenceTypes = storageVariantAnnotation.get(AnnotationFieldNames.CONSEQUENCE_TYPE_FIELD);
+        if (consequenceTypes == null) {
+            return;
+        }
+        Set<Object> distinctSoAccessions = new LinkedHashSet<>();
+        Set<Object> distinctGeneIds = new LinkedHashSet<>();
+        for (Object consequenceType : (List) consequenceTypes) {
+            DBObject consequenceTypeObject = (DBObject) consequenceType;
+            Object so = consequenceTypeObject.get(AnnotationFieldNames.SO_ACCESSION_FIELD);
+            if (so != null) {
+                distinctSoAccessions.addAll((List) so);
+            }
+            Object geneId = consequenceTypeObject.get(AnnotationFieldNames.ENSEMBL_GENE_ID_FIELD);
+            if (geneId != null) {
+                distinctGeneIds.add(geneId);
+            }
+        }
+        soAccessions.addAll(distinctSoAccessions);
+        geneIds.addAll(distinctGeneIds);
+    }
+
+    /**
+     * The id of the document of an annotation in the annotations collection: the storage id of the variant followed by
+     * the VEP and VEP cache versions.
+     */
+    public static String buildAnnotationId(String storageId, String vepVersion, String vepCacheVersion) {
+        return storageId + "_" + vepVersion + "_" + vepCacheVersion;
+    }
+
+    /**
+     * Builds the whole "annot" subdocument of a variant, with the consequence types (without duplicates) and xrefs of the
+     * converted annotation, and the markers of the versions it was annotated with.
+     *
+     * @param vepVersion Nullable, written as {@link #UNKNOWN_VERSION}
+     * @param vepCacheVersion Nullable, written as {@link #UNKNOWN_VERSION}
+     */
+    public static DBObject buildAnnotation(DBObject storageVariantAnnotation, String vepVersion,
+                                           String vepCacheVersion) {
+        BasicDBObject annotation = new BasicDBObject(
+                ANNOTATION_VEP_VERSION_SUBFIELD, vepVersion == null ? UNKNOWN_VERSION : vepVersion)
+                .append(ANNOTATION_VEP_CACHE_VERSION_SUBFIELD,
+                        vepCacheVersion == null ? UNKNOWN_VERSION : vepCacheVersion);
+        Object consequenceTypes = storageVariantAnnotation.get("ct");
+        if (consequenceTypes != null) {
+            // consequence types repeated in the input are written once, like $addToSet would do
+            annotation.append("ct", new ArrayList<>(new LinkedHashSet<>((Collection<?>) consequenceTypes)));
         }
+        if (storageVariantAnnotation.get("xrefs") != null) {
+            annotation.append("xrefs", storageVariantAnnotation.get("xrefs"));
+        }
+        return annotation;
+    }
 
+    /**
+     * The index used to find the variants not annotated yet, by their markers, is created by
+     * {@link uk.ac.ebi.eva.pipeline.io.readers.NonAnnotatedVariantsMongoReader}.
+     */
+    private void createIndexes() {
+        if (annotationsCollection != null) {
+            DBCollection annotations = mongoOperations.getCollection(annotationsCollection);
+            annotations.createIndex(
+                    new BasicDBObject(AnnotationFieldNames.XREFS_FIELD + "." + AnnotationFieldNames.XREF_ID_FIELD, 1),
+                    new BasicDBObject(MongoDBHelper.BACKGROUND_INDEX, true));
+            annotations.createIndex(
+                    new BasicDBObject(AnnotationFieldNames.CONSEQUENCE_TYPE_FIELD + "."
+                                              + AnnotationFieldNames.SO_ACCESSION_FIELD, 1),
+                    new BasicDBObject(MongoDBHelper.BACKGROUND_INDEX, true));
+        }
     }
 
     private String buildStorageIdFromVariantAnnotation(VariantAnnotation variantAnnotation){
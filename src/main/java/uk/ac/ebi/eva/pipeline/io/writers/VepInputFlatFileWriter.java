@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,13 +15,20 @@
  */
 package uk.ac.ebi.eva.pipeline.io.writers;
 
-import org.springframework.batch.item.file.FlatFileItemWriter;
-import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
-import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
-import org.springframework.core.io.FileSystemResource;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+
+import uk.ac.ebi.eva.pipeline.io.BgzfOutputStream;
 import uk.ac.ebi.eva.pipeline.model.VariantWrapper;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Flat file writer of the input file used by VEP
@@ -33,34 +40,154 @@ import java.io.File;
  * ...
  * <p>
  * further format description: {@see http://www.ensembl.org/info/docs/tools/vep/vep_formats.html#input}
+ * <p>
+ * The file is compressed in BGZF with a {@link BgzfOutputStream}, which any gzip reader decompresses as a single
+ * stream. The blocks can be deflated in the threads of a shared executor while the next variants are formatted. Every
+ * chunk ends at a block boundary, so a restarted step can truncate the file after the last committed chunk and continue
+ * appending. If no variant is written the file stays empty.
+ * <p>
+ * The lines are formatted in a reusable buffer, so no intermediate strings are created. Chromosomes and alleles are
+ * expected to be ASCII, as in VCF.
  */
+public class VepInputFlatFileWriter implements ItemStreamWriter<VariantWrapper> {
 
-public class VepInputFlatFileWriter extends FlatFileItemWriter<VariantWrapper> {
+    private static final int INITIAL_LINE_BUFFER_SIZE = 256;
 
-    /**
-     * @return must return a {@link FlatFileItemWriter} and not a {@link org.springframework.batch.item.ItemWriter}
-     * {@see https://jira.spring.io/browse/BATCH-2097
-     * <p>
-     * TODO: The variant list should be compressed
-     */
-    public VepInputFlatFileWriter(File file) {
-        super();
+    private final File file;
+
+    private final ExecutorService compressionExecutor;
+
+    private final int compressionThreads;
+
+    private FileOutputStream fileOutputStream;
 
-        BeanWrapperFieldExtractor<VariantWrapper> fieldExtractor = new BeanWrapperFieldExtractor<>();
-        fieldExtractor.setNames(new String[]{"chr", "start", "end", "refAlt", "strand"});
+    private BgzfOutputStream compressedOutputStream;
 
-        DelimitedLineAggregator<VariantWrapper> delLineAgg = new DelimitedLineAggregator<>();
-        delLineAgg.setDelimiter("\t");
-        delLineAgg.setFieldExtractor(fieldExtractor);
+    private byte[] lineBuffer;
 
-        setResource(new FileSystemResource(file));
-        setAppendAllowed(false);
-        setShouldDeleteIfExists(true);
-        setLineAggregator(delLineAgg);
+    private int lineLength;
+
+    public VepInputFlatFileWriter(File file) {
+        this(file, null, 1);
     }
 
     public VepInputFlatFileWriter(String filePath) {
         this(new File(filePath));
     }
 
+    /**
+     * @param compressionExecutor threads that compress the file, or null to compress it in the writing thread
+     * @param compressionThreads number of threads of the compressionExecutor
+     */
+    public VepInputFlatFileWriter(File file, ExecutorService compressionExecutor, int compressionThreads) {
+        this.file = file;
+        this.compressionExecutor = compressionExecutor;
+        this.compressionThreads = compressionThreads;
+        this.lineBuffer = new byte[INITIAL_LINE_BUFFER_SIZE];
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        try {
+            if (executionContext.containsKey(ExecutionContextParametersNames.VEP_INPUT_POSITION)) {
+                long position = executionContext.getLong(ExecutionContextParametersNames.VEP_INPUT_POSITION);
+                fileOutputStream = new FileOutputStream(file, true);
+                fileOutputStream.getChannel().truncate(position);
+            } else {
+                fileOutputStream = new FileOutputStream(file, false);
+            }
+            compressedOutputStream = new BgzfOutputStream(fileOutputStream, compressionExecutor, compressionThreads);
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not open the VEP input " + file, e);
+        }
+    }
+
+    @Override
+    public void write(List<? extends VariantWrapper> variants) throws Exception {
+        for (VariantWrapper variant : variants) {
+            lineLength = 0;
+            append(variant.getChr());
+            append('\t');
+            append(variant.getStart());
+            append('\t');
+            append(variant.getEnd());
+            append('\t');
+            append(variant.getReference());
+            append('/');
+            append(variant.getAlternate());
+            append('\t');
+            append(variant.getStrand());
+            append('\n');
+            compressedOutputStream.write(lineBuffer, 0, lineLength);
+        }
+    }
+
+    /**
+     * Writes the blocks of the current chunk and saves the position of the end of the file.
+     */
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        try {
+            compressedOutputStream.flush();
+            executionContext.putLong(ExecutionContextParametersNames.VEP_INPUT_POSITION,
+                                     fileOutputStream.getChannel().position());
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not write the VEP input " + file, e);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (fileOutputStream == null) {
+            return;
+        }
+        try {
+            compressedOutputStream.flush();
+            if (fileOutputStream.getChannel().position() > 0) {
+                compressedOutputStream.finish();
+            }
+            fileOutputStream.close();
+            fileOutputStream = null;
+            compressedOutputStream = null;
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not close the VEP input " + file, e);
+        }
+    }
+
+    private void append(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            lineBuffer[lineLength++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void append(char value) {
+        ensureCapacity(1);
+        lineBuffer[lineLength++] = (byte) value;
+    }
+
+    private void append(int value) {
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (int remaining = value / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = lineLength + digits - 1; i >= lineLength; i--) {
+            lineBuffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        lineLength += digits;
+    }
+
+    private void ensureCapacity(int extraLength) {
+        if (lineLength + extraLength > lineBuffer.length) {
+            lineBuffer = Arrays.copyOf(lineBuffer, Math.max(lineBuffer.length * 2, lineLength + extraLength));
+        }
+    }
+
 }
@@ -29,9 +29,11 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Scope;
+import uk.ac.ebi.eva.pipeline.jobs.steps.BackfillAnnotationMarkersStep;
 import uk.ac.ebi.eva.pipeline.jobs.steps.CreateDatabaseIndexesStep;
 import uk.ac.ebi.eva.pipeline.jobs.steps.GeneLoaderStep;
 
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.BACKFILL_ANNOTATION_MARKERS_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.CREATE_DATABASE_INDEXES_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.GENES_LOAD_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.INIT_DATABASE_JOB;
@@ -40,13 +42,14 @@ import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.INIT_DATABASE_JOB;
  * Job to initialize the databases that will be used in later jobs.
  * <p>
  * 1. create the needed indexes in the DBs
- * 2. load genomic features for the species
+ * 2. mark the variants annotated before the annotation markers existed
+ * 3. load genomic features for the species
  *
  * TODO add a new DatabaseInitializationJobParametersValidator
  */
 @Configuration
 @EnableBatchProcessing
-@Import({GeneLoaderStep.class, CreateDatabaseIndexesStep.class})
+@Import({GeneLoaderStep.class, CreateDatabaseIndexesStep.class, BackfillAnnotationMarkersStep.class})
 public class DatabaseInitializationJob {
 
     private static final Logger logger = LoggerFactory.getLogger(DatabaseInitializationJob.class);
@@ -59,6 +62,10 @@ public class DatabaseInitializationJob {
     @Qualifier(CREATE_DATABASE_INDEXES_STEP)
     private Step createDatabaseIndexesStep;
 
+    @Autowired
+    @Qualifier(BACKFILL_ANNOTATION_MARKERS_STEP)
+    private Step backfillAnnotationMarkersStep;
+
     @Bean(INIT_DATABASE_JOB)
     @Scope("prototype")
     public Job initDatabaseJob(JobBuilderFactory jobBuilderFactory) {
@@ -70,6 +77,7 @@ public class DatabaseInitializationJob {
 
         return jobBuilder
                 .start(createDatabaseIndexesStep)
+                .next(backfillAnnotationMarkersStep)
                 .next(genesLoadStep)
                 .build();
     }
@@ -18,9 +18,11 @@ package uk.ac.ebi.eva.pipeline.jobs;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.builder.JobFlowBuilder;
 import org.springframework.batch.core.job.flow.Flow;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,18 +32,23 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Scope;
 import uk.ac.ebi.eva.pipeline.jobs.flows.PopulationStatisticsFlow;
+import uk.ac.ebi.eva.pipeline.jobs.steps.LoadPopulationStatisticsStep;
 
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.CALCULATE_STATISTICS_FLOW;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.CALCULATE_STATISTICS_JOB;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_POPULATION_STATISTICS_STEP;
 
 /**
  * Configuration to run a full Statistics job: variantStatsFlow: statsCreate --> statsLoad
+ * <p>
+ * With the experimental profile, the statistics are then copied into the population statistics collection:
+ * variantStatsFlow --> populationStatisticsLoad
  *
  * TODO add a new PopulationStatisticsJobParametersValidator
  */
 @Configuration
 @EnableBatchProcessing
-@Import({PopulationStatisticsFlow.class})
+@Import({PopulationStatisticsFlow.class, LoadPopulationStatisticsStep.class})
 public class PopulationStatisticsJob {
 
     private static final Logger logger = LoggerFactory.getLogger(PopulationStatisticsJob.class);
@@ -50,6 +57,13 @@ public class PopulationStatisticsJob {
     @Qualifier(CALCULATE_STATISTICS_FLOW)
     private Flow optionalStatisticsFlow;
 
+    /**
+     * Only available with the experimental profile
+     */
+    @Autowired(required = false)
+    @Qualifier(LOAD_POPULATION_STATISTICS_STEP)
+    private Step loadPopulationStatisticsStep;
+
     @Bean(CALCULATE_STATISTICS_JOB)
     @Scope("prototype")
     public Job calculateStatisticsJob(JobBuilderFactory jobBuilderFactory) {
@@ -59,9 +73,11 @@ public class PopulationStatisticsJob {
                 .get(CALCULATE_STATISTICS_JOB)
                 .incrementer(new RunIdIncrementer());
 
-        return jobBuilder
-                .start(optionalStatisticsFlow)
-                .build().build();
+        JobFlowBuilder jobFlowBuilder = jobBuilder.start(optionalStatisticsFlow);
+        if (loadPopulationStatisticsStep != null) {
+            jobFlowBuilder.next(loadPopulationStatisticsStep);
+        }
+        return jobFlowBuilder.build().build();
     }
 
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.deciders;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
+
+/**
+ * Decider used in the pipeline to calculate the statistics in the pipeline itself instead of with OpenCGA, if the
+ * given job parameter is enabled
+ */
+public class NativeStatisticsDecider implements JobExecutionDecider {
+    private static final Logger logger = LoggerFactory.getLogger(NativeStatisticsDecider.class);
+
+    public static final String NATIVE = "NATIVE";
+
+    public static final String OPENCGA = "OPENCGA";
+
+    private final String jobParameterName;
+
+    public NativeStatisticsDecider(String jobParameterName) {
+        this.jobParameterName = jobParameterName;
+    }
+
+    @Override
+    public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
+        if (Boolean.parseBoolean(jobExecution.getJobParameters().getString(jobParameterName))) {
+            logger.info("Statistics will be calculated by the pipeline due to {} enabled", jobParameterName);
+            return new FlowExecutionStatus(NATIVE);
+        }
+        return new FlowExecutionStatus(OPENCGA);
+    }
+}
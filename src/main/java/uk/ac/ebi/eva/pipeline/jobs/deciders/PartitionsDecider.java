@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.deciders;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
+
+/**
+ * Decider used in the pipeline to run the partitioned version of a step if more than one partition was requested
+ */
+public class PartitionsDecider implements JobExecutionDecider {
+    private static final Logger logger = LoggerFactory.getLogger(PartitionsDecider.class);
+
+    public static final String PARTITIONED = "PARTITIONED";
+
+    public static final String SINGLE = "SINGLE";
+
+    private final String jobParameterName;
+
+    public PartitionsDecider(String jobParameterName) {
+        this.jobParameterName = jobParameterName;
+    }
+
+    @Override
+    public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
+        String partitions = jobExecution.getJobParameters().getString(jobParameterName);
+
+        if (partitions != null && Integer.parseInt(partitions) > 1) {
+            logger.info("Step will run in {} partitions due to {}", partitions, jobParameterName);
+            return new FlowExecutionStatus(PARTITIONED);
+        }
+        return new FlowExecutionStatus(SINGLE);
+    }
+}
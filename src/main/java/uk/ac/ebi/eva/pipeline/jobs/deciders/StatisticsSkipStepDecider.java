@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.deciders;
+
+import org.opencb.biodata.models.variant.VariantSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
+
+import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
+
+/**
+ * Decider used in the pipeline to skip the statistics flow, if "statistics.skip" is enabled, or if the statistics of a
+ * genotyped file have already been calculated while loading its variants ("statistics.inline").
+ * <p>
+ * The inline statistics are not merged into the statistics of the study, so the flow is still run if they have to be
+ * ("statistics.native" and "statistics.incremental").
+ */
+public class StatisticsSkipStepDecider implements JobExecutionDecider {
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsSkipStepDecider.class);
+
+    @Override
+    public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
+        JobParameters parameters = jobExecution.getJobParameters();
+        if (isEnabled(parameters, JobParametersNames.STATISTICS_SKIP)) {
+            logger.info("Step skipped due to {} enabled", JobParametersNames.STATISTICS_SKIP);
+            return new FlowExecutionStatus(SkipStepDecider.SKIP_STEP);
+        }
+        if (isStatisticsFlowSkipped(parameters)) {
+            logger.info("Step skipped due to {} enabled", JobParametersNames.STATISTICS_INLINE);
+            return new FlowExecutionStatus(SkipStepDecider.SKIP_STEP);
+        }
+        return new FlowExecutionStatus(SkipStepDecider.DO_STEP);
+    }
+
+    /**
+     * @return true if the statistics flow doesn't need to run with the given parameters
+     */
+    public static boolean isStatisticsFlowSkipped(JobParameters parameters) {
+        if (isEnabled(parameters, JobParametersNames.STATISTICS_SKIP)) {
+            return true;
+        }
+        String aggregation = parameters.getString(JobParametersNames.INPUT_VCF_AGGREGATION,
+                                                  VariantSource.Aggregation.NONE.name());
+        boolean inline = isEnabled(parameters, JobParametersNames.STATISTICS_INLINE)
+                && VariantSource.Aggregation.NONE.name().equals(aggregation);
+        boolean merged = isEnabled(parameters, JobParametersNames.STATISTICS_NATIVE)
+                && isEnabled(parameters, JobParametersNames.STATISTICS_INCREMENTAL);
+        return inline && !merged;
+    }
+
+    private static boolean isEnabled(JobParameters parameters, String parameterName) {
+        return Boolean.parseBoolean(parameters.getString(parameterName));
+    }
+
+}
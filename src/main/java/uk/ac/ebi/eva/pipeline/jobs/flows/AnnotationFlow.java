@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 package uk.ac.ebi.eva.pipeline.jobs.flows;
 
 import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.job.builder.FlowBuilder;
@@ -27,14 +28,18 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
 import uk.ac.ebi.eva.pipeline.jobs.deciders.EmptyVepInputDecider;
+import uk.ac.ebi.eva.pipeline.jobs.deciders.PartitionsDecider;
 import uk.ac.ebi.eva.pipeline.jobs.steps.AnnotationLoaderStep;
 import uk.ac.ebi.eva.pipeline.jobs.steps.AnnotationMetadataStep;
 import uk.ac.ebi.eva.pipeline.jobs.steps.GenerateVepAnnotationStep;
 import uk.ac.ebi.eva.pipeline.jobs.steps.VepInputGeneratorStep;
+import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
 
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_ANNOTATION_METADATA_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.GENERATE_VEP_ANNOTATION_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.GENERATE_VEP_INPUT_PARTITIONED_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.GENERATE_VEP_INPUT_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_VEP_ANNOTATION_PARTITIONED_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_VEP_ANNOTATION_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VEP_ANNOTATION_FLOW;
 
@@ -43,6 +48,9 @@ import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VEP_ANNOTATION_FLOW
  * <p>
  * This flow generates a vep input file, then if this file contains results then it starts the annotation process.
  * In the case that the file is empty this flow process ends.
+ * <p>
+ * The VEP input is generated, and the VEP output is loaded, by the partitioned version of their steps if they have to
+ * be split in more than one partition.
  */
 @Configuration
 @EnableBatchProcessing
@@ -54,10 +62,18 @@ public class AnnotationFlow {
     @Qualifier(GENERATE_VEP_INPUT_STEP)
     public Step generateVepInputStep;
 
+    @Autowired
+    @Qualifier(GENERATE_VEP_INPUT_PARTITIONED_STEP)
+    private Step generateVepInputPartitionedStep;
+
     @Autowired
     @Qualifier(LOAD_VEP_ANNOTATION_STEP)
     private Step annotationLoadStep;
 
+    @Autowired
+    @Qualifier(LOAD_VEP_ANNOTATION_PARTITIONED_STEP)
+    private Step annotationLoadPartitionedStep;
+
     @Autowired
     @Qualifier(GENERATE_VEP_ANNOTATION_STEP)
     private Step generateVepAnnotationStep;
@@ -69,15 +85,27 @@ public class AnnotationFlow {
     @Bean(VEP_ANNOTATION_FLOW)
     public Flow vepAnnotationFlow() {
         EmptyVepInputDecider emptyVepInputDecider = new EmptyVepInputDecider();
+        PartitionsDecider vepInputPartitionsDecider = new PartitionsDecider(
+                JobParametersNames.CONFIG_DB_READ_PARTITIONS);
+        PartitionsDecider annotationLoadPartitionsDecider = new PartitionsDecider(
+                JobParametersNames.CONFIG_ANNOTATION_LOAD_PARTITIONS);
 
         return new FlowBuilder<Flow>(VEP_ANNOTATION_FLOW)
-                .start(generateVepInputStep)
+                .start(vepInputPartitionsDecider).on(PartitionsDecider.SINGLE)
+                .to(generateVepInputStep)
                 .next(emptyVepInputDecider).on(EmptyVepInputDecider.CONTINUE_FLOW)
                 .to(generateVepAnnotationStep)
-                .next(annotationLoadStep)
+                .next(annotationLoadPartitionsDecider).on(PartitionsDecider.SINGLE)
+                .to(annotationLoadStep)
+                .next(annotationMetadataStep)
+                .from(annotationLoadPartitionsDecider).on(PartitionsDecider.PARTITIONED)
+                .to(annotationLoadPartitionedStep)
                 .next(annotationMetadataStep)
                 .from(emptyVepInputDecider).on(EmptyVepInputDecider.STOP_FLOW)
                 .end(BatchStatus.COMPLETED.toString())
+                .from(vepInputPartitionsDecider).on(PartitionsDecider.PARTITIONED)
+                .to(generateVepInputPartitionedStep)
+                .on(ExitStatus.COMPLETED.getExitCode()).to(emptyVepInputDecider)
                 .build();
     }
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -36,6 +36,10 @@ import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VEP_ANNOTATION_OPTI
  * <p>
  * The flow uses the skipStepDecider to execute or not the pipeline depending 'annotation.skip' flag. In the case
  * that the annotation flag is enabled, then the annotation flow proceeds as described in {@link AnnotationFlow}
+ * <p>
+ * Variants loaded with the annotation of the VCF ('input.vcf.import-annotation') are marked with the versions of the
+ * annotator, like the ones annotated by this flow, so the ones annotated with 'app.vep.version' are not sent to VEP.
+ * If the whole VCF was annotated with it, the VEP input is empty and the rest of the flow is skipped.
  */
 @Configuration
 @EnableBatchProcessing
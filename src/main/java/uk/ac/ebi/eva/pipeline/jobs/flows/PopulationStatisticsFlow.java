@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,9 +24,16 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+
+import uk.ac.ebi.eva.pipeline.jobs.deciders.NativeStatisticsDecider;
+import uk.ac.ebi.eva.pipeline.jobs.deciders.PartitionsDecider;
+import uk.ac.ebi.eva.pipeline.jobs.steps.CalculateAndLoadStatisticsStep;
 import uk.ac.ebi.eva.pipeline.jobs.steps.CalculateStatisticsStep;
 import uk.ac.ebi.eva.pipeline.jobs.steps.LoadStatisticsStep;
+import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
 
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.CALCULATE_AND_LOAD_STATISTICS_PARTITIONED_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.CALCULATE_AND_LOAD_STATISTICS_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.CALCULATE_STATISTICS_FLOW;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.CALCULATE_STATISTICS_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_STATISTICS_STEP;
@@ -34,10 +41,13 @@ import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_STATISTICS_STE
 /**
  * Configurations that defines the calcule statistics process. First calculate the statistics then load them to
  * the knowledge base.
+ * <p>
+ * If the statistics are calculated natively ("statistics.native"), they are calculated and loaded in a single step
+ * without OpenCGA, which is partitioned if more than one partition is requested in "config.db.read-partitions".
  */
 @Configuration
 @EnableBatchProcessing
-@Import({CalculateStatisticsStep.class, LoadStatisticsStep.class})
+@Import({CalculateStatisticsStep.class, LoadStatisticsStep.class, CalculateAndLoadStatisticsStep.class})
 public class PopulationStatisticsFlow {
 
     @Autowired
@@ -48,10 +58,31 @@ public class PopulationStatisticsFlow {
     @Qualifier(LOAD_STATISTICS_STEP)
     private Step loadStatisticsStep;
 
+    @Autowired
+    @Qualifier(CALCULATE_AND_LOAD_STATISTICS_STEP)
+    private Step calculateAndLoadStatisticsStep;
+
+    @Autowired
+    @Qualifier(CALCULATE_AND_LOAD_STATISTICS_PARTITIONED_STEP)
+    private Step calculateAndLoadStatisticsPartitionedStep;
+
     @Bean(CALCULATE_STATISTICS_FLOW)
     public Flow calculateStatisticsOptionalFlow() {
+        NativeStatisticsDecider nativeStatisticsDecider = new NativeStatisticsDecider(
+                JobParametersNames.STATISTICS_NATIVE);
+        PartitionsDecider statisticsPartitionsDecider = new PartitionsDecider(
+                JobParametersNames.CONFIG_DB_READ_PARTITIONS);
+
         return new FlowBuilder<Flow>(CALCULATE_STATISTICS_FLOW)
-                .start(calculateStatisticsStep).next(loadStatisticsStep).build();
+                .start(nativeStatisticsDecider).on(NativeStatisticsDecider.OPENCGA)
+                .to(calculateStatisticsStep)
+                .next(loadStatisticsStep)
+                .from(nativeStatisticsDecider).on(NativeStatisticsDecider.NATIVE)
+                .to(statisticsPartitionsDecider).on(PartitionsDecider.SINGLE)
+                .to(calculateAndLoadStatisticsStep)
+                .from(statisticsPartitionsDecider).on(PartitionsDecider.PARTITIONED)
+                .to(calculateAndLoadStatisticsPartitionedStep)
+                .build();
     }
 
 }
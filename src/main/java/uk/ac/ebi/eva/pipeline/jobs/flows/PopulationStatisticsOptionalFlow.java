@@ -32,8 +32,9 @@ import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.CALCULATE_STATISTIC
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.STATISTICS_SKIP_STEP_DECIDER;
 
 /**
- * Configuration that defines a calculate statistics flow that can be skipped depending on property 'statistics.skip'
- * In the case that the property is set to false, then the process executes the flow at {@link PopulationStatisticsFlow}
+ * Configuration that defines a calculate statistics flow that can be skipped depending on property 'statistics.skip',
+ * or because the statistics were calculated inline (see {@link uk.ac.ebi.eva.pipeline.jobs.deciders
+ * .StatisticsSkipStepDecider}). Otherwise, the process executes the flow at {@link PopulationStatisticsFlow}
  */
 @Configuration
 @EnableBatchProcessing
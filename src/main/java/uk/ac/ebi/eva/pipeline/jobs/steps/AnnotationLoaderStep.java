@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,8 +22,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.item.ItemStreamReader;
-import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.file.FlatFileParseException;
 import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,19 +32,29 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
-import uk.ac.ebi.eva.pipeline.configuration.ChunkSizeCompletionPolicyConfiguration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+import uk.ac.ebi.eva.pipeline.configuration.ChunkSizeCompletionPolicyConfiguration;
 import uk.ac.ebi.eva.pipeline.configuration.readers.VariantAnnotationReaderConfiguration;
 import uk.ac.ebi.eva.pipeline.configuration.writers.VariantAnnotationWriterConfiguration;
 import uk.ac.ebi.eva.pipeline.io.readers.AnnotationFlatFileReader;
+import uk.ac.ebi.eva.pipeline.io.readers.VariantAnnotationGroupingReader;
 import uk.ac.ebi.eva.pipeline.io.writers.VepAnnotationMongoWriter;
+import uk.ac.ebi.eva.pipeline.jobs.steps.partitioners.VepOutputPartitioner;
 import uk.ac.ebi.eva.pipeline.listeners.SkippedItemListener;
+import uk.ac.ebi.eva.pipeline.parameters.AnnotationParameters;
 import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
 
+import java.io.File;
+
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.ANNOTATION_LOADER_TASK_EXECUTOR;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_VEP_ANNOTATION_PARTITIONED_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_VEP_ANNOTATION_PARTITION_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_VEP_ANNOTATION_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_ANNOTATION_READER;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_ANNOTATION_WRITER;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VEP_OUTPUT_PARTITIONER;
 
 /**
  * This step loads annotations into MongoDB.
@@ -56,8 +67,13 @@ import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_ANNOTATION_
  * 20_60419_A/G	20:60419	G	-	-	-	intergenic_variant	-	-	-	-	-	-
  * 20_60479_C/T	20:60479	T	-	-	-	intergenic_variant	-	-	-	-	-	rs149529999	GMAF=T:0.0018;AFR_MAF=T:0.01;AMR_MAF=T:0.0028
  * <p>
- * each line of the file is loaded with {@link AnnotationFlatFileReader} into a {@link VariantAnnotation} and then sent
- * to mongo with {@link VepAnnotationMongoWriter}.
+ * each line of the file is loaded with {@link AnnotationFlatFileReader} into a {@link VariantAnnotation}, the
+ * consecutive lines of the same variant are merged by {@link VariantAnnotationGroupingReader}, and then sent to mongo
+ * with {@link VepAnnotationMongoWriter}.
+ * <p>
+ * The partitioned version of the step splits the VEP output with a {@link VepOutputPartitioner}, and loads every
+ * shard in its own partition, with its own reader and writer, in the threads of a pool shared by all the jobs. Every
+ * partition saves its own restart state, and can skip as many malformed lines as the non-partitioned step.
  */
 
 @Configuration
@@ -73,14 +89,60 @@ public class AnnotationLoaderStep {
 
     @Autowired
     @Qualifier(VARIANT_ANNOTATION_WRITER)
-    private ItemWriter<VariantAnnotation> variantAnnotationItemWriter;
+    private ItemStreamWriter<VariantAnnotation> variantAnnotationItemWriter;
 
     @Bean(LOAD_VEP_ANNOTATION_STEP)
     public Step loadVepAnnotationStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
                                       SimpleCompletionPolicy chunkSizeCompletionPolicy) {
         logger.debug("Building '" + LOAD_VEP_ANNOTATION_STEP + "'");
+        return buildLoadStep(LOAD_VEP_ANNOTATION_STEP, stepBuilderFactory, jobOptions, chunkSizeCompletionPolicy);
+    }
+
+    @Bean(LOAD_VEP_ANNOTATION_PARTITION_STEP)
+    public Step loadVepAnnotationPartitionStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
+                                               SimpleCompletionPolicy chunkSizeCompletionPolicy) {
+        logger.debug("Building '" + LOAD_VEP_ANNOTATION_PARTITION_STEP + "'");
+        return buildLoadStep(LOAD_VEP_ANNOTATION_PARTITION_STEP, stepBuilderFactory, jobOptions,
+                             chunkSizeCompletionPolicy);
+    }
+
+    @Bean(LOAD_VEP_ANNOTATION_PARTITIONED_STEP)
+    public Step loadVepAnnotationPartitionedStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
+                                                 @Qualifier(LOAD_VEP_ANNOTATION_PARTITION_STEP) Step partitionStep,
+                                                 @Qualifier(VEP_OUTPUT_PARTITIONER)
+                                                         VepOutputPartitioner vepOutputPartitioner,
+                                                 @Qualifier(ANNOTATION_LOADER_TASK_EXECUTOR)
+                                                         ThreadPoolTaskExecutor taskExecutor) {
+        logger.debug("Building '" + LOAD_VEP_ANNOTATION_PARTITIONED_STEP + "'");
+
+        return stepBuilderFactory.get(LOAD_VEP_ANNOTATION_PARTITIONED_STEP)
+                .partitioner(LOAD_VEP_ANNOTATION_PARTITION_STEP, vepOutputPartitioner)
+                .step(partitionStep)
+                .taskExecutor(taskExecutor)
+                .listener(vepOutputPartitioner)
+                .allowStartIfComplete(jobOptions.isAllowStartIfComplete())
+                .build();
+    }
+
+    @Bean(VEP_OUTPUT_PARTITIONER)
+    @StepScope
+    public VepOutputPartitioner vepOutputPartitioner(AnnotationParameters annotationParameters) {
+        return new VepOutputPartitioner(new File(annotationParameters.getVepOutput()),
+                                        annotationParameters.getAnnotationLoadPartitions());
+    }
+
+    @Bean(ANNOTATION_LOADER_TASK_EXECUTOR)
+    public ThreadPoolTaskExecutor annotationLoaderTaskExecutor(JobOptions jobOptions) {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(jobOptions.getAnnotationLoadMaxThreads());
+        taskExecutor.setMaxPoolSize(jobOptions.getAnnotationLoadMaxThreads());
+        taskExecutor.setThreadNamePrefix(LOAD_VEP_ANNOTATION_PARTITION_STEP + "-");
+        return taskExecutor;
+    }
 
-        return stepBuilderFactory.get(LOAD_VEP_ANNOTATION_STEP)
+    private Step buildLoadStep(String stepName, StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
+                               SimpleCompletionPolicy chunkSizeCompletionPolicy) {
+        return stepBuilderFactory.get(stepName)
                 .<VariantAnnotation, VariantAnnotation>chunk(chunkSizeCompletionPolicy)
                 .reader(variantAnnotationReader)
                 .writer(variantAnnotationItemWriter)
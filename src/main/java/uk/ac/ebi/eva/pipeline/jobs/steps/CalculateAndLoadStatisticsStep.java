@@ -0,0 +1,246 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntity;
+import uk.ac.ebi.eva.pipeline.configuration.ChunkSizeCompletionPolicyConfiguration;
+import uk.ac.ebi.eva.pipeline.configuration.readers.GenotypedVariantsMongoReaderConfiguration;
+import uk.ac.ebi.eva.pipeline.configuration.writers.VariantStatsWriterConfiguration;
+import uk.ac.ebi.eva.pipeline.io.readers.CohortsReader;
+import uk.ac.ebi.eva.pipeline.io.readers.GenotypedVariantsMongoReader;
+import uk.ac.ebi.eva.pipeline.jobs.steps.partitioners.MongoIdRangePartitioner;
+import uk.ac.ebi.eva.pipeline.jobs.steps.processors.VariantStatsProcessor;
+import uk.ac.ebi.eva.pipeline.listeners.SourceStatisticsListener;
+import uk.ac.ebi.eva.pipeline.model.Cohort;
+import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
+import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
+import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
+import uk.ac.ebi.eva.pipeline.parameters.OutputParameters;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.CALCULATE_AND_LOAD_STATISTICS_PARTITIONED_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.CALCULATE_AND_LOAD_STATISTICS_PARTITION_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.CALCULATE_AND_LOAD_STATISTICS_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.GENOTYPED_VARIANTS_READER;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.SOURCE_STATISTICS_LISTENER;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.SOURCE_STATISTICS_PARTITIONED_LISTENER;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.STATISTICS_PARTITIONER;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.STATISTICS_TASK_EXECUTOR;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_STATISTICS_PROCESSOR;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_STATISTICS_WRITER;
+
+/**
+ * This step calculates the statistics of all the samples of a file, and loads them, without going through OpenCGA
+ * and an intermediate file.
+ * <p>
+ * input: mongo collection with the variants of the file, and their genotypes.
+ * output: the statistics of every variant in its "st" array ({@link uk.ac.ebi.eva.pipeline.io.writers
+ * .VariantStatsMongoWriter}), and the statistics of the file in its document of the files collection
+ * ({@link SourceStatisticsListener}), as counted by a {@link uk.ac.ebi.eva.pipeline.io.writers
+ * .SourceStatisticsCounter}.
+ * <p>
+ * The statistics are calculated from the number of samples of every genotype, as stored in the database
+ * ({@link VariantStatsProcessor}). The statistics of the variants previously calculated for the same file are
+ * replaced, so the step can be restarted and doesn't need the "statistics.overwrite" parameter. The statistics of the
+ * cohorts of the pedigree or the cohorts file, if there is any ({@link CohortsReader}), are calculated as well.
+ * <p>
+ * The partitioned version of the step splits the variants into ranges of ids with a {@link MongoIdRangePartitioner},
+ * and reads every range in its own partition, with its own cursor, in the threads of a pool shared by all the jobs.
+ * The statistics of the file are written when all the partitions are complete.
+ */
+@Configuration
+@EnableBatchProcessing
+@Import({GenotypedVariantsMongoReaderConfiguration.class, VariantStatsWriterConfiguration.class,
+        ChunkSizeCompletionPolicyConfiguration.class})
+public class CalculateAndLoadStatisticsStep {
+
+    private static final Logger logger = LoggerFactory.getLogger(CalculateAndLoadStatisticsStep.class);
+
+    @Autowired
+    @Qualifier(GENOTYPED_VARIANTS_READER)
+    private GenotypedVariantsMongoReader reader;
+
+    @Autowired
+    @Qualifier(VARIANT_STATISTICS_PROCESSOR)
+    private VariantStatsProcessor processor;
+
+    @Autowired
+    @Qualifier(VARIANT_STATISTICS_WRITER)
+    private ItemStreamWriter<Variant> writer;
+
+    @Bean(CALCULATE_AND_LOAD_STATISTICS_STEP)
+    public Step calculateAndLoadStatisticsStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
+                                               SimpleCompletionPolicy chunkSizeCompletionPolicy,
+                                               @Qualifier(SOURCE_STATISTICS_LISTENER)
+                                                       SourceStatisticsListener sourceStatisticsListener) {
+        logger.debug("Building '" + CALCULATE_AND_LOAD_STATISTICS_STEP + "'");
+        return stepBuilderFactory.get(CALCULATE_AND_LOAD_STATISTICS_STEP)
+                .<DBObject, Variant>chunk(chunkSizeCompletionPolicy)
+                .reader(reader)
+                .processor(processor)
+                .writer(writer)
+                .listener(sourceStatisticsListener)
+                .allowStartIfComplete(jobOptions.isAllowStartIfComplete())
+                .build();
+    }
+
+    @Bean(CALCULATE_AND_LOAD_STATISTICS_PARTITION_STEP)
+    public Step calculateAndLoadStatisticsPartitionStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
+                                                        SimpleCompletionPolicy chunkSizeCompletionPolicy) {
+        logger.debug("Building '" + CALCULATE_AND_LOAD_STATISTICS_PARTITION_STEP + "'");
+        return stepBuilderFactory.get(CALCULATE_AND_LOAD_STATISTICS_PARTITION_STEP)
+                .<DBObject, Variant>chunk(chunkSizeCompletionPolicy)
+                .reader(reader)
+                .processor(processor)
+                .writer(writer)
+                .allowStartIfComplete(jobOptions.isAllowStartIfComplete())
+                .build();
+    }
+
+    @Bean(CALCULATE_AND_LOAD_STATISTICS_PARTITIONED_STEP)
+    public Step calculateAndLoadStatisticsPartitionedStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
+            @Qualifier(CALCULATE_AND_LOAD_STATISTICS_PARTITION_STEP) Step partitionStep,
+            @Qualifier(STATISTICS_PARTITIONER) MongoIdRangePartitioner statisticsPartitioner,
+            @Qualifier(STATISTICS_TASK_EXECUTOR) ThreadPoolTaskExecutor taskExecutor,
+            @Qualifier(SOURCE_STATISTICS_PARTITIONED_LISTENER) SourceStatisticsListener sourceStatisticsListener) {
+        logger.debug("Building '" + CALCULATE_AND_LOAD_STATISTICS_PARTITIONED_STEP + "'");
+
+        return stepBuilderFactory.get(CALCULATE_AND_LOAD_STATISTICS_PARTITIONED_STEP)
+                .partitioner(CALCULATE_AND_LOAD_STATISTICS_PARTITION_STEP, statisticsPartitioner)
+                .step(partitionStep)
+                .taskExecutor(taskExecutor)
+                .listener(sourceStatisticsListener)
+                .allowStartIfComplete(jobOptions.isAllowStartIfComplete())
+                .build();
+    }
+
+    @Bean(STATISTICS_PARTITIONER)
+    @StepScope
+    public MongoIdRangePartitioner statisticsPartitioner(MongoOperations mongoOperations,
+                                                         DatabaseParameters databaseParameters,
+                                                         InputParameters inputParameters) {
+        DBObject query = GenotypedVariantsMongoReader.buildQuery(inputParameters.getStudyId(),
+                                                                 inputParameters.getVcfId());
+        return new MongoIdRangePartitioner(mongoOperations, databaseParameters.getCollectionVariantsName(), query,
+                                           databaseParameters.getReadPartitions());
+    }
+
+    @Bean(STATISTICS_TASK_EXECUTOR)
+    public ThreadPoolTaskExecutor statisticsTaskExecutor(JobOptions jobOptions) {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(jobOptions.getReadPartitionsMaxThreads());
+        taskExecutor.setMaxPoolSize(jobOptions.getReadPartitionsMaxThreads());
+        taskExecutor.setThreadNamePrefix(CALCULATE_AND_LOAD_STATISTICS_PARTITION_STEP + "-");
+        return taskExecutor;
+    }
+
+    @Bean(VARIANT_STATISTICS_PROCESSOR)
+    @StepScope
+    public VariantStatsProcessor variantStatsProcessor(MongoOperations mongoOperations,
+                                                       DatabaseParameters databaseParameters,
+                                                       InputParameters inputParameters,
+                                                       OutputParameters outputParameters) throws Exception {
+        Map<String, Integer> samplesPosition = readSamplesPosition(mongoOperations, databaseParameters,
+                                                                   inputParameters);
+        List<Cohort> cohorts = Collections.emptyList();
+        if (isDefined(inputParameters.getPedigree()) || isDefined(inputParameters.getCohorts())) {
+            CohortsReader cohortsReader = new CohortsReader(inputParameters.getPedigree(),
+                                                            outputParameters.getStatisticsPedigreeCohorts(),
+                                                            inputParameters.getCohorts());
+            cohorts = cohortsReader.read(samplesPosition);
+            logger.info("Statistics of {} cohorts will be calculated", cohorts.size());
+        }
+        return new VariantStatsProcessor(inputParameters.getStudyId(), inputParameters.getVcfId(),
+                                         samplesPosition.size(), cohorts);
+    }
+
+    private boolean isDefined(String path) {
+        return path != null && !path.isEmpty();
+    }
+
+    @Bean(SOURCE_STATISTICS_LISTENER)
+    @StepScope
+    public SourceStatisticsListener sourceStatisticsListener(MongoOperations mongoOperations,
+                                                             DatabaseParameters databaseParameters,
+                                                             InputParameters inputParameters) {
+        return buildSourceStatisticsListener(mongoOperations, databaseParameters, inputParameters);
+    }
+
+    @Bean(SOURCE_STATISTICS_PARTITIONED_LISTENER)
+    @StepScope
+    public SourceStatisticsListener sourceStatisticsPartitionedListener(MongoOperations mongoOperations,
+            DatabaseParameters databaseParameters, InputParameters inputParameters, JobRepository jobRepository,
+            @Qualifier(STATISTICS_PARTITIONER) MongoIdRangePartitioner statisticsPartitioner) {
+        SourceStatisticsListener listener = buildSourceStatisticsListener(mongoOperations, databaseParameters,
+                                                                          inputParameters);
+        listener.setPartitions(jobRepository, CALCULATE_AND_LOAD_STATISTICS_PARTITION_STEP,
+                               statisticsPartitioner.getPartitionNames(databaseParameters.getReadPartitions()));
+        return listener;
+    }
+
+    private SourceStatisticsListener buildSourceStatisticsListener(MongoOperations mongoOperations,
+                                                                   DatabaseParameters databaseParameters,
+                                                                   InputParameters inputParameters) {
+        return new SourceStatisticsListener(mongoOperations, databaseParameters.getCollectionFilesName(),
+                                            inputParameters.getStudyId(), inputParameters.getVcfId());
+    }
+
+    private Map<String, Integer> readSamplesPosition(MongoOperations mongoOperations,
+                                                     DatabaseParameters databaseParameters,
+                                                     InputParameters inputParameters) {
+        BasicDBObject query = new BasicDBObject(VariantSourceEntity.STUDYID_FIELD, inputParameters.getStudyId())
+                .append(VariantSourceEntity.FILEID_FIELD, inputParameters.getVcfId());
+        DBObject file = mongoOperations.getCollection(databaseParameters.getCollectionFilesName())
+                                       .findOne(query, new BasicDBObject(VariantSourceEntity.SAMPLES_FIELD, 1));
+        if (file == null) {
+            throw new IllegalStateException("File " + inputParameters.getVcfId() + " of study "
+                                                    + inputParameters.getStudyId() + " not found in collection "
+                                                    + databaseParameters.getCollectionFilesName());
+        }
+        Map<String, Integer> samplesPosition = new HashMap<>();
+        DBObject samples = (DBObject) file.get(VariantSourceEntity.SAMPLES_FIELD);
+        if (samples != null) {
+            for (String sample : samples.keySet()) {
+                samplesPosition.put(sample, ((Number) samples.get(sample)).intValue());
+            }
+        }
+        return samplesPosition;
+    }
+}
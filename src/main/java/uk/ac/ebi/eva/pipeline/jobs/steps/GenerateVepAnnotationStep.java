@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,6 +23,9 @@ import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.step.tasklet.TaskletStep;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import uk.ac.ebi.eva.pipeline.configuration.CompressionExecutorConfiguration;
+import uk.ac.ebi.eva.pipeline.io.VepProcessManager;
 import uk.ac.ebi.eva.pipeline.jobs.steps.tasklets.VepAnnotationGeneratorStep;
 import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
 import uk.ac.ebi.eva.utils.TaskletUtils;
@@ -34,10 +37,29 @@ import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.GENERATE_VEP_ANNOTA
  */
 @Configuration
 @EnableBatchProcessing
+@Import({CompressionExecutorConfiguration.class})
 public class GenerateVepAnnotationStep {
 
     private static final Logger logger = LoggerFactory.getLogger(GenerateVepAnnotationStep.class);
 
+    private static final long HEALTH_CHECK_PERIOD_MILLIS = 60 * 1000;
+
+    /**
+     * Number of variants VEP annotates at once, its default
+     */
+    private static final int VEP_BUFFER_SIZE = 5000;
+
+    /**
+     * Singleton, so all the VEP annotation steps run by the application share the same VEP workers
+     */
+    @Bean(destroyMethod = "shutdown")
+    public VepProcessManager vepProcessManager(JobOptions jobOptions) {
+        long stallTimeoutMillis = jobOptions.getVepWorkerStallTimeout() * 1000;
+        return new VepProcessManager(jobOptions.getVepMaxWorkers(), VEP_BUFFER_SIZE,
+                                     jobOptions.getVepWorkerMaxMemory(),
+                                     stallTimeoutMillis, Math.min(HEALTH_CHECK_PERIOD_MILLIS, stallTimeoutMillis));
+    }
+
     @Bean
     @StepScope
     public VepAnnotationGeneratorStep vepAnnotationGeneratorStep() {
@@ -15,22 +15,38 @@
  */
 package uk.ac.ebi.eva.pipeline.jobs.steps;
 
+import org.opencb.biodata.models.variant.VariantSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.listener.StepExecutionListenerSupport;
+import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.tasklet.TaskletStep;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoOperations;
 import uk.ac.ebi.eva.pipeline.jobs.steps.tasklets.FileLoaderStep;
+import uk.ac.ebi.eva.pipeline.listeners.SourceStatisticsListener;
+import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
+import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
 import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
-import uk.ac.ebi.eva.utils.TaskletUtils;
+import uk.ac.ebi.eva.pipeline.parameters.OutputParameters;
+
+import java.util.Collections;
 
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_FILE_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_VARIANTS_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.SOURCE_STATISTICS_INLINE_LISTENER;
 
 /**
  * Configuration class that inject a step created with the tasklet {@link FileLoaderStep}
+ * <p>
+ * If the statistics of a genotyped file are calculated inline, the statistics of the file, as counted while loading
+ * its variants (see {@link VariantLoaderStep}), are written in its document once it is loaded.
  */
 @Configuration
 @EnableBatchProcessing
@@ -45,10 +61,33 @@ public class LoadFileStep {
     }
 
     @Bean(LOAD_FILE_STEP)
-    public TaskletStep loadFileStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions) {
+    public TaskletStep loadFileStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
+                                    @Qualifier(SOURCE_STATISTICS_INLINE_LISTENER)
+                                            StepExecutionListener sourceStatisticsInlineListener) {
         logger.debug("Building '" + LOAD_FILE_STEP + "'");
-        return TaskletUtils.generateStep(stepBuilderFactory, LOAD_FILE_STEP, fileLoaderStep(),
-                jobOptions.isAllowStartIfComplete());
+        return stepBuilderFactory.get(LOAD_FILE_STEP)
+                .tasklet(fileLoaderStep())
+                .listener(sourceStatisticsInlineListener)
+                .allowStartIfComplete(jobOptions.isAllowStartIfComplete())
+                .build();
+    }
+
+    @Bean(SOURCE_STATISTICS_INLINE_LISTENER)
+    @StepScope
+    public StepExecutionListener sourceStatisticsInlineListener(MongoOperations mongoOperations,
+                                                                DatabaseParameters databaseParameters,
+                                                                InputParameters inputParameters,
+                                                                OutputParameters outputParameters,
+                                                                JobRepository jobRepository) {
+        if (!outputParameters.getStatisticsInline()
+                || !VariantSource.Aggregation.NONE.equals(inputParameters.getVcfAggregation())) {
+            return new StepExecutionListenerSupport();
+        }
+        SourceStatisticsListener listener = new SourceStatisticsListener(
+                mongoOperations, databaseParameters.getCollectionFilesName(), inputParameters.getStudyId(),
+                inputParameters.getVcfId());
+        listener.setCountingSteps(jobRepository, Collections.singletonList(LOAD_VARIANTS_STEP));
+        return listener;
     }
 
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps;
+
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Profile;
+
+import uk.ac.ebi.eva.pipeline.Application;
+import uk.ac.ebi.eva.pipeline.configuration.ChunkSizeCompletionPolicyConfiguration;
+import uk.ac.ebi.eva.pipeline.configuration.readers.VariantStatsMongoReaderConfiguration;
+import uk.ac.ebi.eva.pipeline.configuration.writers.StatisticsMongoWriterConfiguration;
+import uk.ac.ebi.eva.pipeline.io.readers.VariantStatsMongoReader;
+import uk.ac.ebi.eva.pipeline.io.writers.StatisticsMongoWriter;
+import uk.ac.ebi.eva.pipeline.jobs.steps.processors.PopulationStatisticsProcessor;
+import uk.ac.ebi.eva.pipeline.model.PopulationStatistics;
+import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
+import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_POPULATION_STATISTICS_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.POPULATION_STATISTICS_PROCESSOR;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.POPULATION_STATISTICS_WRITER;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_STATISTICS_MONGO_READER;
+
+/**
+ * This step copies the statistics of the variants of a file into the experimental population statistics collection,
+ * with a document per variant, study and cohort.
+ * <p>
+ * input: the variants of the file, with the statistics already calculated or loaded in their "st" array
+ * output: a {@link PopulationStatistics} document for every cohort of every variant, upserted by
+ * {@link StatisticsMongoWriter} so the step can be run again after recalculating the statistics.
+ * <p>
+ * The variants are read by {@link VariantStatsMongoReader} and the cohorts of the study and file of the job are
+ * picked by {@link PopulationStatisticsProcessor}.
+ */
+@Configuration
+@EnableBatchProcessing
+@Profile(Application.MONGO_EXPERIMENTAL_PROFILE)
+@Import({VariantStatsMongoReaderConfiguration.class, StatisticsMongoWriterConfiguration.class,
+        ChunkSizeCompletionPolicyConfiguration.class})
+public class LoadPopulationStatisticsStep {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadPopulationStatisticsStep.class);
+
+    @Autowired
+    @Qualifier(VARIANT_STATISTICS_MONGO_READER)
+    private ItemStreamReader<DBObject> variantStatsReader;
+
+    @Autowired
+    @Qualifier(POPULATION_STATISTICS_WRITER)
+    private ItemWriter<PopulationStatistics> populationStatisticsWriter;
+
+    @Bean(POPULATION_STATISTICS_PROCESSOR)
+    @StepScope
+    public PopulationStatisticsProcessor populationStatisticsProcessor(InputParameters inputParameters) {
+        return new PopulationStatisticsProcessor(inputParameters.getStudyId(), inputParameters.getVcfId());
+    }
+
+    @Bean(LOAD_POPULATION_STATISTICS_STEP)
+    public Step loadPopulationStatisticsStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
+                                             SimpleCompletionPolicy chunkSizeCompletionPolicy,
+                                             @Qualifier(POPULATION_STATISTICS_PROCESSOR)
+                                                     PopulationStatisticsProcessor populationStatisticsProcessor) {
+        logger.debug("Building '" + LOAD_POPULATION_STATISTICS_STEP + "'");
+        return stepBuilderFactory.get(LOAD_POPULATION_STATISTICS_STEP)
+                .<DBObject, List<PopulationStatistics>>chunk(chunkSizeCompletionPolicy)
+                .reader(variantStatsReader)
+                .processor(populationStatisticsProcessor)
+                .writer(this::writeAllCohorts)
+                .allowStartIfComplete(jobOptions.isAllowStartIfComplete())
+                .build();
+    }
+
+    /**
+     * Writes the statistics of all the cohorts of the variants of a chunk in a single bulk.
+     */
+    private void writeAllCohorts(List<? extends List<PopulationStatistics>> variantsStatistics) throws Exception {
+        List<PopulationStatistics> populationStatistics = new ArrayList<>();
+        for (List<PopulationStatistics> variantStatistics : variantsStatistics) {
+            populationStatistics.addAll(variantStatistics);
+        }
+        populationStatisticsWriter.write(populationStatistics);
+    }
+
+}
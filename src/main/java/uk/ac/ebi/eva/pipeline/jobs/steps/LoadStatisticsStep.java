@@ -15,40 +15,127 @@
  */
 package uk.ac.ebi.eva.pipeline.jobs.steps;
 
+import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepScope;
-import org.springframework.batch.core.step.tasklet.TaskletStep;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import uk.ac.ebi.eva.pipeline.jobs.steps.tasklets.PopulationStatisticsLoaderStep;
+import org.springframework.context.annotation.Import;
+
+import uk.ac.ebi.eva.pipeline.configuration.ChunkSizeCompletionPolicyConfiguration;
+import uk.ac.ebi.eva.pipeline.configuration.StatisticsLoadExecutorConfiguration;
+import uk.ac.ebi.eva.pipeline.configuration.readers.VariantStatsJsonReaderConfiguration;
+import uk.ac.ebi.eva.pipeline.configuration.writers.VariantStatsWrapperWriterConfiguration;
+import uk.ac.ebi.eva.pipeline.io.readers.VariantStatsJsonReader;
+import uk.ac.ebi.eva.pipeline.io.writers.VariantStatsWrapperMongoWriter;
+import uk.ac.ebi.eva.pipeline.listeners.SourceStatisticsFileListener;
+import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
+import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
 import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
-import uk.ac.ebi.eva.utils.TaskletUtils;
+import uk.ac.ebi.eva.pipeline.parameters.OutputParameters;
+import uk.ac.ebi.eva.utils.URLHelper;
+
+import java.io.File;
+import java.net.URISyntaxException;
 
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_STATISTICS_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.SOURCE_STATISTICS_FILE_LISTENER;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_STATISTICS_FILE_READER;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_STATISTICS_FILE_WRITER;
 
 /**
- * Configuration class that inject a step created with the tasklet {@link LoadStatisticsStep}
+ * This step loads the statistics precomputed by OpenCGA into MongoDB.
+ * <p>
+ * input: file containing the statistics of the variants (.variants.stats.json.gz), and file containing the
+ * statistics of the whole file (.source.stats.json.gz)
+ * output: the statistics of every variant are written in its "st" array, and the statistics of the file in its
+ * document of the files collection
+ * <p>
+ * Example of the statistics of a variant:
+ * {
+ * "chromosome":"20",
+ * "position":67765,
+ * "cohortStats":{
+ * "ALL":{
+ * "refAllele":"C",
+ * "altAllele":"T",
+ * "variantType":"SNV",
+ * "refAlleleCount":4996,
+ * "altAlleleCount":12,
+ * "genotypesCount":{"0|0":2492,"0|1":12},
+ * "missingAlleles":0,
+ * "missingGenotypes":0,
+ * "refAlleleFreq":0.99760383,
+ * "altAlleleFreq":0.002396166,
+ * "genotypesFreq":{"0/0":0.0,"0/1":0.0,"1/1":0.0,"0|0":0.99520767,"0|1":0.004792332},
+ * "maf":0.002396166,
+ * "mgf":0.0,
+ * "mafAllele":"T",
+ * "mgfGenotype":"0/0",
+ * "mendelianErrors":-1,
+ * "casesPercentDominant":-1.0,
+ * "controlsPercentDominant":-1.0,
+ * "casesPercentRecessive":-1.0,
+ * "controlsPercentRecessive":-1.0,
+ * "quality":100.0,
+ * "numSamples":2504
+ * }
+ * }
+ * }
+ * <p>
+ * The statistics of the variants are streamed by {@link VariantStatsJsonReader} and written in parallel bulks by
+ * {@link VariantStatsWrapperMongoWriter}, chunk by chunk, so a restarted step continues after the last chunk written.
+ * The statistics of the file are loaded by a {@link SourceStatisticsFileListener} when all the variants are done.
  */
 @Configuration
 @EnableBatchProcessing
+@Import({VariantStatsJsonReaderConfiguration.class, VariantStatsWrapperWriterConfiguration.class,
+        StatisticsLoadExecutorConfiguration.class, ChunkSizeCompletionPolicyConfiguration.class})
 public class LoadStatisticsStep {
 
     private static final Logger logger = LoggerFactory.getLogger(LoadStatisticsStep.class);
 
-    @Bean
+    @Autowired
+    @Qualifier(VARIANT_STATISTICS_FILE_READER)
+    private ItemStreamReader<VariantStatsWrapper> variantStatsReader;
+
+    @Autowired
+    @Qualifier(VARIANT_STATISTICS_FILE_WRITER)
+    private ItemWriter<VariantStatsWrapper> variantStatsWriter;
+
+    @Bean(SOURCE_STATISTICS_FILE_LISTENER)
     @StepScope
-    public PopulationStatisticsLoaderStep populationStatisticsLoaderStep() {
-        return new PopulationStatisticsLoaderStep();
+    public SourceStatisticsFileListener sourceStatisticsFileListener(InputParameters inputParameters,
+                                                                     OutputParameters outputParameters,
+                                                                     DatabaseParameters databaseParameters)
+            throws URISyntaxException {
+        return new SourceStatisticsFileListener(databaseParameters, new File(URLHelper.getSourceStatsUri(
+                outputParameters.getOutputDirStatistics(), inputParameters.getStudyId(),
+                inputParameters.getVcfId()).getPath()));
     }
 
     @Bean(LOAD_STATISTICS_STEP)
-    public TaskletStep loadStatisticsStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions) {
+    public Step loadStatisticsStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
+                                   SimpleCompletionPolicy chunkSizeCompletionPolicy,
+                                   @Qualifier(SOURCE_STATISTICS_FILE_LISTENER)
+                                           SourceStatisticsFileListener sourceStatisticsFileListener) {
         logger.debug("Building '" + LOAD_STATISTICS_STEP + "'");
-        return TaskletUtils.generateStep(stepBuilderFactory, LOAD_STATISTICS_STEP,
-                populationStatisticsLoaderStep(), jobOptions.isAllowStartIfComplete());
+        return stepBuilderFactory.get(LOAD_STATISTICS_STEP)
+                .<VariantStatsWrapper, VariantStatsWrapper>chunk(chunkSizeCompletionPolicy)
+                .reader(variantStatsReader)
+                .writer(variantStatsWriter)
+                .listener(sourceStatisticsFileListener)
+                .allowStartIfComplete(jobOptions.isAllowStartIfComplete())
+                .build();
     }
 
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 EMBL - European Bioinformatics Institute
+ * Copyright 2015-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,14 +15,20 @@
  */
 package uk.ac.ebi.eva.pipeline.jobs.steps;
 
+import org.opencb.biodata.models.variant.VariantSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamException;
 import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.batch.item.support.PassThroughItemProcessor;
 import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -30,15 +36,31 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntity;
 import uk.ac.ebi.eva.pipeline.configuration.ChunkSizeCompletionPolicyConfiguration;
 import uk.ac.ebi.eva.pipeline.configuration.readers.VcfReaderConfiguration;
 import uk.ac.ebi.eva.pipeline.configuration.writers.VariantWriterConfiguration;
+import uk.ac.ebi.eva.pipeline.io.readers.CohortsReader;
+import uk.ac.ebi.eva.pipeline.io.readers.VcfHeaderReader;
+import uk.ac.ebi.eva.pipeline.io.writers.SourceStatisticsCounter;
+import uk.ac.ebi.eva.pipeline.jobs.steps.processors.VariantCohortStatsProcessor;
 import uk.ac.ebi.eva.pipeline.listeners.VariantLoaderStepStatisticsListener;
 import uk.ac.ebi.eva.pipeline.listeners.SkippedItemListener;
 import uk.ac.ebi.eva.pipeline.listeners.StepProgressListener;
+import uk.ac.ebi.eva.pipeline.model.Cohort;
+import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
 import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
+import uk.ac.ebi.eva.pipeline.parameters.OutputParameters;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.LOAD_VARIANTS_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.SOURCE_STATISTICS_COUNTER;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_COHORT_STATISTICS_PROCESSOR;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_READER;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_WRITER;
 
@@ -47,6 +69,12 @@ import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VARIANT_WRITER;
  * <p>
  * Input: VCF file
  * Output: variants loaded into mongodb
+ * <p>
+ * If the statistics are calculated inline (see
+ * {@link uk.ac.ebi.eva.pipeline.parameters.JobParametersNames#STATISTICS_INLINE}), the statistics of the genotyped
+ * variants are calculated for all the samples, and for every cohort of the pedigree or the cohorts file if there is
+ * any (see {@link CohortsReader}), and they are loaded together with the variants. The statistics of the file are
+ * counted as well ({@link SourceStatisticsCounter}), and written once the file is loaded (see {@link LoadFileStep}).
  */
 @Configuration
 @EnableBatchProcessing
@@ -63,15 +91,27 @@ public class VariantLoaderStep {
     @Qualifier(VARIANT_WRITER)
     private ItemWriter<Variant> variantWriter;
 
+    @Autowired
+    @Qualifier(VARIANT_COHORT_STATISTICS_PROCESSOR)
+    private ItemProcessor<Variant, Variant> cohortStatsProcessor;
+
+    @Autowired
+    @Qualifier(SOURCE_STATISTICS_COUNTER)
+    private SourceStatisticsCounter sourceStatisticsCounter;
+
     @Bean(LOAD_VARIANTS_STEP)
     public Step loadVariantsStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
                                  SimpleCompletionPolicy chunkSizeCompletionPolicy) {
         logger.debug("Building '" + LOAD_VARIANTS_STEP + "'");
 
+        CompositeItemWriter<Variant> writer = new CompositeItemWriter<>();
+        writer.setDelegates(Arrays.asList(variantWriter, sourceStatisticsCounter));
+
         return stepBuilderFactory.get(LOAD_VARIANTS_STEP)
                 .<Variant, Variant>chunk(chunkSizeCompletionPolicy)
                 .reader(reader)
-                .writer(variantWriter)
+                .processor(cohortStatsProcessor)
+                .writer(writer)
                 .faultTolerant().skipLimit(50).skip(FlatFileParseException.class)
                 .allowStartIfComplete(jobOptions.isAllowStartIfComplete())
                 .listener(new SkippedItemListener())
@@ -80,4 +120,50 @@ public class VariantLoaderStep {
                 .build();
     }
 
+    @Bean(VARIANT_COHORT_STATISTICS_PROCESSOR)
+    @StepScope
+    public ItemProcessor<Variant, Variant> cohortStatsProcessor(InputParameters inputParameters,
+                                                                OutputParameters outputParameters) throws Exception {
+        if (!outputParameters.getStatisticsInline()
+                || !VariantSource.Aggregation.NONE.equals(inputParameters.getVcfAggregation())) {
+            return new PassThroughItemProcessor<>();
+        }
+
+        List<Cohort> cohorts = Collections.emptyList();
+        if (isDefined(inputParameters.getPedigree()) || isDefined(inputParameters.getCohorts())) {
+            CohortsReader cohortsReader = new CohortsReader(inputParameters.getPedigree(),
+                                                            outputParameters.getStatisticsPedigreeCohorts(),
+                                                            inputParameters.getCohorts());
+            cohorts = cohortsReader.read(readSamplesPosition(inputParameters));
+            logger.info("Statistics of {} cohorts will be calculated inline", cohorts.size());
+        }
+        return new VariantCohortStatsProcessor(cohorts);
+    }
+
+    @Bean(SOURCE_STATISTICS_COUNTER)
+    @StepScope
+    public SourceStatisticsCounter sourceStatisticsCounter() {
+        return new SourceStatisticsCounter();
+    }
+
+    private boolean isDefined(String path) {
+        return path != null && !path.isEmpty();
+    }
+
+    private Map<String, Integer> readSamplesPosition(InputParameters parameters) {
+        File vcfFile = new File(parameters.getVcf());
+        VcfHeaderReader headerReader = new VcfHeaderReader(vcfFile, parameters.getVcfId(), parameters.getStudyId(),
+                                                           parameters.getStudyName(), parameters.getStudyType(),
+                                                           parameters.getVcfAggregation());
+        headerReader.open(null);
+        try {
+            VariantSourceEntity source = headerReader.read();
+            return source.getSamplesPosition();
+        } catch (Exception e) {
+            throw new ItemStreamException("Couldn't read the samples of the VCF " + vcfFile, e);
+        } finally {
+            headerReader.close();
+        }
+    }
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,38 +29,55 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
 import uk.ac.ebi.eva.pipeline.configuration.ChunkSizeCompletionPolicyConfiguration;
+import uk.ac.ebi.eva.pipeline.configuration.CompressionExecutorConfiguration;
 import uk.ac.ebi.eva.pipeline.configuration.readers.NonAnnotatedVariantsMongoReaderConfiguration;
 import uk.ac.ebi.eva.pipeline.configuration.writers.VepInputFlatFileWriterConfiguration;
 import uk.ac.ebi.eva.pipeline.io.readers.NonAnnotatedVariantsMongoReader;
 import uk.ac.ebi.eva.pipeline.io.writers.VepInputFlatFileWriter;
+import uk.ac.ebi.eva.pipeline.jobs.steps.partitioners.VepInputPartitioner;
 import uk.ac.ebi.eva.pipeline.jobs.steps.processors.AnnotationProcessor;
 import uk.ac.ebi.eva.pipeline.model.VariantWrapper;
+import uk.ac.ebi.eva.pipeline.parameters.AnnotationParameters;
+import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
+import uk.ac.ebi.eva.pipeline.parameters.InputParameters;
 import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
 
+import java.io.File;
+
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.GENERATE_VEP_INPUT_PARTITIONED_STEP;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.GENERATE_VEP_INPUT_PARTITION_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.GENERATE_VEP_INPUT_STEP;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.NON_ANNOTATED_VARIANTS_READER;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VEP_INPUT_GENERATOR_TASK_EXECUTOR;
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VEP_INPUT_PARTITIONER;
 import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.VEP_INPUT_WRITER;
 
 /**
  * This step dumps a list of variants without annotations from mongo.
  * <p>
  * input: mongo collection with the variants.
- * output: file with the list of variants, in a format to feed VEP ({@link VepInputFlatFileWriter})
+ * output: gzipped file with the list of variants, in a format to feed VEP ({@link VepInputFlatFileWriter})
+ * <p>
+ * If an annotation cache is configured, the variants already annotated with the same VEP version are not written in
+ * the VEP input; their annotations are loaded straight away
+ * ({@link uk.ac.ebi.eva.pipeline.io.writers.AnnotationCacheVepInputWriter}).
+ * <p>
+ * The partitioned version of the step splits the variants into ranges of ids with a {@link VepInputPartitioner}, and
+ * reads every range in its own partition, with its own cursor and writer, in the threads of a pool shared by all the
+ * jobs. Every partition writes its own part of the VEP input, and the parts are concatenated when all of them are
+ * complete.
  * <p>
  * TODO:
  * - Handle the overwrite
- * - The variant list should be compressed. It is not possible to write into a zipped file with FlatFile item writer
- * see jmmut comment at https://github.com/EBIvariation/eva-v2/pull/22
- * We can create an extra step to convert the file and remove the nonp-zipped one
- * https://www.mkyong.com/java/how-to-compress-a-file-in-gzip-format/
- * https://examples.javacodegeeks.com/core-java/io/fileinputstream/compress-a-file-in-gzip-format-in-java/
- * http://www.journaldev.com/966/java-gzip-example-compress-and-decompress-file-in-gzip-format-in-java
  */
 @Configuration
 @EnableBatchProcessing
 @Import({NonAnnotatedVariantsMongoReaderConfiguration.class, VepInputFlatFileWriterConfiguration.class,
-        ChunkSizeCompletionPolicyConfiguration.class})
+        ChunkSizeCompletionPolicyConfiguration.class, CompressionExecutorConfiguration.class})
 public class VepInputGeneratorStep {
 
     private static final Logger logger = LoggerFactory.getLogger(VepInputGeneratorStep.class);
@@ -76,8 +94,63 @@ public class VepInputGeneratorStep {
     public Step generateVepInputStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
                                      SimpleCompletionPolicy chunkSizeCompletionPolicy) {
         logger.debug("Building '" + GENERATE_VEP_INPUT_STEP + "'");
+        return buildGenerateStep(GENERATE_VEP_INPUT_STEP, stepBuilderFactory, jobOptions, chunkSizeCompletionPolicy);
+    }
+
+    @Bean(GENERATE_VEP_INPUT_PARTITION_STEP)
+    public Step generateVepInputPartitionStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
+                                              SimpleCompletionPolicy chunkSizeCompletionPolicy) {
+        logger.debug("Building '" + GENERATE_VEP_INPUT_PARTITION_STEP + "'");
+        return buildGenerateStep(GENERATE_VEP_INPUT_PARTITION_STEP, stepBuilderFactory, jobOptions,
+                                 chunkSizeCompletionPolicy);
+    }
+
+    @Bean(GENERATE_VEP_INPUT_PARTITIONED_STEP)
+    public Step generateVepInputPartitionedStep(StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
+                                                @Qualifier(GENERATE_VEP_INPUT_PARTITION_STEP) Step partitionStep,
+                                                @Qualifier(VEP_INPUT_PARTITIONER)
+                                                        VepInputPartitioner vepInputPartitioner,
+                                                @Qualifier(VEP_INPUT_GENERATOR_TASK_EXECUTOR)
+                                                        ThreadPoolTaskExecutor taskExecutor) {
+        logger.debug("Building '" + GENERATE_VEP_INPUT_PARTITIONED_STEP + "'");
+
+        return stepBuilderFactory.get(GENERATE_VEP_INPUT_PARTITIONED_STEP)
+                .partitioner(GENERATE_VEP_INPUT_PARTITION_STEP, vepInputPartitioner)
+                .step(partitionStep)
+                .taskExecutor(taskExecutor)
+                .listener(vepInputPartitioner)
+                .allowStartIfComplete(jobOptions.isAllowStartIfComplete())
+                .build();
+    }
+
+    @Bean(VEP_INPUT_PARTITIONER)
+    @StepScope
+    public VepInputPartitioner vepInputPartitioner(MongoOperations mongoOperations,
+                                                   DatabaseParameters databaseParameters,
+                                                   InputParameters inputParameters,
+                                                   AnnotationParameters annotationParameters) {
+        String vepVersion = annotationParameters.getAnnotationOverwrite() ? annotationParameters.getVepVersion() : null;
+        DBObject query = NonAnnotatedVariantsMongoReader.buildQuery(inputParameters.getStudyId(), vepVersion,
+                                                                    annotationParameters.getVepCacheVersion());
+        // the partitioner runs the query of the readers before any of them is created
+        NonAnnotatedVariantsMongoReader.createIndex(mongoOperations, databaseParameters.getCollectionVariantsName());
+        return new VepInputPartitioner(mongoOperations, databaseParameters.getCollectionVariantsName(), query,
+                                       databaseParameters.getReadPartitions(),
+                                       new File(annotationParameters.getVepInput()));
+    }
+
+    @Bean(VEP_INPUT_GENERATOR_TASK_EXECUTOR)
+    public ThreadPoolTaskExecutor vepInputGeneratorTaskExecutor(JobOptions jobOptions) {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(jobOptions.getReadPartitionsMaxThreads());
+        taskExecutor.setMaxPoolSize(jobOptions.getReadPartitionsMaxThreads());
+        taskExecutor.setThreadNamePrefix(GENERATE_VEP_INPUT_PARTITION_STEP + "-");
+        return taskExecutor;
+    }
 
-        return stepBuilderFactory.get(GENERATE_VEP_INPUT_STEP)
+    private Step buildGenerateStep(String stepName, StepBuilderFactory stepBuilderFactory, JobOptions jobOptions,
+                                   SimpleCompletionPolicy chunkSizeCompletionPolicy) {
+        return stepBuilderFactory.get(stepName)
                 .<DBObject, VariantWrapper>chunk(chunkSizeCompletionPolicy)
                 .reader(reader)
                 .processor(new AnnotationProcessor())
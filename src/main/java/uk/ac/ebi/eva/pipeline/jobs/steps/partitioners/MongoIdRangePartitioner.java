@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps.partitioners;
+
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.bson.types.MinKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.PartitionNameProvider;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the documents matching a query into disjoint ranges of ids, and creates a partition for every range, with its
+ * bounds in {@link ExecutionContextParametersNames#MONGO_PARTITION_MIN_ID} and
+ * {@link ExecutionContextParametersNames#MONGO_PARTITION_MAX_ID} (see
+ * {@link uk.ac.ebi.eva.pipeline.io.readers.MongoDbCursorItemReader#setIdRange}).
+ * <p>
+ * The bounds are taken from a random sample of the ids of the matching documents, so all the ranges have roughly the
+ * same number of documents. The sample needs MongoDB 3.2 or later. The first and last ranges are open, so the ranges cover any document written after the
+ * partitioning. There is always the requested number of partitions, even if some of them are empty.
+ * <p>
+ * The partitions are named after their index, so on restart Spring Batch reuses the ranges saved in the execution
+ * contexts of the previous execution instead of partitioning again over documents that may have changed.
+ */
+public class MongoIdRangePartitioner implements Partitioner, PartitionNameProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoIdRangePartitioner.class);
+
+    public static final String PARTITION_PREFIX = "partition";
+
+    private static final String ID_FIELD = "_id";
+
+    private static final int SAMPLES_PER_PARTITION = 100;
+
+    private final MongoOperations template;
+
+    private final String collectionName;
+
+    private final DBObject query;
+
+    private final int numPartitions;
+
+    public MongoIdRangePartitioner(MongoOperations template, String collectionName, DBObject query,
+                                   int numPartitions) {
+        if (numPartitions <= 0) {
+            throw new IllegalArgumentException("The number of partitions must be positive, not " + numPartitions);
+        }
+        this.template = template;
+        this.collectionName = collectionName;
+        this.query = query;
+        this.numPartitions = numPartitions;
+    }
+
+    /**
+     * @param gridSize ignored, the number of partitions is the one provided in the constructor
+     */
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        List<Object> bounds = findBounds();
+
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+        for (int i = 0; i < numPartitions; i++) {
+            ExecutionContext executionContext = new ExecutionContext();
+            executionContext.put(ExecutionContextParametersNames.MONGO_PARTITION_MIN_ID, bounds.get(i));
+            executionContext.put(ExecutionContextParametersNames.MONGO_PARTITION_MAX_ID, bounds.get(i + 1));
+            configurePartition(i, executionContext);
+            partitions.put(PARTITION_PREFIX + i, executionContext);
+        }
+        return partitions;
+    }
+
+    @Override
+    public Collection<String> getPartitionNames(int gridSize) {
+        List<String> names = new ArrayList<>(numPartitions);
+        for (int i = 0; i < numPartitions; i++) {
+            names.add(PARTITION_PREFIX + i);
+        }
+        return names;
+    }
+
+    /**
+     * Adds to the execution context of a partition anything else its reader, processor or writer need.
+     */
+    protected void configurePartition(int index, ExecutionContext executionContext) {
+    }
+
+    /**
+     * The bounds are picked from a random sample of the ids of the matching documents, taken by the server with a
+     * {@code $sample} stage. Only the sampled ids, a fixed number per partition, are sent back and sorted, so there is
+     * no sort of all the ids nor a cursor over all of them, and the sizes of the ranges are accurate enough to balance
+     * the partitions. A sample larger than the matching documents returns all of them, so small collections are split
+     * exactly.
+     *
+     * @return numPartitions + 1 bounds, the first and the last ones null. Without documents, all the ranges but the
+     * last one are empty.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object> findBounds() {
+        DBCollection collection = template.getCollection(collectionName);
+        int sampleSize = numPartitions * SAMPLES_PER_PARTITION;
+        List<DBObject> pipeline = Arrays.<DBObject>asList(
+                new BasicDBObject("$match", query),
+                new BasicDBObject("$sample", new BasicDBObject("size", sampleSize)),
+                new BasicDBObject("$project", new BasicDBObject(ID_FIELD, 1)));
+        AggregationOptions options = AggregationOptions.builder()
+                                                       .outputMode(AggregationOptions.OutputMode.CURSOR)
+                                                       .allowDiskUse(true)
+                                                       .build();
+
+        List<Comparable<Object>> sample = new ArrayList<>(sampleSize);
+        try (Cursor cursor = collection.aggregate(pipeline, options)) {
+            while (cursor.hasNext()) {
+                sample.add((Comparable<Object>) cursor.next().get(ID_FIELD));
+            }
+        }
+        Collections.sort(sample);
+        logger.debug("Splitting the documents of collection {} into {} ranges of ids, from a sample of {} ids",
+                     collectionName, numPartitions, sample.size());
+
+        List<Object> bounds = new ArrayList<>(numPartitions + 1);
+        bounds.add(null);
+        for (int i = 1; i < numPartitions; i++) {
+            bounds.add(sample.isEmpty() ? new MinKey() : sample.get(getBoundPosition(i, sample.size())));
+        }
+        bounds.add(null);
+        return bounds;
+    }
+
+    private int getBoundPosition(int bound, int sampleSize) {
+        return (int) ((long) bound * sampleSize / numPartitions);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps.partitioners;
+
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Splits the variants to annotate into ranges of ids with a {@link MongoIdRangePartitioner}, and gives every partition
+ * its own part of the VEP input, in {@link ExecutionContextParametersNames#VEP_INPUT_PART}.
+ * <p>
+ * The parts are written in a temporary folder next to the VEP input. When the partitioned step completes, they are
+ * concatenated in the order of the partitions into the VEP input (every part is a sequence of gzip members, so the
+ * result is a valid gzip file) and the folder is deleted. The parts are copied between file channels, so the copy can
+ * be done by the operating system without going through the JVM heap. Every partition writes its part even if it has no
+ * variants, so a missing part fails the concatenation instead of leaving its variants out of the VEP input. If the
+ * concatenation fails, the step is marked as failed, and on restart the completed partitions are not run again and
+ * the parts are concatenated again.
+ */
+public class VepInputPartitioner extends MongoIdRangePartitioner implements StepExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(VepInputPartitioner.class);
+
+    private static final String PARTS_FOLDER_SUFFIX = ".parts";
+
+    private final File vepInput;
+
+    private final File partsFolder;
+
+    private final int numPartitions;
+
+    public VepInputPartitioner(MongoOperations template, String collectionName, DBObject query, int numPartitions,
+                               File vepInput) {
+        super(template, collectionName, query, numPartitions);
+        this.vepInput = vepInput;
+        this.partsFolder = new File(vepInput.getPath() + PARTS_FOLDER_SUFFIX);
+        this.numPartitions = numPartitions;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        if (!partsFolder.isDirectory() && !partsFolder.mkdirs()) {
+            throw new RuntimeException("Could not create the folder for the VEP input parts: " + partsFolder);
+        }
+        return super.partition(gridSize);
+    }
+
+    @Override
+    protected void configurePartition(int index, ExecutionContext executionContext) {
+        executionContext.putString(ExecutionContextParametersNames.VEP_INPUT_PART, getPart(index).getPath());
+    }
+
+    private File getPart(int index) {
+        return new File(partsFolder, "input_" + index + ".tsv.gz");
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (stepExecution.getStatus() != BatchStatus.COMPLETED) {
+            return null;
+        }
+        try {
+            concatenateParts();
+        } catch (IOException e) {
+            logger.error("Could not concatenate the VEP input parts in " + partsFolder + " into " + vepInput, e);
+            stepExecution.addFailureException(e);
+            stepExecution.setStatus(BatchStatus.FAILED);
+            return ExitStatus.FAILED.addExitDescription(e);
+        }
+        deletePartsFolder();
+        return null;
+    }
+
+    private void concatenateParts() throws IOException {
+        try (FileChannel output = FileChannel.open(vepInput.toPath(), StandardOpenOption.CREATE,
+                                                   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < numPartitions; i++) {
+                File part = getPart(i);
+                if (!part.exists()) {
+                    throw new FileNotFoundException("The VEP input part " + part + " of a completed partition is "
+                                                            + "missing");
+                }
+                transfer(part, output);
+            }
+        }
+        logger.info("VEP input parts in {} concatenated into {}", partsFolder, vepInput);
+    }
+
+    private void transfer(File part, FileChannel output) throws IOException {
+        try (FileChannel input = FileChannel.open(part.toPath(), StandardOpenOption.READ)) {
+            long size = input.size();
+            long transferred = 0;
+            while (transferred < size) {
+                transferred += input.transferTo(transferred, size - transferred, output);
+            }
+        }
+    }
+
+    private void deletePartsFolder() {
+        File[] files = partsFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    logger.warn("Could not delete temporary VEP input part {}", file);
+                }
+            }
+        }
+        if (!partsFolder.delete()) {
+            logger.warn("Could not delete temporary VEP input parts folder {}", partsFolder);
+        }
+    }
+}
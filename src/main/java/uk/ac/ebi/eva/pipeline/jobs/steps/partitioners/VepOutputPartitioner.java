@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps.partitioners;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import uk.ac.ebi.eva.pipeline.io.VepOutputSplitter;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the VEP output with a {@link VepOutputSplitter} and creates a partition for every shard, with the path of
+ * the shard in {@link ExecutionContextParametersNames#VEP_OUTPUT_SHARD}.
+ * <p>
+ * The shards are written in a temporary folder next to the VEP output, that is deleted when the partitioned step
+ * completes. The number of shards and their sizes are saved in the execution context of the partitioned step, so if
+ * the step fails, the folder is kept and a restart reuses the shards instead of splitting the VEP output again. Every
+ * partition then continues from the position saved in its own execution context. If any shard is missing or has
+ * changed, the VEP output is split again; the split is deterministic, so the shards are the same.
+ */
+public class VepOutputPartitioner implements Partitioner, StepExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(VepOutputPartitioner.class);
+
+    public static final String PARTITION_PREFIX = "partition";
+
+    private static final String PARTITIONS_FOLDER_SUFFIX = ".partitions";
+
+    private final File vepOutput;
+
+    private final File partitionsFolder;
+
+    private final int numPartitions;
+
+    private ExecutionContext stepExecutionContext;
+
+    public VepOutputPartitioner(File vepOutput, int numPartitions) {
+        this.vepOutput = vepOutput;
+        this.partitionsFolder = new File(vepOutput.getPath() + PARTITIONS_FOLDER_SUFFIX);
+        this.numPartitions = numPartitions;
+    }
+
+    /**
+     * @param gridSize ignored, the number of partitions is the one provided in the constructor
+     */
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        List<File> shards = getPreviousShards();
+        if (shards == null) {
+            shards = splitVepOutput();
+            saveShards(shards);
+            logger.info("VEP output {} split into {} partitions", vepOutput, shards.size());
+        } else {
+            logger.info("Reusing the {} partitions of VEP output {} split by a previous execution", shards.size(),
+                        vepOutput);
+        }
+
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            ExecutionContext executionContext = new ExecutionContext();
+            executionContext.putString(ExecutionContextParametersNames.VEP_OUTPUT_SHARD, shards.get(i).getPath());
+            partitions.put(PARTITION_PREFIX + i, executionContext);
+        }
+        return partitions;
+    }
+
+    private List<File> splitVepOutput() {
+        try {
+            if (!partitionsFolder.isDirectory() && !partitionsFolder.mkdirs()) {
+                throw new IOException("Could not create the folder for the VEP output partitions: "
+                                              + partitionsFolder);
+            }
+            return new VepOutputSplitter(numPartitions).split(vepOutput, partitionsFolder);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not split the VEP output " + vepOutput + " into partitions", e);
+        }
+    }
+
+    /**
+     * @return the shards written by a previous execution of the step, or null if there are none or any of them is
+     * not the same
+     */
+    private List<File> getPreviousShards() {
+        if (stepExecutionContext == null
+                || !stepExecutionContext.containsKey(ExecutionContextParametersNames.VEP_OUTPUT_NUM_SHARDS)) {
+            return null;
+        }
+        int numShards = stepExecutionContext.getInt(ExecutionContextParametersNames.VEP_OUTPUT_NUM_SHARDS);
+        List<File> shards = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            File shard = new File(partitionsFolder, VepOutputSplitter.getShardName(i));
+            long size = stepExecutionContext.getLong(ExecutionContextParametersNames.VEP_OUTPUT_SHARD_SIZE_PREFIX + i,
+                                                     -1);
+            if (!shard.isFile() || shard.length() != size) {
+                logger.warn("VEP output partition {} of a previous execution is missing or changed, the VEP output "
+                                    + "will be split again", shard);
+                return null;
+            }
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+    private void saveShards(List<File> shards) {
+        if (stepExecutionContext == null) {
+            return;
+        }
+        stepExecutionContext.putInt(ExecutionContextParametersNames.VEP_OUTPUT_NUM_SHARDS, shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            stepExecutionContext.putLong(ExecutionContextParametersNames.VEP_OUTPUT_SHARD_SIZE_PREFIX + i,
+                                         shards.get(i).length());
+        }
+    }
+
+    /**
+     * Keeps the execution context of the partitioned step, that is saved by the step when it finishes, failed or not
+     */
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        stepExecutionContext = stepExecution.getExecutionContext();
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (stepExecution.getStatus() == BatchStatus.COMPLETED) {
+            deletePartitionsFolder();
+        }
+        return null;
+    }
+
+    private void deletePartitionsFolder() {
+        File[] files = partitionsFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    logger.warn("Could not delete temporary VEP output partition {}", file);
+                }
+            }
+        }
+        if (!partitionsFolder.delete()) {
+            logger.warn("Could not delete temporary VEP output partitions folder {}", partitionsFolder);
+        }
+    }
+}
@@ -17,31 +17,27 @@
 package uk.ac.ebi.eva.pipeline.jobs.steps.processors;
 
 import com.mongodb.DBObject;
-import org.opencb.biodata.models.variant.Variant;
-import org.opencb.opencga.storage.mongodb.variant.DBObjectToVariantConverter;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.ItemProcessor;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
 import uk.ac.ebi.eva.pipeline.model.VariantWrapper;
 
 /**
  * Convert a {@link DBObject} into {@link VariantWrapper}
  * Any extra filter, check, validation... should be placed here
+ * <p>
+ * Only the fields needed by VEP are read from the document, which is not converted into a whole variant (see
+ * {@link uk.ac.ebi.eva.pipeline.io.readers.NonAnnotatedVariantsMongoReader} for the projected fields). The document
+ * is only read, so it can be lazily decoded.
  */
 public class AnnotationProcessor implements ItemProcessor<DBObject, VariantWrapper> {
-    private static final Logger logger = LoggerFactory.getLogger(AnnotationProcessor.class);
-
-    private DBObjectToVariantConverter converter;
-
-    public AnnotationProcessor() {
-        converter = new DBObjectToVariantConverter();
-    }
 
     @Override
     public VariantWrapper process(DBObject object) throws Exception {
-        //logger.debug("Convert {} into a VariantWrapper", object);
-        Variant variant = converter.convertToDataModelType(object);
-
-        return new VariantWrapper(variant);
+        return new VariantWrapper((String) object.get(VariantToDBObjectConverter.CHROMOSOME_FIELD),
+                                  ((Number) object.get(VariantToDBObjectConverter.START_FIELD)).intValue(),
+                                  ((Number) object.get(VariantToDBObjectConverter.END_FIELD)).intValue(),
+                                  (String) object.get(VariantToDBObjectConverter.REFERENCE_FIELD),
+                                  (String) object.get(VariantToDBObjectConverter.ALTERNATE_FIELD));
     }
 }
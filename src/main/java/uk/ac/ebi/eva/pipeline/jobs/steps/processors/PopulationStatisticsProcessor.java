@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps.processors;
+
+import com.mongodb.DBObject;
+import org.springframework.batch.item.ItemProcessor;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantStatsToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+import uk.ac.ebi.eva.pipeline.io.readers.VariantStatsMongoReader;
+import uk.ac.ebi.eva.pipeline.model.PopulationStatistics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies the statistics of every cohort of a variant document, as read by {@link VariantStatsMongoReader}, into a
+ * {@link PopulationStatistics} each. Only the statistics of the study and file of the step are copied, and the variant
+ * is filtered out if it has none.
+ */
+public class PopulationStatisticsProcessor implements ItemProcessor<DBObject, List<PopulationStatistics>> {
+
+    private final String studyId;
+
+    private final String fileId;
+
+    public PopulationStatisticsProcessor(String studyId, String fileId) {
+        this.studyId = studyId;
+        this.fileId = fileId;
+    }
+
+    @Override
+    public List<PopulationStatistics> process(DBObject variant) throws Exception {
+        Object stats = variant.get(VariantToDBObjectConverter.STATS_FIELD);
+        if (!(stats instanceof List)) {
+            return null;
+        }
+
+        List<PopulationStatistics> populationStatistics = new ArrayList<>();
+        for (Object cohortStats : (List) stats) {
+            DBObject stat = (DBObject) cohortStats;
+            if (studyId.equals(stat.get(VariantStatsToDBObjectConverter.STUDY_ID))
+                    && fileId.equals(stat.get(VariantStatsToDBObjectConverter.FILE_ID))) {
+                populationStatistics.add(buildPopulationStatistics(variant, stat));
+            }
+        }
+        return populationStatistics.isEmpty() ? null : populationStatistics;
+    }
+
+    private PopulationStatistics buildPopulationStatistics(DBObject variant, DBObject stat) {
+        return new PopulationStatistics(
+                (String) variant.get("_id"),
+                (String) variant.get(VariantToDBObjectConverter.CHROMOSOME_FIELD),
+                ((Number) variant.get(VariantToDBObjectConverter.START_FIELD)).intValue(),
+                (String) variant.get(VariantToDBObjectConverter.REFERENCE_FIELD),
+                (String) variant.get(VariantToDBObjectConverter.ALTERNATE_FIELD),
+                (String) stat.get(VariantStatsToDBObjectConverter.COHORT_ID),
+                studyId,
+                fileId,
+                ((Number) stat.get(VariantStatsToDBObjectConverter.MAF_FIELD)).doubleValue(),
+                ((Number) stat.get(VariantStatsToDBObjectConverter.MGF_FIELD)).doubleValue(),
+                (String) stat.get(VariantStatsToDBObjectConverter.MAFALLELE_FIELD),
+                (String) stat.get(VariantStatsToDBObjectConverter.MGFGENOTYPE_FIELD),
+                ((Number) stat.get(VariantStatsToDBObjectConverter.MISSALLELE_FIELD)).intValue(),
+                ((Number) stat.get(VariantStatsToDBObjectConverter.MISSGENOTYPE_FIELD)).intValue(),
+                getGenotypeCount((DBObject) stat.get(VariantStatsToDBObjectConverter.NUMGT_FIELD)));
+    }
+
+    private Map<String, Integer> getGenotypeCount(DBObject numGt) {
+        Map<String, Integer> genotypeCount = new HashMap<>();
+        if (numGt != null) {
+            for (String genotype : numGt.keySet()) {
+                genotypeCount.put(genotype, ((Number) numGt.get(genotype)).intValue());
+            }
+        }
+        return genotypeCount;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps.processors;
+
+import org.springframework.batch.item.ItemProcessor;
+
+import uk.ac.ebi.eva.commons.models.data.GenotypeCounter;
+import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
+import uk.ac.ebi.eva.commons.models.data.VariantStats;
+import uk.ac.ebi.eva.pipeline.io.readers.CohortsReader;
+import uk.ac.ebi.eva.pipeline.model.Cohort;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates the statistics of a genotyped {@link Variant} while it is being loaded, so that they can be written
+ * together with the variant and the population statistics flow doesn't need to read it again.
+ * <p>
+ * The statistics of all the samples are stored in the cohort {@link VariantSourceEntry#DEFAULT_COHORT}, and the
+ * statistics of the samples of every other cohort are stored under the cohort name. Every cohort is given as the
+ * positions of its samples in the VCF, as read by {@link CohortsReader}.
+ * The genotypes of the samples are translated once into the codes of a {@link GenotypeCounter}, and every cohort counts
+ * the codes of its samples, so that no genotype is parsed per sample.
+ */
+public class VariantCohortStatsProcessor implements ItemProcessor<Variant, Variant> {
+
+    private static final String GENOTYPE_FIELD = "GT";
+
+    private final List<Cohort> cohorts;
+
+    public VariantCohortStatsProcessor(List<Cohort> cohorts) {
+        this.cohorts = cohorts;
+    }
+
+    @Override
+    public Variant process(Variant variant) throws Exception {
+        GenotypeCounter genotypeCounter = new GenotypeCounter();
+        for (VariantSourceEntry sourceEntry : variant.getSourceEntries().values()) {
+            List<Map<String, String>> samplesData = sourceEntry.getSamplesData();
+
+            int[] genotypeCodes = new int[samplesData.size()];
+            for (int i = 0; i < genotypeCodes.length; i++) {
+                genotypeCodes[i] = genotypeCounter.getCode(samplesData.get(i).get(GENOTYPE_FIELD));
+                genotypeCounter.add(genotypeCodes[i]);
+            }
+            sourceEntry.setStats(new VariantStats(variant).calculate(genotypeCounter, sourceEntry.getAttributes()));
+
+            for (Cohort cohort : cohorts) {
+                genotypeCounter.clear();
+                BitSet samples = cohort.getSamples();
+                for (int i = samples.nextSetBit(0); i >= 0 && i < genotypeCodes.length; i = samples.nextSetBit(i + 1)) {
+                    genotypeCounter.add(genotypeCodes[i]);
+                }
+                sourceEntry.setCohortStats(cohort.getName(), new VariantStats(variant).calculate(
+                        genotypeCounter, sourceEntry.getAttributes()));
+            }
+            genotypeCounter.clear();
+        }
+        return variant;
+    }
+}
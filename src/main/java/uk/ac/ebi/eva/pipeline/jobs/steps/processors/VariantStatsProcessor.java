@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps.processors;
+
+import com.mongodb.DBObject;
+import org.springframework.batch.item.ItemProcessor;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantSourceEntryToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.data.GenotypeCounter;
+import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
+import uk.ac.ebi.eva.commons.models.data.VariantStats;
+import uk.ac.ebi.eva.pipeline.model.Cohort;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates the statistics of all the samples of a file from a {@link DBObject} read by
+ * {@link uk.ac.ebi.eva.pipeline.io.readers.GenotypedVariantsMongoReader}, and returns a {@link Variant} with only
+ * that file and its statistics in the cohort {@link VariantSourceEntry#DEFAULT_COHORT}.
+ * <p>
+ * The genotypes are counted straight from the indexes of the samples stored for every genotype, without building a
+ * map per sample: the samples not listed under any genotype have the default one, and the missing genotypes are
+ * stored as "-1" instead of ".". Variants without the file are filtered out.
+ * <p>
+ * The statistics of every other {@link Cohort} are stored under the cohort name. The samples listed under a genotype
+ * are marked once in a bitset, and the samples of every cohort with that genotype are counted by intersecting it with
+ * the bitset of the cohort, so many cohorts cost little more than the default one. The rest of the samples of a
+ * cohort have the default genotype.
+ * <p>
+ * This processor is not thread-safe, as the bitset and the counters are reused between variants.
+ */
+public class VariantStatsProcessor implements ItemProcessor<DBObject, Variant> {
+
+    private static final String DEFAULT_GENOTYPE = "def";
+
+    private static final String MISSING_ALLELE = ".";
+
+    private static final String STORED_MISSING_ALLELE = "-1";
+
+    private final String studyId;
+
+    private final String fileId;
+
+    private final int numSamples;
+
+    private final List<Cohort> cohorts;
+
+    private final long[] genotypeSamples;
+
+    private final GenotypeCounter allCounter;
+
+    private final GenotypeCounter[] cohortCounters;
+
+    private final int[] cohortListedSamples;
+
+    public VariantStatsProcessor(String studyId, String fileId, int numSamples) {
+        this(studyId, fileId, numSamples, Collections.emptyList());
+    }
+
+    /**
+     * @param cohorts Cohorts whose statistics are calculated besides the default one, over the sample positions of the
+     *                file
+     */
+    public VariantStatsProcessor(String studyId, String fileId, int numSamples, List<Cohort> cohorts) {
+        this.studyId = studyId;
+        this.fileId = fileId;
+        this.numSamples = numSamples;
+        this.cohorts = cohorts;
+        this.genotypeSamples = new long[(numSamples + Long.SIZE - 1) / Long.SIZE];
+        this.allCounter = new GenotypeCounter();
+        this.cohortCounters = new GenotypeCounter[cohorts.size()];
+        for (int i = 0; i < cohortCounters.length; i++) {
+            cohortCounters[i] = new GenotypeCounter();
+        }
+        this.cohortListedSamples = new int[cohorts.size()];
+    }
+
+    @Override
+    public Variant process(DBObject object) throws Exception {
+        DBObject file = findFile(object);
+        if (file == null) {
+            return null;
+        }
+
+        Variant variant = new Variant((String) object.get(VariantToDBObjectConverter.CHROMOSOME_FIELD),
+                                      ((Number) object.get(VariantToDBObjectConverter.START_FIELD)).intValue(),
+                                      ((Number) object.get(VariantToDBObjectConverter.END_FIELD)).intValue(),
+                                      (String) object.get(VariantToDBObjectConverter.REFERENCE_FIELD),
+                                      (String) object.get(VariantToDBObjectConverter.ALTERNATE_FIELD));
+
+        countGenotypes((DBObject) file.get(VariantSourceEntryToDBObjectConverter.SAMPLES_FIELD));
+        Map<String, String> attributes = getAttributes(
+                (DBObject) file.get(VariantSourceEntryToDBObjectConverter.ATTRIBUTES_FIELD));
+
+        VariantSourceEntry sourceEntry = new VariantSourceEntry(fileId, studyId);
+        sourceEntry.setStats(new VariantStats(variant).calculate(allCounter, attributes));
+        for (int i = 0; i < cohortCounters.length; i++) {
+            sourceEntry.setCohortStats(cohorts.get(i).getName(),
+                                       new VariantStats(variant).calculate(cohortCounters[i], attributes));
+        }
+        variant.addSourceEntry(sourceEntry);
+        return variant;
+    }
+
+    private DBObject findFile(DBObject object) {
+        Object files = object.get(VariantToDBObjectConverter.FILES_FIELD);
+        if (files instanceof Iterable) {
+            for (Object file : (Iterable<?>) files) {
+                DBObject fileObject = (DBObject) file;
+                if (studyId.equals(fileObject.get(VariantSourceEntryToDBObjectConverter.STUDYID_FIELD))
+                        && fileId.equals(fileObject.get(VariantSourceEntryToDBObjectConverter.FILEID_FIELD))) {
+                    return fileObject;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void countGenotypes(DBObject samples) {
+        allCounter.clear();
+        for (int i = 0; i < cohortCounters.length; i++) {
+            cohortCounters[i].clear();
+            cohortListedSamples[i] = 0;
+        }
+        if (samples == null) {
+            return;
+        }
+
+        String defaultGenotype = null;
+        int listedSamples = 0;
+        for (String genotype : samples.keySet()) {
+            Object value = samples.get(genotype);
+            if (DEFAULT_GENOTYPE.equals(genotype)) {
+                defaultGenotype = toVcfGenotype((String) value);
+            } else {
+                Collection<?> sampleIndexes = (Collection<?>) value;
+                String vcfGenotype = toVcfGenotype(genotype);
+                allCounter.add(vcfGenotype, sampleIndexes.size());
+                listedSamples += sampleIndexes.size();
+                if (cohortCounters.length > 0) {
+                    countCohortGenotype(vcfGenotype, sampleIndexes);
+                }
+            }
+        }
+
+        if (defaultGenotype != null) {
+            allCounter.add(defaultGenotype, numSamples - listedSamples);
+            for (int i = 0; i < cohortCounters.length; i++) {
+                cohortCounters[i].add(defaultGenotype, cohorts.get(i).size() - cohortListedSamples[i]);
+            }
+        }
+    }
+
+    private void countCohortGenotype(String vcfGenotype, Collection<?> sampleIndexes) {
+        setSamples(sampleIndexes, true);
+        for (int i = 0; i < cohortCounters.length; i++) {
+            int count = cohorts.get(i).countSamples(genotypeSamples);
+            cohortCounters[i].add(vcfGenotype, count);
+            cohortListedSamples[i] += count;
+        }
+        setSamples(sampleIndexes, false);
+    }
+
+    private void setSamples(Collection<?> sampleIndexes, boolean value) {
+        for (Object sampleIndex : sampleIndexes) {
+            int index = ((Number) sampleIndex).intValue();
+            if (index >= 0 && index < numSamples) {
+                if (value) {
+                    genotypeSamples[index / Long.SIZE] |= 1L << index;
+                } else {
+                    genotypeSamples[index / Long.SIZE] &= ~(1L << index);
+                }
+            }
+        }
+    }
+
+    private String toVcfGenotype(String storedGenotype) {
+        return storedGenotype.replace(STORED_MISSING_ALLELE, MISSING_ALLELE);
+    }
+
+    private Map<String, String> getAttributes(DBObject attributes) {
+        Map<String, String> attributesMap = new HashMap<>();
+        if (attributes != null) {
+            for (String key : attributes.keySet()) {
+                attributesMap.put(key, String.valueOf(attributes.get(key)));
+            }
+        }
+        return attributesMap;
+    }
+}
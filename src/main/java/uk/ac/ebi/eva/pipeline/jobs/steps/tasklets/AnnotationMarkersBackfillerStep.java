@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps.tasklets;
+
+import com.mongodb.WriteResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+import uk.ac.ebi.eva.pipeline.io.writers.VepAnnotationMongoWriter;
+import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
+
+/**
+ * Tasklet that marks the variants annotated before the annotation markers existed, so they are not annotated again.
+ * <p>
+ * The variants whose annotation has no VEP version marker are the ones the annotation steps read, so after an upgrade
+ * every variant annotated by an older version of the pipeline would be annotated again. This tasklet sets both markers
+ * of those variants to {@link VepAnnotationMongoWriter#UNKNOWN_VERSION}: they are skipped by default, and annotated
+ * again only with "annotation.overwrite". The annotations imported without markers keep the version of their
+ * annotator in another field, and are left untouched.
+ * <p>
+ * Input: variants with an annotation and without markers
+ * <p>
+ * Output: those variants are marked with unknown versions
+ */
+public class AnnotationMarkersBackfillerStep implements Tasklet {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationMarkersBackfillerStep.class);
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    @Autowired
+    private DatabaseParameters dbParameters;
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        Query query = new Query(
+                new Criteria(VariantToDBObjectConverter.ANNOTATION_FIELD).exists(true)
+                        .and(VepAnnotationMongoWriter.ANNOTATION_VEP_VERSION_FIELD).exists(false)
+                        .and(VepAnnotationMongoWriter.ANNOTATION_ANNOTATOR_VERSION_FIELD).exists(false));
+        Update update = new Update()
+                .set(VepAnnotationMongoWriter.ANNOTATION_VEP_VERSION_FIELD, VepAnnotationMongoWriter.UNKNOWN_VERSION)
+                .set(VepAnnotationMongoWriter.ANNOTATION_VEP_CACHE_VERSION_FIELD,
+                     VepAnnotationMongoWriter.UNKNOWN_VERSION);
+        logger.info("Marking the variants annotated without markers");
+        logger.trace("Query used: {}", query);
+        WriteResult writeResult = mongoOperations.updateMulti(query, update, dbParameters.getCollectionVariantsName());
+        logger.info("Result: {}", writeResult.toString());
+        contribution.incrementWriteCount(writeResult.getN());
+
+        return RepeatStatus.FINISHED;
+    }
+}
@@ -34,7 +34,9 @@ import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
  * <p>
  * Input: VEP version and VEP cache version
  * <p>
- * Output: the collection "annotationMetadata" contains the above parameters.
+ * Output: the collection "annotationMetadata" contains the above parameters, and the name of the annotations collection
+ * if the annotations are written apart from the variants. A document of the same versions written before with another
+ * layout is replaced, as the metadata id only depends on the versions.
  */
 public class AnnotationMetadataTasklet implements Tasklet {
 
@@ -52,6 +54,7 @@ public class AnnotationMetadataTasklet implements Tasklet {
         String vepCacheVersion = annotationParameters.getVepCacheVersion();
         String vepVersion = annotationParameters.getVepVersion();
         AnnotationMetadata annotationMetadata = new AnnotationMetadata(vepVersion, vepCacheVersion);
+        annotationMetadata.setAnnotationsCollection(databaseParameters.getCollectionAnnotationsName());
         writeUnlessAlreadyPresent(annotationMetadata);
         return RepeatStatus.FINISHED;
     }
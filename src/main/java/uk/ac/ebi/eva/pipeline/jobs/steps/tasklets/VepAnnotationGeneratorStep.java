@@ -20,18 +20,43 @@ import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.StepContribution;
 import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 
 import uk.ac.ebi.eva.pipeline.parameters.AnnotationParameters;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
+import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
 
-import java.io.BufferedInputStream;
+import uk.ac.ebi.eva.pipeline.io.BgzfOutputStream;
+import uk.ac.ebi.eva.pipeline.io.VepInputSplitter;
+import uk.ac.ebi.eva.pipeline.io.VepProcessManager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.zip.GZIPOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import static uk.ac.ebi.eva.pipeline.configuration.BeanNames.COMPRESSION_EXECUTOR;
 
 /**
  * Tasklet that runs @see <a href="http://www.ensembl.org/info/docs/tools/vep/index.html">VEP</a> over a list of
@@ -52,69 +77,413 @@ import java.util.zip.GZIPOutputStream;
  * 20_60479_C/T	20:60479	T	-	-	-	intergenic_variant	-	-	-	-	-	rs149529999	GMAF=T:0.0018;AFR_MAF=T:0.01;AMR_MAF=T:0.0028
  * ..
  * }
+ * <p>
+ * The input can be split in several shards of contiguous regions (see {@link VepInputSplitter}), each of them annotated
+ * as a batch by a VEP worker, with at most {@link AnnotationParameters#getVepMaxProcesses()} shards annotated at the same
+ * time. The workers are kept alive between batches by the {@link VepProcessManager}, which also limits the VEP
+ * processes of all the jobs in the application, and restarts the ones that fail or hang. The standard error of every shard is kept in its own file,
+ * so a failed shard can be diagnosed on its own. The outputs of the shards are concatenated in order into the final output file,
+ * compressed in BGZF by the compression threads of the application.
+ * <p>
+ * The number of lines and the last variant of the input of every shard are recorded in the step
+ * {@link ExecutionContext} when the input is split. The output of a shard must end with the annotation of the last
+ * variant of its input, and have at least one line per input variant, or the shard is considered truncated and the
+ * step fails.
+ * <p>
+ * Every finished shard is checkpointed in the step {@link ExecutionContext} with its number of annotation lines and its
+ * last variant, so a restarted step only runs VEP again over the shards that didn't finish. Before finishing, the
+ * concatenated output is read back and its line count and last variant are checked against the shards, so a truncated
+ * or corrupted file never reaches the annotation loading.
  */
 public class VepAnnotationGeneratorStep implements Tasklet {
     private static final Logger logger = LoggerFactory.getLogger(VepAnnotationGeneratorStep.class);
 
+    private static final String SHARDS_FOLDER_SUFFIX = ".shards";
+
+    private static final String COMMENT_PREFIX = "#";
+
+    private static final int IO_BUFFER_SIZE = 1024 * 1024;
+
+    private static final String AUTOFLUSH_WRAPPER = "use IO::Handle; STDOUT->autoflush(1); "
+            + "my $script = shift @ARGV; $0 = $script; $script = \"./$script\" unless $script =~ m{^\\.{0,2}/}; "
+            + "-f $script or die \"Could not find $script\\n\"; do $script; die $@ if $@;";
+
     @Autowired
     private AnnotationParameters annotationParameters;
 
+    @Autowired
+    private VepProcessManager vepProcessManager;
+
+    @Autowired
+    private JobOptions jobOptions;
+
+    @Autowired
+    @Qualifier(COMPRESSION_EXECUTOR)
+    private ExecutorService compressionExecutor;
+
+    private List<VepShard> shards;
+
+    private ExecutorService executor;
+
+    private CompletionService<VepShard> completionService;
+
+    private int runningShards;
+
+    /**
+     * Every call waits for one shard to finish and returns {@link RepeatStatus#CONTINUABLE}, so the checkpoint of that
+     * shard is committed before waiting for the next one. Once all of them are finished, their outputs are merged.
+     */
     @Override
     public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        ExecutionContext executionContext = chunkContext.getStepContext().getStepExecution().getExecutionContext();
 
-        ProcessBuilder processBuilder = new ProcessBuilder("perl", annotationParameters.getVepPath(),
-                                                           "--cache",
-                                                           "--cache_version", annotationParameters.getVepCacheVersion(),
-                                                           "-dir", annotationParameters.getVepCachePath(),
-                                                           "--species", annotationParameters.getVepCacheSpecies(),
-                                                           "--fasta", annotationParameters.getInputFasta(),
-                                                           "--fork", annotationParameters.getVepNumForks(),
-                                                           "-i", annotationParameters.getVepInput(),
-                                                           "-o", "STDOUT",
-                                                           "--force_overwrite",
-                                                           "--offline",
-                                                           "--everything"
-        );
+        if (shards == null) {
+            startShards(executionContext);
+        }
+
+        if (runningShards > 0) {
+            VepShard shard = waitForNextShard();
+            executionContext.putLong(getShardLinesKey(shard), shard.getLines());
+            executionContext.putString(getShardLastVariantKey(shard), shard.getLastVariant());
+            return RepeatStatus.CONTINUABLE;
+        }
+
+        File vepOutput = new File(annotationParameters.getVepOutput());
+        mergeShardOutputs(vepOutput, executionContext);
+        checkOutputIntegrity(vepOutput, executionContext);
+        deleteShardsFolder(getShardsFolder(vepOutput));
+        return RepeatStatus.FINISHED;
+    }
 
-        logger.debug("VEP annotation parameters = " + Arrays.toString(processBuilder.command().toArray()));
+    private void startShards(ExecutionContext executionContext) throws IOException {
+        File vepInput = new File(annotationParameters.getVepInput());
+        File shardsFolder = getShardsFolder(new File(annotationParameters.getVepOutput()));
+        int numShards = annotationParameters.getVepNumShards();
 
-        logger.info("Starting read from VEP output");
-        Process process = processBuilder.start();
+        if (!shardsFolder.isDirectory() && !shardsFolder.mkdirs()) {
+            throw new IOException("Could not create the folder for the VEP shards: " + shardsFolder);
+        }
 
-        long written = connectStreams(new BufferedInputStream(process.getInputStream()),
-                                      new GZIPOutputStream(new FileOutputStream(annotationParameters.getVepOutput())));
+        int previousNumShards = executionContext.getInt(ExecutionContextParametersNames.VEP_NUM_SHARDS, numShards);
+        if (previousNumShards != numShards) {
+            logger.warn("The number of VEP shards changed from {} to {}, all of them will be annotated again",
+                        previousNumShards, numShards);
+            removeShardCheckpoints(executionContext);
+        }
+        executionContext.putInt(ExecutionContextParametersNames.VEP_NUM_SHARDS, numShards);
 
-        int exitValue = process.waitFor();
-        logger.info("Finishing read from VEP output, bytes written: " + written);
+        // the split is deterministic, so a restart gets the same shards the checkpoints refer to
+        List<VepInputSplitter.Shard> shardInputs;
+        VepInputSplitter splitter = new VepInputSplitter(numShards);
+        if (numShards > 1) {
+            shardInputs = splitter.split(vepInput, shardsFolder);
+        } else {
+            shardInputs = Collections.singletonList(splitter.readAsSingleShard(vepInput));
+        }
 
-        if (exitValue > 0) {
-            String errorLog = annotationParameters.getVepOutput() + ".errors.txt";
-            connectStreams(new BufferedInputStream(process.getErrorStream()), new FileOutputStream(errorLog));
-            throw new Exception("Error while running VEP (exit status " + exitValue + "). See "
-                                        + errorLog + " for the errors description from VEP.");
+        List<String> command = buildVepCommand();
+        shards = new ArrayList<>();
+        List<VepShard> pendingShards = new ArrayList<>();
+        for (int i = 0; i < shardInputs.size(); i++) {
+            VepShard shard = new VepShard(i, shardInputs.get(i), shardsFolder, command, vepProcessManager);
+            shards.add(shard);
+            executionContext.putLong(getShardInputLinesKey(shard), shard.getInputLines());
+            executionContext.putString(getShardInputLastVariantKey(shard), shard.getInputLastVariant());
+            if (isAlreadyAnnotated(shard, executionContext)) {
+                logger.info("VEP shard {} was already annotated in a previous execution", i);
+            } else {
+                pendingShards.add(shard);
+            }
         }
 
-        return RepeatStatus.FINISHED;
+        if (pendingShards.isEmpty()) {
+            return;
+        }
+
+        int maxProcesses = Math.min(annotationParameters.getVepMaxProcesses(), pendingShards.size());
+        logger.info("Starting VEP over {} of {} shard(s) with at most {} concurrent process(es)", pendingShards.size(),
+                    shards.size(), maxProcesses);
+
+        executor = Executors.newFixedThreadPool(maxProcesses);
+        completionService = new ExecutorCompletionService<>(executor);
+        for (VepShard shard : pendingShards) {
+            completionService.submit(shard);
+        }
+        runningShards = pendingShards.size();
     }
 
     /**
-     * read all the inputStream and write it into the outputStream
-     * <p>
-     * TODO: optimize with buffers?
-     *
-     * @throws IOException
+     * The command doesn't depend on the input, so every shard can be sent to any idle VEP worker with the same
+     * parameters. The workers read the variants from their standard input, and perl flushes every line they write, so
+     * the end of a batch is seen as soon as VEP writes it.
      */
-    private long connectStreams(InputStream inputStream, OutputStream outputStream) throws IOException {
-        int read = inputStream.read();
+    private List<String> buildVepCommand() {
+        return Arrays.asList("perl", "-e", AUTOFLUSH_WRAPPER, annotationParameters.getVepPath(),
+                             "--cache",
+                             "--cache_version", annotationParameters.getVepCacheVersion(),
+                             "-dir", annotationParameters.getVepCachePath(),
+                             "--species", annotationParameters.getVepCacheSpecies(),
+                             "--fasta", annotationParameters.getInputFasta(),
+                             "--fork", annotationParameters.getVepNumForks(),
+                             "--format", "ensembl",
+                             "--buffer_size", Integer.toString(vepProcessManager.getBufferSize()),
+                             "-o", "STDOUT",
+                             "--force_overwrite",
+                             "--offline",
+                             "--everything"
+        );
+    }
+
+    private boolean isAlreadyAnnotated(VepShard shard, ExecutionContext executionContext) throws IOException {
+        if (!executionContext.containsKey(getShardLinesKey(shard)) || !shard.getOutput().isFile()) {
+            return false;
+        }
+        shard.countOutputLines();
+        return shard.isOutputComplete() && shard.getLines() == executionContext.getLong(getShardLinesKey(shard))
+                && Objects.equals(shard.getLastVariant(),
+                                  executionContext.getString(getShardLastVariantKey(shard), null));
+    }
+
+    private void removeShardCheckpoints(ExecutionContext executionContext) {
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : executionContext.entrySet()) {
+            if (entry.getKey().startsWith(ExecutionContextParametersNames.VEP_SHARD_PREFIX)) {
+                keys.add(entry.getKey());
+            }
+        }
+        for (String key : keys) {
+            executionContext.remove(key);
+        }
+    }
+
+    private VepShard waitForNextShard() throws Exception {
+        try {
+            VepShard shard = completionService.take().get();
+            runningShards--;
+            if (runningShards == 0) {
+                executor.shutdown();
+            }
+            return shard;
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+    }
+
+    /**
+     * Concatenates the output of the shards into a single compressed file. Only the header of the first shard is kept.
+     */
+    private void mergeShardOutputs(File vepOutput, ExecutionContext executionContext) throws IOException {
         long written = 0;
-        while (read != -1) {
-            written++;
-            outputStream.write(read);
-            read = inputStream.read();
+        String lastVariant = null;
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new BgzfOutputStream(new FileOutputStream(vepOutput), compressionExecutor,
+                                     jobOptions.getCompressionThreads())), IO_BUFFER_SIZE)) {
+            for (VepShard shard : shards) {
+                long shardLines = 0;
+                try (BufferedReader reader = new BufferedReader(new FileReader(shard.getOutput()), IO_BUFFER_SIZE)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith(COMMENT_PREFIX)) {
+                            if (shard.getIndex() > 0) {
+                                continue;
+                            }
+                        } else {
+                            shardLines++;
+                            lastVariant = getVariantId(line);
+                        }
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+
+                long expectedLines = executionContext.getLong(getShardLinesKey(shard));
+                if (shardLines != expectedLines) {
+                    throw new IllegalStateException("VEP output of shard " + shard.getIndex() + " has " + shardLines
+                                                            + " lines, but " + expectedLines + " were annotated");
+                }
+                if (shardLines > 0 && !Objects.equals(lastVariant, shard.getInputLastVariant())) {
+                    throw new IllegalStateException("VEP output of shard " + shard.getIndex() + " ends in variant "
+                                                            + lastVariant + ", but its input ends in variant "
+                                                            + shard.getInputLastVariant());
+                }
+                written += shardLines;
+            }
+        }
+
+        executionContext.putLong(ExecutionContextParametersNames.VEP_OUTPUT_LINES, written);
+        executionContext.putString(ExecutionContextParametersNames.VEP_OUTPUT_LAST_VARIANT, lastVariant);
+        logger.info("Finishing read from VEP output, lines written: " + written);
+    }
+
+    /**
+     * Reads back the whole compressed output, which also checks its CRC, and compares its number of annotation lines
+     * and last variant with the ones that were written.
+     */
+    private void checkOutputIntegrity(File vepOutput, ExecutionContext executionContext) throws IOException {
+        long lines = 0;
+        String lastVariant = null;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new GZIPInputStream(new FileInputStream(vepOutput))))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith(COMMENT_PREFIX)) {
+                    lines++;
+                    lastVariant = getVariantId(line);
+                }
+            }
+        }
+
+        long expectedLines = executionContext.getLong(ExecutionContextParametersNames.VEP_OUTPUT_LINES);
+        String expectedLastVariant = executionContext.getString(ExecutionContextParametersNames.VEP_OUTPUT_LAST_VARIANT,
+                                                                null);
+        if (lines != expectedLines || !Objects.equals(lastVariant, expectedLastVariant)) {
+            throw new IllegalStateException("VEP output " + vepOutput + " is not complete: it has " + lines
+                                                    + " lines ending in variant " + lastVariant + ", but "
+                                                    + expectedLines + " lines ending in variant "
+                                                    + expectedLastVariant + " were written");
+        }
+    }
+
+    private void deleteShardsFolder(File shardsFolder) {
+        File[] files = shardsFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    logger.warn("Could not delete temporary VEP file {}", file);
+                }
+            }
+        }
+        if (!shardsFolder.delete()) {
+            logger.warn("Could not delete temporary VEP folder {}", shardsFolder);
+        }
+    }
+
+    private File getShardsFolder(File vepOutput) {
+        return new File(vepOutput.getPath() + SHARDS_FOLDER_SUFFIX);
+    }
+
+    private String getShardLinesKey(VepShard shard) {
+        return ExecutionContextParametersNames.VEP_SHARD_PREFIX + shard.getIndex()
+                + ExecutionContextParametersNames.VEP_SHARD_LINES_SUFFIX;
+    }
+
+    private String getShardLastVariantKey(VepShard shard) {
+        return ExecutionContextParametersNames.VEP_SHARD_PREFIX + shard.getIndex()
+                + ExecutionContextParametersNames.VEP_SHARD_LAST_VARIANT_SUFFIX;
+    }
+
+    private String getShardInputLinesKey(VepShard shard) {
+        return ExecutionContextParametersNames.VEP_SHARD_PREFIX + shard.getIndex()
+                + ExecutionContextParametersNames.VEP_SHARD_INPUT_LINES_SUFFIX;
+    }
+
+    private String getShardInputLastVariantKey(VepShard shard) {
+        return ExecutionContextParametersNames.VEP_SHARD_PREFIX + shard.getIndex()
+                + ExecutionContextParametersNames.VEP_SHARD_INPUT_LAST_VARIANT_SUFFIX;
+    }
+
+    private static String getVariantId(String line) {
+        int firstTab = line.indexOf('\t');
+        return firstTab < 0 ? line : line.substring(0, firstTab);
+    }
+
+    /**
+     * A part of the input, annotated by a VEP worker of the {@link VepProcessManager} into its own output and errors
+     * files.
+     */
+    private static class VepShard implements Callable<VepShard> {
+
+        private final int index;
+
+        private final VepInputSplitter.Shard input;
+
+        private final File output;
+
+        private final File errors;
+
+        private final List<String> command;
+
+        private final VepProcessManager vepProcessManager;
+
+        private long lines;
+
+        private String lastVariant;
+
+        VepShard(int index, VepInputSplitter.Shard input, File shardsFolder, List<String> command,
+                 VepProcessManager vepProcessManager) {
+            this.index = index;
+            this.input = input;
+            this.output = new File(shardsFolder, "output_" + index + ".tsv");
+            this.errors = new File(shardsFolder, "errors_" + index + ".txt");
+            this.command = command;
+            this.vepProcessManager = vepProcessManager;
+        }
+
+        int getIndex() {
+            return index;
         }
 
-        outputStream.close();
-        inputStream.close();
-        return written;
+        File getOutput() {
+            return output;
+        }
+
+        long getLines() {
+            return lines;
+        }
+
+        String getLastVariant() {
+            return lastVariant;
+        }
+
+        long getInputLines() {
+            return input.getLines();
+        }
+
+        String getInputLastVariant() {
+            return input.getLastVariant();
+        }
+
+        /**
+         * VEP writes at least one line for every variant, in the same order as its input, so a complete output ends
+         * with the last variant of the input.
+         */
+        boolean isOutputComplete() {
+            return lines >= input.getLines() && Objects.equals(lastVariant, input.getLastVariant());
+        }
+
+        @Override
+        public VepShard call() throws Exception {
+            logger.debug("VEP annotation parameters for shard {} = {}", index, command);
+            vepProcessManager.annotate(command, input.getFile(), output, errors);
+
+            countOutputLines();
+            if (!isOutputComplete()) {
+                throw new IllegalStateException("VEP output of shard " + index + " is not complete: it has " + lines
+                                                        + " lines ending in variant " + lastVariant + ", but its input"
+                                                        + " has " + input.getLines() + " variants ending in "
+                                                        + input.getLastVariant() + ". See " + errors);
+            }
+            logger.info("VEP shard {} finished, {} lines annotated", index, lines);
+            return this;
+        }
+
+        void countOutputLines() throws IOException {
+            lines = 0;
+            lastVariant = null;
+            try (BufferedReader reader = new BufferedReader(new FileReader(output))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith(COMMENT_PREFIX)) {
+                        lines++;
+                        lastVariant = getVariantId(line);
+                    }
+                }
+            }
+        }
     }
 }
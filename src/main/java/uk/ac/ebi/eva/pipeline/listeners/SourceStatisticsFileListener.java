@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.listeners;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.opencb.biodata.models.variant.stats.VariantSourceStats;
+import org.opencb.datastore.core.config.DataStoreServerAddress;
+import org.opencb.opencga.lib.auth.IllegalOpenCGACredentialsException;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
+import org.opencb.opencga.storage.mongodb.utils.MongoCredentials;
+import org.opencb.opencga.storage.mongodb.variant.VariantMongoDBAdaptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+
+import uk.ac.ebi.eva.pipeline.parameters.DatabaseParameters;
+import uk.ac.ebi.eva.pipeline.parameters.MongoConnection;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Writes the statistics of a file, as precomputed by OpenCGA in a .source.stats.json.gz file, in its document of the
+ * files collection when the step that loads the statistics of its variants completes.
+ */
+public class SourceStatisticsFileListener implements StepExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SourceStatisticsFileListener.class);
+
+    private final DatabaseParameters databaseParameters;
+
+    private final File sourceStatsFile;
+
+    public SourceStatisticsFileListener(DatabaseParameters databaseParameters, File sourceStatsFile) {
+        this.databaseParameters = databaseParameters;
+        this.sourceStatsFile = sourceStatsFile;
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (stepExecution.getStatus() != BatchStatus.COMPLETED) {
+            return null;
+        }
+        try {
+            loadSourceStats(getDbAdaptor());
+        } catch (IOException | IllegalOpenCGACredentialsException | RuntimeException e) {
+            logger.error("Could not load the statistics of the file from " + sourceStatsFile, e);
+            stepExecution.addFailureException(e);
+            stepExecution.setStatus(BatchStatus.FAILED);
+            return ExitStatus.FAILED.addExitDescription(e);
+        }
+        return null;
+    }
+
+    private VariantDBAdaptor getDbAdaptor() throws UnknownHostException, IllegalOpenCGACredentialsException {
+        MongoCredentials credentials = getMongoCredentials();
+        String variantsCollectionName = databaseParameters.getCollectionVariantsName();
+        String filesCollectionName = databaseParameters.getCollectionFilesName();
+
+        logger.debug("Getting DBAdaptor to database '{}'", credentials.getMongoDbName());
+        return new VariantMongoDBAdaptor(credentials, variantsCollectionName, filesCollectionName);
+    }
+
+    private MongoCredentials getMongoCredentials() throws IllegalOpenCGACredentialsException {
+        MongoConnection mongoConnection = databaseParameters.getMongoConnection();
+        String hosts = mongoConnection.getHosts();
+        List<DataStoreServerAddress> dataStoreServerAddresses = MongoCredentials.parseDataStoreServerAddresses(hosts);
+
+        String dbName = databaseParameters.getDatabaseName();
+        String user = mongoConnection.getUser();
+        String pass = mongoConnection.getPassword();
+
+        MongoCredentials mongoCredentials = new MongoCredentials(dataStoreServerAddresses, dbName, user, pass);
+        mongoCredentials.setAuthenticationDatabase(mongoConnection.getAuthenticationDatabase());
+        return mongoCredentials;
+    }
+
+    private void loadSourceStats(VariantDBAdaptor variantDBAdaptor) throws IOException {
+        try (InputStream sourceInputStream = new GZIPInputStream(new FileInputStream(sourceStatsFile))) {
+            JsonParser sourceParser = new ObjectMapper(new JsonFactory()).getFactory().createParser(sourceInputStream);
+            VariantSourceStats variantSourceStats = sourceParser.readValueAs(VariantSourceStats.class);
+
+            variantDBAdaptor.getVariantSourceDBAdaptor().updateSourceStats(variantSourceStats, null);
+        }
+        logger.info("Statistics of the file loaded from {}", sourceStatsFile);
+    }
+}
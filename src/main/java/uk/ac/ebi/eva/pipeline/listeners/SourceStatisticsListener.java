@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.listeners;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntity;
+import uk.ac.ebi.eva.pipeline.io.writers.SourceStatisticsCounter;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes the statistics of a file in its document of the files collection when the step that calculates the
+ * statistics of its variants completes, from the counts saved by {@link SourceStatisticsCounter} in the execution
+ * context of the step. The number of samples is taken from the document of the file.
+ * <p>
+ * In a partitioned step, the counts are summed from the last execution of every partition, including the ones
+ * completed in previous executions of the job and not run again on restart. The counts can also be taken from the
+ * last execution of another step of the job, as when the statistics are calculated while loading the variants, and
+ * written once the file has been loaded.
+ */
+public class SourceStatisticsListener implements StepExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SourceStatisticsListener.class);
+
+    private static final String PARTITION_NAME_SEPARATOR = ":";
+
+    private final MongoOperations mongoOperations;
+
+    private final String collectionFilesName;
+
+    private final String studyId;
+
+    private final String fileId;
+
+    private JobRepository jobRepository;
+
+    private Collection<String> countingStepNames;
+
+    public SourceStatisticsListener(MongoOperations mongoOperations, String collectionFilesName, String studyId,
+                                    String fileId) {
+        this.mongoOperations = mongoOperations;
+        this.collectionFilesName = collectionFilesName;
+        this.studyId = studyId;
+        this.fileId = fileId;
+        this.countingStepNames = Collections.emptyList();
+    }
+
+    /**
+     * Makes the listener sum the counts of the partitions of a partitioned step, instead of the ones of the step.
+     *
+     * @param partitionStepName name of the step run in every partition
+     * @param partitionNames    names given to the partitions by the partitioner
+     */
+    public void setPartitions(JobRepository jobRepository, String partitionStepName,
+                              Collection<String> partitionNames) {
+        List<String> stepNames = new ArrayList<>();
+        for (String partitionName : partitionNames) {
+            stepNames.add(partitionStepName + PARTITION_NAME_SEPARATOR + partitionName);
+        }
+        setCountingSteps(jobRepository, stepNames);
+    }
+
+    /**
+     * Makes the listener sum the counts of the last execution of the given steps of the job, instead of the ones of
+     * the step it listens to.
+     *
+     * @param stepNames names of the steps whose writers counted the variants
+     */
+    public void setCountingSteps(JobRepository jobRepository, Collection<String> stepNames) {
+        this.jobRepository = jobRepository;
+        this.countingStepNames = stepNames;
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (stepExecution.getStatus() != BatchStatus.COMPLETED) {
+            return null;
+        }
+        try {
+            writeSourceStatistics(getExecutionContexts(stepExecution));
+        } catch (RuntimeException e) {
+            logger.error("Could not write the statistics of file " + fileId + " of study " + studyId, e);
+            stepExecution.addFailureException(e);
+            stepExecution.setStatus(BatchStatus.FAILED);
+            return ExitStatus.FAILED.addExitDescription(e);
+        }
+        return null;
+    }
+
+    private List<ExecutionContext> getExecutionContexts(StepExecution stepExecution) {
+        List<ExecutionContext> executionContexts = new ArrayList<>();
+        if (countingStepNames.isEmpty()) {
+            executionContexts.add(stepExecution.getExecutionContext());
+        } else {
+            for (String stepName : countingStepNames) {
+                StepExecution countingExecution = jobRepository.getLastStepExecution(
+                        stepExecution.getJobExecution().getJobInstance(), stepName);
+                if (countingExecution == null) {
+                    throw new IllegalStateException("No execution found for the step " + stepName);
+                }
+                executionContexts.add(countingExecution.getExecutionContext());
+            }
+        }
+        return executionContexts;
+    }
+
+    private void writeSourceStatistics(List<ExecutionContext> executionContexts) {
+        BasicDBObject query = new BasicDBObject(VariantSourceEntity.STUDYID_FIELD, studyId)
+                .append(VariantSourceEntity.FILEID_FIELD, fileId);
+        DBCollection filesCollection = mongoOperations.getCollection(collectionFilesName);
+        DBObject file = filesCollection.findOne(query, new BasicDBObject(VariantSourceEntity.SAMPLES_FIELD, 1));
+        if (file == null) {
+            throw new IllegalStateException("File " + fileId + " of study " + studyId + " not found in collection "
+                                                    + collectionFilesName);
+        }
+        DBObject samples = (DBObject) file.get(VariantSourceEntity.SAMPLES_FIELD);
+        int numSamples = samples == null ? 0 : samples.keySet().size();
+
+        BasicDBObject statistics = new BasicDBObject(VariantSourceEntity.STATISTICS_NUMSAMPLES_FIELD, numSamples);
+        for (String field : SourceStatisticsCounter.COUNTED_FIELDS) {
+            long count = 0;
+            for (ExecutionContext executionContext : executionContexts) {
+                count += executionContext.getLong(SourceStatisticsCounter.getCountKey(field), 0);
+            }
+            statistics.append(field, count);
+        }
+
+        double accumulatedQuality = 0;
+        for (ExecutionContext executionContext : executionContexts) {
+            accumulatedQuality += executionContext.getDouble(
+                    ExecutionContextParametersNames.SOURCE_STATISTICS_ACCUMULATED_QUALITY, 0);
+        }
+        long numVariants = statistics.getLong(VariantSourceEntity.STATISTICS_NUMVARIANTS_FIELD);
+        statistics.append(VariantSourceEntity.STATISTICS_MEANQUALITY_FIELD,
+                          numVariants == 0 ? 0 : (float) (accumulatedQuality / numVariants));
+
+        BasicDBObject update = new BasicDBObject("$set", new BasicDBObject(VariantSourceEntity.STATISTICS_FIELD,
+                                                                           statistics));
+        filesCollection.update(query, update);
+        logger.info("Statistics of file {} of study {} written: {}", fileId, studyId, statistics);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.model;
+
+import java.util.BitSet;
+
+/**
+ * Set of samples of a file whose statistics are calculated together, as a bitset over the positions of the samples in
+ * the file. The number of samples of the cohort among any other set of samples, like the samples with a genotype, is
+ * the cardinality of the intersection of both bitsets, so the samples don't need to be checked one by one.
+ */
+public class Cohort {
+
+    private final String name;
+
+    private final BitSet samples;
+
+    private final long[] words;
+
+    private final int size;
+
+    public Cohort(String name, BitSet samples) {
+        this.name = name;
+        this.samples = samples;
+        this.words = samples.toLongArray();
+        this.size = samples.cardinality();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BitSet getSamples() {
+        return samples;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param otherWords Bitset over the positions of the samples, as returned by {@link BitSet#toLongArray()}
+     * @return the number of samples of the cohort that are also in the bitset
+     */
+    public int countSamples(long[] otherWords) {
+        int count = 0;
+        int length = Math.min(words.length, otherWords.length);
+        for (int i = 0; i < length; i++) {
+            count += Long.bitCount(words[i] & otherWords[i]);
+        }
+        return count;
+    }
+}
@@ -34,7 +34,8 @@ import java.util.Map;
 @Profile(Application.MONGO_EXPERIMENTAL_PROFILE)
 @Document
 @CompoundIndexes({
-    @CompoundIndex(name = "vscid", def = "{'chr': 1, 'start': 1, 'ref': 1, 'alt': 1, 'sid': 1, 'cid': 1}", unique = true)
+    @CompoundIndex(name = "vsfcid", def = "{'chr': 1, 'start': 1, 'ref': 1, 'alt': 1, 'sid': 1, 'fid': 1, 'cid': 1}",
+            unique = true)
 })
 public class PopulationStatistics {
 
@@ -46,6 +47,7 @@ public class PopulationStatistics {
 
     @Field(value = "cid") private String cohortId;
     @Field(value = "sid") private String studyId;
+    @Field(value = "fid") private String fileId;
 
     @Field(value = "maf") private double maf;
     @Field(value = "mgf") private double mgf;
@@ -63,6 +65,7 @@ public class PopulationStatistics {
                                 String alternate,
                                 String cohortId,
                                 String studyId,
+                                String fileId,
                                 double maf,
                                 double mgf,
                                 String mafAllele,
@@ -79,6 +82,7 @@ public class PopulationStatistics {
 
         setCohortId(cohortId);
         setStudyId(studyId);
+        setFileId(fileId);
 
         setMaf(maf);
         setMgf(mgf);
@@ -155,6 +159,17 @@ public class PopulationStatistics {
         this.studyId = studyId;
     }
 
+    public String getFileId() {
+        return fileId;
+    }
+
+    void setFileId(String fileId) {
+        if (fileId == null || fileId.isEmpty()) {
+            throw new IllegalArgumentException("fileId (fid) should not be null");
+        }
+        this.fileId = fileId;
+    }
+
     public double getMaf() {
         return maf;
     }
@@ -18,31 +18,85 @@ package uk.ac.ebi.eva.pipeline.model;
 import org.opencb.biodata.models.variant.Variant;
 
 /**
- * Container for {@link Variant} including strand. By default strand in VCF is always '+'
+ * Coordinates and alleles of a variant in Ensembl format, including strand. By default strand in VCF is always '+'
+ * <p>
+ * The conversion to Ensembl format is the one done by {@link Variant#copyInEnsemblFormat()}, but without copying the
+ * variant. See http://www.ensembl.org/info/docs/tools/vep/vep_formats.html
  */
 public class VariantWrapper {
 
-    private Variant variant;
+    private static final String EMPTY_ALLELE = "-";
+
+    private String chr;
+    private int start;
+    private int end;
+    private String reference;
+    private String alternate;
     private String strand = "+";
 
     public VariantWrapper(Variant variant) {
-        this.variant = variant.copyInEnsemblFormat();
+        this(variant.getChromosome(), variant.getStart(), variant.getEnd(), variant.getReference(),
+             variant.getAlternate());
+    }
+
+    public VariantWrapper(String chr, int start, int end, String reference, String alternate) {
+        this.chr = chr;
+        this.start = start;
+        this.end = end;
+        this.reference = reference;
+        this.alternate = alternate;
+
+        // SNVs stay the same, the rest (MNVs, indels and SVs) get the Ensembl coordinates
+        if (reference.length() != alternate.length() || reference.length() > 1) {
+            transformToEnsemblFormat();
+        }
+    }
+
+    private void transformToEnsemblFormat() {
+        if (!reference.isEmpty() && !alternate.isEmpty() && reference.charAt(0) == alternate.charAt(0)) {
+            reference = reference.substring(1);
+            alternate = alternate.substring(1);
+            start++;
+        }
+
+        // ensembl sets: end = start + reference.length -1
+        end = start + reference.length() - 1;
+
+        if (reference.length() < alternate.length()) {  // insertion
+            // and ensembl in insertions sets: start = end+1
+            start = end + 1;
+        }
+
+        if (reference.isEmpty()) {
+            reference = EMPTY_ALLELE;
+        }
+        if (alternate.isEmpty()) {
+            alternate = EMPTY_ALLELE;
+        }
     }
 
     public String getChr() {
-        return variant.getChromosome();
+        return chr;
     }
 
     public int getStart() {
-        return variant.getStart();
+        return start;
     }
 
     public int getEnd() {
-        return variant.getEnd();
+        return end;
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    public String getAlternate() {
+        return alternate;
     }
 
     public String getRefAlt() {
-        return String.format("%s/%s", variant.getReference(), variant.getAlternate());
+        return reference + "/" + alternate;
     }
 
     public String getStrand() {
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.model.converters.data;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.util.Assert;
+
+import uk.ac.ebi.eva.pipeline.model.PopulationStatistics;
+
+/**
+ * Converts a {@link PopulationStatistics} into mongoDb {@link DBObject}
+ * <p>
+ * The document is built field by field with the same names as the mapping of {@link PopulationStatistics}, so that
+ * it can be written without the reflection of the mapping context.
+ */
+public class PopulationStatisticsToMongoDbObjectConverter implements Converter<PopulationStatistics, DBObject> {
+
+    public static final String VARIANT_ID_FIELD = "vid";
+
+    public static final String CHROMOSOME_FIELD = "chr";
+
+    public static final String START_FIELD = "start";
+
+    public static final String REFERENCE_FIELD = "ref";
+
+    public static final String ALTERNATE_FIELD = "alt";
+
+    public static final String COHORT_ID_FIELD = "cid";
+
+    public static final String STUDY_ID_FIELD = "sid";
+
+    public static final String FILE_ID_FIELD = "fid";
+
+    public static final String MAF_FIELD = "maf";
+
+    public static final String MGF_FIELD = "mgf";
+
+    public static final String MAF_ALLELE_FIELD = "mafAl";
+
+    public static final String MGF_GENOTYPE_FIELD = "mgfGt";
+
+    public static final String MISSING_ALLELES_FIELD = "missAl";
+
+    public static final String MISSING_GENOTYPES_FIELD = "missGt";
+
+    public static final String GENOTYPE_COUNT_FIELD = "numGt";
+
+    @Override
+    public DBObject convert(PopulationStatistics statistics) {
+        Assert.notNull(statistics, "PopulationStatistics should not be null");
+
+        BasicDBObject document = buildKey(statistics)
+                .append(VARIANT_ID_FIELD, statistics.getVariantId())
+                .append(MAF_FIELD, statistics.getMaf())
+                .append(MGF_FIELD, statistics.getMgf())
+                .append(MAF_ALLELE_FIELD, statistics.getMafAllele())
+                .append(MGF_GENOTYPE_FIELD, statistics.getMgfGenotype())
+                .append(MISSING_ALLELES_FIELD, statistics.getMissingAlleles())
+                .append(MISSING_GENOTYPES_FIELD, statistics.getMissingGenotypes());
+        if (statistics.getGenotypeCount() != null) {
+            document.append(GENOTYPE_COUNT_FIELD, new BasicDBObject(statistics.getGenotypeCount()));
+        }
+        return document;
+    }
+
+    /**
+     * @return the fields of the unique index of the population statistics: the coordinates of the variant, the study,
+     * the file and the cohort
+     */
+    public BasicDBObject buildKey(PopulationStatistics statistics) {
+        return new BasicDBObject(CHROMOSOME_FIELD, statistics.getChromosome())
+                .append(START_FIELD, statistics.getStart())
+                .append(REFERENCE_FIELD, statistics.getReference())
+                .append(ALTERNATE_FIELD, statistics.getAlternate())
+                .append(STUDY_ID_FIELD, statistics.getStudyId())
+                .append(FILE_ID_FIELD, statistics.getFileId())
+                .append(COHORT_ID_FIELD, statistics.getCohortId());
+    }
+}
@@ -19,6 +19,7 @@ import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import uk.ac.ebi.eva.pipeline.io.writers.AnnotationWriteStrategy;
 import uk.ac.ebi.eva.utils.URLHelper;
 
 /**
@@ -34,6 +35,7 @@ import uk.ac.ebi.eva.utils.URLHelper;
 public class AnnotationParameters {
     private static final String PARAMETER = "#{jobParameters['";
     private static final String END = "']}";
+    private static final String OR_NULL = "']?:null}";
 
     @Value(PARAMETER + JobParametersNames.OUTPUT_DIR_ANNOTATION + END)
     private String outputDirAnnotation;
@@ -62,9 +64,30 @@ public class AnnotationParameters {
     @Value(PARAMETER + JobParametersNames.APP_VEP_NUMFORKS + END)
     private String vepNumForks;
 
+    @Value(PARAMETER + JobParametersNames.APP_VEP_NUM_SHARDS + "']?:1}")
+    private int vepNumShards;
+
+    @Value(PARAMETER + JobParametersNames.APP_VEP_MAX_PROCESSES + OR_NULL)
+    private Integer vepMaxProcesses;
+
+    @Value(PARAMETER + JobParametersNames.APP_VEP_ANNOTATION_CACHE_PATH + OR_NULL)
+    private String vepAnnotationCachePath;
+
+    @Value(PARAMETER + JobParametersNames.APP_VEP_ANNOTATION_CACHE_MAX_ENTRIES + "']?:10000000}")
+    private long vepAnnotationCacheMaxEntries;
+
     @Value(PARAMETER + JobParametersNames.INPUT_FASTA + END)
     private String inputFasta;
 
+    @Value(PARAMETER + JobParametersNames.ANNOTATION_OVERWRITE + "']?:false}")
+    private boolean annotationOverwrite;
+
+    @Value(PARAMETER + JobParametersNames.ANNOTATION_WRITE_STRATEGY + OR_NULL)
+    private String annotationWriteStrategy;
+
+    @Value(PARAMETER + JobParametersNames.CONFIG_ANNOTATION_LOAD_PARTITIONS + "']?:1}")
+    private int annotationLoadPartitions;
+
     public String getVepPath() {
         return vepPath;
     }
@@ -89,10 +112,61 @@ public class AnnotationParameters {
         return vepNumForks;
     }
 
+    public int getVepNumShards() {
+        return vepNumShards;
+    }
+
+    /**
+     * @return the maximum number of VEP processes that can run at the same time. If not provided, every shard will
+     * have its own process running concurrently.
+     */
+    public int getVepMaxProcesses() {
+        return vepMaxProcesses == null ? vepNumShards : vepMaxProcesses;
+    }
+
+    /**
+     * @return the directory of the local annotation cache, or null if annotations should not be cached.
+     */
+    public String getVepAnnotationCachePath() {
+        return vepAnnotationCachePath;
+    }
+
+    public long getVepAnnotationCacheMaxEntries() {
+        return vepAnnotationCacheMaxEntries;
+    }
+
     public String getInputFasta() {
         return inputFasta;
     }
 
+    /**
+     * @return whether the variants annotated with other VEP or VEP cache versions should be annotated again, replacing
+     * their annotation.
+     */
+    public boolean getAnnotationOverwrite() {
+        return annotationOverwrite;
+    }
+
+    /**
+     * @return how the annotations are written into the variants. Re-annotations always replace the previous annotation,
+     * and the rest merge it by default.
+     */
+    public AnnotationWriteStrategy getAnnotationWriteStrategy() {
+        if (annotationOverwrite) {
+            return AnnotationWriteStrategy.REPLACE;
+        }
+        return annotationWriteStrategy == null ? AnnotationWriteStrategy.MERGE
+                : AnnotationWriteStrategy.valueOf(annotationWriteStrategy);
+    }
+
+    /**
+     * @return the number of shards the VEP output is split into to load them concurrently. With 1 partition the VEP
+     * output is loaded as a whole.
+     */
+    public int getAnnotationLoadPartitions() {
+        return annotationLoadPartitions;
+    }
+
     public String getVepInput() {
         return URLHelper.resolveVepInput(outputDirAnnotation, studyId, fileId);
     }
@@ -30,6 +30,7 @@ public class DatabaseParameters {
 
     private static final String PARAMETER = "#{jobParameters['";
     private static final String END = "']}";
+    private static final String OR_NULL = "']?:null}";
 
     @Value(PARAMETER + JobParametersNames.DB_NAME + END)
     private String databaseName;
@@ -46,6 +47,27 @@ public class DatabaseParameters {
     @Value(PARAMETER + JobParametersNames.DB_COLLECTIONS_ANNOTATION_METADATA_NAME + END)
     private String collectionAnnotationMetadataName;
 
+    @Value(PARAMETER + JobParametersNames.DB_COLLECTIONS_STATISTICS_NAME + END)
+    private String collectionStatisticsName;
+
+    @Value(PARAMETER + JobParametersNames.DB_COLLECTIONS_ANNOTATIONS_NAME + OR_NULL)
+    private String collectionAnnotationsName;
+
+    @Value(PARAMETER + JobParametersNames.CONFIG_DB_READ_THREADS + "']?:1}")
+    private int readThreads;
+
+    @Value(PARAMETER + JobParametersNames.CONFIG_DB_CURSOR_BATCH_SIZE + "']?:0}")
+    private int cursorBatchSize;
+
+    @Value(PARAMETER + JobParametersNames.CONFIG_DB_READ_PREFETCH + "']?:0}")
+    private int readPrefetch;
+
+    @Value(PARAMETER + JobParametersNames.CONFIG_DB_READ_LAZY_DECODING + "']?:false}")
+    private boolean readLazyDecoding;
+
+    @Value(PARAMETER + JobParametersNames.CONFIG_DB_READ_PARTITIONS + "']?:1}")
+    private int readPartitions;
+
     @Autowired
     private MongoConnection mongoConnection;
 
@@ -72,4 +94,53 @@ public class DatabaseParameters {
     public String getCollectionAnnotationMetadataName() {
         return collectionAnnotationMetadataName;
     }
+
+    /**
+     * @return the experimental collection where the statistics of every cohort of a variant are written apart from
+     * the variants
+     */
+    public String getCollectionStatisticsName() {
+        return collectionStatisticsName;
+    }
+
+    /**
+     * @return the collection where the annotations are written apart from the variants, or null if they are written
+     * inside the variant documents
+     */
+    public String getCollectionAnnotationsName() {
+        return collectionAnnotationsName;
+    }
+
+    public int getReadThreads() {
+        return readThreads;
+    }
+
+    /**
+     * @return the number of documents brought from the server in every round trip of a cursor, or 0 to let the
+     * server decide.
+     */
+    public int getCursorBatchSize() {
+        return cursorBatchSize;
+    }
+
+    /**
+     * @return the number of documents read ahead in a background thread, or 0 to read them only when requested.
+     */
+    public int getReadPrefetch() {
+        return readPrefetch;
+    }
+
+    /**
+     * @return whether the documents read are decoded only when their fields are accessed.
+     */
+    public boolean isReadLazyDecoding() {
+        return readLazyDecoding;
+    }
+
+    /**
+     * @return the number of ranges of ids the non-annotated variants are split into, to read them in parallel.
+     */
+    public int getReadPartitions() {
+        return readPartitions;
+    }
 }
@@ -20,4 +20,42 @@ package uk.ac.ebi.eva.pipeline.parameters;
  */
 public class ExecutionContextParametersNames {
     public static final String NUMBER_OF_LINES = "line";
+
+    public static final String VEP_INPUT_POSITION = "vep.input.position";
+
+    public static final String VEP_NUM_SHARDS = "vep.shards";
+
+    public static final String VEP_SHARD_PREFIX = "vep.shard.";
+
+    public static final String VEP_SHARD_LINES_SUFFIX = ".lines";
+
+    public static final String VEP_SHARD_LAST_VARIANT_SUFFIX = ".last-variant";
+
+    public static final String VEP_SHARD_INPUT_LINES_SUFFIX = ".input.lines";
+
+    public static final String VEP_SHARD_INPUT_LAST_VARIANT_SUFFIX = ".input.last-variant";
+
+    public static final String VEP_OUTPUT_LINES = "vep.output.lines";
+
+    public static final String VEP_OUTPUT_LAST_VARIANT = "vep.output.last-variant";
+
+    public static final String VEP_OUTPUT_SHARD = "vep.output.shard";
+
+    public static final String VEP_OUTPUT_NUM_SHARDS = "vep.output.shards";
+
+    public static final String VEP_OUTPUT_SHARD_SIZE_PREFIX = "vep.output.shard-size.";
+
+    public static final String VEP_INPUT_PART = "vep.input.part";
+
+    public static final String MONGO_PARTITION_MIN_ID = "mongo.partition.min-id";
+
+    public static final String MONGO_PARTITION_MAX_ID = "mongo.partition.max-id";
+
+    public static final String ANNOTATION_CACHE_HITS = "annotation-cache.hits";
+
+    public static final String ANNOTATION_CACHE_MISSES = "annotation-cache.misses";
+
+    public static final String SOURCE_STATISTICS_PREFIX = "source-statistics.";
+
+    public static final String SOURCE_STATISTICS_ACCUMULATED_QUALITY = SOURCE_STATISTICS_PREFIX + "accumulated-quality";
 }
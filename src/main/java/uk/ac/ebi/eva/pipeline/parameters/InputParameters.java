@@ -47,6 +47,9 @@ public class InputParameters {
     @Value(PARAMETER + JobParametersNames.INPUT_PEDIGREE + END)
     private String pedigree;
 
+    @Value(PARAMETER + JobParametersNames.INPUT_COHORTS + OR_NULL)
+    private String cohorts;
+
     @Value(PARAMETER + JobParametersNames.INPUT_VCF_AGGREGATION + "']?:'NONE'}")
     private String vcfAggregation;
 
@@ -59,6 +62,9 @@ public class InputParameters {
     @Value(PARAMETER + JobParametersNames.INPUT_VCF_AGGREGATION_MAPPING_PATH + OR_NULL)
     private String aggregatedMappingFile;
 
+    @Value(PARAMETER + JobParametersNames.INPUT_VCF_IMPORT_ANNOTATION + "']?:false}")
+    private boolean vcfImportAnnotation;
+
     @Value(PARAMETER + JobParametersNames.CONFIG_CHUNK_SIZE + "']?:1000}")
     private int chunkSize;
 
@@ -70,6 +76,10 @@ public class InputParameters {
         return VariantSource.Aggregation.valueOf(vcfAggregation);
     }
 
+    public boolean getVcfImportAnnotation() {
+        return vcfImportAnnotation;
+    }
+
     public String getStudyId() {
         return studyId;
     }
@@ -98,6 +108,10 @@ public class InputParameters {
         return pedigree;
     }
 
+    public String getCohorts() {
+        return cohorts;
+    }
+
     public String getAggregatedMappingFile() {
         return aggregatedMappingFile;
     }
@@ -40,6 +40,32 @@ public class JobOptions {
     // Pipeline application options.
     @Value("${" + JobParametersNames.CONFIG_RESTARTABILITY_ALLOW + ":false}") private boolean allowStartIfComplete;
 
+    // VEP workers, shared by all the jobs run by the application
+    @Value("${" + JobParametersNames.APP_VEP_WORKERS_MAX + ":#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int vepMaxWorkers;
+    @Value("${" + JobParametersNames.APP_VEP_WORKERS_MAX_MEMORY + ":#{null}}") private Integer vepWorkerMaxMemory;
+    @Value("${" + JobParametersNames.APP_VEP_WORKERS_STALL_TIMEOUT + ":3600}") private long vepWorkerStallTimeout;
+
+    // Threads loading the partitions of the VEP output, shared by all the jobs run by the application
+    @Value("${" + JobParametersNames.CONFIG_ANNOTATION_LOAD_MAX_THREADS
+                   + ":#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int annotationLoadMaxThreads;
+
+    // Threads reading the partitions of the non-annotated variants, shared by all the jobs run by the application
+    @Value("${" + JobParametersNames.CONFIG_DB_READ_PARTITIONS_MAX_THREADS
+                   + ":#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int readPartitionsMaxThreads;
+
+    // Threads compressing the output files, shared by all the jobs run by the application
+    @Value("${" + JobParametersNames.APP_COMPRESSION_THREADS
+                   + ":#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int compressionThreads;
+
+    // Threads writing the precomputed statistics into the database, shared by all the jobs run by the application
+    @Value("${" + JobParametersNames.APP_STATISTICS_LOAD_THREADS
+                   + ":#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int statisticsLoadThreads;
+
     @PostConstruct
     public void loadArgs() {
         logger.info("Loading job arguments");
@@ -54,4 +80,32 @@ public class JobOptions {
         return allowStartIfComplete;
     }
 
+    public int getVepMaxWorkers() {
+        return vepMaxWorkers;
+    }
+
+    public Integer getVepWorkerMaxMemory() {
+        return vepWorkerMaxMemory;
+    }
+
+    public long getVepWorkerStallTimeout() {
+        return vepWorkerStallTimeout;
+    }
+
+    public int getAnnotationLoadMaxThreads() {
+        return annotationLoadMaxThreads;
+    }
+
+    public int getReadPartitionsMaxThreads() {
+        return readPartitionsMaxThreads;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    public int getStatisticsLoadThreads() {
+        return statisticsLoadThreads;
+    }
+
 }
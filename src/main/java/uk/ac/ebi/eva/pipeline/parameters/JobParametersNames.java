@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,8 @@ public class JobParametersNames {
 
     public static final String INPUT_VCF_AGGREGATION = "input.vcf.aggregation";
 
+    public static final String INPUT_VCF_IMPORT_ANNOTATION = "input.vcf.import-annotation";
+
     public static final String INPUT_STUDY_NAME = "input.study.name";
 
     public static final String INPUT_STUDY_ID = "input.study.id";
@@ -37,6 +39,8 @@ public class JobParametersNames {
 
     public static final String INPUT_PEDIGREE = "input.pedigree";
 
+    public static final String INPUT_COHORTS = "input.cohorts";
+
     public static final String INPUT_GTF = "input.gtf";
 
     public static final String INPUT_FASTA = "input.fasta";
@@ -68,6 +72,18 @@ public class JobParametersNames {
 
     public static final String CONFIG_DB_READPREFERENCE = "config.db.read-preference";
 
+    public static final String CONFIG_DB_READ_THREADS = "config.db.read-threads";
+
+    public static final String CONFIG_DB_CURSOR_BATCH_SIZE = "config.db.cursor-batch-size";
+
+    public static final String CONFIG_DB_READ_PREFETCH = "config.db.read-prefetch";
+
+    public static final String CONFIG_DB_READ_LAZY_DECODING = "config.db.read-lazy-decoding";
+
+    public static final String CONFIG_DB_READ_PARTITIONS = "config.db.read-partitions";
+
+    public static final String CONFIG_DB_READ_PARTITIONS_MAX_THREADS = "config.db.read-partitions.max-threads";
+
 
     /*
      * Database and collections
@@ -85,6 +101,8 @@ public class JobParametersNames {
 
     public static final String DB_COLLECTIONS_ANNOTATION_METADATA_NAME = "db.collections.annotation.metadata.name";
 
+    public static final String DB_COLLECTIONS_ANNOTATIONS_NAME = "db.collections.annotations.name";
+
 
     /*
      * Skip and overwrite steps
@@ -92,10 +110,22 @@ public class JobParametersNames {
 
     public static final String ANNOTATION_SKIP = "annotation.skip";
 
+    public static final String ANNOTATION_OVERWRITE = "annotation.overwrite";
+
+    public static final String ANNOTATION_WRITE_STRATEGY = "annotation.write-strategy";
+
     public static final String STATISTICS_SKIP = "statistics.skip";
 
     public static final String STATISTICS_OVERWRITE = "statistics.overwrite";
 
+    public static final String STATISTICS_NATIVE = "statistics.native";
+
+    public static final String STATISTICS_INLINE = "statistics.inline";
+
+    public static final String STATISTICS_INCREMENTAL = "statistics.incremental";
+
+    public static final String STATISTICS_PEDIGREE_COHORTS = "statistics.pedigree-cohorts";
+
 
     /*
      * OpenCGA (parameters read from OpenCGA "conf" folder)
@@ -134,6 +164,24 @@ public class JobParametersNames {
 
     public static final String APP_VEP_NUMFORKS = "app.vep.num-forks";
 
+    public static final String APP_VEP_NUM_SHARDS = "app.vep.num-shards";
+
+    public static final String APP_VEP_MAX_PROCESSES = "app.vep.max-processes";
+
+    public static final String APP_VEP_ANNOTATION_CACHE_PATH = "app.vep.annotation-cache.path";
+
+    public static final String APP_VEP_ANNOTATION_CACHE_MAX_ENTRIES = "app.vep.annotation-cache.max-entries";
+
+    public static final String APP_VEP_WORKERS_MAX = "app.vep.workers.max";
+
+    public static final String APP_VEP_WORKERS_MAX_MEMORY = "app.vep.workers.max-memory-mb";
+
+    public static final String APP_VEP_WORKERS_STALL_TIMEOUT = "app.vep.workers.stall-timeout-seconds";
+
+    public static final String APP_COMPRESSION_THREADS = "app.compression.threads";
+
+    public static final String APP_STATISTICS_LOAD_THREADS = "app.statistics.load.threads";
+
 
     /*
      * Other configuration
@@ -143,6 +191,10 @@ public class JobParametersNames {
 
     public static final String CONFIG_CHUNK_SIZE = "config.chunk.size";
 
+    public static final String CONFIG_ANNOTATION_LOAD_PARTITIONS = "config.annotation.load.partitions";
+
+    public static final String CONFIG_ANNOTATION_LOAD_MAX_THREADS = "config.annotation.load.max-threads";
+
 
     public static final String PROPERTY_FILE_PROPERTY = "parameters.path";
 
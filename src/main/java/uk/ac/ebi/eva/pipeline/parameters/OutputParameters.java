@@ -19,6 +19,8 @@ import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import uk.ac.ebi.eva.pipeline.io.readers.PedigreeGrouping;
+
 /**
  * Service that holds access to Job input parameters.
  */
@@ -28,6 +30,7 @@ public class OutputParameters {
 
     private static final String PARAMETER = "#{jobParameters['";
     private static final String END = "']}";
+    private static final String OR_NULL = "']?:null}";
 
     @Value(PARAMETER + JobParametersNames.OUTPUT_DIR  + END)
     private String outputDir;
@@ -41,6 +44,15 @@ public class OutputParameters {
     @Value(PARAMETER + JobParametersNames.STATISTICS_OVERWRITE  + "']?:false}")
     private boolean statisticsOverwrite;
 
+    @Value(PARAMETER + JobParametersNames.STATISTICS_INLINE  + "']?:false}")
+    private boolean statisticsInline;
+
+    @Value(PARAMETER + JobParametersNames.STATISTICS_INCREMENTAL  + "']?:false}")
+    private boolean statisticsIncremental;
+
+    @Value(PARAMETER + JobParametersNames.STATISTICS_PEDIGREE_COHORTS + OR_NULL)
+    private String statisticsPedigreeCohorts;
+
     public String getOutputDir() {
         return outputDir;
     }
@@ -56,4 +68,20 @@ public class OutputParameters {
     public boolean getStatisticsOverwrite() {
         return statisticsOverwrite;
     }
+
+    public boolean getStatisticsInline() {
+        return statisticsInline;
+    }
+
+    public boolean getStatisticsIncremental() {
+        return statisticsIncremental;
+    }
+
+    /**
+     * @return how the individuals of the pedigree are grouped into cohorts, by family by default.
+     */
+    public PedigreeGrouping getStatisticsPedigreeCohorts() {
+        return statisticsPedigreeCohorts == null ? PedigreeGrouping.FAMILY
+                : PedigreeGrouping.valueOf(statisticsPedigreeCohorts);
+    }
 }
@@ -21,6 +21,7 @@ import org.springframework.batch.core.JobParametersValidator;
 import org.springframework.batch.core.job.CompositeJobParametersValidator;
 import org.springframework.batch.core.job.DefaultJobParametersValidator;
 
+import uk.ac.ebi.eva.pipeline.jobs.deciders.StatisticsSkipStepDecider;
 import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
 import uk.ac.ebi.eva.pipeline.parameters.validation.step.AnnotationLoaderStepParametersValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.step.AnnotationMetadataStepParametersValidator;
@@ -58,8 +59,7 @@ public class GenotypedVcfJobParametersValidator extends DefaultJobParametersVali
             jobParametersValidators.add(new AnnotationMetadataStepParametersValidator());
         }
 
-        Boolean skipStats = Boolean.valueOf(jobParameters.getString(JobParametersNames.STATISTICS_SKIP));
-        if (!skipStats) {
+        if (!StatisticsSkipStepDecider.isStatisticsFlowSkipped(jobParameters)) {
             jobParametersValidators.add(new PopulationStatisticsGeneratorStepParametersValidator());
             jobParametersValidators.add(new PopulationStatisticsLoaderStepParametersValidator());
         }
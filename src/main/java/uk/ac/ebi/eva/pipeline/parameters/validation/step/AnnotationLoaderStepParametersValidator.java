@@ -56,7 +56,18 @@ public class AnnotationLoaderStepParametersValidator extends DefaultJobParameter
                 new InputVcfIdValidator(),
                 new OptionalValidator(new ConfigRestartabilityAllowValidator(),
                                       JobParametersNames.CONFIG_RESTARTABILITY_ALLOW),
-                new OptionalValidator(new ConfigChunkSizeValidator(), JobParametersNames.CONFIG_CHUNK_SIZE)
+                new OptionalValidator(new ConfigChunkSizeValidator(), JobParametersNames.CONFIG_CHUNK_SIZE),
+                new OptionalValidator(new VepAnnotationCachePathValidator(),
+                                      JobParametersNames.APP_VEP_ANNOTATION_CACHE_PATH),
+                new OptionalValidator(new VepAnnotationCacheMaxEntriesValidator(),
+                                      JobParametersNames.APP_VEP_ANNOTATION_CACHE_MAX_ENTRIES),
+                new OptionalValidator(new AnnotationOverwriteValidator(), JobParametersNames.ANNOTATION_OVERWRITE),
+                new OptionalValidator(new AnnotationWriteStrategyValidator(),
+                                      JobParametersNames.ANNOTATION_WRITE_STRATEGY),
+                new OptionalValidator(new DbCollectionsAnnotationsNameValidator(),
+                                      JobParametersNames.DB_COLLECTIONS_ANNOTATIONS_NAME),
+                new OptionalValidator(new ConfigAnnotationLoadPartitionsValidator(),
+                                      JobParametersNames.CONFIG_ANNOTATION_LOAD_PARTITIONS)
         );
 
         CompositeJobParametersValidator compositeJobParametersValidator = new CompositeJobParametersValidator();
@@ -23,6 +23,8 @@ import org.springframework.batch.core.job.DefaultJobParametersValidator;
 
 import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
 import uk.ac.ebi.eva.pipeline.parameters.validation.DbCollectionsAnnotationMetadataNameValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.DbCollectionsAnnotationsNameValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.OptionalValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.VepCacheVersionValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.VepVersionValidator;
 
@@ -51,7 +53,9 @@ public class AnnotationMetadataStepParametersValidator extends DefaultJobParamet
         final List<JobParametersValidator> jobParametersValidators = Arrays.asList(
                 new DbCollectionsAnnotationMetadataNameValidator(),
                 new VepCacheVersionValidator(),
-                new VepVersionValidator()
+                new VepVersionValidator(),
+                new OptionalValidator(new DbCollectionsAnnotationsNameValidator(),
+                                      JobParametersNames.DB_COLLECTIONS_ANNOTATIONS_NAME)
         );
 
         CompositeJobParametersValidator compositeJobParametersValidator = new CompositeJobParametersValidator();
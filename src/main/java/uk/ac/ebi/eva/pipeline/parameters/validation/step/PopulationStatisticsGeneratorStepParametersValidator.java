@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,12 +23,17 @@ import org.springframework.batch.core.job.DefaultJobParametersValidator;
 
 import uk.ac.ebi.eva.pipeline.jobs.steps.tasklets.PopulationStatisticsGeneratorStep;
 import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
+import uk.ac.ebi.eva.pipeline.parameters.validation.ConfigDbReadPartitionsValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.DbNameValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.InputCohortsValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.InputStudyIdValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.InputVcfIdValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.OptionalValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.OutputDirStatisticsValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.StatisticsIncrementalValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.StatisticsNativeValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.StatisticsOverwriteValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.StatisticsPedigreeCohortsValidator;
 
 import java.util.Arrays;
 import java.util.List;
@@ -56,6 +61,14 @@ public class PopulationStatisticsGeneratorStepParametersValidator extends Defaul
     private CompositeJobParametersValidator compositeJobParametersValidator() {
         final List<JobParametersValidator> jobParametersValidators = Arrays.asList(
                 new OptionalValidator(new StatisticsOverwriteValidator(), JobParametersNames.STATISTICS_OVERWRITE),
+                new OptionalValidator(new StatisticsNativeValidator(), JobParametersNames.STATISTICS_NATIVE),
+                new OptionalValidator(new StatisticsIncrementalValidator(),
+                                      JobParametersNames.STATISTICS_INCREMENTAL),
+                new OptionalValidator(new ConfigDbReadPartitionsValidator(),
+                                      JobParametersNames.CONFIG_DB_READ_PARTITIONS),
+                new OptionalValidator(new InputCohortsValidator(), JobParametersNames.INPUT_COHORTS),
+                new OptionalValidator(new StatisticsPedigreeCohortsValidator(),
+                                      JobParametersNames.STATISTICS_PEDIGREE_COHORTS),
                 new DbNameValidator(),
                 new InputStudyIdValidator(),
                 new InputVcfIdValidator(),
@@ -21,7 +21,7 @@ import org.springframework.batch.core.JobParametersValidator;
 import org.springframework.batch.core.job.CompositeJobParametersValidator;
 import org.springframework.batch.core.job.DefaultJobParametersValidator;
 
-import uk.ac.ebi.eva.pipeline.jobs.steps.tasklets.PopulationStatisticsLoaderStep;
+import uk.ac.ebi.eva.pipeline.jobs.steps.LoadStatisticsStep;
 import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
 import uk.ac.ebi.eva.pipeline.parameters.validation.DbCollectionsFilesNameValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.DbCollectionsVariantsNameValidator;
@@ -37,7 +37,7 @@ import java.util.List;
 
 /**
  * Validates the job parameters necessary to execute a
- * {@link PopulationStatisticsLoaderStep}
+ * {@link LoadStatisticsStep}
  */
 public class PopulationStatisticsLoaderStepParametersValidator extends DefaultJobParametersValidator {
 
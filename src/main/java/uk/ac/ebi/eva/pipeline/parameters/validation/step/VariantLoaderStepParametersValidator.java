@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,12 +26,16 @@ import uk.ac.ebi.eva.pipeline.parameters.validation.ConfigChunkSizeValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.ConfigRestartabilityAllowValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.DbCollectionsVariantsNameValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.DbNameValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.InputCohortsValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.InputStudyIdValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.InputVcfAggregationMappingPathValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.InputVcfAggregationValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.InputVcfIdValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.InputVcfImportAnnotationValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.InputVcfValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.OptionalValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.StatisticsInlineValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.StatisticsPedigreeCohortsValidator;
 
 import java.util.Arrays;
 import java.util.List;
@@ -69,9 +73,15 @@ public class VariantLoaderStepParametersValidator extends DefaultJobParametersVa
                 new InputVcfAggregationValidator(),
                 new OptionalValidator(new InputVcfAggregationMappingPathValidator(),
                         JobParametersNames.INPUT_VCF_AGGREGATION_MAPPING_PATH),
+                new OptionalValidator(new InputVcfImportAnnotationValidator(),
+                        JobParametersNames.INPUT_VCF_IMPORT_ANNOTATION),
                 new OptionalValidator(new ConfigChunkSizeValidator(), JobParametersNames.CONFIG_CHUNK_SIZE),
                 new OptionalValidator(new ConfigRestartabilityAllowValidator(),
-                        JobParametersNames.CONFIG_RESTARTABILITY_ALLOW)
+                        JobParametersNames.CONFIG_RESTARTABILITY_ALLOW),
+                new OptionalValidator(new StatisticsInlineValidator(), JobParametersNames.STATISTICS_INLINE),
+                new OptionalValidator(new InputCohortsValidator(), JobParametersNames.INPUT_COHORTS),
+                new OptionalValidator(new StatisticsPedigreeCohortsValidator(),
+                        JobParametersNames.STATISTICS_PEDIGREE_COHORTS)
         );
 
         CompositeJobParametersValidator compositeJobParametersValidator = new CompositeJobParametersValidator();
@@ -26,11 +26,14 @@ import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
 import uk.ac.ebi.eva.pipeline.parameters.validation.InputFastaValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.InputStudyIdValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.InputVcfIdValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.OptionalValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.OutputDirAnnotationValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.VepCachePathValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.VepCacheSpeciesValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.VepCacheVersionValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.VepMaxProcessesValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.VepNumForksValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.VepNumShardsValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.VepPathValidator;
 
 import java.util.Arrays;
@@ -73,7 +76,9 @@ public class VepAnnotationGeneratorStepParametersValidator extends DefaultJobPar
                 new VepNumForksValidator(),
                 new OutputDirAnnotationValidator(),
                 new InputStudyIdValidator(),
-                new InputVcfIdValidator()
+                new InputVcfIdValidator(),
+                new OptionalValidator(new VepNumShardsValidator(), JobParametersNames.APP_VEP_NUM_SHARDS),
+                new OptionalValidator(new VepMaxProcessesValidator(), JobParametersNames.APP_VEP_MAX_PROCESSES)
         );
 
         CompositeJobParametersValidator compositeJobParametersValidator = new CompositeJobParametersValidator();
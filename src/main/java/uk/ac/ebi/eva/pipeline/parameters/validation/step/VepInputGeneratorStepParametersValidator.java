@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,14 +22,24 @@ import org.springframework.batch.core.job.CompositeJobParametersValidator;
 import org.springframework.batch.core.job.DefaultJobParametersValidator;
 
 import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
+import uk.ac.ebi.eva.pipeline.parameters.validation.AnnotationOverwriteValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.AnnotationWriteStrategyValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.ConfigChunkSizeValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.ConfigDbCursorBatchSizeValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.ConfigDbReadLazyDecodingValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.ConfigDbReadPartitionsValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.ConfigDbReadPrefetchValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.ConfigDbReadThreadsValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.ConfigRestartabilityAllowValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.DbCollectionsAnnotationsNameValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.DbCollectionsVariantsNameValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.DbNameValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.InputStudyIdValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.InputVcfIdValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.OptionalValidator;
 import uk.ac.ebi.eva.pipeline.parameters.validation.OutputDirAnnotationValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.VepAnnotationCacheMaxEntriesValidator;
+import uk.ac.ebi.eva.pipeline.parameters.validation.VepAnnotationCachePathValidator;
 
 import java.util.Arrays;
 import java.util.List;
@@ -65,7 +75,24 @@ public class VepInputGeneratorStepParametersValidator extends DefaultJobParamete
                 new InputVcfIdValidator(),
                 new OutputDirAnnotationValidator(),
                 new OptionalValidator(new ConfigChunkSizeValidator(), JobParametersNames.CONFIG_CHUNK_SIZE),
-                new OptionalValidator(new ConfigRestartabilityAllowValidator(), JobParametersNames.CONFIG_RESTARTABILITY_ALLOW)
+                new OptionalValidator(new ConfigRestartabilityAllowValidator(), JobParametersNames.CONFIG_RESTARTABILITY_ALLOW),
+                new OptionalValidator(new VepAnnotationCachePathValidator(),
+                                      JobParametersNames.APP_VEP_ANNOTATION_CACHE_PATH),
+                new OptionalValidator(new VepAnnotationCacheMaxEntriesValidator(),
+                                      JobParametersNames.APP_VEP_ANNOTATION_CACHE_MAX_ENTRIES),
+                new OptionalValidator(new ConfigDbReadThreadsValidator(), JobParametersNames.CONFIG_DB_READ_THREADS),
+                new OptionalValidator(new ConfigDbCursorBatchSizeValidator(),
+                                      JobParametersNames.CONFIG_DB_CURSOR_BATCH_SIZE),
+                new OptionalValidator(new ConfigDbReadPrefetchValidator(), JobParametersNames.CONFIG_DB_READ_PREFETCH),
+                new OptionalValidator(new ConfigDbReadLazyDecodingValidator(),
+                                      JobParametersNames.CONFIG_DB_READ_LAZY_DECODING),
+                new OptionalValidator(new ConfigDbReadPartitionsValidator(),
+                                      JobParametersNames.CONFIG_DB_READ_PARTITIONS),
+                new OptionalValidator(new AnnotationOverwriteValidator(), JobParametersNames.ANNOTATION_OVERWRITE),
+                new OptionalValidator(new AnnotationWriteStrategyValidator(),
+                                      JobParametersNames.ANNOTATION_WRITE_STRATEGY),
+                new OptionalValidator(new DbCollectionsAnnotationsNameValidator(),
+                                      JobParametersNames.DB_COLLECTIONS_ANNOTATIONS_NAME)
         );
 
         CompositeJobParametersValidator compositeJobParametersValidator = new CompositeJobParametersValidator();
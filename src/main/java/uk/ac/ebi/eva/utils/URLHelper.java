@@ -25,7 +25,7 @@ public class URLHelper {
 
     private static final String SOURCE_STATS_SUFFIX = ".source.stats.json.gz";
 
-    public static final String VARIANTS_TO_ANNOTATE_SUFFIX = "_variants_to_annotate.tsv";
+    public static final String VARIANTS_TO_ANNOTATE_SUFFIX = "_variants_to_annotate.tsv.gz";
 
     public static final String ANNOTATED_VARIANTS_SUFFIX = "_vep_annotation.tsv.gz";
 
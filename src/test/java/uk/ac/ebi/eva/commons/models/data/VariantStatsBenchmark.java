@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.models.data;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the calculation of the {@link VariantStats} of a genotyped variant, sample by sample with
+ * {@link VariantStats#calculate(List, Map, org.opencb.biodata.models.pedigree.Pedigree)}, and counting the genotypes
+ * with a {@link GenotypeCounter} first. The genotypes are random, mostly "0|0" as in real data.
+ * <p>
+ * The class name doesn't match the tests run by surefire, so it has to be run explicitly, for instance:
+ * <p>
+ * {@code mvn test -Dtest=VariantStatsBenchmark -Dbenchmark.samples=2504}
+ * <p>
+ * The system properties are:
+ * <ul>
+ * <li>benchmark.samples: comma-separated numbers of samples of the variant (100,2504,10000 by default)</li>
+ * <li>benchmark.report: file where the JMH results are written as CSV, besides being logged</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariantStatsBenchmark {
+
+    private static final String SAMPLES_PROPERTY = "benchmark.samples";
+
+    private static final String REPORT_PROPERTY = "benchmark.report";
+
+    private static final String[] GENOTYPES = {"0|0", "0|1", "1|0", "1|1", ".|."};
+
+    private static final int[] GENOTYPE_WEIGHTS = {90, 4, 4, 1, 1};
+
+    private static final Variant VARIANT = new Variant("20", 60343, 60343, "G", "A");
+
+    @Param({"100", "2504", "10000"})
+    public int samples;
+
+    private List<Map<String, String>> samplesData;
+
+    private Map<String, String> attributes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        samplesData = new ArrayList<>(samples);
+        for (int i = 0; i < samples; i++) {
+            samplesData.add(Collections.singletonMap("GT", randomGenotype(random)));
+        }
+        attributes = new HashMap<>();
+        attributes.put("FILTER", "PASS");
+        attributes.put("QUAL", "100.0");
+    }
+
+    private String randomGenotype(Random random) {
+        int weight = random.nextInt(100);
+        for (int i = 0; i < GENOTYPES.length; i++) {
+            weight -= GENOTYPE_WEIGHTS[i];
+            if (weight < 0) {
+                return GENOTYPES[i];
+            }
+        }
+        return GENOTYPES[0];
+    }
+
+    @Benchmark
+    public VariantStats everySample() {
+        return new VariantStats(VARIANT).calculate(samplesData, attributes, null);
+    }
+
+    @Benchmark
+    public VariantStats genotypeCounter() {
+        GenotypeCounter genotypeCounter = new GenotypeCounter();
+        for (Map<String, String> sampleData : samplesData) {
+            genotypeCounter.add(sampleData.get("GT"));
+        }
+        return new VariantStats(VARIANT).calculate(genotypeCounter, attributes);
+    }
+
+    @Test
+    public void benchmarkVariantStats() throws Exception {
+        ChainedOptionsBuilder options = new OptionsBuilder().include(VariantStatsBenchmark.class.getName() + "\\.");
+        String samplesProperty = System.getProperty(SAMPLES_PROPERTY);
+        if (samplesProperty != null) {
+            options.param("samples", samplesProperty.split(","));
+        }
+        String report = System.getProperty(REPORT_PROPERTY);
+        if (report != null) {
+            options.resultFormat(ResultFormatType.CSV).result(report);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.commons.models.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link VariantStats}
+ * input: the genotypes of the samples of a variant, sample by sample or counted by a {@link GenotypeCounter}
+ * output: exactly the same statistics both ways
+ */
+public class VariantStatsTest {
+
+    private static final String[] GENOTYPES = {"0/0", "0/1", "1/0", "1/1", "0|0", "0|1", "1|0", "1|1", "./.", ".|.",
+            "./1", "0/.", "1/2", "2|0", "0/0/1"};
+
+    private static final Variant VARIANT = new Variant("20", 60343, 60343, "G", "A");
+
+    @Test
+    public void genotypeCounterShouldCalculateTheSameStatisticsAsEverySample() {
+        List<Map<String, String>> samplesData = samplesData("0|0", "1|0", "0|1", "./.", "1|1", "0|0", "1/2", "0/1",
+                                                            "0/0/1", "0|1");
+
+        assertSameStats(new VariantStats(VARIANT).calculate(samplesData, attributes(), null),
+                        new VariantStats(VARIANT).calculate(count(samplesData), attributes()));
+    }
+
+    @Test
+    public void genotypeCounterShouldCalculateTheSameStatisticsAsEverySampleForRandomGenotypes() {
+        Random random = new Random(1);
+        for (int variant = 0; variant < 1000; variant++) {
+            int numGenotypes = 1 + random.nextInt(GENOTYPES.length);
+            String[] genotypes = new String[1 + random.nextInt(200)];
+            for (int sample = 0; sample < genotypes.length; sample++) {
+                genotypes[sample] = GENOTYPES[random.nextInt(numGenotypes)];
+            }
+            List<Map<String, String>> samplesData = samplesData(genotypes);
+
+            assertSameStats(new VariantStats(VARIANT).calculate(samplesData, attributes(), null),
+                            new VariantStats(VARIANT).calculate(count(samplesData), attributes()));
+        }
+    }
+
+    @Test
+    public void genotypesCountShouldCalculateTheSameStatisticsAsEverySample() {
+        List<Map<String, String>> samplesData = samplesData("1|1", "0|0", "0|1", "1|1", "./.", "0|0", "0|0");
+        Map<String, Integer> genotypesCount = new LinkedHashMap<>();
+        genotypesCount.put("1|1", 2);
+        genotypesCount.put("0|0", 3);
+        genotypesCount.put("0|1", 1);
+        genotypesCount.put("./.", 1);
+
+        assertSameStats(new VariantStats(VARIANT).calculate(samplesData, attributes(), null),
+                        new VariantStats(VARIANT).calculate(genotypesCount, attributes()));
+    }
+
+    @Test
+    public void clearedGenotypeCounterShouldCalculateTheSameStatisticsAsANewOne() {
+        GenotypeCounter genotypeCounter = count(samplesData("1/2", "0|1", "0/0/1", "1|1"));
+        genotypeCounter.clear();
+        for (Map<String, String> sampleData : samplesData("0|0", "0/0/1", "0|1", "0|1")) {
+            genotypeCounter.add(sampleData.get("GT"));
+        }
+
+        assertSameStats(new VariantStats(VARIANT).calculate(count(samplesData("0|0", "0/0/1", "0|1", "0|1")),
+                                                            attributes()),
+                        new VariantStats(VARIANT).calculate(genotypeCounter, attributes()));
+    }
+
+    @Test
+    public void genotypeCounterShouldCountTheSameGenotypeWithTheSameCode() {
+        GenotypeCounter genotypeCounter = new GenotypeCounter();
+        genotypeCounter.add("0|1");
+        genotypeCounter.add("1/2", 3);
+        genotypeCounter.add(genotypeCounter.getCode("0|1"), 2);
+        genotypeCounter.add("1/2");
+
+        assertEquals(2, genotypeCounter.size());
+        assertEquals("0|1", genotypeCounter.getGenotype(genotypeCounter.getCountedCode(0)));
+        assertEquals(3, genotypeCounter.getCount(genotypeCounter.getCode("0|1")));
+        assertEquals("1/2", genotypeCounter.getGenotype(genotypeCounter.getCountedCode(1)));
+        assertEquals(4, genotypeCounter.getCount(genotypeCounter.getCode("1/2")));
+        assertEquals(0, genotypeCounter.getCount(genotypeCounter.getCode("1|1")));
+    }
+
+    /**
+     * Besides {@link VariantStats#equals(Object)}, the genotypes have to be in the same order, because the first
+     * genotype with the minimum frequency is the MGF genotype, and the Hardy-Weinberg counts have to be the same
+     */
+    private void assertSameStats(VariantStats expectedStats, VariantStats stats) {
+        assertEquals(expectedStats, stats);
+        assertEquals(expectedStats.getHw().getN_AA(), stats.getHw().getN_AA());
+        assertEquals(expectedStats.getHw().getN_Aa(), stats.getHw().getN_Aa());
+        assertEquals(expectedStats.getHw().getN_aa(), stats.getHw().getN_aa());
+        assertEquals(new ArrayList<>(expectedStats.getGenotypesCount().keySet()),
+                     new ArrayList<>(stats.getGenotypesCount().keySet()));
+        assertEquals(new ArrayList<>(expectedStats.getGenotypesFreq().keySet()),
+                     new ArrayList<>(stats.getGenotypesFreq().keySet()));
+        assertEquals(expectedStats.getMgfGenotype(), stats.getMgfGenotype());
+    }
+
+    private GenotypeCounter count(List<Map<String, String>> samplesData) {
+        GenotypeCounter genotypeCounter = new GenotypeCounter();
+        for (Map<String, String> sampleData : samplesData) {
+            genotypeCounter.add(sampleData.get("GT"));
+        }
+        return genotypeCounter;
+    }
+
+    private List<Map<String, String>> samplesData(String... genotypes) {
+        List<Map<String, String>> samplesData = new ArrayList<>();
+        for (String genotype : genotypes) {
+            samplesData.add(Collections.singletonMap("GT", genotype));
+        }
+        return samplesData;
+    }
+
+    private Map<String, String> attributes() {
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("FILTER", "PASS");
+        attributes.put("QUAL", "100.0");
+        return attributes;
+    }
+}
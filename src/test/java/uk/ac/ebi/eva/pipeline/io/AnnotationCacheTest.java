@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+import uk.ac.ebi.eva.pipeline.io.mappers.AnnotationLineMapper;
+import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static uk.ac.ebi.eva.test.data.VepOutputContent.vepOutputContent;
+
+/**
+ * {@link AnnotationCache}
+ * input: annotations parsed from a VEP output
+ * output: the same annotations, by storage id, for the same VEP and cache versions
+ */
+public class AnnotationCacheTest {
+
+    private static final String VEP_VERSION = "78";
+
+    private static final String VEP_CACHE_VERSION = "78";
+
+    private static final String STORAGE_ID = "20_63360_C_T";
+
+    @Rule
+    public PipelineTemporaryFolderRule temporaryFolderRule = new PipelineTemporaryFolderRule();
+
+    private File cacheDirectory;
+
+    private List<VariantAnnotation> annotations;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDirectory = temporaryFolderRule.newFolder();
+
+        // the second and third lines are two transcripts of 20_63360_C/T
+        AnnotationLineMapper lineMapper = new AnnotationLineMapper();
+        String[] lines = vepOutputContent.split("\n");
+        annotations = Arrays.asList(lineMapper.mapLine(lines[1], 1), lineMapper.mapLine(lines[2], 2));
+    }
+
+    @Test
+    public void shouldReturnCachedAnnotations() throws Exception {
+        try (AnnotationCache cache = openCache(VEP_VERSION, 10)) {
+            cache.putAll(annotations);
+
+            Map<String, VariantAnnotation> cached = cache.getAll(Arrays.asList(STORAGE_ID, "20_60343_G_A"));
+
+            assertEquals(1, cached.size());
+            assertEquals(2, cached.get(STORAGE_ID).getConsequenceTypes().size());
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+            assertEquals(0.5, cache.getHitRate(), 0.0001);
+        }
+    }
+
+    @Test
+    public void shouldMergeAnnotationsOfTheSameVariant() throws Exception {
+        try (AnnotationCache cache = openCache(VEP_VERSION, 10)) {
+            cache.putAll(annotations.subList(0, 1));
+            cache.putAll(annotations.subList(1, 2));
+            cache.putAll(annotations);
+
+            VariantAnnotation cached = cache.getAll(Collections.singletonList(STORAGE_ID)).get(STORAGE_ID);
+
+            assertEquals(2, cached.getConsequenceTypes().size());
+        }
+    }
+
+    @Test
+    public void shouldKeepAnnotationsAfterClosing() throws Exception {
+        try (AnnotationCache cache = openCache(VEP_VERSION, 10)) {
+            cache.putAll(annotations);
+        }
+
+        try (AnnotationCache cache = openCache(VEP_VERSION, 10)) {
+            assertTrue(cache.getAll(Collections.singletonList(STORAGE_ID)).containsKey(STORAGE_ID));
+        }
+    }
+
+    @Test
+    public void shouldNotReturnAnnotationsOfOtherVepVersions() throws Exception {
+        try (AnnotationCache cache = openCache(VEP_VERSION, 10)) {
+            cache.putAll(annotations);
+        }
+
+        try (AnnotationCache cache = openCache("79", 10)) {
+            assertFalse(cache.getAll(Collections.singletonList(STORAGE_ID)).containsKey(STORAGE_ID));
+            assertEquals(1, cache.getMisses());
+        }
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedAnnotations() throws Exception {
+        String otherStorageId = "20_63351_A_G";
+        String[] lines = vepOutputContent.split("\n");
+
+        try (AnnotationCache cache = openCache(VEP_VERSION, 1)) {
+            cache.putAll(annotations);
+            Thread.sleep(10);
+            cache.putAll(Collections.singletonList(new AnnotationLineMapper().mapLine(lines[0], 0)));
+        }
+
+        try (AnnotationCache cache = openCache(VEP_VERSION, 1)) {
+            Map<String, VariantAnnotation> cached = cache.getAll(Arrays.asList(STORAGE_ID, otherStorageId));
+            assertEquals(Collections.singleton(otherStorageId), cached.keySet());
+        }
+    }
+
+    @Test
+    public void shouldEvictWhenInsertingOverTheLimit() throws Exception {
+        String otherStorageId = "20_63351_A_G";
+        String[] lines = vepOutputContent.split("\n");
+
+        try (AnnotationCache cache = openCache(VEP_VERSION, 1)) {
+            cache.putAll(annotations);
+            Thread.sleep(10);
+            cache.putAll(Collections.singletonList(new AnnotationLineMapper().mapLine(lines[0], 0)));
+
+            Map<String, VariantAnnotation> cached = cache.getAll(Arrays.asList(STORAGE_ID, otherStorageId));
+            assertEquals(Collections.singleton(otherStorageId), cached.keySet());
+        }
+    }
+
+    @Test
+    public void shouldShareTheDatabaseBetweenInstancesOfTheSameProcess() throws Exception {
+        try (AnnotationCache cache = openCache(VEP_VERSION, 10);
+             AnnotationCache otherCache = openCache(VEP_VERSION, 10)) {
+            cache.putAll(annotations);
+
+            assertTrue(otherCache.getAll(Collections.singletonList(STORAGE_ID)).containsKey(STORAGE_ID));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxEntriesMustBePositive() {
+        new AnnotationCache(cacheDirectory, VEP_VERSION, VEP_CACHE_VERSION, 0);
+    }
+
+    private AnnotationCache openCache(String vepVersion, long maxEntries) throws Exception {
+        AnnotationCache cache = new AnnotationCache(cacheDirectory, vepVersion, VEP_CACHE_VERSION, maxEntries);
+        cache.open();
+        return cache;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BgzfOutputStream}
+ * input: bytes written in any amount
+ * output: BGZF blocks of at most 64 KB, readable by any gzip reader, with an empty block at the end
+ */
+public class BgzfOutputStreamTest {
+
+    private static final int THREADS = 2;
+
+    private static final int EOF_BLOCK_SIZE = 28;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldBeReadableAsGzip() throws Exception {
+        byte[] content = createContent(5 * BgzfOutputStream.MAX_BLOCK_INPUT_SIZE + 123);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (BgzfOutputStream bgzfOutputStream = new BgzfOutputStream(output, executor, THREADS)) {
+            bgzfOutputStream.write(content, 0, 1000);
+            for (int i = 1000; i < 2000; i++) {
+                bgzfOutputStream.write(content[i]);
+            }
+            bgzfOutputStream.write(content, 2000, content.length - 2000);
+        }
+
+        assertArrayEquals(content, decompress(output.toByteArray()));
+        assertBlocks(output.toByteArray(), 7);
+    }
+
+    @Test
+    public void shouldWriteIncompressibleContentInBlocksOf64KbAtMost() throws Exception {
+        byte[] content = new byte[3 * BgzfOutputStream.MAX_BLOCK_INPUT_SIZE];
+        new Random(42).nextBytes(content);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (BgzfOutputStream bgzfOutputStream = new BgzfOutputStream(output)) {
+            bgzfOutputStream.write(content);
+        }
+
+        assertArrayEquals(content, decompress(output.toByteArray()));
+        assertBlocks(output.toByteArray(), 4);
+    }
+
+    @Test
+    public void shouldEndAtABlockBoundaryOnFlush() throws Exception {
+        byte[] content = createContent(1000);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        BgzfOutputStream bgzfOutputStream = new BgzfOutputStream(output, executor, THREADS);
+        bgzfOutputStream.write(content, 0, 500);
+        bgzfOutputStream.flush();
+        int flushedSize = output.size();
+        assertBlocks(Arrays.copyOf(output.toByteArray(), flushedSize), 1, false);
+        bgzfOutputStream.write(content, 500, 500);
+        bgzfOutputStream.close();
+
+        // a truncated stream can be continued by a new one
+        ByteArrayOutputStream restartedOutput = new ByteArrayOutputStream();
+        restartedOutput.write(output.toByteArray(), 0, flushedSize);
+        try (BgzfOutputStream restartedBgzfOutputStream = new BgzfOutputStream(restartedOutput)) {
+            restartedBgzfOutputStream.write(content, 500, 500);
+        }
+        assertArrayEquals(content, decompress(restartedOutput.toByteArray()));
+    }
+
+    @Test
+    public void shouldWriteOnlyTheEmptyBlockWithoutContent() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        new BgzfOutputStream(output, executor, THREADS).close();
+
+        assertEquals(EOF_BLOCK_SIZE, output.size());
+        assertEquals(0, decompress(output.toByteArray()).length);
+    }
+
+    private byte[] createContent(int size) {
+        byte[] content = new byte[size];
+        String line = "20\t60343\t60343\tG/A\t+\n";
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) line.charAt(i % line.length());
+        }
+        return content;
+    }
+
+    private byte[] decompress(byte[] compressed) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private void assertBlocks(byte[] bgzf, int expectedBlocks) {
+        assertBlocks(bgzf, expectedBlocks, true);
+    }
+
+    /**
+     * Walks the blocks with the sizes in their headers, which must end exactly at the end of the stream.
+     */
+    private void assertBlocks(byte[] bgzf, int expectedBlocks, boolean endsWithEmptyBlock) {
+        int blocks = 0;
+        int offset = 0;
+        int lastBlockSize = 0;
+        while (offset < bgzf.length) {
+            assertEquals(0x1f, bgzf[offset] & 0xff);
+            assertEquals(0x8b, bgzf[offset + 1] & 0xff);
+            assertEquals('B', bgzf[offset + 12]);
+            assertEquals('C', bgzf[offset + 13]);
+            lastBlockSize = (bgzf[offset + 16] & 0xff | (bgzf[offset + 17] & 0xff) << 8) + 1;
+            assertTrue(lastBlockSize <= 0x10000);
+            offset += lastBlockSize;
+            blocks++;
+        }
+        assertEquals(bgzf.length, offset);
+        assertEquals(expectedBlocks, blocks);
+        assertEquals(endsWithEmptyBlock, lastBlockSize == EOF_BLOCK_SIZE);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link VepInputSplitter}
+ * input: a VEP input file
+ * output: shards of contiguous lines that never split a chromosome and start position
+ */
+public class VepInputSplitterTest {
+
+    @Rule
+    public PipelineTemporaryFolderRule temporaryFolderRule = new PipelineTemporaryFolderRule();
+
+    @Test
+    public void shouldSplitIntoShardsOfSimilarSize() throws Exception {
+        File vepInput = writeVepInput("20\t100\t100\tA/G\t+\n"
+                                              + "20\t200\t200\tA/G\t+\n"
+                                              + "20\t300\t300\tA/G\t+\n"
+                                              + "20\t400\t400\tA/G\t+\n");
+
+        List<VepInputSplitter.Shard> shards = new VepInputSplitter(2).split(vepInput, temporaryFolderRule.newFolder());
+
+        assertEquals(2, shards.size());
+        assertEquals(2, Files.readAllLines(shards.get(0).getFile().toPath()).size());
+        assertEquals("20\t300\t300\tA/G\t+", Files.readAllLines(shards.get(1).getFile().toPath()).get(0));
+    }
+
+    @Test
+    public void shouldKeepTheLinesAndLastVariantOfEveryShard() throws Exception {
+        File vepInput = writeVepInput("20\t100\t100\tA/G\t+\n"
+                                              + "20\t200\t200\tA/G\t+\n"
+                                              + "20\t300\t300\tA/G\t+\n"
+                                              + "20\t401\t400\t-/T\t+\n");
+
+        List<VepInputSplitter.Shard> shards = new VepInputSplitter(2).split(vepInput, temporaryFolderRule.newFolder());
+
+        assertEquals(2, shards.get(0).getLines());
+        assertEquals("20_200_A/G", shards.get(0).getLastVariant());
+        assertEquals(2, shards.get(1).getLines());
+        assertEquals("20_401_-/T", shards.get(1).getLastVariant());
+    }
+
+    @Test
+    public void shouldReadTheWholeInputAsASingleShard() throws Exception {
+        File vepInput = writeVepInput("20\t100\t100\tA/G\t+\n"
+                                              + "20\t200\t200\tA/G\t+\n");
+
+        VepInputSplitter.Shard shard = new VepInputSplitter(1).readAsSingleShard(vepInput);
+
+        assertEquals(vepInput, shard.getFile());
+        assertEquals(2, shard.getLines());
+        assertEquals("20_200_A/G", shard.getLastVariant());
+    }
+
+    @Test
+    public void shouldNotSplitTheSameRegion() throws Exception {
+        File vepInput = writeVepInput("20\t100\t100\tA/G\t+\n"
+                                              + "20\t200\t200\tA/G\t+\n"
+                                              + "20\t200\t200\tA/T\t+\n"
+                                              + "20\t400\t400\tA/G\t+\n");
+
+        List<VepInputSplitter.Shard> shards = new VepInputSplitter(2).split(vepInput, temporaryFolderRule.newFolder());
+
+        assertEquals(2, shards.size());
+        assertEquals(3, Files.readAllLines(shards.get(0).getFile().toPath()).size());
+        assertEquals(1, Files.readAllLines(shards.get(1).getFile().toPath()).size());
+    }
+
+    @Test
+    public void shouldNotCreateEmptyShards() throws Exception {
+        File vepInput = writeVepInput("20\t100\t100\tA/G\t+\n");
+
+        List<VepInputSplitter.Shard> shards = new VepInputSplitter(4).split(vepInput, temporaryFolderRule.newFolder());
+
+        assertEquals(1, shards.size());
+    }
+
+    @Test
+    public void shouldSplitCompressedInput() throws Exception {
+        File vepInput = temporaryFolderRule.newFile("variants_to_annotate.tsv.gz");
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(vepInput)))) {
+            writer.write("20\t100\t100\tA/G\t+\n"
+                                 + "20\t200\t200\tA/G\t+\n");
+        }
+
+        List<VepInputSplitter.Shard> shards = new VepInputSplitter(2).split(vepInput, temporaryFolderRule.newFolder());
+
+        assertEquals(2, shards.size());
+        assertEquals("20\t200\t200\tA/G\t+", Files.readAllLines(shards.get(1).getFile().toPath()).get(0));
+    }
+
+    @Test
+    public void shouldEstimateTheLinesOfALargeCompressedInput() throws Exception {
+        int totalLines = 300000;
+        File vepInput = temporaryFolderRule.newFile("variants_to_annotate.tsv.gz");
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(vepInput)))) {
+            for (int start = 1; start <= totalLines; start++) {
+                writer.write("20\t" + start + "\t" + start + "\tA/G\t+\n");
+            }
+        }
+
+        List<VepInputSplitter.Shard> shards = new VepInputSplitter(3).split(vepInput, temporaryFolderRule.newFolder());
+
+        assertEquals(3, shards.size());
+        long lines = 0;
+        for (VepInputSplitter.Shard shard : shards) {
+            assertEquals(totalLines / 3, shard.getLines(), totalLines / 3 * 0.1);
+            assertEquals(shard.getLines(), Files.readAllLines(shard.getFile().toPath()).size());
+            lines += shard.getLines();
+        }
+        assertEquals(totalLines, lines);
+        assertEquals("20_" + totalLines + "_A/G", shards.get(2).getLastVariant());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void numberOfShardsMustBePositive() {
+        new VepInputSplitter(0);
+    }
+
+    private File writeVepInput(String content) throws IOException {
+        File vepInput = temporaryFolderRule.newFile();
+        try (Writer writer = new FileWriter(vepInput)) {
+            writer.write(content);
+        }
+        return vepInput;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link VepOutputSplitter}
+ * input: a compressed VEP output file
+ * output: uncompressed shards of contiguous lines that never split the lines of a variant
+ */
+public class VepOutputSplitterTest {
+
+    private static final String VEP_OUTPUT_HEADER = "## ENSEMBL VARIANT EFFECT PREDICTOR v78\n"
+            + "#Uploaded_variation\tLocation\tAllele\tGene\tFeature\n";
+
+    @Rule
+    public PipelineTemporaryFolderRule temporaryFolderRule = new PipelineTemporaryFolderRule();
+
+    @Test
+    public void shouldSplitIntoShardsOfSimilarSizeWithoutTheHeader() throws Exception {
+        File vepOutput = temporaryFolderRule.newGzipFile(VEP_OUTPUT_HEADER
+                                                                 + "20_100_A/G\t20:100\tG\t-\t-\n"
+                                                                 + "20_200_A/G\t20:200\tG\t-\t-\n"
+                                                                 + "20_300_A/G\t20:300\tG\t-\t-\n"
+                                                                 + "20_400_A/G\t20:400\tG\t-\t-\n");
+
+        List<File> shards = new VepOutputSplitter(2).split(vepOutput, temporaryFolderRule.newFolder());
+
+        assertEquals(2, shards.size());
+        assertEquals(2, Files.readAllLines(shards.get(0).toPath()).size());
+        assertEquals("20_100_A/G\t20:100\tG\t-\t-", Files.readAllLines(shards.get(0).toPath()).get(0));
+        assertEquals("20_300_A/G\t20:300\tG\t-\t-", Files.readAllLines(shards.get(1).toPath()).get(0));
+    }
+
+    @Test
+    public void shouldNotSplitTheLinesOfTheSameVariant() throws Exception {
+        File vepOutput = temporaryFolderRule.newGzipFile("20_100_A/G\t20:100\tG\tENSG1\tENST1\n"
+                                                                 + "20_200_A/G\t20:200\tG\tENSG1\tENST1\n"
+                                                                 + "20_200_A/G\t20:200\tG\tENSG1\tENST2\n"
+                                                                 + "20_400_A/G\t20:400\tG\t-\t-\n");
+
+        List<File> shards = new VepOutputSplitter(2).split(vepOutput, temporaryFolderRule.newFolder());
+
+        assertEquals(2, shards.size());
+        assertEquals(3, Files.readAllLines(shards.get(0).toPath()).size());
+        assertEquals(1, Files.readAllLines(shards.get(1).toPath()).size());
+    }
+
+    @Test
+    public void shouldNotCreateEmptyShards() throws Exception {
+        File vepOutput = temporaryFolderRule.newGzipFile(VEP_OUTPUT_HEADER + "20_100_A/G\t20:100\tG\t-\t-\n");
+
+        List<File> shards = new VepOutputSplitter(4).split(vepOutput, temporaryFolderRule.newFolder());
+
+        assertEquals(1, shards.size());
+    }
+
+    @Test
+    public void shouldSplitTheSameWayTwice() throws Exception {
+        File vepOutput = temporaryFolderRule.newGzipFile("20_100_A/G\t20:100\tG\t-\t-\n"
+                                                                 + "20_200_A/G\t20:200\tG\t-\t-\n"
+                                                                 + "20_300_A/G\t20:300\tG\t-\t-\n");
+
+        List<File> shards = new VepOutputSplitter(2).split(vepOutput, temporaryFolderRule.newFolder());
+        List<File> restartedShards = new VepOutputSplitter(2).split(vepOutput, temporaryFolderRule.newFolder());
+
+        assertEquals(shards.size(), restartedShards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            assertEquals(Files.readAllLines(shards.get(i).toPath()),
+                         Files.readAllLines(restartedShards.get(i).toPath()));
+        }
+    }
+
+    @Test
+    public void shouldSplitBgzfFilesLikeOtherGzipFiles() throws Exception {
+        StringBuilder content = new StringBuilder(VEP_OUTPUT_HEADER);
+        for (int i = 0; i < 5000; i++) {
+            content.append("20_").append(i).append("_A/G\t20:").append(i).append("\tG\t-\t-\n");
+        }
+        File gzipOutput = temporaryFolderRule.newGzipFile(content.toString());
+        File bgzfOutput = temporaryFolderRule.newFile();
+        try (OutputStream outputStream = new BgzfOutputStream(new FileOutputStream(bgzfOutput))) {
+            outputStream.write(content.toString().getBytes());
+        }
+
+        List<File> gzipShards = new VepOutputSplitter(3).split(gzipOutput, temporaryFolderRule.newFolder());
+        List<File> bgzfShards = new VepOutputSplitter(3).split(bgzfOutput, temporaryFolderRule.newFolder());
+
+        assertEquals(3, bgzfShards.size());
+        for (int i = 0; i < bgzfShards.size(); i++) {
+            assertEquals(Files.readAllLines(gzipShards.get(i).toPath()),
+                         Files.readAllLines(bgzfShards.get(i).toPath()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void numberOfShardsMustBePositive() {
+        new VepOutputSplitter(0);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
+import uk.ac.ebi.eva.utils.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static uk.ac.ebi.eva.test.utils.JobTestUtils.getLines;
+
+/**
+ * {@link VepProcessManager}
+ * input: a VEP command, and a batch of variants with files for its output and errors
+ * output: the annotation of the batch, written by a worker that can be reused by the next batches
+ */
+public class VepProcessManagerTest {
+
+    private static final long STALL_TIMEOUT_MILLIS = 1000;
+
+    private static final long HEALTH_CHECK_PERIOD_MILLIS = 100;
+
+    private static final String FIRST_BATCH = "20\t60343\t60343\tG/A\t+\n20\t60419\t60419\tA/G\t+\n";
+
+    private static final String SECOND_BATCH = "20\t60479\t60479\tC/T\t+\n20\t60522\t60521\t-/C\t+\n";
+
+    /**
+     * Echoes the identifier of every variant, after waiting longer than the stall timeout before writing anything
+     */
+    private static final String SLOW_START_VEP = "$| = 1; sleep 2; while (my $line = <STDIN>) { chomp $line; "
+            + "my @columns = split(/\\t/, $line); my $id = defined $columns[5] ? $columns[5] : \"$columns[0]_$columns[1]\"; "
+            + "print \"$id\\t$columns[0]:$columns[1]\\n\"; }";
+
+    @Rule
+    public PipelineTemporaryFolderRule temporaryFolderRule = new PipelineTemporaryFolderRule();
+
+    private VepProcessManager vepProcessManager;
+
+    @After
+    public void tearDown() {
+        if (vepProcessManager != null) {
+            vepProcessManager.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldRestartFailedWorkers() throws Exception {
+        vepProcessManager = new VepProcessManager(1, 1, null, STALL_TIMEOUT_MILLIS, HEALTH_CHECK_PERIOD_MILLIS);
+        File output = temporaryFolderRule.newFile();
+
+        vepProcessManager.annotate(mockVepCommand(), writeBatch(FIRST_BATCH), output, temporaryFolderRule.newFile());
+
+        assertEquals(2, getLines(new FileInputStream(output)));
+    }
+
+    @Test
+    public void shouldReuseWorkersBetweenBatches() throws Exception {
+        vepProcessManager = new VepProcessManager(1, 1, null, STALL_TIMEOUT_MILLIS, HEALTH_CHECK_PERIOD_MILLIS);
+        List<String> command = mockVepCommand();
+        File firstOutput = temporaryFolderRule.newFile();
+        File secondOutput = temporaryFolderRule.newFile();
+
+        vepProcessManager.annotate(command, writeBatch(FIRST_BATCH), firstOutput, temporaryFolderRule.newFile());
+        vepProcessManager.annotate(command, writeBatch(SECOND_BATCH), secondOutput, temporaryFolderRule.newFile());
+
+        // both outputs have the header written by the same process
+        assertEquals(getProcessLine(firstOutput), getProcessLine(secondOutput));
+        assertEquals(Arrays.asList("20_60343_G/A", "20_60419_A/G"), getVariantIds(firstOutput));
+        assertEquals(Arrays.asList("20_60479_C/T", "20_60522_-/C"), getVariantIds(secondOutput));
+    }
+
+    @Test
+    public void shouldSplitTheOutputOfBatchesSmallerThanTheBuffer() throws Exception {
+        vepProcessManager = new VepProcessManager(1, 3, null, STALL_TIMEOUT_MILLIS, HEALTH_CHECK_PERIOD_MILLIS);
+        List<String> command = mockVepCommand();
+        File firstOutput = temporaryFolderRule.newFile();
+        File secondOutput = temporaryFolderRule.newFile();
+        File thirdOutput = temporaryFolderRule.newFile();
+
+        vepProcessManager.annotate(command, writeBatch(FIRST_BATCH), firstOutput, temporaryFolderRule.newFile());
+        vepProcessManager.annotate(command, writeBatch(SECOND_BATCH), secondOutput, temporaryFolderRule.newFile());
+        vepProcessManager.annotate(command, writeBatch(FIRST_BATCH + SECOND_BATCH), thirdOutput,
+                                   temporaryFolderRule.newFile());
+
+        assertEquals(Arrays.asList("20_60343_G/A", "20_60419_A/G"), getVariantIds(firstOutput));
+        assertEquals(Arrays.asList("20_60479_C/T", "20_60522_-/C"), getVariantIds(secondOutput));
+        assertEquals(Arrays.asList("20_60343_G/A", "20_60419_A/G", "20_60479_C/T", "20_60522_-/C"),
+                     getVariantIds(thirdOutput));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldKillStalledWorkers() throws Exception {
+        vepProcessManager = new VepProcessManager(1, 1, null, STALL_TIMEOUT_MILLIS, HEALTH_CHECK_PERIOD_MILLIS);
+
+        vepProcessManager.annotate(Arrays.asList("perl", "-e", "$| = 1; print \"## header\\n\"; sleep 60;"),
+                                   writeBatch(FIRST_BATCH), temporaryFolderRule.newFile(),
+                                   temporaryFolderRule.newFile());
+    }
+
+    @Test
+    public void shouldWaitForTheFirstOutputOfWorkers() throws Exception {
+        vepProcessManager = new VepProcessManager(1, 1, null, STALL_TIMEOUT_MILLIS, HEALTH_CHECK_PERIOD_MILLIS);
+        File output = temporaryFolderRule.newFile();
+
+        vepProcessManager.annotate(Arrays.asList("perl", "-e", SLOW_START_VEP), writeBatch(FIRST_BATCH), output,
+                                   temporaryFolderRule.newFile());
+
+        assertEquals(Arrays.asList("20_60343", "20_60419"), getVariantIds(output));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldLimitTheMemoryOfWorkers() throws Exception {
+        vepProcessManager = new VepProcessManager(1, 1, 200, STALL_TIMEOUT_MILLIS, HEALTH_CHECK_PERIOD_MILLIS);
+
+        vepProcessManager.annotate(Arrays.asList("perl", "-e", "my $buffer = 'x' x (1024 * 1024 * 1024);"),
+                                   writeBatch(FIRST_BATCH), temporaryFolderRule.newFile(),
+                                   temporaryFolderRule.newFile());
+    }
+
+    @Test
+    public void shouldNotStartWorkersForEmptyBatches() throws Exception {
+        vepProcessManager = new VepProcessManager(1, 1, null, STALL_TIMEOUT_MILLIS, HEALTH_CHECK_PERIOD_MILLIS);
+        File output = temporaryFolderRule.newFile();
+
+        vepProcessManager.annotate(Arrays.asList("false"), writeBatch(""), output, temporaryFolderRule.newFile());
+
+        assertTrue(output.isFile());
+        assertEquals(0, output.length());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxWorkersMustBePositive() {
+        new VepProcessManager(0, 1, null, STALL_TIMEOUT_MILLIS, HEALTH_CHECK_PERIOD_MILLIS);
+    }
+
+    private List<String> mockVepCommand() throws IOException {
+        String mockVep = FileUtils.getResource("/mockvep_fails_first_attempt.pl").getAbsolutePath();
+        return Arrays.asList("perl", mockVep, "-dir", temporaryFolderRule.newFolder().getAbsolutePath(),
+                             "--buffer_size", Integer.toString(vepProcessManager.getBufferSize()));
+    }
+
+    private File writeBatch(String variants) throws IOException {
+        File batch = temporaryFolderRule.newFile();
+        try (FileWriter writer = new FileWriter(batch)) {
+            writer.write(variants);
+        }
+        return batch;
+    }
+
+    private String getProcessLine(File output) throws IOException {
+        return Files.lines(output.toPath()).filter(line -> line.startsWith("## Output produced by process"))
+                    .findFirst().orElse(null);
+    }
+
+    private List<String> getVariantIds(File output) throws IOException {
+        return Files.lines(output.toPath()).filter(line -> !line.startsWith("#"))
+                    .map(line -> line.split("\t")[0]).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.mappers;
+
+import org.junit.Test;
+import org.opencb.biodata.models.variant.annotation.ConsequenceType;
+import org.opencb.biodata.models.variant.annotation.Score;
+
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+import uk.ac.ebi.eva.test.data.VepOutputContent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link FastAnnotationLineMapper}
+ * input: an annotation line from VEP
+ * output: a VariantAnnotation equal to the one of {@link AnnotationLineMapper}
+ */
+public class FastAnnotationLineMapperTest {
+
+    private static final String[] OTHER_VEP_OUTPUT_LINES = {
+            // insertion, with coordinates as an interval
+            "20_60523_-/C\t20:60522-60523\tC\t-\t-\t-\tintergenic_variant\t-\t-\t-\t-\t-\trs150241001\t"
+                    + "GMAF=C:0.0115;AFR_MAF=C:0.05;AMR_MAF=C:0.0028",
+            // deletion, no existing variation nor Extra column
+            "20_60524_C/-\t20:60524\t-\t-\t-\t-\tintergenic_variant\t-\t-\t-\t-\t-\t-\t",
+            // several consequences, scores, HGVS and keys in other cases
+            "20_68351_A/G\t20:68351\tG\tENSG00000101255\tENST00000382398\tTranscript\t"
+                    + "missense_variant,splice_region_variant\t100\t85\t29\tR/G\tAgg/Ggg\t-\t"
+                    + "STRAND=-1;symbol=TRIB3;BIOTYPE=protein_coding;SIFT=deleterious(0.01);"
+                    + "PolyPhen=probably_damaging(0.998);HGVSc=ENST00000382398.3:c.85A>G;"
+                    + "HGVSp=ENSP00000371835.3:p.Arg29Gly",
+            // transcript without consequences
+            "20_68352_A/G\t20:68352\tG\tENSG00000101255\tENST00000382398\ttranscript\t-\t?-4\t1-?\t?\t-\t-\t-",
+            // regulatory feature
+            "20_68353_A/G\t20:68353\tG\t-\tENSR00001034521\tRegulatoryFeature\tregulatory_region_variant\t-\t-\t-\t"
+                    + "-\t-\t-\tBIOTYPE=promoter_flanking_region",
+    };
+
+    @Test
+    public void shouldMapVepOutputLikeAnnotationLineMapper() throws Exception {
+        List<String> lines = new ArrayList<>(Arrays.asList(VepOutputContent.vepOutputContent.split("\n")));
+        lines.add(VepOutputContent.vepOutputContentTranscriptFields);
+        lines.add(VepOutputContent.vepOutputContentWithOutTranscript);
+        lines.add(VepOutputContent.vepOutputContentChromosomeIdWithUnderscore);
+        lines.add(VepOutputContent.vepOutputContentWithExtraFields);
+        lines.addAll(Arrays.asList(OTHER_VEP_OUTPUT_LINES));
+
+        AnnotationLineMapper expectedLineMapper = new AnnotationLineMapper();
+        FastAnnotationLineMapper lineMapper = new FastAnnotationLineMapper();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            assertEqualAnnotations(line, expectedLineMapper.mapLine(line, i), lineMapper.mapLine(line, i));
+        }
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void shouldNotParseVepOutputWithMalformedCoordinates() {
+        FastAnnotationLineMapper lineMapper = new FastAnnotationLineMapper();
+        lineMapper.mapLine(VepOutputContent.vepOutputContentMalformedCoordinates, 0);
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void shouldNotParseVepOutputWithMalformedVariantFields() {
+        FastAnnotationLineMapper lineMapper = new FastAnnotationLineMapper();
+        lineMapper.mapLine(VepOutputContent.vepOutputContentMalformedVariantFields, 0);
+    }
+
+    private void assertEqualAnnotations(String line, VariantAnnotation expected, VariantAnnotation actual) {
+        assertEquals(line, expected.getChromosome(), actual.getChromosome());
+        assertEquals(line, expected.getStart(), actual.getStart());
+        assertEquals(line, expected.getEnd(), actual.getEnd());
+        assertEquals(line, expected.getReferenceAllele(), actual.getReferenceAllele());
+        assertEquals(line, expected.getAlternativeAllele(), actual.getAlternativeAllele());
+        assertEquals(line, expected.getHgvs(), actual.getHgvs());
+        assertEquals(line, expected.getConsequenceTypes().size(), actual.getConsequenceTypes().size());
+
+        for (int i = 0; i < expected.getConsequenceTypes().size(); i++) {
+            ConsequenceType expectedConsequenceType = expected.getConsequenceTypes().get(i);
+            ConsequenceType actualConsequenceType = actual.getConsequenceTypes().get(i);
+
+            assertEquals(line, expectedConsequenceType.getGeneName(), actualConsequenceType.getGeneName());
+            assertEquals(line, expectedConsequenceType.getEnsemblGeneId(), actualConsequenceType.getEnsemblGeneId());
+            assertEquals(line, expectedConsequenceType.getEnsemblTranscriptId(),
+                         actualConsequenceType.getEnsemblTranscriptId());
+            assertEquals(line, expectedConsequenceType.getStrand(), actualConsequenceType.getStrand());
+            assertEquals(line, expectedConsequenceType.getBiotype(), actualConsequenceType.getBiotype());
+            assertEquals(line, expectedConsequenceType.getcDnaPosition(), actualConsequenceType.getcDnaPosition());
+            assertEquals(line, expectedConsequenceType.getCdsPosition(), actualConsequenceType.getCdsPosition());
+            assertEquals(line, expectedConsequenceType.getAaPosition(), actualConsequenceType.getAaPosition());
+            assertEquals(line, expectedConsequenceType.getAaChange(), actualConsequenceType.getAaChange());
+            assertEquals(line, expectedConsequenceType.getCodon(), actualConsequenceType.getCodon());
+            assertEqualSoTerms(line, expectedConsequenceType.getSoTerms(), actualConsequenceType.getSoTerms());
+            assertEqualScores(line, expectedConsequenceType.getProteinSubstitutionScores(),
+                              actualConsequenceType.getProteinSubstitutionScores());
+        }
+    }
+
+    private void assertEqualSoTerms(String line, List<ConsequenceType.ConsequenceTypeEntry> expected,
+                                    List<ConsequenceType.ConsequenceTypeEntry> actual) {
+        if (expected == null || actual == null) {
+            assertEquals(line, expected, actual);
+            return;
+        }
+        assertEquals(line, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(line, expected.get(i).getSoName(), actual.get(i).getSoName());
+            assertEquals(line, expected.get(i).getSoAccession(), actual.get(i).getSoAccession());
+        }
+    }
+
+    private void assertEqualScores(String line, List<Score> expected, List<Score> actual) {
+        if (expected == null || actual == null) {
+            assertEquals(line, expected, actual);
+            return;
+        }
+        assertEquals(line, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(line, expected.get(i).getScore(), actual.get(i).getScore());
+            assertEquals(line, expected.get(i).getSource(), actual.get(i).getSource());
+            assertEquals(line, expected.get(i).getDescription(), actual.get(i).getDescription());
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,7 @@ import java.util.Map;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * {@link VariantVcfFactory}
@@ -578,4 +579,35 @@ public class VariantVcfFactoryTest {
         assertEquals(expResult, result);
         assertEquals(expResult.get(0).getIds().size(), result.get(0).getIds().size());
     }
+
+    @Test
+    public void testCreateVariantWithTheAnnotationInTheInfoField() {
+        VariantVcfFactory annotatingFactory = new VariantVcfFactory(
+                VcfAnnotationInfoParser.fromHeader(VcfAnnotationInfoParserTest.VEP_HEADER));
+        String line = "20\t68351\t.\tA\tG,T\t.\t.\tAC=3,1;CSQ=" + VcfAnnotationInfoParserTest.VEP_INFO
+                + "\tGT\t0/1\t1/2";
+
+        List<Variant> result = annotatingFactory.create(FILE_ID, STUDY_ID, line);
+
+        assertEquals(2, result.size());
+        assertEquals(2, result.get(0).getAnnotation().getConsequenceTypes().size());
+        assertEquals("G", result.get(0).getAnnotation().getAlternativeAllele());
+        assertEquals(0, result.get(1).getAnnotation().getConsequenceTypes().size());
+
+        VariantSourceEntry sourceEntry = result.get(0).getSourceEntry(FILE_ID, STUDY_ID);
+        assertEquals("3", sourceEntry.getAttribute("AC"));
+        assertNull(sourceEntry.getAttribute(VcfAnnotationInfoParser.VEP_INFO_KEY));
+    }
+
+    @Test
+    public void testCreateVariantWithoutParsingTheAnnotation() {
+        String line = "20\t68351\t.\tA\tG\t.\t.\tCSQ=" + VcfAnnotationInfoParserTest.VEP_INFO + "\tGT\t0/1";
+
+        List<Variant> result = factory.create(FILE_ID, STUDY_ID, line);
+
+        assertEquals(0, result.get(0).getAnnotation().getConsequenceTypes().size());
+        VariantSourceEntry sourceEntry = result.get(0).getSourceEntry(FILE_ID, STUDY_ID);
+        assertEquals(VcfAnnotationInfoParserTest.VEP_INFO,
+                     sourceEntry.getAttribute(VcfAnnotationInfoParser.VEP_INFO_KEY));
+    }
 }
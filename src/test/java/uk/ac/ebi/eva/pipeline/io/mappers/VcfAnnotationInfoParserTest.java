@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.mappers;
+
+import org.junit.Test;
+import org.opencb.biodata.models.variant.annotation.ConsequenceType;
+
+import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link VcfAnnotationInfoParser}
+ * input: the header of an annotated VCF, and the value of the INFO field with the annotation
+ * output: the VariantAnnotation of each alternate allele
+ */
+public class VcfAnnotationInfoParserTest {
+
+    static final String VEP_HEADER = "##fileformat=VCFv4.1\n"
+            + "##INFO=<ID=CSQ,Number=.,Type=String,Description=\"Consequence annotations from Ensembl VEP. Format: "
+            + "Allele|Consequence|IMPACT|SYMBOL|Gene|Feature_type|Feature|BIOTYPE|EXON|INTRON|HGVSc|HGVSp|"
+            + "cDNA_position|CDS_position|Protein_position|Amino_acids|Codons|Existing_variation|DISTANCE|STRAND|"
+            + "SIFT|PolyPhen\">\n"
+            + "##VEP=v78 cache=/path/to/cache/homo_sapiens/78_GRCh37 db=. sift=sift5.2.2\n"
+            + "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n";
+
+    private static final String SNPEFF_HEADER = "##fileformat=VCFv4.1\n"
+            + "##SnpEffVersion=\"4.3t (build 2017-11-24 10:18), by Pablo Cingolani\"\n"
+            + "##INFO=<ID=ANN,Number=.,Type=String,Description=\"Functional annotations: 'Allele | Annotation | "
+            + "Annotation_Impact | Gene_Name | Gene_ID | Feature_Type | Feature_ID | Transcript_BioType | Rank | "
+            + "HGVS.c | HGVS.p | cDNA.pos / cDNA.length | CDS.pos / CDS.length | AA.pos / AA.length | Distance | "
+            + "ERRORS / WARNINGS / INFO' \">\n"
+            + "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n";
+
+    static final String VEP_INFO =
+            "G|missense_variant&splice_region_variant|MODERATE|TRIB3|ENSG00000101255|Transcript|ENST00000382398|"
+                    + "protein_coding|2/4||ENST00000382398.3:c.85A>G|ENSP00000371835.3:p.Arg29Gly|100|85|29|R/G|"
+                    + "Agg/Ggg|||-1|deleterious(0.01)|probably_damaging(0.998),"
+                    + "G|regulatory_region_variant|MODIFIER|||RegulatoryFeature|ENSR00001034521|promoter_flanking_region"
+                    + "|||||||||||||,"
+                    + "-|upstream_gene_variant|MODIFIER|TRIB3|ENSG00000101255|Transcript|ENST00000382398|"
+                    + "protein_coding|||||||||||4388|-1||";
+
+    @Test
+    public void shouldReadTheVepLayoutAndVersionsFromTheHeader() {
+        VcfAnnotationInfoParser parser = VcfAnnotationInfoParser.fromHeader(VEP_HEADER);
+
+        assertEquals(VcfAnnotationInfoParser.VEP_INFO_KEY, parser.getInfoKey());
+        assertEquals("78", parser.getAnnotatorVersion());
+        assertEquals("78", parser.getAnnotatorCacheVersion());
+    }
+
+    @Test
+    public void shouldReadTheVepVersionsOfNewerHeaders() {
+        VcfAnnotationInfoParser parser = VcfAnnotationInfoParser.fromHeader(VEP_HEADER.replace(
+                "##VEP=v78 cache=/path/to/cache/homo_sapiens/78_GRCh37 db=. sift=sift5.2.2",
+                "##VEP=\"v90\" time=\"2017-10-02 10:00:00\" cache=\"/path/to/cache/homo_sapiens/90_GRCh38\""));
+
+        assertEquals("90", parser.getAnnotatorVersion());
+        assertEquals("90", parser.getAnnotatorCacheVersion());
+    }
+
+    @Test
+    public void shouldReadTheSnpEffLayoutAndVersionFromTheHeader() {
+        VcfAnnotationInfoParser parser = VcfAnnotationInfoParser.fromHeader(SNPEFF_HEADER);
+
+        assertEquals(VcfAnnotationInfoParser.SNPEFF_INFO_KEY, parser.getInfoKey());
+        assertEquals("SnpEff 4.3t", parser.getAnnotatorVersion());
+        assertNull(parser.getAnnotatorCacheVersion());
+    }
+
+    @Test
+    public void shouldNotParseVcfsWithoutAnnotation() {
+        assertNull(VcfAnnotationInfoParser.fromHeader("##fileformat=VCFv4.1\n"
+                                                              + "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n"));
+    }
+
+    @Test
+    public void shouldParseTheAnnotationsOfTheAlternateAllele() {
+        VcfAnnotationInfoParser parser = VcfAnnotationInfoParser.fromHeader(VEP_HEADER);
+        Variant variant = new Variant("20", 68351, 68351, "A", "G");
+
+        VariantAnnotation annotation = parser.parse(VEP_INFO, variant, "A", new String[]{"G"}, 0);
+
+        assertEquals("20", annotation.getChromosome());
+        assertEquals(68351, annotation.getStart());
+        assertEquals("G", annotation.getAlternativeAllele());
+        assertEquals("78", annotation.getAdditionalAttributes().get(
+                VcfAnnotationInfoParser.ANNOTATOR_VERSION_ATTRIBUTE));
+        assertEquals(2, annotation.getConsequenceTypes().size());
+        assertEquals(Arrays.asList("ENST00000382398.3:c.85A>G", "ENSP00000371835.3:p.Arg29Gly"),
+                     annotation.getHgvs());
+
+        ConsequenceType transcript = annotation.getConsequenceTypes().get(0);
+        assertEquals("TRIB3", transcript.getGeneName());
+        assertEquals("ENSG00000101255", transcript.getEnsemblGeneId());
+        assertEquals("ENST00000382398", transcript.getEnsemblTranscriptId());
+        assertEquals("protein_coding", transcript.getBiotype());
+        assertEquals("-", transcript.getStrand());
+        assertEquals(Integer.valueOf(100), transcript.getcDnaPosition());
+        assertEquals(Integer.valueOf(85), transcript.getCdsPosition());
+        assertEquals(Integer.valueOf(29), transcript.getAaPosition());
+        assertEquals("R/G", transcript.getAaChange());
+        assertEquals("Agg/Ggg", transcript.getCodon());
+        assertEquals(2, transcript.getSoTerms().size());
+        assertEquals("missense_variant", transcript.getSoTerms().get(0).getSoName());
+        assertEquals("splice_region_variant", transcript.getSoTerms().get(1).getSoName());
+        assertEquals(2, transcript.getProteinSubstitutionScores().size());
+        assertEquals(0.01, transcript.getProteinSubstitutionScores().get(0).getScore(), 0);
+        assertEquals("Sift", transcript.getProteinSubstitutionScores().get(0).getSource());
+        assertEquals("deleterious", transcript.getProteinSubstitutionScores().get(0).getDescription());
+
+        ConsequenceType regulatoryFeature = annotation.getConsequenceTypes().get(1);
+        assertNull(regulatoryFeature.getEnsemblTranscriptId());
+        assertEquals("promoter_flanking_region", regulatoryFeature.getBiotype());
+        assertEquals("regulatory_region_variant", regulatoryFeature.getSoTerms().get(0).getSoName());
+    }
+
+    @Test
+    public void shouldMatchTheIndelAllelesWithoutTheCommonFirstBase() {
+        VcfAnnotationInfoParser parser = VcfAnnotationInfoParser.fromHeader(VEP_HEADER);
+        Variant deletion = new Variant("20", 68352, 68352, "T", "");
+
+        VariantAnnotation annotation = parser.parse(VEP_INFO, deletion, "AT", new String[]{"A", "AG"}, 0);
+
+        assertEquals(1, annotation.getConsequenceTypes().size());
+        assertEquals("upstream_gene_variant",
+                     annotation.getConsequenceTypes().get(0).getSoTerms().get(0).getSoName());
+        assertEquals(0, annotation.getHgvs().size());
+    }
+
+    @Test
+    public void shouldUseTheAlleleNumberIfAvailable() {
+        VcfAnnotationInfoParser parser = VcfAnnotationInfoParser.fromHeader(
+                VEP_HEADER.replace("Allele|Consequence|", "Allele|ALLELE_NUM|Consequence|"));
+        Variant variant = new Variant("20", 68351, 68351, "A", "T");
+        String info = "G|1|missense_variant|||||,G|2|intron_variant|||||";
+
+        VariantAnnotation annotation = parser.parse(info, variant, "A", new String[]{"G", "T"}, 1);
+
+        assertEquals(1, annotation.getConsequenceTypes().size());
+        assertEquals("intron_variant", annotation.getConsequenceTypes().get(0).getSoTerms().get(0).getSoName());
+    }
+
+    @Test
+    public void shouldParseTheSnpEffAnnotation() {
+        VcfAnnotationInfoParser parser = VcfAnnotationInfoParser.fromHeader(SNPEFF_HEADER);
+        Variant variant = new Variant("20", 68351, 68351, "A", "G");
+        String info = "G|missense_variant|MODERATE|TRIB3|ENSG00000101255|transcript|ENST00000382398|"
+                + "protein_coding|2/4|c.85A>G|p.Arg29Gly|100/1400|85/1077|29/358||,"
+                + "C|intron_variant|MODIFIER|TRIB3|ENSG00000101255|transcript|ENST00000382398|"
+                + "protein_coding|2/4|c.85A>C||||||";
+
+        VariantAnnotation annotation = parser.parse(info, variant, "A", new String[]{"G", "C"}, 0);
+
+        assertEquals("SnpEff 4.3t", annotation.getAdditionalAttributes().get(
+                VcfAnnotationInfoParser.ANNOTATOR_VERSION_ATTRIBUTE));
+        assertEquals(1, annotation.getConsequenceTypes().size());
+        ConsequenceType transcript = annotation.getConsequenceTypes().get(0);
+        assertEquals("TRIB3", transcript.getGeneName());
+        assertEquals("ENST00000382398", transcript.getEnsemblTranscriptId());
+        assertEquals(Integer.valueOf(85), transcript.getCdsPosition());
+        assertEquals(Integer.valueOf(29), transcript.getAaPosition());
+        assertEquals("missense_variant", transcript.getSoTerms().get(0).getSoName());
+    }
+
+    @Test
+    public void shouldReturnNullIfTheAlleleIsNotAnnotated() {
+        VcfAnnotationInfoParser parser = VcfAnnotationInfoParser.fromHeader(VEP_HEADER);
+        Variant variant = new Variant("20", 68351, 68351, "A", "T");
+
+        assertNull(parser.parse(VEP_INFO, variant, "A", new String[]{"T"}, 0));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.readers;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import uk.ac.ebi.eva.pipeline.model.Cohort;
+import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static uk.ac.ebi.eva.utils.FileUtils.getResource;
+
+/**
+ * {@link CohortsReader}
+ * input: a PED file and/or a cohorts file, and the positions of the samples in the VCF
+ * output: the cohorts with any sample in the VCF, as bitsets over the positions of their samples
+ */
+public class CohortsReaderTest {
+
+    private static final String PEDIGREE_FILE = "/input-files/ped/pedigree-test-file.ped";
+
+    private static final String COHORTS_FILE = "/input-files/cohorts/cohorts-test-file.panel";
+
+    @Rule
+    public PipelineTemporaryFolderRule temporaryFolderRule = new PipelineTemporaryFolderRule();
+
+    @Test
+    public void shouldDefineACohortPerFamilyWithTheSamplesInTheVcf() throws Exception {
+        Map<String, Integer> samplesPosition = new HashMap<>();
+        samplesPosition.put("NA19600", 3);
+        samplesPosition.put("NA19660", 1);
+        samplesPosition.put("NA00001", 0);
+
+        List<Cohort> cohorts = new CohortsReader(getResource(PEDIGREE_FILE).getAbsolutePath(),
+                                                 PedigreeGrouping.FAMILY, null).read(samplesPosition);
+
+        assertEquals(1, cohorts.size());
+        assertEquals("FAM", cohorts.get(0).getName());
+        assertEquals(bitSet(1, 3), cohorts.get(0).getSamples());
+        assertEquals(2, cohorts.get(0).size());
+    }
+
+    @Test
+    public void shouldDefineACohortPerPhenotype() throws Exception {
+        Map<String, Integer> samplesPosition = new HashMap<>();
+        samplesPosition.put("NA19600", 3);
+        samplesPosition.put("NA19660", 1);
+        samplesPosition.put("NA19685", 2);
+
+        List<Cohort> cohorts = new CohortsReader(getResource(PEDIGREE_FILE).getAbsolutePath(),
+                                                 PedigreeGrouping.PHENOTYPE, null).read(samplesPosition);
+
+        assertEquals(2, cohorts.size());
+        Map<String, BitSet> samplesByCohort = toMap(cohorts);
+        assertEquals(bitSet(1, 2), samplesByCohort.get("UNAFFECTED"));
+        assertEquals(bitSet(3), samplesByCohort.get("AFFECTED"));
+    }
+
+    @Test
+    public void shouldIgnoreTheFamiliesWithoutSamplesInTheVcf() throws Exception {
+        List<Cohort> cohorts = new CohortsReader(getResource(PEDIGREE_FILE).getAbsolutePath(),
+                                                 PedigreeGrouping.FAMILY, null)
+                .read(Collections.singletonMap("NA00001", 0));
+
+        assertTrue(cohorts.isEmpty());
+    }
+
+    @Test
+    public void shouldReadTheCohortsFileInOrder() throws Exception {
+        Map<String, Integer> samplesPosition = new HashMap<>();
+        samplesPosition.put("HG00096", 0);
+        samplesPosition.put("HG00097", 1);
+        samplesPosition.put("HG00101", 70);
+        samplesPosition.put("NA21144", 2);
+
+        List<Cohort> cohorts = new CohortsReader(null, PedigreeGrouping.FAMILY,
+                                                 getResource(COHORTS_FILE).getAbsolutePath()).read(samplesPosition);
+
+        assertEquals(2, cohorts.size());
+        assertEquals("GBR", cohorts.get(0).getName());
+        assertEquals(bitSet(0, 1, 70), cohorts.get(0).getSamples());
+        assertEquals("GIH", cohorts.get(1).getName());
+        assertEquals(bitSet(2), cohorts.get(1).getSamples());
+    }
+
+    @Test
+    public void shouldMergeTheCohortsWithTheSameNameAndSkipTheDefaultCohort() throws Exception {
+        File cohortsFile = temporaryFolderRule.newFile();
+        try (FileWriter writer = new FileWriter(cohortsFile)) {
+            writer.write("# sample cohort\n"
+                                 + "NA19600 FAM\n"
+                                 + "NA00001 ALL\n"
+                                 + "NA00001 OTHER\n"
+                                 + "NA19600 OTHER\n");
+        }
+        Map<String, Integer> samplesPosition = new HashMap<>();
+        samplesPosition.put("NA19600", 3);
+        samplesPosition.put("NA19660", 1);
+        samplesPosition.put("NA00001", 0);
+
+        List<Cohort> cohorts = new CohortsReader(getResource(PEDIGREE_FILE).getAbsolutePath(),
+                                                 PedigreeGrouping.FAMILY, cohortsFile.getAbsolutePath())
+                .read(samplesPosition);
+
+        assertEquals(2, cohorts.size());
+        assertEquals("FAM", cohorts.get(0).getName());
+        assertEquals(bitSet(1, 3), cohorts.get(0).getSamples());
+        assertEquals("OTHER", cohorts.get(1).getName());
+        assertEquals(bitSet(0, 3), cohorts.get(1).getSamples());
+    }
+
+    private Map<String, BitSet> toMap(List<Cohort> cohorts) {
+        Map<String, BitSet> samplesByCohort = new HashMap<>();
+        for (Cohort cohort : cohorts) {
+            samplesByCohort.put(cohort.getName(), cohort.getSamples());
+        }
+        return samplesByCohort;
+    }
+
+    private BitSet bitSet(int... positions) {
+        BitSet bitSet = new BitSet();
+        for (int position : positions) {
+            bitSet.set(position);
+        }
+        return bitSet;
+    }
+}
@@ -15,7 +15,10 @@
  */
 package uk.ac.ebi.eva.pipeline.io.readers;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
+import com.mongodb.LazyDBObject;
+import com.mongodb.util.JSON;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -33,14 +36,23 @@ import org.springframework.test.context.junit4.SpringRunner;
 import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
 import uk.ac.ebi.eva.pipeline.Application;
 import uk.ac.ebi.eva.pipeline.configuration.MongoConfiguration;
+import uk.ac.ebi.eva.pipeline.io.writers.VepAnnotationMongoWriter;
+import uk.ac.ebi.eva.pipeline.jobs.steps.partitioners.MongoIdRangePartitioner;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
 import uk.ac.ebi.eva.pipeline.parameters.MongoConnection;
 import uk.ac.ebi.eva.test.data.VariantData;
 import uk.ac.ebi.eva.test.rules.TemporaryMongoRule;
 
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -64,6 +76,12 @@ public class NonAnnotatedVariantsMongoReaderTest {
 
     private static final String ALL_STUDIES = "";
 
+    private static final int READ_THREADS = 2;
+
+    private static final String VEP_VERSION = "78";
+
+    private static final String VEP_CACHE_VERSION = "78";
+
     @Autowired
     private MongoConnection mongoConnection;
 
@@ -83,23 +101,246 @@ public class NonAnnotatedVariantsMongoReaderTest {
         checkNonAnnotatedVariantsRead(EXPECTED_NON_ANNOTATED_VARIANTS_IN_DB, ALL_STUDIES);
     }
 
+    @Test
+    public void shouldReadVariantsWithoutAnnotationFieldInParallel() throws Exception {
+        checkNonAnnotatedVariantsRead(EXPECTED_NON_ANNOTATED_VARIANTS_IN_DB, ALL_STUDIES, READ_THREADS);
+    }
+
+    @Test
+    public void shouldSkipVariantsWithAnnotationMarker() throws Exception {
+        DBObject annotatedVariant = (DBObject) JSON.parse(VariantData.getVariantWithoutAnnotation());
+        annotatedVariant.put(VariantToDBObjectConverter.ANNOTATION_FIELD, new BasicDBObject("vepv", "78"));
+
+        checkNonAnnotatedVariantsRead(EXPECTED_NON_ANNOTATED_VARIANTS_IN_DB - 1, ALL_STUDIES, 1,
+                                      JSON.serialize(annotatedVariant));
+    }
+
+    @Test
+    public void shouldReadVariantsAnnotatedWithOtherVersions() throws Exception {
+        // the variant with annotation was annotated with VEP 77
+        checkNonAnnotatedVariantsRead(EXPECTED_NON_ANNOTATED_VARIANTS_IN_DB + 1, ALL_STUDIES, 1,
+                                      VariantData.getVariantWithoutAnnotation(), VEP_VERSION, VEP_CACHE_VERSION);
+    }
+
+    @Test
+    public void shouldReadVariantsAnnotatedWithOtherCacheVersions() throws Exception {
+        DBObject annotatedVariant = (DBObject) JSON.parse(VariantData.getVariantWithoutAnnotation());
+        annotatedVariant.put(VariantToDBObjectConverter.ANNOTATION_FIELD,
+                             new BasicDBObject("vepv", VEP_VERSION).append("cachev", "77"));
+
+        checkNonAnnotatedVariantsRead(EXPECTED_NON_ANNOTATED_VARIANTS_IN_DB + 1, ALL_STUDIES, READ_THREADS,
+                                      JSON.serialize(annotatedVariant), VEP_VERSION, VEP_CACHE_VERSION);
+    }
+
+    @Test
+    public void shouldSkipVariantsAnnotatedWithCurrentVersions() throws Exception {
+        DBObject annotatedVariant = (DBObject) JSON.parse(VariantData.getVariantWithoutAnnotation());
+        annotatedVariant.put(VariantToDBObjectConverter.ANNOTATION_FIELD,
+                             new BasicDBObject("vepv", VEP_VERSION).append("cachev", VEP_CACHE_VERSION));
+
+        checkNonAnnotatedVariantsRead(EXPECTED_NON_ANNOTATED_VARIANTS_IN_DB, ALL_STUDIES, 1,
+                                      JSON.serialize(annotatedVariant), VEP_VERSION, VEP_CACHE_VERSION);
+    }
+
+    @Test
+    public void shouldReadVariantsWithAnAnnotationSummaryOfOtherVersions() throws Exception {
+        DBObject annotatedVariant = (DBObject) JSON.parse(VariantData.getVariantWithoutAnnotation());
+        annotatedVariant.put(VariantToDBObjectConverter.ANNOTATION_FIELD,
+                             new BasicDBObject("vepv", "77").append("cachev", "77")
+                                     .append("so", Arrays.asList(1631))
+                                     .append("gene", Arrays.asList("ENSG00000178591")));
+
+        checkNonAnnotatedVariantsRead(EXPECTED_NON_ANNOTATED_VARIANTS_IN_DB - 1, ALL_STUDIES, 1,
+                                      JSON.serialize(annotatedVariant));
+        checkNonAnnotatedVariantsRead(EXPECTED_NON_ANNOTATED_VARIANTS_IN_DB + 1, ALL_STUDIES, 1,
+                                      JSON.serialize(annotatedVariant), VEP_VERSION, VEP_CACHE_VERSION);
+    }
+
+    @Test
+    public void shouldCreateAnIndexWithTheFieldsOfTheQuery() throws Exception {
+        MongoOperations mongoOperations = MongoConfiguration.getMongoOperations(insertVariants(), mongoConnection,
+                mongoMappingContext);
+        new NonAnnotatedVariantsMongoReader(mongoOperations, COLLECTION_VARIANTS_NAME, STUDY_ID);
+
+        Set<String> indexes = new HashSet<>();
+        for (DBObject index : mongoOperations.getCollection(COLLECTION_VARIANTS_NAME).getIndexInfo()) {
+            indexes.add(index.get("name").toString());
+        }
+        assertTrue(indexes.contains("annot.vepv_1_annot.cachev_1_files.sid_1_chr_1_start_1_end_1_ref_1_alt_1"));
+    }
+
+    @Test
+    public void shouldReadVariantsWithoutAnnotationFieldWithPrefetch() throws Exception {
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        NonAnnotatedVariantsMongoReader mongoItemReader = createPrefetchingReader(insertVariants());
+        mongoItemReader.open(executionContext);
+
+        int itemCount = 0;
+        while (mongoItemReader.read() != null) {
+            itemCount++;
+        }
+        assertEquals(EXPECTED_NON_ANNOTATED_VARIANTS_IN_DB, itemCount);
+        mongoItemReader.close();
+    }
+
+    @Test
+    public void shouldContinueAfterTheLastVariantReadOnRestartWithPrefetch() throws Exception {
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        String databaseName = insertVariants();
+
+        NonAnnotatedVariantsMongoReader mongoItemReader = createPrefetchingReader(databaseName);
+        mongoItemReader.open(executionContext);
+        DBObject firstVariant = mongoItemReader.read();
+        mongoItemReader.update(executionContext);
+        mongoItemReader.close();
+
+        NonAnnotatedVariantsMongoReader restartedReader = createPrefetchingReader(databaseName);
+        restartedReader.open(executionContext);
+        DBObject secondVariant = restartedReader.read();
+        assertNotNull(secondVariant);
+        assertNotEquals(firstVariant, secondVariant);
+        assertNull(restartedReader.read());
+        restartedReader.close();
+    }
+
+    @Test
+    public void shouldReadEveryVariantNotAnnotatedYetOnRestartWithoutSavedState() throws Exception {
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        MongoOperations mongoOperations = MongoConfiguration.getMongoOperations(insertVariants(), mongoConnection,
+                mongoMappingContext);
+
+        NonAnnotatedVariantsMongoReader mongoItemReader = new NonAnnotatedVariantsMongoReader(
+                mongoOperations, COLLECTION_VARIANTS_NAME, ALL_STUDIES);
+        mongoItemReader.setSaveState(false);
+        mongoItemReader.open(executionContext);
+        DBObject firstVariant = mongoItemReader.read();
+        mongoItemReader.update(executionContext);
+        mongoItemReader.close();
+
+        // the first variant is annotated from the cache before the step fails
+        BasicDBObject firstVariantQuery = new BasicDBObject(VariantToDBObjectConverter.CHROMOSOME_FIELD,
+                firstVariant.get(VariantToDBObjectConverter.CHROMOSOME_FIELD))
+                .append(VariantToDBObjectConverter.START_FIELD,
+                        firstVariant.get(VariantToDBObjectConverter.START_FIELD));
+        mongoOperations.getCollection(COLLECTION_VARIANTS_NAME).update(
+                firstVariantQuery, new BasicDBObject("$set", new BasicDBObject(
+                        VepAnnotationMongoWriter.ANNOTATION_VEP_VERSION_FIELD, VEP_VERSION)));
+
+        NonAnnotatedVariantsMongoReader restartedReader = new NonAnnotatedVariantsMongoReader(
+                mongoOperations, COLLECTION_VARIANTS_NAME, ALL_STUDIES);
+        restartedReader.setSaveState(false);
+        restartedReader.open(executionContext);
+        DBObject secondVariant = restartedReader.read();
+        assertNotNull(secondVariant);
+        assertNotEquals(firstVariant.get(VariantToDBObjectConverter.START_FIELD),
+                        secondVariant.get(VariantToDBObjectConverter.START_FIELD));
+        assertNull(restartedReader.read());
+        restartedReader.close();
+    }
+
+    @Test
+    public void shouldReadLazilyDecodedVariants() throws Exception {
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        MongoOperations mongoOperations = MongoConfiguration.getMongoOperations(insertVariants(), mongoConnection,
+                mongoMappingContext);
+        NonAnnotatedVariantsMongoReader mongoItemReader = new NonAnnotatedVariantsMongoReader(
+                mongoOperations, COLLECTION_VARIANTS_NAME, ALL_STUDIES, READ_THREADS);
+        mongoItemReader.setLazyDecoding(true);
+        mongoItemReader.open(executionContext);
+
+        int itemCount = 0;
+        DBObject variantMongoDocument;
+        while ((variantMongoDocument = mongoItemReader.read()) != null) {
+            itemCount++;
+            assertTrue(variantMongoDocument instanceof LazyDBObject);
+            assertNotNull(variantMongoDocument.get(VariantToDBObjectConverter.CHROMOSOME_FIELD));
+        }
+        assertEquals(EXPECTED_NON_ANNOTATED_VARIANTS_IN_DB, itemCount);
+        mongoItemReader.close();
+    }
+
+    @Test
+    public void shouldReadDisjointRangesOfIds() throws Exception {
+        MongoOperations mongoOperations = MongoConfiguration.getMongoOperations(insertVariants(), mongoConnection,
+                mongoMappingContext);
+        DBObject query = NonAnnotatedVariantsMongoReader.buildQuery(ALL_STUDIES, null, null);
+        MongoIdRangePartitioner partitioner = new MongoIdRangePartitioner(mongoOperations, COLLECTION_VARIANTS_NAME,
+                                                                          query, 2);
+        Map<String, ExecutionContext> partitions = partitioner.partition(0);
+        assertEquals(2, partitions.size());
+
+        // the ids are not read, so the variants are told apart by their start
+        Set<Object> starts = new HashSet<>();
+        for (ExecutionContext partition : partitions.values()) {
+            NonAnnotatedVariantsMongoReader mongoItemReader = new NonAnnotatedVariantsMongoReader(
+                    mongoOperations, COLLECTION_VARIANTS_NAME, ALL_STUDIES, READ_THREADS);
+            mongoItemReader.setIdRange(partition.get(ExecutionContextParametersNames.MONGO_PARTITION_MIN_ID),
+                                       partition.get(ExecutionContextParametersNames.MONGO_PARTITION_MAX_ID));
+            mongoItemReader.open(MetaDataInstanceFactory.createStepExecution().getExecutionContext());
+
+            int itemCount = 0;
+            DBObject variantMongoDocument;
+            while ((variantMongoDocument = mongoItemReader.read()) != null) {
+                itemCount++;
+                assertTrue(starts.add(variantMongoDocument.get(VariantToDBObjectConverter.START_FIELD)));
+            }
+            assertEquals(1, itemCount);
+            mongoItemReader.close();
+        }
+        assertEquals(EXPECTED_NON_ANNOTATED_VARIANTS_IN_DB, starts.size());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testStudyIdIsRequired() throws Exception {
         checkNonAnnotatedVariantsRead(EXPECTED_NON_ANNOTATED_VARIANTS_IN_DB, null);
     }
 
+    private String insertVariants() throws Exception {
+        return mongoRule.createDBAndInsertDocuments(COLLECTION_VARIANTS_NAME, Arrays.asList(
+                VariantData.getVariantWithAnnotation(),
+                VariantData.getVariantWithoutAnnotation(),
+                VariantData.getVariantWithoutAnnotationOtherStudy()));
+    }
+
+    private NonAnnotatedVariantsMongoReader createPrefetchingReader(String databaseName) throws Exception {
+        MongoOperations mongoOperations = MongoConfiguration.getMongoOperations(databaseName, mongoConnection,
+                mongoMappingContext);
+        NonAnnotatedVariantsMongoReader mongoItemReader = new NonAnnotatedVariantsMongoReader(
+                mongoOperations, COLLECTION_VARIANTS_NAME, ALL_STUDIES);
+        mongoItemReader.setBatchSize(1);
+        mongoItemReader.setPrefetchSize(1);
+        return mongoItemReader;
+    }
+
     private void checkNonAnnotatedVariantsRead(int expectedNonAnnotatedVariants, String study) throws Exception {
+        checkNonAnnotatedVariantsRead(expectedNonAnnotatedVariants, study, 1);
+    }
+
+    private void checkNonAnnotatedVariantsRead(int expectedNonAnnotatedVariants, String study, int readThreads)
+            throws Exception {
+        checkNonAnnotatedVariantsRead(expectedNonAnnotatedVariants, study, readThreads,
+                                      VariantData.getVariantWithoutAnnotation());
+    }
+
+    private void checkNonAnnotatedVariantsRead(int expectedNonAnnotatedVariants, String study, int readThreads,
+                                               String variantInStudy) throws Exception {
+        checkNonAnnotatedVariantsRead(expectedNonAnnotatedVariants, study, readThreads, variantInStudy, null, null);
+    }
+
+    private void checkNonAnnotatedVariantsRead(int expectedNonAnnotatedVariants, String study, int readThreads,
+                                               String variantInStudy, String vepVersion, String vepCacheVersion)
+            throws Exception {
         ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
         String databaseName = mongoRule.createDBAndInsertDocuments(COLLECTION_VARIANTS_NAME, Arrays.asList(
                 VariantData.getVariantWithAnnotation(),
-                VariantData.getVariantWithoutAnnotation(),
+                variantInStudy,
                 VariantData.getVariantWithoutAnnotationOtherStudy()));
 
         MongoOperations mongoOperations = MongoConfiguration.getMongoOperations(databaseName, mongoConnection,
                 mongoMappingContext);
 
         NonAnnotatedVariantsMongoReader mongoItemReader = new NonAnnotatedVariantsMongoReader(
-                mongoOperations, COLLECTION_VARIANTS_NAME, study);
+                mongoOperations, COLLECTION_VARIANTS_NAME, study, readThreads, vepVersion, vepCacheVersion);
         mongoItemReader.open(executionContext);
 
         int itemCount = 0;
@@ -108,6 +349,7 @@ public class NonAnnotatedVariantsMongoReaderTest {
             itemCount++;
             assertTrue(variantMongoDocument.containsField(VariantToDBObjectConverter.CHROMOSOME_FIELD));
             assertTrue(variantMongoDocument.containsField(VariantToDBObjectConverter.START_FIELD));
+            // only the fields needed to write the VEP input are read
             assertFalse(variantMongoDocument.containsField(VariantToDBObjectConverter.ANNOTATION_FIELD));
         }
         assertEquals(expectedNonAnnotatedVariants, itemCount);
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.readers;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+import uk.ac.ebi.eva.test.data.VepOutputContent;
+import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link VariantAnnotationGroupingReader}
+ * input: a File written by VEP, with several consecutive lines for some variants
+ * output: a VariantAnnotation with the annotations of all the lines of a variant each time its `.read()` is called
+ */
+public class VariantAnnotationGroupingReaderTest {
+
+    // 7 lines of 4 variants: 20:63351 has 1 line, and 20:63360, 20:63399 and 20:63426 have 2 lines each
+    private static final int[] STARTS = {63351, 63360, 63399, 63426};
+
+    private static final int[] CONSEQUENCE_TYPES = {1, 2, 2, 2};
+
+    @Rule
+    public PipelineTemporaryFolderRule temporaryFolderRule = new PipelineTemporaryFolderRule();
+
+    @Test
+    public void shouldGroupConsecutiveLinesOfTheSameVariant() throws Exception {
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        File file = temporaryFolderRule.newGzipFile(VepOutputContent.vepOutputContent);
+
+        VariantAnnotationGroupingReader reader = new VariantAnnotationGroupingReader(
+                new AnnotationFlatFileReader(file));
+        reader.open(executionContext);
+
+        for (int i = 0; i < STARTS.length; i++) {
+            VariantAnnotation variantAnnotation = reader.read();
+            assertEquals(STARTS[i], variantAnnotation.getStart());
+            assertEquals(CONSEQUENCE_TYPES[i], variantAnnotation.getConsequenceTypes().size());
+        }
+        assertNull(reader.read());
+        reader.close();
+    }
+
+    @Test
+    public void shouldContinueAfterTheLastVariantReadOnRestart() throws Exception {
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        File file = temporaryFolderRule.newGzipFile(VepOutputContent.vepOutputContent);
+
+        VariantAnnotationGroupingReader reader = new VariantAnnotationGroupingReader(
+                new AnnotationFlatFileReader(file));
+        reader.open(executionContext);
+        reader.read();
+        reader.read();
+        reader.update(executionContext);
+        reader.read();
+        reader.close();
+
+        VariantAnnotationGroupingReader restartedReader = new VariantAnnotationGroupingReader(
+                new AnnotationFlatFileReader(file));
+        restartedReader.open(executionContext);
+        for (int i = 2; i < STARTS.length; i++) {
+            VariantAnnotation variantAnnotation = restartedReader.read();
+            assertEquals(STARTS[i], variantAnnotation.getStart());
+            assertEquals(CONSEQUENCE_TYPES[i], variantAnnotation.getConsequenceTypes().size());
+        }
+        assertNull(restartedReader.read());
+        restartedReader.close();
+    }
+
+    @Test
+    public void shouldReturnTheVariantBeforeAMalformedLine() throws Exception {
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        String[] lines = VepOutputContent.vepOutputContent.split("\n");
+        File file = temporaryFolderRule.newGzipFile(lines[1] + "\n"
+                                                            + VepOutputContent.vepOutputContentMalformedCoordinates
+                                                            + lines[2] + "\n");
+
+        VariantAnnotationGroupingReader reader = new VariantAnnotationGroupingReader(
+                new AnnotationFlatFileReader(file));
+        reader.open(executionContext);
+
+        assertEquals(1, reader.read().getConsequenceTypes().size());
+        try {
+            reader.read();
+            fail("The malformed line should have been reported");
+        } catch (FlatFileParseException e) {
+            // the malformed line is skipped by the step
+        }
+        assertEquals(1, reader.read().getConsequenceTypes().size());
+        assertNull(reader.read());
+        reader.close();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.readers;
+
+import org.junit.Test;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static uk.ac.ebi.eva.utils.FileUtils.getResource;
+
+/**
+ * {@link VariantStatsJsonReader}
+ * input: a .variants.stats.json.gz file written by OpenCGA
+ * output: a VariantStatsWrapper each time its `.read()` is called
+ */
+public class VariantStatsJsonReaderTest {
+
+    private static final String VARIANTS_STATS_FILE = "/input-files/statistics/1_1.variants.stats.json.gz";
+
+    private static final int EXPECTED_VARIANTS = 300;
+
+    @Test
+    public void shouldReadAllTheVariantsStatistics() throws Exception {
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        File file = getResource(VARIANTS_STATS_FILE);
+
+        VariantStatsJsonReader reader = new VariantStatsJsonReader(file);
+        reader.open(executionContext);
+
+        VariantStatsWrapper first = reader.read();
+        assertEquals("20", first.getChromosome());
+        assertEquals(67765, first.getPosition());
+        assertEquals("T", first.getCohortStats().get("ALL").getMafAllele());
+
+        int count = 1;
+        while (reader.read() != null) {
+            count++;
+        }
+        assertEquals(EXPECTED_VARIANTS, count);
+        reader.close();
+    }
+
+    @Test
+    public void shouldContinueAfterTheLastVariantReadOnRestart() throws Exception {
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        File file = getResource(VARIANTS_STATS_FILE);
+
+        VariantStatsJsonReader reader = new VariantStatsJsonReader(file);
+        reader.open(executionContext);
+        reader.read();
+        reader.read();
+        reader.update(executionContext);
+        VariantStatsWrapper third = reader.read();
+        reader.close();
+
+        VariantStatsJsonReader restartedReader = new VariantStatsJsonReader(file);
+        restartedReader.open(executionContext);
+        VariantStatsWrapper restartedThird = restartedReader.read();
+        assertEquals(third.getChromosome(), restartedThird.getChromosome());
+        assertEquals(third.getPosition(), restartedThird.getPosition());
+
+        int count = 3;
+        while (restartedReader.read() != null) {
+            count++;
+        }
+        assertEquals(EXPECTED_VARIANTS, count);
+        restartedReader.close();
+    }
+
+    @Test
+    public void shouldReadNothingFromAnExhaustedFileOnRestart() throws Exception {
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        File file = getResource(VARIANTS_STATS_FILE);
+
+        VariantStatsJsonReader reader = new VariantStatsJsonReader(file);
+        reader.open(executionContext);
+        while (reader.read() != null) {
+            reader.update(executionContext);
+        }
+        reader.close();
+
+        VariantStatsJsonReader restartedReader = new VariantStatsJsonReader(file);
+        restartedReader.open(executionContext);
+        assertNull(restartedReader.read());
+        restartedReader.close();
+    }
+}
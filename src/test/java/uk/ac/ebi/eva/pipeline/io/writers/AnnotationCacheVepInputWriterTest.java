@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.writers;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+import uk.ac.ebi.eva.pipeline.io.AnnotationCache;
+import uk.ac.ebi.eva.pipeline.io.mappers.AnnotationLineMapper;
+import uk.ac.ebi.eva.pipeline.model.VariantWrapper;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
+import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
+import uk.ac.ebi.eva.test.utils.JobTestUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static uk.ac.ebi.eva.test.data.VepOutputContent.vepOutputContent;
+import static uk.ac.ebi.eva.test.utils.JobTestUtils.readFirstLine;
+
+/**
+ * {@link AnnotationCacheVepInputWriter}
+ * input: a List of VariantWrapper to each call of `.write()`
+ * output: the annotations of the cached variants, and a line in the VEP input for each variant not cached
+ */
+public class AnnotationCacheVepInputWriterTest {
+
+    private static final String VEP_VERSION = "78";
+
+    private static final String VEP_CACHE_VERSION = "78";
+
+    @Rule
+    public PipelineTemporaryFolderRule temporaryFolderRule = new PipelineTemporaryFolderRule();
+
+    @Test
+    public void shouldOnlyWriteVariantsNotCachedInVepInput() throws Exception {
+        File cacheDirectory = temporaryFolderRule.newFolder();
+        AnnotationLineMapper lineMapper = new AnnotationLineMapper();
+        String[] lines = vepOutputContent.split("\n");
+        try (AnnotationCache cache = new AnnotationCache(cacheDirectory, VEP_VERSION, VEP_CACHE_VERSION, 10)) {
+            cache.open();
+            cache.putAll(Arrays.asList(lineMapper.mapLine(lines[1], 1), lineMapper.mapLine(lines[2], 2)));
+        }
+
+        File vepInput = temporaryFolderRule.newFile();
+        List<VariantAnnotation> writtenAnnotations = new ArrayList<>();
+        AnnotationCacheVepInputWriter writer = new AnnotationCacheVepInputWriter(
+                new VepInputFlatFileWriter(vepInput), writtenAnnotations::addAll,
+                new AnnotationCache(cacheDirectory, VEP_VERSION, VEP_CACHE_VERSION, 10));
+
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        writer.open(executionContext);
+        writer.write(Arrays.asList(new VariantWrapper(new Variant("20", 63351, 63351, "A", "G")),
+                                   new VariantWrapper(new Variant("20", 63360, 63360, "C", "T"))));
+        writer.update(executionContext);
+        writer.close();
+
+        assertEquals(1, writtenAnnotations.size());
+        VariantAnnotation annotation = writtenAnnotations.get(0);
+        assertEquals("20", annotation.getChromosome());
+        assertEquals(63360, annotation.getStart());
+        assertEquals(2, annotation.getConsequenceTypes().size());
+
+        assertEquals(1, JobTestUtils.getLines(new GZIPInputStream(new FileInputStream(vepInput))));
+        assertEquals("20\t63351\t63351\tA/G\t+", readFirstLine(new GZIPInputStream(new FileInputStream(vepInput))));
+
+        assertEquals(1, executionContext.getLong(ExecutionContextParametersNames.ANNOTATION_CACHE_HITS));
+        assertEquals(1, executionContext.getLong(ExecutionContextParametersNames.ANNOTATION_CACHE_MISSES));
+    }
+
+    @Test
+    public void shouldWriteTheVepInputAgainOnRestartWithCacheHits() throws Exception {
+        File cacheDirectory = temporaryFolderRule.newFolder();
+        AnnotationLineMapper lineMapper = new AnnotationLineMapper();
+        String[] lines = vepOutputContent.split("\n");
+        try (AnnotationCache cache = new AnnotationCache(cacheDirectory, VEP_VERSION, VEP_CACHE_VERSION, 10)) {
+            cache.open();
+            cache.putAll(Arrays.asList(lineMapper.mapLine(lines[1], 1), lineMapper.mapLine(lines[2], 2)));
+        }
+
+        File vepInput = temporaryFolderRule.newFile();
+        List<VariantAnnotation> writtenAnnotations = new ArrayList<>();
+        VariantWrapper cachedVariant = new VariantWrapper(new Variant("20", 63360, 63360, "C", "T"));
+        VariantWrapper firstVariant = new VariantWrapper(new Variant("20", 63351, 63351, "A", "G"));
+        VariantWrapper secondVariant = new VariantWrapper(new Variant("20", 63399, 63399, "G", "A"));
+
+        // the first chunk is committed, and the step fails writing the second one
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        AnnotationCacheVepInputWriter writer = new AnnotationCacheVepInputWriter(
+                new VepInputFlatFileWriter(vepInput), writtenAnnotations::addAll,
+                new AnnotationCache(cacheDirectory, VEP_VERSION, VEP_CACHE_VERSION, 10));
+        writer.open(executionContext);
+        writer.write(Arrays.asList(cachedVariant, firstVariant));
+        writer.update(executionContext);
+        writer.write(Collections.singletonList(secondVariant));
+        writer.close();
+        assertEquals(1, writtenAnnotations.size());
+
+        // the cached variant is annotated already, so the restarted step reads only the other two
+        AnnotationCacheVepInputWriter restartedWriter = new AnnotationCacheVepInputWriter(
+                new VepInputFlatFileWriter(vepInput), writtenAnnotations::addAll,
+                new AnnotationCache(cacheDirectory, VEP_VERSION, VEP_CACHE_VERSION, 10));
+        restartedWriter.open(executionContext);
+        restartedWriter.write(Arrays.asList(firstVariant, secondVariant));
+        restartedWriter.update(executionContext);
+        restartedWriter.close();
+
+        assertEquals(1, writtenAnnotations.size());
+        assertEquals(2, JobTestUtils.getLines(new GZIPInputStream(new FileInputStream(vepInput))));
+        assertEquals("20\t63351\t63351\tA/G\t+", readFirstLine(new GZIPInputStream(new FileInputStream(vepInput))));
+    }
+
+}
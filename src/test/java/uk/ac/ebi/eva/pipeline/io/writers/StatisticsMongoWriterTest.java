@@ -49,9 +49,8 @@ import static org.junit.Assert.assertNotNull;
 /**
  * {@link StatisticsMongoWriter}
  * input: a List of {@link PopulationStatistics} to each call of `.write()`
- * output: the FeatureCoordinates get written in mongo, with at least: chromosome, start and end.
- * <p>
- * TODO Replace MongoDBHelper with StatisticsMongoWriterConfiguration in ContextConfiguration when the class exists
+ * output: the PopulationStatistics get written in mongo, replacing the previous ones of the same variant, study and
+ * cohort
  */
 @RunWith(SpringRunner.class)
 @TestPropertySource({"classpath:test-mongo.properties"})
@@ -92,6 +91,7 @@ public class StatisticsMongoWriterTest {
             DBObject next = cursor.next();
             assertNotNull(next.get("cid"));
             assertNotNull(next.get("sid"));
+            assertNotNull(next.get("fid"));
             assertNotNull(next.get("vid"));
             assertNotNull(next.get("chr"));
             assertNotNull(next.get("start"));
@@ -114,7 +114,7 @@ public class StatisticsMongoWriterTest {
         // do the checks
         DBCollection statsCollection = mongoRule.getCollection(databaseName, COLLECTION_STATS_NAME);
 
-        // check there is an index in chr + start + ref + alt + sid + cid
+        // check there is an index in chr + start + ref + alt + sid + fid + cid
         List<DBObject> indexes = new ArrayList<>();
         indexes.add(new BasicDBObject("v", 1)
                 .append("key", new BasicDBObject("_id", 1))
@@ -128,22 +128,58 @@ public class StatisticsMongoWriterTest {
                         .append("ref", 1)
                         .append("alt", 1)
                         .append("sid", 1)
+                        .append("fid", 1)
                         .append("cid", 1))
-                .append("name", "vscid")
+                .append("name", "vsfcid")
                 .append("ns", databaseName + ".populationStatistics")
         );
 
         assertEquals(indexes, statsCollection.getIndexInfo());
     }
 
-    @Test(expected = org.springframework.dao.DuplicateKeyException.class)
-    public void shouldFailIfduplicatedVidSidCid() throws Exception {
+    @Test
+    public void shouldReplaceDuplicatedVidSidCid() throws Exception {
         List<PopulationStatistics> populationStatisticsList = buildPopulationStatsList();
 
         String databaseName = mongoRule.getRandomTemporaryDatabaseName();
         StatisticsMongoWriter statisticsMongoWriter = getStatisticsMongoWriter(databaseName);
         statisticsMongoWriter.write(populationStatisticsList);
-        statisticsMongoWriter.write(populationStatisticsList);   // should throw
+
+        PopulationStatistics statistics = populationStatisticsList.get(0);
+        PopulationStatistics recalculatedStatistics = new PopulationStatistics(
+                statistics.getVariantId(), statistics.getChromosome(), statistics.getStart(),
+                statistics.getReference(), statistics.getAlternate(), statistics.getCohortId(),
+                statistics.getStudyId(), statistics.getFileId(), 0.5, statistics.getMgf(), statistics.getMafAllele(),
+                statistics.getMgfGenotype(), statistics.getMissingAlleles(), statistics.getMissingGenotypes(),
+                statistics.getGenotypeCount());
+        statisticsMongoWriter.write(Arrays.asList(recalculatedStatistics));
+
+        DBCollection statsCollection = mongoRule.getCollection(databaseName, COLLECTION_STATS_NAME);
+        assertEquals(1, statsCollection.count());
+        assertEquals(0.5, (Double) statsCollection.findOne().get("maf"), 0);
+    }
+
+    @Test
+    public void shouldKeepTheStatisticsOfEveryFile() throws Exception {
+        List<PopulationStatistics> populationStatisticsList = buildPopulationStatsList();
+
+        String databaseName = mongoRule.getRandomTemporaryDatabaseName();
+        StatisticsMongoWriter statisticsMongoWriter = getStatisticsMongoWriter(databaseName);
+        statisticsMongoWriter.write(populationStatisticsList);
+
+        PopulationStatistics statistics = populationStatisticsList.get(0);
+        PopulationStatistics otherFileStatistics = new PopulationStatistics(
+                statistics.getVariantId(), statistics.getChromosome(), statistics.getStart(),
+                statistics.getReference(), statistics.getAlternate(), statistics.getCohortId(),
+                statistics.getStudyId(), "6", 0.5, statistics.getMgf(), statistics.getMafAllele(),
+                statistics.getMgfGenotype(), statistics.getMissingAlleles(), statistics.getMissingGenotypes(),
+                statistics.getGenotypeCount());
+        statisticsMongoWriter.write(Arrays.asList(otherFileStatistics));
+
+        DBCollection statsCollection = mongoRule.getCollection(databaseName, COLLECTION_STATS_NAME);
+        assertEquals(2, statsCollection.count());
+        assertEquals(statistics.getMaf(),
+                     (Double) statsCollection.findOne(new BasicDBObject("fid", statistics.getFileId())).get("maf"), 0);
     }
 
     private List<PopulationStatistics> buildPopulationStatsList() throws Exception {
@@ -158,6 +194,7 @@ public class StatisticsMongoWriterTest {
                 (String) map.get("alt"),
                 (String) map.get("cid"),
                 (String) map.get("sid"),
+                (String) map.get("fid"),
                 (Double) map.get("maf"),
                 (Double) map.get("mgf"),
                 (String) map.get("mafAl"),
@@ -23,14 +23,20 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.opencb.biodata.models.variant.annotation.ConsequenceType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
 import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantAnnotation;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
 import uk.ac.ebi.eva.pipeline.configuration.MongoConfiguration;
+import uk.ac.ebi.eva.pipeline.io.mappers.VcfAnnotationInfoParser;
+import uk.ac.ebi.eva.pipeline.io.readers.NonAnnotatedVariantsMongoReader;
 import uk.ac.ebi.eva.pipeline.model.converters.data.VariantToMongoDbObjectConverter;
 import uk.ac.ebi.eva.pipeline.parameters.MongoConnection;
 import uk.ac.ebi.eva.test.rules.TemporaryMongoRule;
@@ -41,12 +47,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.when;
@@ -66,6 +76,18 @@ public class VariantMongoWriterTest {
 
     private final String collectionName = "variants";
 
+    private static final String ANNOTATIONS_COLLECTION_NAME = "annotations";
+
+    private static final String FILE_ID = "1";
+
+    private static final String STUDY_ID = "1";
+
+    private static final String VEP_VERSION = "78";
+
+    private static final String VEP_CACHE_VERSION = "78";
+
+    private static final String GENE_ID = "ENSG00000101255";
+
     @Autowired
     private MongoConnection mongoConnection;
 
@@ -159,4 +181,85 @@ public class VariantMongoWriterTest {
         }
     }
 
+    @Test
+    public void importedAnnotationOfTheCurrentVepVersionShouldMarkTheVariant() throws Exception {
+        String dbName = mongoRule.getRandomTemporaryDatabaseName();
+        MongoOperations mongoOperations = MongoConfiguration.getMongoOperations(dbName, mongoConnection,
+                mongoMappingContext);
+        DBCollection dbCollection = mongoOperations.getCollection(collectionName);
+
+        VariantMongoWriter variantMongoWriter = new VariantMongoWriter(
+                collectionName, mongoOperations, new VariantToMongoDbObjectConverter(false, true), null, VEP_VERSION);
+        variantMongoWriter.write(Collections.singletonList(buildAnnotatedVariant(VEP_VERSION, VEP_CACHE_VERSION)));
+
+        DBObject annotation = (DBObject) dbCollection.findOne().get(VariantToDBObjectConverter.ANNOTATION_FIELD);
+        assertEquals(VEP_VERSION, annotation.get("vepv"));
+        assertEquals(VEP_CACHE_VERSION, annotation.get("cachev"));
+        assertEquals(1, ((List) annotation.get("ct")).size());
+        assertEquals(0, dbCollection.count(NonAnnotatedVariantsMongoReader.buildQuery("", null, null)));
+    }
+
+    @Test
+    public void importedAnnotationOfOtherAnnotatorsShouldNotMarkTheVariant() throws Exception {
+        String dbName = mongoRule.getRandomTemporaryDatabaseName();
+        MongoOperations mongoOperations = MongoConfiguration.getMongoOperations(dbName, mongoConnection,
+                mongoMappingContext);
+        DBCollection dbCollection = mongoOperations.getCollection(collectionName);
+
+        VariantMongoWriter variantMongoWriter = new VariantMongoWriter(
+                collectionName, mongoOperations, new VariantToMongoDbObjectConverter(false, true), null, VEP_VERSION);
+        variantMongoWriter.write(Collections.singletonList(buildAnnotatedVariant("SnpEff 4.3t", null)));
+
+        DBObject annotation = (DBObject) dbCollection.findOne().get(VariantToDBObjectConverter.ANNOTATION_FIELD);
+        assertNull(annotation.get("vepv"));
+        assertNull(annotation.get("cachev"));
+        assertEquals("SnpEff 4.3t", annotation.get("annotv"));
+        assertEquals(1, ((List) annotation.get("ct")).size());
+        assertEquals(1, dbCollection.count(NonAnnotatedVariantsMongoReader.buildQuery("", null, null)));
+    }
+
+    @Test
+    public void importedAnnotationShouldBeWrittenInTheAnnotationsCollection() throws Exception {
+        String dbName = mongoRule.getRandomTemporaryDatabaseName();
+        MongoOperations mongoOperations = MongoConfiguration.getMongoOperations(dbName, mongoConnection,
+                mongoMappingContext);
+        DBCollection dbCollection = mongoOperations.getCollection(collectionName);
+
+        VariantMongoWriter variantMongoWriter = new VariantMongoWriter(
+                collectionName, mongoOperations, new VariantToMongoDbObjectConverter(false, true),
+                ANNOTATIONS_COLLECTION_NAME, VEP_VERSION);
+        variantMongoWriter.write(Collections.singletonList(buildAnnotatedVariant(VEP_VERSION, VEP_CACHE_VERSION)));
+
+        DBObject variantAnnotation = (DBObject) dbCollection.findOne().get(
+                VariantToDBObjectConverter.ANNOTATION_FIELD);
+        assertEquals(VEP_VERSION, variantAnnotation.get("vepv"));
+        assertNull(variantAnnotation.get("ct"));
+        assertEquals(Collections.singletonList(GENE_ID), variantAnnotation.get(VariantToDBObjectConverter.GENE_FIELD));
+
+        String annotationId = VepAnnotationMongoWriter.buildAnnotationId(
+                MongoDBHelper.buildStorageId("12", 3, "A", "T"), VEP_VERSION, VEP_CACHE_VERSION);
+        DBObject annotation = mongoOperations.getCollection(ANNOTATIONS_COLLECTION_NAME).findOne(
+                new BasicDBObject("_id", annotationId));
+        assertNotNull(annotation);
+        assertEquals(1, ((List) annotation.get("ct")).size());
+    }
+
+    private Variant buildAnnotatedVariant(String annotatorVersion, String annotatorCacheVersion) {
+        Variant variant = new Variant("12", 3, 3, "A", "T");
+        Map<String, VariantSourceEntry> sourceEntries = new LinkedHashMap<>();
+        sourceEntries.put("variant", new VariantSourceEntry(FILE_ID, STUDY_ID));
+        variant.setSourceEntries(sourceEntries);
+
+        VariantAnnotation annotation = new VariantAnnotation("12", 3, 3, "A", "T");
+        ConsequenceType consequenceType = new ConsequenceType();
+        consequenceType.setEnsemblGeneId(GENE_ID);
+        annotation.getConsequenceTypes().add(consequenceType);
+        annotation.getAdditionalAttributes().put(VcfAnnotationInfoParser.ANNOTATOR_VERSION_ATTRIBUTE,
+                                                 annotatorVersion);
+        annotation.getAdditionalAttributes().put(VcfAnnotationInfoParser.ANNOTATOR_CACHE_VERSION_ATTRIBUTE,
+                                                 annotatorCacheVersion);
+        variant.setAnnotation(annotation);
+        return variant;
+    }
+
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.io.writers;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantStatsToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
+import uk.ac.ebi.eva.commons.models.data.VariantStats;
+import uk.ac.ebi.eva.pipeline.configuration.MongoConfiguration;
+import uk.ac.ebi.eva.pipeline.parameters.MongoConnection;
+import uk.ac.ebi.eva.test.rules.TemporaryMongoRule;
+import uk.ac.ebi.eva.utils.MongoDBHelper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link VariantStatsMergeMongoWriter}
+ * input: a List of Variants with the statistics of a file to each call of `.write()`
+ * output: the genotype counts of every cohort are added to the counts of the study, and the frequencies of the study
+ * are calculated from them
+ */
+@RunWith(SpringRunner.class)
+@TestPropertySource({"classpath:test-mongo.properties"})
+@ContextConfiguration(classes = {MongoConnection.class, MongoMappingContext.class})
+public class VariantStatsMergeMongoWriterTest {
+
+    private static final String COLLECTION_VARIANTS_NAME = "variants";
+
+    private static final String STUDY_ID = "study";
+
+    private static final String COHORT = "GBR";
+
+    @Autowired
+    private MongoConnection mongoConnection;
+
+    @Autowired
+    private MongoMappingContext mongoMappingContext;
+
+    @Rule
+    public TemporaryMongoRule mongoRule = new TemporaryMongoRule();
+
+    private DBCollection variantsCollection;
+
+    private VariantStatsMergeMongoWriter writer;
+
+    @Before
+    public void setUp() throws Exception {
+        String databaseName = mongoRule.getRandomTemporaryDatabaseName();
+        MongoOperations mongoOperations = MongoConfiguration.getMongoOperations(databaseName, mongoConnection,
+                                                                                mongoMappingContext);
+        variantsCollection = mongoOperations.getCollection(COLLECTION_VARIANTS_NAME);
+        variantsCollection.insert(new BasicDBObject("_id", MongoDBHelper.buildStorageId("1", 100, "A", "T")));
+        writer = new VariantStatsMergeMongoWriter(mongoOperations, COLLECTION_VARIANTS_NAME);
+    }
+
+    @Test
+    public void shouldAddTheCountsOfEveryFileAndDeriveTheFrequencies() throws Exception {
+        writer.write(Collections.singletonList(buildVariant("1", genotypes("0/0", 3, "0/1", 1), genotypes("0/1", 1))));
+        writer.write(Collections.singletonList(buildVariant("2", genotypes("0/1", 2, "1/1", 2), null)));
+
+        DBObject studyStats = getStudyStats();
+        assertEquals(Arrays.asList("1", "2"), studyStats.get(VariantStatsMergeMongoWriter.MERGED_FILES_FIELD));
+
+        DBObject allStats = getCohortStats(studyStats, VariantSourceEntry.DEFAULT_COHORT);
+        DBObject genotypesCount = (DBObject) allStats.get(VariantStatsToDBObjectConverter.NUMGT_FIELD);
+        assertEquals(3, genotypesCount.get("0/0"));
+        assertEquals(3, genotypesCount.get("0/1"));
+        assertEquals(2, genotypesCount.get("1/1"));
+        assertEquals(7.0 / 16, ((Number) allStats.get(VariantStatsToDBObjectConverter.MAF_FIELD)).doubleValue(),
+                     1e-6);
+        assertEquals("T", allStats.get(VariantStatsToDBObjectConverter.MAFALLELE_FIELD));
+
+        DBObject cohortStats = getCohortStats(studyStats, COHORT);
+        assertEquals(1, ((DBObject) cohortStats.get(VariantStatsToDBObjectConverter.NUMGT_FIELD)).get("0/1"));
+        assertEquals(0.5, ((Number) cohortStats.get(VariantStatsToDBObjectConverter.MAF_FIELD)).doubleValue(),
+                     1e-6);
+    }
+
+    @Test
+    public void shouldNotCountAFileTwiceWhenWrittenAgain() throws Exception {
+        Variant variant = buildVariant("1", genotypes("0/0", 3, "0/1", 1), null);
+        writer.write(Collections.singletonList(variant));
+        writer.write(Collections.singletonList(variant));
+
+        DBObject studyStats = getStudyStats();
+        assertEquals(Collections.singletonList("1"), studyStats.get(VariantStatsMergeMongoWriter.MERGED_FILES_FIELD));
+        DBObject genotypesCount = (DBObject) getCohortStats(studyStats, VariantSourceEntry.DEFAULT_COHORT).get(
+                VariantStatsToDBObjectConverter.NUMGT_FIELD);
+        assertEquals(3, genotypesCount.get("0/0"));
+        assertEquals(1, genotypesCount.get("0/1"));
+    }
+
+    @Test
+    public void shouldIncreaseTheVersionOnlyWhenAFileIsMerged() throws Exception {
+        writer.write(Collections.singletonList(buildVariant("1", genotypes("0/0", 3, "0/1", 1), null)));
+        writer.write(Collections.singletonList(buildVariant("1", genotypes("0/0", 3, "0/1", 1), null)));
+        writer.write(Collections.singletonList(buildVariant("2", genotypes("0/1", 2), null)));
+
+        assertEquals(2, getStudyStats().get(VariantStatsMergeMongoWriter.MERGED_VERSION_FIELD));
+    }
+
+    @Test
+    public void shouldDeriveTheFrequenciesAgainWhenAMergedFileIsWrittenAgain() throws Exception {
+        Variant variant = buildVariant("1", genotypes("0/0", 3, "0/1", 1), null);
+        writer.write(Collections.singletonList(variant));
+        String mafField = VariantStatsMergeMongoWriter.MERGED_STATS_FIELD + "." + STUDY_ID + "."
+                + VariantStatsMergeMongoWriter.MERGED_COHORTS_FIELD + "." + VariantSourceEntry.DEFAULT_COHORT + "."
+                + VariantStatsToDBObjectConverter.MAF_FIELD;
+        variantsCollection.update(new BasicDBObject(), new BasicDBObject("$unset", new BasicDBObject(mafField, "")));
+
+        writer.write(Collections.singletonList(variant));
+
+        DBObject allStats = getCohortStats(getStudyStats(), VariantSourceEntry.DEFAULT_COHORT);
+        assertEquals(1.0 / 8, ((Number) allStats.get(VariantStatsToDBObjectConverter.MAF_FIELD)).doubleValue(),
+                     1e-6);
+        assertEquals(1, getStudyStats().get(VariantStatsMergeMongoWriter.MERGED_VERSION_FIELD));
+    }
+
+    @Test
+    public void shouldMergeTheFilesWrittenInTheSameChunk() throws Exception {
+        writer.write(Arrays.asList(buildVariant("1", genotypes("0/0", 3, "0/1", 1), null),
+                                   buildVariant("2", genotypes("0/1", 2, "1/1", 2), null)));
+
+        DBObject studyStats = getStudyStats();
+        assertEquals(Arrays.asList("1", "2"), studyStats.get(VariantStatsMergeMongoWriter.MERGED_FILES_FIELD));
+        assertEquals(2, studyStats.get(VariantStatsMergeMongoWriter.MERGED_VERSION_FIELD));
+        DBObject allStats = getCohortStats(studyStats, VariantSourceEntry.DEFAULT_COHORT);
+        assertEquals(7.0 / 16, ((Number) allStats.get(VariantStatsToDBObjectConverter.MAF_FIELD)).doubleValue(),
+                     1e-6);
+    }
+
+    @Test
+    public void shouldStoreTheMissingAllelesAsMinusOne() throws Exception {
+        writer.write(Collections.singletonList(buildVariant("1", genotypes("0/0", 3, "./.", 1), null)));
+
+        DBObject allStats = getCohortStats(getStudyStats(), VariantSourceEntry.DEFAULT_COHORT);
+        DBObject genotypesCount = (DBObject) allStats.get(VariantStatsToDBObjectConverter.NUMGT_FIELD);
+        assertEquals(1, genotypesCount.get("-1/-1"));
+        assertNull(genotypesCount.get("./."));
+        assertEquals(1, allStats.get(VariantStatsToDBObjectConverter.MISSGENOTYPE_FIELD));
+    }
+
+    private Variant buildVariant(String fileId, Map<String, Integer> allGenotypes,
+                                 Map<String, Integer> cohortGenotypes) {
+        Variant variant = new Variant("1", 100, 100, "A", "T");
+        VariantSourceEntry sourceEntry = new VariantSourceEntry(fileId, STUDY_ID);
+        sourceEntry.setStats(new VariantStats(variant).calculate(allGenotypes, Collections.emptyMap()));
+        if (cohortGenotypes != null) {
+            sourceEntry.setCohortStats(COHORT, new VariantStats(variant).calculate(cohortGenotypes,
+                                                                                   Collections.emptyMap()));
+        }
+        variant.addSourceEntry(sourceEntry);
+        return variant;
+    }
+
+    private Map<String, Integer> genotypes(Object... genotypesAndCounts) {
+        Map<String, Integer> genotypesCount = new HashMap<>();
+        for (int i = 0; i < genotypesAndCounts.length; i += 2) {
+            genotypesCount.put((String) genotypesAndCounts[i], (Integer) genotypesAndCounts[i + 1]);
+        }
+        return genotypesCount;
+    }
+
+    private DBObject getStudyStats() {
+        DBObject variant = variantsCollection.findOne();
+        return (DBObject) ((DBObject) variant.get(VariantStatsMergeMongoWriter.MERGED_STATS_FIELD)).get(STUDY_ID);
+    }
+
+    private DBObject getCohortStats(DBObject studyStats, String cohort) {
+        return (DBObject) ((DBObject) studyStats.get(VariantStatsMergeMongoWriter.MERGED_COHORTS_FIELD)).get(cohort);
+    }
+}
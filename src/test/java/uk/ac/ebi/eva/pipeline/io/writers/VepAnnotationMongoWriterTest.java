@@ -48,6 +48,7 @@ import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static uk.ac.ebi.eva.test.data.VepOutputContent.vepOutputContent;
@@ -66,6 +67,12 @@ public class VepAnnotationMongoWriterTest {
 
     private static final String COLLECTION_VARIANTS_NAME = "variants";
 
+    private static final String COLLECTION_ANNOTATIONS_NAME = "annotations";
+
+    private static final String VEP_VERSION = "78";
+
+    private static final String VEP_CACHE_VERSION = "78";
+
     @Autowired
     private MongoConnection mongoConnection;
 
@@ -96,7 +103,8 @@ public class VepAnnotationMongoWriterTest {
         // now, load the annotation
         MongoOperations operations = MongoConfiguration.getMongoOperations(databaseName, mongoConnection,
                 mongoMappingContext);
-        annotationWriter = new VepAnnotationMongoWriter(operations, COLLECTION_VARIANTS_NAME);
+        annotationWriter = new VepAnnotationMongoWriter(operations, COLLECTION_VARIANTS_NAME, VEP_VERSION,
+                                                        VEP_CACHE_VERSION);
         annotationWriter.write(annotations);
 
         // and finally check that documents in DB have annotation (only consequence type)
@@ -106,8 +114,10 @@ public class VepAnnotationMongoWriterTest {
         int consequenceTypeCount = 0;
         while (cursor.hasNext()) {
             count++;
-            VariantAnnotation annot = converter.convert(
-                    (DBObject) cursor.next().get(VariantToDBObjectConverter.ANNOTATION_FIELD));
+            DBObject annotationField = (DBObject) cursor.next().get(VariantToDBObjectConverter.ANNOTATION_FIELD);
+            assertEquals(VEP_VERSION, annotationField.get("vepv"));
+            assertEquals(VEP_CACHE_VERSION, annotationField.get("cachev"));
+            VariantAnnotation annot = converter.convert(annotationField);
             assertNotNull(annot.getConsequenceTypes());
             consequenceTypeCount += annot.getConsequenceTypes().size();
         }
@@ -156,7 +166,8 @@ public class VepAnnotationMongoWriterTest {
         // now, load the annotation
         MongoOperations operations = MongoConfiguration.getMongoOperations(databaseName, mongoConnection,
                 mongoMappingContext);
-        annotationWriter = new VepAnnotationMongoWriter(operations, dbCollectionVariantsName);
+        annotationWriter = new VepAnnotationMongoWriter(operations, dbCollectionVariantsName, VEP_VERSION,
+                                                        VEP_CACHE_VERSION);
 
         annotationWriter.write(annotationSet1);
         annotationWriter.write(annotationSet2);
@@ -179,6 +190,127 @@ public class VepAnnotationMongoWriterTest {
         }
     }
 
+    @Test
+    public void shouldReplaceAnnotationsOfOtherVersions() throws Exception {
+        String databaseName = mongoRule.getRandomTemporaryDatabaseName();
+        String[] vepOutputLines = vepOutputContent.split("\n");
+        DBCollection variants = mongoRule.getCollection(databaseName, COLLECTION_VARIANTS_NAME);
+
+        // 20_63360_C_T has two lines, each of them with a different transcript
+        VariantAnnotation oldAnnotation = AnnotationLineMapper.mapLine(vepOutputLines[1], 0);
+        VariantAnnotation newAnnotation = AnnotationLineMapper.mapLine(vepOutputLines[2], 0);
+        writeIdsIntoMongo(Arrays.asList(oldAnnotation), variants);
+
+        MongoOperations operations = MongoConfiguration.getMongoOperations(databaseName, mongoConnection,
+                mongoMappingContext);
+        new VepAnnotationMongoWriter(operations, COLLECTION_VARIANTS_NAME, "77", "77").write(
+                Arrays.asList(oldAnnotation));
+        new VepAnnotationMongoWriter(operations, COLLECTION_VARIANTS_NAME, VEP_VERSION, VEP_CACHE_VERSION, true).write(
+                Arrays.asList(newAnnotation));
+
+        DBObject annotationField = (DBObject) variants.findOne().get(VariantToDBObjectConverter.ANNOTATION_FIELD);
+        assertEquals(VEP_VERSION, annotationField.get("vepv"));
+        assertEquals(VEP_CACHE_VERSION, annotationField.get("cachev"));
+        VariantAnnotation annot = converter.convert(annotationField);
+        assertEquals(1, annot.getConsequenceTypes().size());
+        assertEquals("ENST00000608838", annot.getConsequenceTypes().get(0).getEnsemblTranscriptId());
+    }
+
+    @Test
+    public void shouldReplaceWithTheAnnotationWithoutDuplicates() throws Exception {
+        String databaseName = mongoRule.getRandomTemporaryDatabaseName();
+        String[] vepOutputLines = vepOutputContent.split("\n");
+        DBCollection variants = mongoRule.getCollection(databaseName, COLLECTION_VARIANTS_NAME);
+
+        // the second transcript of 20_63360_C_T is repeated
+        List<VariantAnnotation> annotations = new ArrayList<>();
+        for (String annotLine : Arrays.asList(vepOutputLines[1], vepOutputLines[2], vepOutputLines[2])) {
+            annotations.add(AnnotationLineMapper.mapLine(annotLine, 0));
+        }
+        writeIdsIntoMongo(annotations, variants);
+
+        MongoOperations operations = MongoConfiguration.getMongoOperations(databaseName, mongoConnection,
+                mongoMappingContext);
+        new VepAnnotationMongoWriter(operations, COLLECTION_VARIANTS_NAME, VEP_VERSION, VEP_CACHE_VERSION, true).write(
+                annotations);
+
+        DBObject annotationField = (DBObject) variants.findOne().get(VariantToDBObjectConverter.ANNOTATION_FIELD);
+        VariantAnnotation annot = converter.convert(annotationField);
+        assertEquals(2, annot.getConsequenceTypes().size());
+        assertEquals("ENST00000382410", annot.getConsequenceTypes().get(0).getEnsemblTranscriptId());
+        assertEquals("ENST00000608838", annot.getConsequenceTypes().get(1).getEnsemblTranscriptId());
+    }
+
+    @Test
+    public void shouldWriteAnnotationsIntoTheirOwnCollection() throws Exception {
+        String databaseName = mongoRule.getRandomTemporaryDatabaseName();
+        String[] vepOutputLines = vepOutputContent.split("\n");
+        DBCollection variants = mongoRule.getCollection(databaseName, COLLECTION_VARIANTS_NAME);
+        DBCollection annotations = mongoRule.getCollection(databaseName, COLLECTION_ANNOTATIONS_NAME);
+
+        // 20_63360_C_T has two lines, each of them with a different transcript, written in different chunks
+        VariantAnnotation firstAnnotation = AnnotationLineMapper.mapLine(vepOutputLines[1], 0);
+        VariantAnnotation secondAnnotation = AnnotationLineMapper.mapLine(vepOutputLines[2], 0);
+        writeIdsIntoMongo(Arrays.asList(firstAnnotation), variants);
+
+        MongoOperations operations = MongoConfiguration.getMongoOperations(databaseName, mongoConnection,
+                mongoMappingContext);
+        annotationWriter = new VepAnnotationMongoWriter(operations, COLLECTION_VARIANTS_NAME,
+                                                        COLLECTION_ANNOTATIONS_NAME, VEP_VERSION, VEP_CACHE_VERSION,
+                                                        false);
+        annotationWriter.write(Arrays.asList(firstAnnotation));
+        annotationWriter.write(Arrays.asList(secondAnnotation));
+
+        DBObject annotationDocument = annotations.findOne();
+        assertEquals(1, annotations.count());
+        assertEquals("20_63360_C_T_78_78", annotationDocument.get("_id"));
+        assertEquals(VEP_VERSION, annotationDocument.get("vepv"));
+        assertEquals(2, converter.convert(annotationDocument).getConsequenceTypes().size());
+
+        DBObject summary = (DBObject) variants.findOne().get(VariantToDBObjectConverter.ANNOTATION_FIELD);
+        assertEquals(VEP_VERSION, summary.get("vepv"));
+        assertEquals(VEP_CACHE_VERSION, summary.get("cachev"));
+        assertFalse(summary.containsField("ct"));
+        assertEquals(Arrays.asList(1631), summary.get(VariantToDBObjectConverter.SOTERM_FIELD));
+        assertEquals(Arrays.asList("ENSG00000178591"), summary.get(VariantToDBObjectConverter.GENE_FIELD));
+
+        Set<String> indexedFields = new HashSet<>();
+        for (DBObject index : annotations.getIndexInfo()) {
+            indexedFields.addAll(((DBObject) index.get("key")).keySet());
+        }
+        assertTrue(indexedFields.contains("xrefs.id"));
+        assertTrue(indexedFields.contains("ct.so"));
+    }
+
+    @Test
+    public void shouldKeepTheAnnotationsOfOtherVersionsInTheirOwnCollection() throws Exception {
+        String databaseName = mongoRule.getRandomTemporaryDatabaseName();
+        String[] vepOutputLines = vepOutputContent.split("\n");
+        DBCollection variants = mongoRule.getCollection(databaseName, COLLECTION_VARIANTS_NAME);
+        DBCollection annotations = mongoRule.getCollection(databaseName, COLLECTION_ANNOTATIONS_NAME);
+
+        VariantAnnotation oldAnnotation = AnnotationLineMapper.mapLine(vepOutputLines[1], 0);
+        VariantAnnotation newAnnotation = AnnotationLineMapper.mapLine(vepOutputLines[2], 0);
+        writeIdsIntoMongo(Arrays.asList(oldAnnotation), variants);
+
+        MongoOperations operations = MongoConfiguration.getMongoOperations(databaseName, mongoConnection,
+                mongoMappingContext);
+        new VepAnnotationMongoWriter(operations, COLLECTION_VARIANTS_NAME, COLLECTION_ANNOTATIONS_NAME, "77", "77",
+                                     false).write(Arrays.asList(oldAnnotation));
+        new VepAnnotationMongoWriter(operations, COLLECTION_VARIANTS_NAME, COLLECTION_ANNOTATIONS_NAME, VEP_VERSION,
+                                     VEP_CACHE_VERSION, true).write(Arrays.asList(newAnnotation));
+
+        assertEquals(2, annotations.count());
+        DBObject newAnnotationDocument = annotations.findOne(new BasicDBObject("_id", "20_63360_C_T_78_78"));
+        VariantAnnotation annot = converter.convert(newAnnotationDocument);
+        assertEquals(1, annot.getConsequenceTypes().size());
+        assertEquals("ENST00000608838", annot.getConsequenceTypes().get(0).getEnsemblTranscriptId());
+
+        DBObject summary = (DBObject) variants.findOne().get(VariantToDBObjectConverter.ANNOTATION_FIELD);
+        assertEquals(VEP_VERSION, summary.get("vepv"));
+        assertEquals(VEP_CACHE_VERSION, summary.get("cachev"));
+    }
+
     @Before
     public void setUp() throws Exception {
         converter = new DBObjectToVariantAnnotationConverter();
@@ -26,8 +26,16 @@ import uk.ac.ebi.eva.pipeline.model.VariantWrapper;
 import uk.ac.ebi.eva.test.data.VariantData;
 import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.assertEquals;
 import static uk.ac.ebi.eva.test.rules.TemporaryMongoRule.constructDbObject;
@@ -36,7 +44,7 @@ import static uk.ac.ebi.eva.test.utils.JobTestUtils.readFirstLine;
 /**
  * {@link VepInputFlatFileWriter}
  * input: a List of VariantWrapper to each call of `.write()`
- * output: a line in a File for each VariantWrapper
+ * output: a line in a compressed File for each VariantWrapper
  */
 public class VepInputFlatFileWriterTest {
 
@@ -55,8 +63,59 @@ public class VepInputFlatFileWriterTest {
         VepInputFlatFileWriter writer = new VepInputFlatFileWriter(tempFile);
         writer.open(executionContext);
         writer.write(Collections.singletonList(variant));
-        assertEquals("20\t60344\t60348\tG/A\t+", readFirstLine(tempFile));
         writer.close();
+        assertEquals("20\t60344\t60348\tG/A\t+", readFirstLine(new GZIPInputStream(new FileInputStream(tempFile))));
+    }
+
+    @Test
+    public void shouldContinueAfterTheLastCommittedChunkOnRestart() throws Exception {
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        File tempFile = temporaryFolderRule.newFile();
+
+        VepInputFlatFileWriter writer = new VepInputFlatFileWriter(tempFile);
+        writer.open(executionContext);
+        writer.write(Collections.singletonList(new VariantWrapper("20", 100, 100, "A", "G")));
+        writer.update(executionContext);
+        // this chunk is not committed, so it is written again after restarting
+        writer.write(Collections.singletonList(new VariantWrapper("20", 200, 200, "A", "G")));
+        writer.close();
+
+        VepInputFlatFileWriter restartedWriter = new VepInputFlatFileWriter(tempFile);
+        restartedWriter.open(executionContext);
+        restartedWriter.write(Arrays.asList(new VariantWrapper("20", 200, 200, "A", "G"),
+                                            new VariantWrapper("20", 300, 302, "ATT", "A")));
+        restartedWriter.update(executionContext);
+        restartedWriter.close();
+
+        List<String> lines = readLines(tempFile);
+        assertEquals(Arrays.asList("20\t100\t100\tA/G\t+", "20\t200\t200\tA/G\t+", "20\t301\t302\tTT/-\t+"),
+                     lines);
+    }
+
+    @Test
+    public void shouldLeaveTheFileEmptyIfThereAreNoVariants() throws Exception {
+        ExecutionContext executionContext = MetaDataInstanceFactory.createStepExecution().getExecutionContext();
+        File tempFile = temporaryFolderRule.newFile();
+
+        VepInputFlatFileWriter writer = new VepInputFlatFileWriter(tempFile);
+        writer.open(executionContext);
+        writer.write(Collections.emptyList());
+        writer.update(executionContext);
+        writer.close();
+
+        assertEquals(0, tempFile.length());
+    }
+
+    private List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new GZIPInputStream(new FileInputStream(file))))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
     }
 
 }
@@ -46,11 +46,13 @@ import uk.ac.ebi.eva.utils.EvaJobParameterBuilder;
 import uk.ac.ebi.eva.utils.URLHelper;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -135,7 +137,8 @@ public class AnnotationJobTest {
 
         //check list of variants without annotation output file
         assertTrue(vepInput.exists());
-        assertEquals("20\t60343\t60343\tG/A\t+", JobTestUtils.readFirstLine(vepInput));
+        assertEquals("20\t60343\t60343\tG/A\t+",
+                     JobTestUtils.readFirstLine(new GZIPInputStream(new FileInputStream(vepInput))));
 
         //check that documents have the annotation
         DBCursor cursor = mongoRule.getCollection(dbName, COLLECTION_VARIANTS_NAME).find();
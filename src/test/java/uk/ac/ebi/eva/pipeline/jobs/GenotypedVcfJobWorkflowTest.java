@@ -16,6 +16,7 @@
 
 package uk.ac.ebi.eva.pipeline.jobs;
 
+import com.mongodb.DBObject;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -30,9 +31,11 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntity;
 import uk.ac.ebi.eva.pipeline.Application;
 import uk.ac.ebi.eva.pipeline.configuration.BeanNames;
 import uk.ac.ebi.eva.pipeline.parameters.JobOptions;
+import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
 import uk.ac.ebi.eva.test.configuration.BatchTestConfiguration;
 import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
 import uk.ac.ebi.eva.test.rules.TemporaryMongoRule;
@@ -183,6 +186,28 @@ public class GenotypedVcfJobWorkflowTest {
                 .before(nameToStepExecution.get(BeanNames.LOAD_ANNOTATION_METADATA_STEP).getStartTime()));
     }
 
+    @Test
+    public void statsStepsShouldBeSkippedWithInlineStatistics() throws Exception {
+        EvaJobParameterBuilder builder = initVariantConfigurationJob();
+        JobParameters jobParameters = builder.annotationSkip(true).statisticsInline(true).toJobParameters();
+
+        JobExecution execution = jobLauncherTestUtils.launchJob(jobParameters);
+
+        assertEquals(ExitStatus.COMPLETED, execution.getExitStatus());
+
+        Map<String, StepExecution> nameToStepExecution = execution.getStepExecutions().stream().collect(
+                Collectors.toMap(StepExecution::getStepName, Function.identity()));
+
+        assertEquals(EXPECTED_REQUIRED_STEP_NAMES, nameToStepExecution.keySet());
+
+        DBObject file = mongoRule.getCollection(jobParameters.getString(JobParametersNames.DB_NAME), "files")
+                                 .findOne();
+        DBObject statistics = (DBObject) file.get(VariantSourceEntity.STATISTICS_FIELD);
+        assertEquals(2504, ((Number) statistics.get(VariantSourceEntity.STATISTICS_NUMSAMPLES_FIELD)).intValue());
+        assertEquals((long) nameToStepExecution.get(BeanNames.LOAD_VARIANTS_STEP).getWriteCount(),
+                     statistics.get(VariantSourceEntity.STATISTICS_NUMVARIANTS_FIELD));
+    }
+
     @Test
     public void annotationStepsShouldBeSkipped() throws Exception {
         EvaJobParameterBuilder builder = initVariantConfigurationJob();
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.flows;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import uk.ac.ebi.eva.pipeline.Application;
+import uk.ac.ebi.eva.pipeline.configuration.BeanNames;
+import uk.ac.ebi.eva.pipeline.jobs.AnnotationJob;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
+import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
+import uk.ac.ebi.eva.test.configuration.BatchTestConfiguration;
+import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
+import uk.ac.ebi.eva.test.rules.TemporaryMongoRule;
+import uk.ac.ebi.eva.utils.EvaJobParameterBuilder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static uk.ac.ebi.eva.utils.FileUtils.getResource;
+
+/**
+ * Benchmark of the steps of {@link AnnotationFlow} against the local MongoDB: generation of the VEP input, VEP
+ * annotation, load of the annotation and load of the annotation metadata.
+ * <p>
+ * VEP is replaced by mockvep_benchmark.pl, which annotates every variant of its input with a configurable number of
+ * transcripts, at a configurable rate. The class name doesn't match the tests run by surefire, so it has to be run
+ * explicitly, for instance:
+ * <p>
+ * {@code mvn test -Dtest=AnnotationFlowBenchmark -Dbenchmark.variants=100000 -Dconfig.db.read-partitions=4}
+ * <p>
+ * The system properties are:
+ * <ul>
+ * <li>benchmark.variants: number of variants to annotate (10000 by default)</li>
+ * <li>benchmark.transcripts: lines written by the mock VEP for each variant (3 by default)</li>
+ * <li>benchmark.vep-rate: variants per second annotated by each mock VEP process (0, the default, means no limit)</li>
+ * <li>benchmark.report: file where the report lines are appended as TSV, besides being logged</li>
+ * <li>any job parameter starting with "config.", which is passed to the steps</li>
+ * <li>any application property, like app.vep.num-shards, which overrides the one in the configuration files</li>
+ * </ul>
+ * For each step, the wall time, the items processed per second and the MongoDB operations per second (from the
+ * opcounters of serverStatus, so the server should be idle otherwise) are reported.
+ */
+@RunWith(SpringRunner.class)
+@ActiveProfiles(Application.VARIANT_ANNOTATION_MONGO_PROFILE)
+@TestPropertySource({"classpath:common-configuration.properties", "classpath:test-mongo.properties"})
+@ContextConfiguration(classes = {AnnotationJob.class, BatchTestConfiguration.class})
+public class AnnotationFlowBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationFlowBenchmark.class);
+
+    private static final String MOCK_VEP = "/mockvep_benchmark.pl";
+
+    private static final String STUDY_ID = "1";
+
+    private static final String FILE_ID = "1";
+
+    private static final String COLLECTION_VARIANTS_NAME = "variants";
+
+    private static final String COLLECTION_ANNOTATION_METADATA_NAME = "annotationMetadata";
+
+    private static final String VEP_VERSION = "80";
+
+    private static final String VARIANTS_PROPERTY = "benchmark.variants";
+
+    private static final String TRANSCRIPTS_PROPERTY = "benchmark.transcripts";
+
+    private static final String VEP_RATE_PROPERTY = "benchmark.vep-rate";
+
+    private static final String REPORT_PROPERTY = "benchmark.report";
+
+    private static final String STEP_PARAMETER = "benchmark.step";
+
+    private static final String CONFIG_PARAMETERS_PREFIX = "config.";
+
+    private static final int CHROMOSOMES = 22;
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private static final String[] BASES = {"A", "C", "G", "T"};
+
+    private static final String[] OPCOUNTERS = {"insert", "query", "update", "delete", "getmore"};
+
+    @Rule
+    public TemporaryMongoRule mongoRule = new TemporaryMongoRule();
+
+    @Rule
+    public PipelineTemporaryFolderRule temporaryFolderRule = new PipelineTemporaryFolderRule();
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Test
+    public void benchmarkAnnotationFlow() throws Exception {
+        int variants = Integer.getInteger(VARIANTS_PROPERTY, 10000);
+        int transcripts = Integer.getInteger(TRANSCRIPTS_PROPERTY, 3);
+        int vepRate = Integer.getInteger(VEP_RATE_PROPERTY, 0);
+        boolean partitionedRead = Integer.parseInt(
+                System.getProperty(JobParametersNames.CONFIG_DB_READ_PARTITIONS, "1")) > 1;
+        boolean partitionedLoad = Integer.parseInt(
+                System.getProperty(JobParametersNames.CONFIG_ANNOTATION_LOAD_PARTITIONS, "1")) > 1;
+
+        String databaseName = mongoRule.getRandomTemporaryDatabaseName();
+        insertVariants(mongoRule.getCollection(databaseName, COLLECTION_VARIANTS_NAME), variants);
+
+        EvaJobParameterBuilder jobParametersBuilder = new EvaJobParameterBuilder();
+        jobParametersBuilder
+                .collectionAnnotationMetadataName(COLLECTION_ANNOTATION_METADATA_NAME)
+                .collectionVariantsName(COLLECTION_VARIANTS_NAME)
+                .databaseName(databaseName)
+                .inputFasta("")
+                .inputStudyId(STUDY_ID)
+                .inputVcfId(FILE_ID)
+                .outputDirAnnotation(temporaryFolderRule.getRoot().getAbsolutePath())
+                .vepCachePath("")
+                .vepCacheSpecies("")
+                .vepCacheVersion(VEP_VERSION)
+                .vepNumForks("")
+                .vepPath(writeMockVep(transcripts, vepRate).getAbsolutePath())
+                .vepVersion(VEP_VERSION);
+        for (String property : System.getProperties().stringPropertyNames()) {
+            if (property.startsWith(CONFIG_PARAMETERS_PREFIX)) {
+                jobParametersBuilder.addString(property, System.getProperty(property));
+            }
+        }
+        JobParameters jobParameters = jobParametersBuilder.toJobParameters();
+
+        List<String> report = new ArrayList<>();
+        report.add(benchmarkStep(partitionedRead ? BeanNames.GENERATE_VEP_INPUT_PARTITIONED_STEP
+                                         : BeanNames.GENERATE_VEP_INPUT_STEP, jobParameters));
+        report.add(benchmarkStep(BeanNames.GENERATE_VEP_ANNOTATION_STEP, jobParameters));
+        report.add(benchmarkStep(partitionedLoad ? BeanNames.LOAD_VEP_ANNOTATION_PARTITIONED_STEP
+                                         : BeanNames.LOAD_VEP_ANNOTATION_STEP, jobParameters));
+        report.add(benchmarkStep(BeanNames.LOAD_ANNOTATION_METADATA_STEP, jobParameters));
+
+        String header = String.format("variants=%d transcripts=%d vep-rate=%d parameters=%s", variants, transcripts,
+                                      vepRate, jobParameters);
+        logger.info("Annotation flow benchmark, " + header + "\nstep\tseconds\titems\titems/s\tmongo ops\tmongo ops/s\n"
+                            + String.join("\n", report));
+        appendReport(header, report);
+    }
+
+    /**
+     * Synthetic SNVs of the study and file annotated, spread over several chromosomes so they are not in a single
+     * range of ids.
+     */
+    private void insertVariants(DBCollection variantsCollection, int variants) {
+        BulkWriteOperation bulk = variantsCollection.initializeUnorderedBulkOperation();
+        for (int i = 0; i < variants; i++) {
+            String chromosome = Integer.toString(i % CHROMOSOMES + 1);
+            int start = 10000 + (i / CHROMOSOMES) * 100;
+            String reference = BASES[i % BASES.length];
+            String alternate = BASES[(i + 1) % BASES.length];
+
+            BasicDBList files = new BasicDBList();
+            files.add(new BasicDBObject("fid", FILE_ID).append("sid", STUDY_ID));
+            DBObject variant = new BasicDBObject("_id", chromosome + "_" + start + "_" + reference + "_" + alternate)
+                    .append("chr", chromosome)
+                    .append("start", start)
+                    .append("end", start)
+                    .append("ref", reference)
+                    .append("alt", alternate)
+                    .append("type", "SNV")
+                    .append("len", 1)
+                    .append("files", files);
+            bulk.insert(variant);
+
+            if ((i + 1) % INSERT_BATCH_SIZE == 0) {
+                bulk.execute();
+                bulk = variantsCollection.initializeUnorderedBulkOperation();
+            }
+        }
+        if (variants % INSERT_BATCH_SIZE != 0) {
+            bulk.execute();
+        }
+    }
+
+    /**
+     * The settings of the mock can't be passed in the VEP command line, so they are set by a wrapper script.
+     */
+    private File writeMockVep(int transcripts, int vepRate) throws IOException {
+        File mockVep = temporaryFolderRule.newFile("mockvep_benchmark_wrapper.pl");
+        try (PrintWriter writer = new PrintWriter(new FileWriter(mockVep))) {
+            writer.println("$ENV{MOCKVEP_TRANSCRIPTS} = " + transcripts + ";");
+            writer.println("$ENV{MOCKVEP_VARIANTS_PER_SECOND} = " + vepRate + ";");
+            writer.println("do '" + getResource(MOCK_VEP).getAbsolutePath() + "';");
+            writer.println("die $@ if $@;");
+        }
+        return mockVep;
+    }
+
+    private String benchmarkStep(String stepName, JobParameters jobParameters) throws Exception {
+        JobParameters stepParameters = new JobParametersBuilder(jobParameters)
+                .addString(STEP_PARAMETER, stepName)
+                .toJobParameters();
+
+        long opsBefore = getMongoOperations();
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep(stepName, stepParameters);
+        long mongoOperations = getMongoOperations() - opsBefore;
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        StepExecution stepExecution = getStepExecution(jobExecution, stepName);
+
+        double seconds = (stepExecution.getEndTime().getTime() - stepExecution.getStartTime().getTime()) / 1000.0;
+        // the VEP step is a tasklet, so its items are the lines annotated
+        ExecutionContext executionContext = stepExecution.getExecutionContext();
+        long items = stepExecution.getWriteCount();
+        if (executionContext.containsKey(ExecutionContextParametersNames.VEP_OUTPUT_LINES)) {
+            items = executionContext.getLong(ExecutionContextParametersNames.VEP_OUTPUT_LINES);
+        }
+
+        return String.format("%s\t%.3f\t%d\t%.1f\t%d\t%.1f", stepName, seconds, items, items / seconds,
+                             mongoOperations, mongoOperations / seconds);
+    }
+
+    private StepExecution getStepExecution(JobExecution jobExecution, String stepName) {
+        for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+            if (stepExecution.getStepName().equals(stepName)) {
+                return stepExecution;
+            }
+        }
+        throw new IllegalStateException("Step " + stepName + " was not executed");
+    }
+
+    private long getMongoOperations() {
+        MongoClient mongoClient = new MongoClient();
+        try {
+            Map<?, ?> opcounters = (Map<?, ?>) mongoClient.getDB("admin").command("serverStatus").get("opcounters");
+            long operations = 0;
+            for (String opcounter : OPCOUNTERS) {
+                operations += ((Number) opcounters.get(opcounter)).longValue();
+            }
+            return operations;
+        } finally {
+            mongoClient.close();
+        }
+    }
+
+    private void appendReport(String header, List<String> report) throws IOException {
+        String reportPath = System.getProperty(REPORT_PROPERTY);
+        if (reportPath == null) {
+            return;
+        }
+        String timestamp = Long.toString(System.currentTimeMillis());
+        try (PrintWriter writer = new PrintWriter(new FileWriter(reportPath, true))) {
+            for (String line : report) {
+                writer.println(timestamp + "\t" + header + "\t" + line);
+            }
+        }
+    }
+}
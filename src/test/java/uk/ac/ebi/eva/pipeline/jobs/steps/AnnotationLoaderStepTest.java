@@ -45,9 +45,11 @@ import uk.ac.ebi.eva.test.rules.TemporaryMongoRule;
 import uk.ac.ebi.eva.utils.EvaJobParameterBuilder;
 import uk.ac.ebi.eva.utils.URLHelper;
 
+import java.io.File;
 import java.nio.file.Paths;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static uk.ac.ebi.eva.test.utils.TestFileUtils.getResourceUrl;
 
@@ -97,6 +99,42 @@ public class AnnotationLoaderStepTest {
         assertEquals(ExitStatus.COMPLETED, jobExecution.getExitStatus());
         assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
 
+        assertAllVariantsAreAnnotated(dbName, collectionVariantsName);
+    }
+
+    @Test
+    public void shouldLoadAllAnnotationsInPartitions() throws Exception {
+        String annotationFolder = temporaryFolderRule.getRoot().getAbsolutePath();
+        String dbName = mongoRule.restoreDumpInTemporaryDatabase(getResourceUrl(MONGO_DUMP));
+        String collectionVariantsName = "variants";
+        String studyId = "1";
+        String fileId = "1";
+        String vepOutput = URLHelper.resolveVepOutput(annotationFolder, studyId, fileId);
+        String vepOutputName = Paths.get(vepOutput).getFileName().toString();
+        temporaryFolderRule.newGzipFile(VepOutputContent.vepOutputContent, vepOutputName);
+
+        JobParameters jobParameters = new EvaJobParameterBuilder()
+                .collectionVariantsName(collectionVariantsName)
+                .databaseName(dbName)
+                .inputStudyId(studyId)
+                .inputVcfId(fileId)
+                .outputDirAnnotation(annotationFolder)
+                .annotationLoadPartitions("2")
+                .toJobParameters();
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep(BeanNames.LOAD_VEP_ANNOTATION_PARTITIONED_STEP,
+                                                                    jobParameters);
+
+        assertEquals(ExitStatus.COMPLETED, jobExecution.getExitStatus());
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        // the master step and its 2 partitions
+        assertEquals(3, jobExecution.getStepExecutions().size());
+        assertFalse("The partitions should be deleted", new File(vepOutput + ".partitions").exists());
+
+        assertAllVariantsAreAnnotated(dbName, collectionVariantsName);
+    }
+
+    private void assertAllVariantsAreAnnotated(String dbName, String collectionVariantsName) {
         //check that documents have the annotation
         DBCursor cursor = mongoRule.getCollection(dbName, collectionVariantsName).find();
 
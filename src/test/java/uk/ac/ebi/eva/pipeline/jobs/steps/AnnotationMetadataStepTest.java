@@ -44,6 +44,7 @@ import uk.ac.ebi.eva.utils.EvaJobParameterBuilder;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * TODO jmmut remove import AnnotationJob when we add the stepLauncherTestUtils
@@ -84,6 +85,31 @@ public class AnnotationMetadataStepTest {
         assertEquals(1, annotationMetadataList.size());
         assertEquals(vepCacheVersion, annotationMetadataList.get(0).getCacheVersion());
         assertEquals(vepVersion, annotationMetadataList.get(0).getVepVersion());
+        assertNull(annotationMetadataList.get(0).getAnnotationsCollection());
+    }
+
+    @Test
+    public void shouldWriteTheAnnotationsCollection() throws Exception {
+        String databaseName = mongoRule.getRandomTemporaryDatabaseName();
+        MongoOperations mongoOperations = MongoConfiguration.getMongoOperations(databaseName, mongoConnection,
+                mongoMappingContext);
+        String vepCacheVersion = "87";
+        String vepVersion = "88";
+        mongoOperations.save(new AnnotationMetadata(vepVersion, vepCacheVersion));
+
+        JobParameters jobParameters = new EvaJobParameterBuilder()
+                .collectionAnnotationMetadataName("annotationMetadata")
+                .collectionAnnotationsName("annotations")
+                .databaseName(databaseName)
+                .vepCacheVersion(vepCacheVersion)
+                .vepVersion(vepVersion)
+                .toJobParameters();
+        assertStepIsComplete(jobParameters);
+
+        List<AnnotationMetadata> annotationMetadataList = mongoOperations.findAll(AnnotationMetadata.class);
+
+        assertEquals(1, annotationMetadataList.size());
+        assertEquals("annotations", annotationMetadataList.get(0).getAnnotationsCollection());
     }
 
     private void assertStepIsComplete(String databaseName, String vepCacheVersion, String vepVersion) {
@@ -94,6 +120,10 @@ public class AnnotationMetadataStepTest {
                 .vepCacheVersion(vepCacheVersion)
                 .vepVersion(vepVersion)
                 .toJobParameters();
+        assertStepIsComplete(jobParameters);
+    }
+
+    private void assertStepIsComplete(JobParameters jobParameters) {
 
         JobExecution jobExecution = jobLauncherTestUtils.launchStep(BeanNames.LOAD_ANNOTATION_METADATA_STEP, jobParameters);
 
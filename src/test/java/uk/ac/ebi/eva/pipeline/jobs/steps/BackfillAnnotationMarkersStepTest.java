@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+import uk.ac.ebi.eva.pipeline.configuration.BeanNames;
+import uk.ac.ebi.eva.pipeline.io.readers.NonAnnotatedVariantsMongoReader;
+import uk.ac.ebi.eva.pipeline.io.writers.VepAnnotationMongoWriter;
+import uk.ac.ebi.eva.pipeline.jobs.DatabaseInitializationJob;
+import uk.ac.ebi.eva.pipeline.jobs.steps.tasklets.AnnotationMarkersBackfillerStep;
+import uk.ac.ebi.eva.test.configuration.BatchTestConfiguration;
+import uk.ac.ebi.eva.test.data.VariantData;
+import uk.ac.ebi.eva.test.rules.TemporaryMongoRule;
+import uk.ac.ebi.eva.utils.EvaJobParameterBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test {@link AnnotationMarkersBackfillerStep}
+ */
+@RunWith(SpringRunner.class)
+@TestPropertySource({"classpath:common-configuration.properties", "classpath:test-mongo.properties"})
+@ContextConfiguration(classes = {DatabaseInitializationJob.class, BatchTestConfiguration.class})
+public class BackfillAnnotationMarkersStepTest {
+
+    private static final String COLLECTION_VARIANTS_NAME = "variants";
+
+    private static final String LEGACY_VARIANT_ID = "20_60000_A_C";
+
+    private static final String IMPORTED_VARIANT_ID = "20_60001_A_C";
+
+    private static final String ANNOTATED_VARIANT_ID = "20_60344_G_T";
+
+    @Rule
+    public TemporaryMongoRule mongoRule = new TemporaryMongoRule();
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Test
+    public void onlyTheAnnotationsWithoutMarkersShouldBeMarked() throws Exception {
+        String databaseName = mongoRule.createDBAndInsertDocuments(COLLECTION_VARIANTS_NAME, Arrays.asList(
+                VariantData.getVariantWithoutAnnotation(),
+                VariantData.getVariantWithAnnotation()));
+        DBCollection variantsCollection = mongoRule.getCollection(databaseName, COLLECTION_VARIANTS_NAME);
+        variantsCollection.insert(buildVariant(LEGACY_VARIANT_ID, new BasicDBObject()));
+        variantsCollection.insert(buildVariant(IMPORTED_VARIANT_ID, new BasicDBObject("annotv", "SnpEff 4.3t")));
+
+        JobParameters jobParameters = new EvaJobParameterBuilder()
+                .collectionVariantsName(COLLECTION_VARIANTS_NAME)
+                .databaseName(databaseName)
+                .toJobParameters();
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep(BeanNames.BACKFILL_ANNOTATION_MARKERS_STEP,
+                jobParameters);
+
+        assertEquals(ExitStatus.COMPLETED, jobExecution.getExitStatus());
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        assertEquals(1, jobExecution.getStepExecutions().iterator().next().getWriteCount());
+
+        DBObject legacyAnnotation = getAnnotation(variantsCollection, LEGACY_VARIANT_ID);
+        assertEquals(VepAnnotationMongoWriter.UNKNOWN_VERSION, legacyAnnotation.get("vepv"));
+        assertEquals(VepAnnotationMongoWriter.UNKNOWN_VERSION, legacyAnnotation.get("cachev"));
+
+        DBObject importedAnnotation = getAnnotation(variantsCollection, IMPORTED_VARIANT_ID);
+        assertNull(importedAnnotation.get("vepv"));
+        assertNull(importedAnnotation.get("cachev"));
+
+        DBObject annotation = getAnnotation(variantsCollection, ANNOTATED_VARIANT_ID);
+        assertEquals("77", annotation.get("vepv"));
+        assertEquals("77", annotation.get("cachev"));
+
+        // the variant without annotation and the imported one are still annotated by default
+        assertEquals(2, variantsCollection.count(NonAnnotatedVariantsMongoReader.buildQuery("", null, null)));
+    }
+
+    private DBObject buildVariant(String id, BasicDBObject annotation) {
+        annotation.append("ct", Collections.singletonList(new BasicDBObject("so", Collections.singletonList(1631))));
+        return new BasicDBObject("_id", id)
+                .append("chr", "20")
+                .append(VariantToDBObjectConverter.ANNOTATION_FIELD, annotation);
+    }
+
+    private DBObject getAnnotation(DBCollection variantsCollection, String id) {
+        return (DBObject) variantsCollection.findOne(new BasicDBObject("_id", id))
+                .get(VariantToDBObjectConverter.ANNOTATION_FIELD);
+    }
+
+}
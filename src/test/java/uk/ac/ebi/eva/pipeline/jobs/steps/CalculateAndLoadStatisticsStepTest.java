@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.BasicDBList;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantStatsToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntity;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
+import uk.ac.ebi.eva.pipeline.configuration.BeanNames;
+import uk.ac.ebi.eva.pipeline.jobs.PopulationStatisticsJob;
+import uk.ac.ebi.eva.test.configuration.BatchTestConfiguration;
+import uk.ac.ebi.eva.test.rules.TemporaryMongoRule;
+import uk.ac.ebi.eva.utils.EvaJobParameterBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static uk.ac.ebi.eva.test.utils.TestFileUtils.getResourceUrl;
+import static uk.ac.ebi.eva.utils.FileUtils.getResourceAsStream;
+
+/**
+ * Test for {@link CalculateAndLoadStatisticsStep}
+ * <p>
+ * The statistics are compared with the ones calculated by OpenCGA for the same variants.
+ */
+@RunWith(SpringRunner.class)
+@TestPropertySource({"classpath:common-configuration.properties", "classpath:test-mongo.properties"})
+@ContextConfiguration(classes = {PopulationStatisticsJob.class, BatchTestConfiguration.class})
+public class CalculateAndLoadStatisticsStepTest {
+
+    private static final String MONGO_DUMP = "/dump/VariantStatsConfigurationTest_vl";
+
+    private static final String VARIANTS_FILE_NAME = "/input-files/statistics/1_1.variants.stats.json.gz";
+
+    private static final String COLLECTION_FILES_NAME = "files";
+
+    private static final String COLLECTION_VARIANTS_NAME = "variants";
+
+    private static final String STUDY_ID = "1";
+
+    private static final String FILE_ID = "1";
+
+    private static final int EXPECTED_VARIANTS = 300;
+
+    @Rule
+    public TemporaryMongoRule mongoRule = new TemporaryMongoRule();
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Test
+    public void statisticsShouldBeTheSameAsOpenCgaOnes() throws Exception {
+        String dbName = mongoRule.restoreDumpInTemporaryDatabase(getResourceUrl(MONGO_DUMP));
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep(BeanNames.CALCULATE_AND_LOAD_STATISTICS_STEP,
+                                                                    buildJobParameters(dbName).toJobParameters());
+
+        assertEquals(ExitStatus.COMPLETED, jobExecution.getExitStatus());
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        assertVariantStatistics(dbName);
+        assertSourceStatistics(dbName);
+    }
+
+    @Test
+    public void partitionedStatisticsShouldBeTheSameAsOpenCgaOnes() throws Exception {
+        String dbName = mongoRule.restoreDumpInTemporaryDatabase(getResourceUrl(MONGO_DUMP));
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep(
+                BeanNames.CALCULATE_AND_LOAD_STATISTICS_PARTITIONED_STEP,
+                buildJobParameters(dbName).readPartitions("3").toJobParameters());
+
+        assertEquals(ExitStatus.COMPLETED, jobExecution.getExitStatus());
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        assertVariantStatistics(dbName);
+        assertSourceStatistics(dbName);
+    }
+
+    @Test
+    public void statisticsShouldBeReplacedIfCalculatedAgain() throws Exception {
+        String dbName = mongoRule.restoreDumpInTemporaryDatabase(getResourceUrl(MONGO_DUMP));
+        JobParameters jobParameters = buildJobParameters(dbName).toJobParameters();
+
+        jobLauncherTestUtils.launchStep(BeanNames.CALCULATE_AND_LOAD_STATISTICS_STEP, jobParameters);
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep(
+                BeanNames.CALCULATE_AND_LOAD_STATISTICS_STEP,
+                new JobParametersBuilder(jobParameters).addLong("run.id", 2L).toJobParameters());
+
+        assertEquals(ExitStatus.COMPLETED, jobExecution.getExitStatus());
+        assertVariantStatistics(dbName);
+        assertSourceStatistics(dbName);
+    }
+
+    private EvaJobParameterBuilder buildJobParameters(String dbName) {
+        return new EvaJobParameterBuilder()
+                .collectionFilesName(COLLECTION_FILES_NAME)
+                .collectionVariantsName(COLLECTION_VARIANTS_NAME)
+                .databaseName(dbName)
+                .inputStudyId(STUDY_ID)
+                .inputVcfId(FILE_ID)
+                .statisticsNative(true);
+    }
+
+    private void assertVariantStatistics(String dbName) throws IOException {
+        Map<String, JsonNode> expectedStatistics = readOpenCgaStatistics();
+
+        int variants = 0;
+        DBCursor cursor = mongoRule.getCollection(dbName, COLLECTION_VARIANTS_NAME).find();
+        while (cursor.hasNext()) {
+            DBObject variant = cursor.next();
+            BasicDBList stats = (BasicDBList) variant.get(VariantToDBObjectConverter.STATS_FIELD);
+            assertEquals(1, stats.size());
+
+            DBObject cohortStats = (DBObject) stats.get(0);
+            assertEquals(VariantSourceEntry.DEFAULT_COHORT, cohortStats.get(VariantStatsToDBObjectConverter.COHORT_ID));
+            assertEquals(STUDY_ID, cohortStats.get(VariantStatsToDBObjectConverter.STUDY_ID));
+            assertEquals(FILE_ID, cohortStats.get(VariantStatsToDBObjectConverter.FILE_ID));
+
+            JsonNode expected = expectedStatistics.get(buildKey(
+                    (String) variant.get(VariantToDBObjectConverter.CHROMOSOME_FIELD),
+                    ((Number) variant.get(VariantToDBObjectConverter.START_FIELD)).intValue(),
+                    (String) variant.get(VariantToDBObjectConverter.REFERENCE_FIELD),
+                    (String) variant.get(VariantToDBObjectConverter.ALTERNATE_FIELD)));
+            assertNotNull(expected);
+            assertCohortStatistics(expected, cohortStats);
+            variants++;
+        }
+        assertEquals(EXPECTED_VARIANTS, variants);
+    }
+
+    private void assertCohortStatistics(JsonNode expected, DBObject cohortStats) {
+        assertEquals(expected.get("maf").doubleValue(),
+                     ((Number) cohortStats.get(VariantStatsToDBObjectConverter.MAF_FIELD)).doubleValue(), 1e-6);
+        assertEquals(expected.get("mgf").doubleValue(),
+                     ((Number) cohortStats.get(VariantStatsToDBObjectConverter.MGF_FIELD)).doubleValue(), 1e-6);
+        assertEquals(expected.get("mafAllele").textValue(),
+                     cohortStats.get(VariantStatsToDBObjectConverter.MAFALLELE_FIELD));
+        assertEquals(expected.get("mgfGenotype").textValue(),
+                     cohortStats.get(VariantStatsToDBObjectConverter.MGFGENOTYPE_FIELD));
+        assertEquals(expected.get("missingAlleles").intValue(),
+                     cohortStats.get(VariantStatsToDBObjectConverter.MISSALLELE_FIELD));
+        assertEquals(expected.get("missingGenotypes").intValue(),
+                     cohortStats.get(VariantStatsToDBObjectConverter.MISSGENOTYPE_FIELD));
+
+        Map<String, Integer> expectedGenotypesCount = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> genotypes = expected.get("genotypesCount").fields();
+        while (genotypes.hasNext()) {
+            Map.Entry<String, JsonNode> genotype = genotypes.next();
+            expectedGenotypesCount.put(genotype.getKey().replace(".", "-1"), genotype.getValue().intValue());
+        }
+        assertEquals(expectedGenotypesCount,
+                     ((DBObject) cohortStats.get(VariantStatsToDBObjectConverter.NUMGT_FIELD)).toMap());
+    }
+
+    private void assertSourceStatistics(String dbName) {
+        DBObject file = mongoRule.getCollection(dbName, COLLECTION_FILES_NAME).findOne();
+        DBObject statistics = (DBObject) file.get(VariantSourceEntity.STATISTICS_FIELD);
+
+        assertEquals(2504, ((Number) statistics.get(VariantSourceEntity.STATISTICS_NUMSAMPLES_FIELD)).intValue());
+        assertEquals(300L, statistics.get(VariantSourceEntity.STATISTICS_NUMVARIANTS_FIELD));
+        assertEquals(281L, statistics.get(VariantSourceEntity.STATISTICS_NUMSNPS_FIELD));
+        assertEquals(19L, statistics.get(VariantSourceEntity.STATISTICS_NUMINDELS_FIELD));
+        assertEquals(0L, statistics.get(VariantSourceEntity.STATISTICS_NUMSTRUCTURAL_FIELD));
+        assertEquals(300L, statistics.get(VariantSourceEntity.STATISTICS_NUMPASSFILTERS_FIELD));
+        assertEquals(100.0, ((Number) statistics.get(VariantSourceEntity.STATISTICS_MEANQUALITY_FIELD)).doubleValue(),
+                     1e-6);
+    }
+
+    private Map<String, JsonNode> readOpenCgaStatistics() throws IOException {
+        Map<String, JsonNode> statistics = new HashMap<>();
+        try (InputStream inputStream = new GZIPInputStream(getResourceAsStream(VARIANTS_FILE_NAME))) {
+            MappingIterator<JsonNode> variants = new ObjectMapper().readerFor(JsonNode.class).readValues(inputStream);
+            while (variants.hasNext()) {
+                JsonNode variant = variants.next();
+                JsonNode stats = variant.get("cohortStats").get(VariantSourceEntry.DEFAULT_COHORT);
+                statistics.put(buildKey(variant.get("chromosome").textValue(), variant.get("position").intValue(),
+                                        stats.get("refAllele").textValue(), stats.get("altAllele").textValue()),
+                               stats);
+            }
+        }
+        return statistics;
+    }
+
+    private String buildKey(String chromosome, int start, String reference, String alternate) {
+        return chromosome + "_" + start + "_" + reference + "_" + alternate;
+    }
+}
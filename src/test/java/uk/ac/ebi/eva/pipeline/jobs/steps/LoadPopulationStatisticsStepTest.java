@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantStatsToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+import uk.ac.ebi.eva.pipeline.Application;
+import uk.ac.ebi.eva.pipeline.configuration.BeanNames;
+import uk.ac.ebi.eva.pipeline.jobs.PopulationStatisticsJob;
+import uk.ac.ebi.eva.pipeline.model.converters.data.PopulationStatisticsToMongoDbObjectConverter;
+import uk.ac.ebi.eva.test.configuration.BatchTestConfiguration;
+import uk.ac.ebi.eva.test.rules.TemporaryMongoRule;
+import uk.ac.ebi.eva.utils.EvaJobParameterBuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static uk.ac.ebi.eva.test.utils.TestFileUtils.getResourceUrl;
+
+/**
+ * Test for {@link LoadPopulationStatisticsStep}
+ * <p>
+ * The statistics of the variants are calculated natively first, and then copied into the population statistics
+ * collection.
+ */
+@RunWith(SpringRunner.class)
+@ActiveProfiles(Application.MONGO_EXPERIMENTAL_PROFILE)
+@TestPropertySource({"classpath:common-configuration.properties", "classpath:test-mongo.properties"})
+@ContextConfiguration(classes = {PopulationStatisticsJob.class, BatchTestConfiguration.class})
+public class LoadPopulationStatisticsStepTest {
+
+    private static final String MONGO_DUMP = "/dump/VariantStatsConfigurationTest_vl";
+
+    private static final String COLLECTION_FILES_NAME = "files";
+
+    private static final String COLLECTION_VARIANTS_NAME = "variants";
+
+    private static final String COLLECTION_STATISTICS_NAME = "populationStatistics";
+
+    private static final String STUDY_ID = "1";
+
+    private static final String FILE_ID = "1";
+
+    private static final String OTHER_FILE_ID = "2";
+
+    @Rule
+    public TemporaryMongoRule mongoRule = new TemporaryMongoRule();
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Test
+    public void statisticsOfEveryCohortShouldBeCopied() throws Exception {
+        String dbName = mongoRule.restoreDumpInTemporaryDatabase(getResourceUrl(MONGO_DUMP));
+        calculateStatistics(dbName);
+
+        JobExecution jobExecution = launchLoadPopulationStatisticsStep(dbName, FILE_ID);
+
+        assertEquals(ExitStatus.COMPLETED, jobExecution.getExitStatus());
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+
+        DBCollection statistics = mongoRule.getCollection(dbName, COLLECTION_STATISTICS_NAME);
+        long expectedStatistics = countVariantStatistics(dbName, FILE_ID);
+        assertTrue(expectedStatistics > 0);
+        assertEquals(expectedStatistics, statistics.count());
+        assertEquals(expectedStatistics, statistics.count(new BasicDBObject(
+                PopulationStatisticsToMongoDbObjectConverter.FILE_ID_FIELD, FILE_ID)));
+    }
+
+    @Test
+    public void statisticsOfOtherFilesOfTheStudyShouldBeKept() throws Exception {
+        String dbName = mongoRule.restoreDumpInTemporaryDatabase(getResourceUrl(MONGO_DUMP));
+        calculateStatistics(dbName);
+        copyVariantStatisticsToOtherFile(dbName);
+
+        launchLoadPopulationStatisticsStep(dbName, FILE_ID);
+        JobExecution jobExecution = launchLoadPopulationStatisticsStep(dbName, OTHER_FILE_ID);
+
+        assertEquals(ExitStatus.COMPLETED, jobExecution.getExitStatus());
+
+        DBCollection statistics = mongoRule.getCollection(dbName, COLLECTION_STATISTICS_NAME);
+        long expectedStatistics = countVariantStatistics(dbName, FILE_ID);
+        assertEquals(2 * expectedStatistics, statistics.count());
+        assertEquals(expectedStatistics, statistics.count(new BasicDBObject(
+                PopulationStatisticsToMongoDbObjectConverter.FILE_ID_FIELD, FILE_ID)));
+        assertEquals(expectedStatistics, statistics.count(new BasicDBObject(
+                PopulationStatisticsToMongoDbObjectConverter.FILE_ID_FIELD, OTHER_FILE_ID)));
+    }
+
+    private void calculateStatistics(String dbName) throws Exception {
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep(
+                BeanNames.CALCULATE_AND_LOAD_STATISTICS_STEP,
+                buildJobParameters(dbName, FILE_ID).statisticsNative(true).toJobParameters());
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+    }
+
+    private JobExecution launchLoadPopulationStatisticsStep(String dbName, String fileId) {
+        return jobLauncherTestUtils.launchStep(BeanNames.LOAD_POPULATION_STATISTICS_STEP,
+                                               buildJobParameters(dbName, fileId).toJobParameters());
+    }
+
+    private EvaJobParameterBuilder buildJobParameters(String dbName, String fileId) {
+        return new EvaJobParameterBuilder()
+                .collectionFilesName(COLLECTION_FILES_NAME)
+                .collectionVariantsName(COLLECTION_VARIANTS_NAME)
+                .collectionStatisticsName(COLLECTION_STATISTICS_NAME)
+                .databaseName(dbName)
+                .inputStudyId(STUDY_ID)
+                .inputVcfId(fileId);
+    }
+
+    /**
+     * Adds to every variant the same statistics as if they were calculated for another file of the study.
+     */
+    private void copyVariantStatisticsToOtherFile(String dbName) {
+        DBCollection variants = mongoRule.getCollection(dbName, COLLECTION_VARIANTS_NAME);
+        for (DBObject variant : variants.find()) {
+            BasicDBList otherFileStats = new BasicDBList();
+            for (Object stat : getStatistics(variant)) {
+                BasicDBObject otherFileStat = new BasicDBObject(((DBObject) stat).toMap());
+                otherFileStat.put(VariantStatsToDBObjectConverter.FILE_ID, OTHER_FILE_ID);
+                otherFileStats.add(otherFileStat);
+            }
+            variants.update(new BasicDBObject("_id", variant.get("_id")), new BasicDBObject(
+                    "$push", new BasicDBObject(VariantToDBObjectConverter.STATS_FIELD,
+                                               new BasicDBObject("$each", otherFileStats))));
+        }
+    }
+
+    private long countVariantStatistics(String dbName, String fileId) {
+        DBCollection variants = mongoRule.getCollection(dbName, COLLECTION_VARIANTS_NAME);
+        long count = 0;
+        for (DBObject variant : variants.find()) {
+            for (Object stat : getStatistics(variant)) {
+                if (fileId.equals(((DBObject) stat).get(VariantStatsToDBObjectConverter.FILE_ID))) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private BasicDBList getStatistics(DBObject variant) {
+        BasicDBList stats = (BasicDBList) variant.get(VariantToDBObjectConverter.STATS_FIELD);
+        return stats == null ? new BasicDBList() : stats;
+    }
+}
@@ -1,6 +1,9 @@
 package uk.ac.ebi.eva.pipeline.jobs.steps;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -16,6 +19,7 @@ import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobExecutionException;
 import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
 import org.springframework.batch.test.JobLauncherTestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.rule.OutputCapture;
@@ -23,26 +27,30 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import uk.ac.ebi.eva.commons.models.converters.data.VariantStatsToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
 import uk.ac.ebi.eva.pipeline.configuration.BeanNames;
+import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
 import uk.ac.ebi.eva.pipeline.jobs.PopulationStatisticsJob;
-import uk.ac.ebi.eva.pipeline.jobs.steps.tasklets.PopulationStatisticsLoaderStep;
 import uk.ac.ebi.eva.test.configuration.BatchTestConfiguration;
 import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
 import uk.ac.ebi.eva.test.rules.TemporaryMongoRule;
 import uk.ac.ebi.eva.utils.EvaJobParameterBuilder;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertThat;
 import static uk.ac.ebi.eva.test.utils.TestFileUtils.copyResource;
 import static uk.ac.ebi.eva.test.utils.TestFileUtils.getResourceUrl;
 import static uk.ac.ebi.eva.utils.FileUtils.getResource;
 
 /**
- * Test for {@link PopulationStatisticsLoaderStep}
+ * Test for {@link LoadStatisticsStep}
  */
 @RunWith(SpringRunner.class)
 @TestPropertySource({"classpath:common-configuration.properties", "classpath:test-mongo.properties"})
@@ -106,6 +114,57 @@ public class PopulationStatisticsLoaderStepTest {
         assertEquals(1, getCohortStatsFromFirstVariant(cursor).size());
     }
 
+    @Test
+    public void statisticsLoaderStepShouldKeepTheStatisticsUnlessOverwriteIsEnabled() throws Exception {
+        String dbName = mongoRule.restoreDumpInTemporaryDatabase(getResourceUrl(MONGO_DUMP));
+        String statsDir = temporaryFolderRule.newFolder().getAbsolutePath();
+        copyFilesToOutpurDir(statsDir);
+        DBCollection variantsCollection = mongoRule.getCollection(dbName, COLLECTION_VARIANTS_NAME);
+
+        assertEquals(ExitStatus.COMPLETED, launchLoadStatisticsStep(dbName, statsDir, false, 1).getExitStatus());
+        Object variantId = variantsCollection.findOne().get("_id");
+        BasicDBObject findVariant = new BasicDBObject("_id", variantId);
+        variantsCollection.update(findVariant, new BasicDBObject("$set", new BasicDBObject(
+                VariantToDBObjectConverter.STATS_FIELD + ".0." + VariantStatsToDBObjectConverter.MAF_FIELD, -1.0)));
+
+        // Loaded again without overwrite, the existing statistics are kept and not duplicated
+        assertEquals(ExitStatus.COMPLETED, launchLoadStatisticsStep(dbName, statsDir, false, 2).getExitStatus());
+        List<DBObject> statistics = getStatistics(variantsCollection.findOne(findVariant));
+        assertEquals(1, statistics.size());
+        assertEquals(-1.0, ((Number) statistics.get(0).get(VariantStatsToDBObjectConverter.MAF_FIELD)).doubleValue(),
+                     1e-6);
+
+        // Loaded again with overwrite, they are replaced
+        assertEquals(ExitStatus.COMPLETED, launchLoadStatisticsStep(dbName, statsDir, true, 3).getExitStatus());
+        statistics = getStatistics(variantsCollection.findOne(findVariant));
+        assertEquals(1, statistics.size());
+        assertNotEquals(-1.0,
+                        ((Number) statistics.get(0).get(VariantStatsToDBObjectConverter.MAF_FIELD)).doubleValue(),
+                        1e-6);
+    }
+
+    private JobExecution launchLoadStatisticsStep(String dbName, String statsDir, boolean overwrite, long run) {
+        JobParameters jobParameters = new EvaJobParameterBuilder()
+                .collectionFilesName(COLLECTION_FILES_NAME)
+                .collectionVariantsName(COLLECTION_VARIANTS_NAME)
+                .databaseName(dbName)
+                .inputStudyId("1")
+                .inputVcf(getResource(SMALL_VCF_FILE).getAbsolutePath())
+                .inputVcfId("1")
+                .outputDirStats(statsDir)
+                .toJobParameters();
+        jobParameters = new JobParametersBuilder(jobParameters)
+                .addString(JobParametersNames.STATISTICS_OVERWRITE, Boolean.toString(overwrite))
+                .addLong("run", run)
+                .toJobParameters();
+        return jobLauncherTestUtils.launchStep(BeanNames.LOAD_STATISTICS_STEP, jobParameters);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DBObject> getStatistics(DBObject variant) {
+        return (List<DBObject>) variant.get(VariantToDBObjectConverter.STATS_FIELD);
+    }
+
     private Map<String, VariantStats> getCohortStatsFromFirstVariant(DBCursor cursor) {
         DBObjectToVariantConverter variantConverter = getVariantConverter();
         Variant variant = variantConverter.convertToDataModelType(cursor.iterator().next());
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,8 @@
  */
 package uk.ac.ebi.eva.pipeline.jobs.steps;
 
+import com.mongodb.BasicDBList;
+import com.mongodb.DBObject;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -36,6 +38,9 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import uk.ac.ebi.eva.commons.models.converters.data.VariantStatsToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
 import uk.ac.ebi.eva.pipeline.Application;
 import uk.ac.ebi.eva.pipeline.configuration.BeanNames;
 import uk.ac.ebi.eva.pipeline.jobs.GenotypedVcfJob;
@@ -43,7 +48,11 @@ import uk.ac.ebi.eva.test.configuration.BatchTestConfiguration;
 import uk.ac.ebi.eva.test.rules.TemporaryMongoRule;
 import uk.ac.ebi.eva.utils.EvaJobParameterBuilder;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static uk.ac.ebi.eva.test.utils.JobTestUtils.count;
 import static uk.ac.ebi.eva.utils.FileUtils.getResource;
 
@@ -60,6 +69,27 @@ public class VariantLoaderStepTest {
 
     private static final String SMALL_VCF_FILE = "/input-files/vcf/genotyped.vcf.gz";
 
+    private static final String PEDIGREE_FILE = "/input-files/ped/pedigree-test-file.ped";
+
+    private static final int EXPECTED_SAMPLES = 2504;
+
+    // only NA19660, of the 4 individuals of the family FAM, is in the VCF
+    private static final String FAMILY = "FAM";
+
+    private static final int EXPECTED_FAMILY_SAMPLES = 1;
+
+    private static final String COHORTS_FILE = "/input-files/cohorts/cohorts-test-file.panel";
+
+    // NA19660 is unaffected, and the cohort YRI has no samples in the VCF
+    private static final Map<String, Integer> EXPECTED_COHORTS_SAMPLES = new HashMap<>();
+
+    static {
+        EXPECTED_COHORTS_SAMPLES.put(VariantSourceEntry.DEFAULT_COHORT, EXPECTED_SAMPLES);
+        EXPECTED_COHORTS_SAMPLES.put("UNAFFECTED", 1);
+        EXPECTED_COHORTS_SAMPLES.put("GBR", 5);
+        EXPECTED_COHORTS_SAMPLES.put("GIH", 1);
+    }
+
     @Rule
     public TemporaryMongoRule mongoRule = new TemporaryMongoRule();
 
@@ -100,6 +130,105 @@ public class VariantLoaderStepTest {
         assertEquals(EXPECTED_VARIANTS, count(iterator));
     }
 
+    @Test
+    public void loaderStepShouldLoadTheStatisticsInlineIfRequested() throws Exception {
+        String databaseName = mongoRule.getRandomTemporaryDatabaseName();
+
+        JobParameters jobParameters = new EvaJobParameterBuilder()
+                .collectionVariantsName("variants")
+                .databaseName(databaseName)
+                .inputStudyId("1")
+                .inputVcf(input)
+                .inputVcfAggregation("NONE")
+                .inputVcfId("1")
+                .inputPedigree(getResource(PEDIGREE_FILE).getAbsolutePath())
+                .statisticsInline(true)
+                .toJobParameters();
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep(BeanNames.LOAD_VARIANTS_STEP, jobParameters);
+
+        assertEquals(ExitStatus.COMPLETED, jobExecution.getExitStatus());
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+
+        int variants = 0;
+        for (DBObject variant : mongoRule.getCollection(databaseName, "variants").find()) {
+            BasicDBList stats = (BasicDBList) variant.get(VariantToDBObjectConverter.STATS_FIELD);
+            Map<String, Integer> samplesPerCohort = new HashMap<>();
+            for (Object cohortStats : stats) {
+                DBObject cohortStatsObject = (DBObject) cohortStats;
+                samplesPerCohort.put((String) cohortStatsObject.get(VariantStatsToDBObjectConverter.COHORT_ID),
+                                     countGenotypes((DBObject) cohortStatsObject.get(
+                                             VariantStatsToDBObjectConverter.NUMGT_FIELD)));
+            }
+            assertEquals(2, samplesPerCohort.size());
+            assertEquals(EXPECTED_SAMPLES, (int) samplesPerCohort.get(VariantSourceEntry.DEFAULT_COHORT));
+            assertEquals(EXPECTED_FAMILY_SAMPLES, (int) samplesPerCohort.get(FAMILY));
+            variants++;
+        }
+        assertEquals(EXPECTED_VARIANTS, variants);
+    }
+
+    @Test
+    public void loaderStepShouldLoadTheStatisticsOfThePhenotypesAndTheCohortsFile() throws Exception {
+        String databaseName = mongoRule.getRandomTemporaryDatabaseName();
+
+        JobParameters jobParameters = new EvaJobParameterBuilder()
+                .collectionVariantsName("variants")
+                .databaseName(databaseName)
+                .inputStudyId("1")
+                .inputVcf(input)
+                .inputVcfAggregation("NONE")
+                .inputVcfId("1")
+                .inputPedigree(getResource(PEDIGREE_FILE).getAbsolutePath())
+                .statisticsPedigreeCohorts("PHENOTYPE")
+                .inputCohorts(getResource(COHORTS_FILE).getAbsolutePath())
+                .statisticsInline(true)
+                .toJobParameters();
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep(BeanNames.LOAD_VARIANTS_STEP, jobParameters);
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        for (DBObject variant : mongoRule.getCollection(databaseName, "variants").find()) {
+            Map<String, Integer> samplesPerCohort = new HashMap<>();
+            for (Object cohortStats : (BasicDBList) variant.get(VariantToDBObjectConverter.STATS_FIELD)) {
+                DBObject cohortStatsObject = (DBObject) cohortStats;
+                samplesPerCohort.put((String) cohortStatsObject.get(VariantStatsToDBObjectConverter.COHORT_ID),
+                                     countGenotypes((DBObject) cohortStatsObject.get(
+                                             VariantStatsToDBObjectConverter.NUMGT_FIELD)));
+            }
+            assertEquals(EXPECTED_COHORTS_SAMPLES, samplesPerCohort);
+        }
+    }
+
+    @Test
+    public void loaderStepShouldNotLoadStatisticsByDefault() throws Exception {
+        String databaseName = mongoRule.getRandomTemporaryDatabaseName();
+
+        JobParameters jobParameters = new EvaJobParameterBuilder()
+                .collectionVariantsName("variants")
+                .databaseName(databaseName)
+                .inputStudyId("1")
+                .inputVcf(input)
+                .inputVcfAggregation("NONE")
+                .inputVcfId("1")
+                .toJobParameters();
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep(BeanNames.LOAD_VARIANTS_STEP, jobParameters);
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        for (DBObject variant : mongoRule.getCollection(databaseName, "variants").find()) {
+            assertNull(variant.get(VariantToDBObjectConverter.STATS_FIELD));
+        }
+    }
+
+    private int countGenotypes(DBObject numGenotypes) {
+        int count = 0;
+        for (String genotype : numGenotypes.keySet()) {
+            count += ((Number) numGenotypes.get(genotype)).intValue();
+        }
+        return count;
+    }
+
     @Before
     public void setUp() throws Exception {
         input = getResource(SMALL_VCF_FILE).getAbsolutePath();
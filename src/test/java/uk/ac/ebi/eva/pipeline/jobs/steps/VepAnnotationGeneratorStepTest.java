@@ -22,7 +22,14 @@ import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+import org.springframework.batch.test.StepScopeTestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
@@ -32,6 +39,7 @@ import uk.ac.ebi.eva.pipeline.Application;
 import uk.ac.ebi.eva.pipeline.configuration.BeanNames;
 import uk.ac.ebi.eva.pipeline.jobs.AnnotationJob;
 import uk.ac.ebi.eva.pipeline.jobs.steps.tasklets.VepAnnotationGeneratorStep;
+import uk.ac.ebi.eva.pipeline.parameters.ExecutionContextParametersNames;
 import uk.ac.ebi.eva.test.configuration.BatchTestConfiguration;
 import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
 import uk.ac.ebi.eva.test.utils.JobTestUtils;
@@ -40,9 +48,16 @@ import uk.ac.ebi.eva.utils.URLHelper;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static uk.ac.ebi.eva.utils.FileUtils.getResource;
 
@@ -57,6 +72,15 @@ public class VepAnnotationGeneratorStepTest {
 
     private static final String MOCKVEP = "/mockvep.pl";
 
+    private static final String MOCKVEP_FAILS_FIRST_ATTEMPT = "/mockvep_fails_first_attempt.pl";
+
+    private static final String MOCKVEP_TRUNCATED = "/mockvep_truncated.pl";
+
+    private static final String VEP_INPUT_CONTENT = "20\t60343\t60343\tG/A\t+\n"
+            + "20\t60419\t60419\tA/G\t+\n"
+            + "20\t60479\t60479\tC/T\t+\n"
+            + "20\t60522\t60521\t-/C\t+\n";
+
     private static final String STUDY_ID = "7";
 
     private static final String FILE_ID = "5";
@@ -67,9 +91,13 @@ public class VepAnnotationGeneratorStepTest {
     @Autowired
     private JobLauncherTestUtils jobLauncherTestUtils;
 
+    @Autowired
+    private VepAnnotationGeneratorStep vepAnnotationGeneratorStep;
+
     @Test
     public void shouldGenerateVepAnnotations() throws Exception {
         File vepOutputFolder = temporaryFolderRule.newFolder();
+        writeVepInput(vepOutputFolder);
 
         JobParameters jobParameters = new EvaJobParameterBuilder()
                 .inputFasta("")
@@ -94,8 +122,159 @@ public class VepAnnotationGeneratorStepTest {
         // And VEP output should exist and annotations should be in the file
         File vepOutputFile = new File(URLHelper.resolveVepOutput(vepOutputFolder.getAbsolutePath(), STUDY_ID, FILE_ID));
 
+        // mockvep.pl writes its whole mock annotation, followed by the last variant of its input
         assertTrue(vepOutputFile.exists());
-        assertEquals(537, JobTestUtils.getLines(new GZIPInputStream(new FileInputStream(vepOutputFile))));
+        assertEquals(537 + 1, JobTestUtils.getLines(new GZIPInputStream(new FileInputStream(vepOutputFile))));
+    }
+
+    @Test
+    public void shouldGenerateVepAnnotationsInShards() throws Exception {
+        File vepOutputFolder = temporaryFolderRule.newFolder();
+        writeVepInput(vepOutputFolder);
+
+        JobParameters jobParameters = new EvaJobParameterBuilder()
+                .inputFasta("")
+                .inputStudyId(STUDY_ID)
+                .inputVcfId(FILE_ID)
+                .outputDirAnnotation(vepOutputFolder.getAbsolutePath())
+                .vepCachePath("")
+                .vepCacheSpecies("")
+                .vepCacheVersion("")
+                .vepNumForks("")
+                .vepNumShards("2")
+                .vepMaxProcesses("2")
+                .vepPath(getResource(MOCKVEP).getPath())
+                .toJobParameters();
+
+        JobExecution jobExecution = jobLauncherTestUtils
+                .launchStep(BeanNames.GENERATE_VEP_ANNOTATION_STEP, jobParameters);
+
+        assertEquals(ExitStatus.COMPLETED, jobExecution.getExitStatus());
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+
+        // mockvep.pl ignores its input but for its last variant, so every shard writes the whole mock annotation and
+        // the last variant of the shard, but only once its header
+        File vepOutputFile = new File(URLHelper.resolveVepOutput(vepOutputFolder.getAbsolutePath(), STUDY_ID, FILE_ID));
+
+        assertTrue(vepOutputFile.exists());
+        assertEquals(2 * (537 + 1), JobTestUtils.getLines(new GZIPInputStream(new FileInputStream(vepOutputFile))));
+        assertFalse(new File(vepOutputFile.getPath() + ".shards").exists());
+    }
+
+    @Test
+    public void shouldRetryFailedShards() throws Exception {
+        File vepOutputFolder = temporaryFolderRule.newFolder();
+        writeVepInput(vepOutputFolder);
+        // the mock VEP remembers its failure in its cache folder
+        File vepCacheFolder = temporaryFolderRule.newFolder();
+
+        JobParameters jobParameters = new EvaJobParameterBuilder()
+                .inputFasta("")
+                .inputStudyId(STUDY_ID)
+                .inputVcfId(FILE_ID)
+                .outputDirAnnotation(vepOutputFolder.getAbsolutePath())
+                .vepCachePath(vepCacheFolder.getAbsolutePath())
+                .vepCacheSpecies("")
+                .vepCacheVersion("")
+                .vepNumForks("")
+                .vepNumShards("3")
+                .vepMaxProcesses("2")
+                .vepPath(getResource(MOCKVEP_FAILS_FIRST_ATTEMPT).getPath())
+                .toJobParameters();
+
+        JobExecution jobExecution = jobLauncherTestUtils
+                .launchStep(BeanNames.GENERATE_VEP_ANNOTATION_STEP, jobParameters);
+
+        assertEquals(ExitStatus.COMPLETED, jobExecution.getExitStatus());
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+
+        // every variant is annotated exactly once, although the first VEP worker failed and its shard was retried
+        File vepOutputFile = new File(URLHelper.resolveVepOutput(vepOutputFolder.getAbsolutePath(), STUDY_ID, FILE_ID));
+
+        assertTrue(vepOutputFile.exists());
+        assertEquals(4, JobTestUtils.getLines(new GZIPInputStream(new FileInputStream(vepOutputFile))));
+    }
+
+    @Test
+    public void shouldFailIfTheOutputOfAShardIsTruncated() throws Exception {
+        File vepOutputFolder = temporaryFolderRule.newFolder();
+        writeVepInput(vepOutputFolder);
+
+        JobParameters jobParameters = new EvaJobParameterBuilder()
+                .inputFasta("")
+                .inputStudyId(STUDY_ID)
+                .inputVcfId(FILE_ID)
+                .outputDirAnnotation(vepOutputFolder.getAbsolutePath())
+                .vepCachePath("")
+                .vepCacheSpecies("")
+                .vepCacheVersion("")
+                .vepNumForks("")
+                .vepNumShards("2")
+                .vepPath(getResource(MOCKVEP_TRUNCATED).getPath())
+                .toJobParameters();
+
+        JobExecution jobExecution = jobLauncherTestUtils
+                .launchStep(BeanNames.GENERATE_VEP_ANNOTATION_STEP, jobParameters);
+
+        // the output of every shard lacks the last variant of its input
+        assertEquals(ExitStatus.FAILED.getExitCode(), jobExecution.getExitStatus().getExitCode());
+        assertEquals(BatchStatus.FAILED, jobExecution.getStatus());
+    }
+
+    @Test
+    public void shouldOnlyAnnotateUnfinishedShardsOnRestart() throws Exception {
+        File vepOutputFolder = temporaryFolderRule.newFolder();
+        writeVepInput(vepOutputFolder);
+        File vepOutputFile = new File(URLHelper.resolveVepOutput(vepOutputFolder.getAbsolutePath(), STUDY_ID, FILE_ID));
+
+        // a previous execution finished the first shard, with an annotation line for each of its two variants
+        File shardsFolder = new File(vepOutputFile.getPath() + ".shards");
+        assertTrue(shardsFolder.mkdirs());
+        try (Writer writer = new FileWriter(new File(shardsFolder, "output_0.tsv"))) {
+            writer.write("#Uploaded_variation\tLocation\n20_60343_G/A\t20:60343\n20_60419_A/G\t20:60419\n");
+        }
+
+        JobParameters jobParameters = new EvaJobParameterBuilder()
+                .inputFasta("")
+                .inputStudyId(STUDY_ID)
+                .inputVcfId(FILE_ID)
+                .outputDirAnnotation(vepOutputFolder.getAbsolutePath())
+                .vepCachePath("")
+                .vepCacheSpecies("")
+                .vepCacheVersion("")
+                .vepNumForks("")
+                .vepNumShards("2")
+                .vepPath(getResource(MOCKVEP).getPath())
+                .toJobParameters();
+
+        ExecutionContext executionContext = new ExecutionContext();
+        executionContext.putInt(ExecutionContextParametersNames.VEP_NUM_SHARDS, 2);
+        executionContext.putLong(ExecutionContextParametersNames.VEP_SHARD_PREFIX + 0
+                                         + ExecutionContextParametersNames.VEP_SHARD_LINES_SUFFIX, 2);
+        executionContext.putString(ExecutionContextParametersNames.VEP_SHARD_PREFIX + 0
+                                           + ExecutionContextParametersNames.VEP_SHARD_LAST_VARIANT_SUFFIX,
+                                   "20_60419_A/G");
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution(jobParameters);
+        stepExecution.setExecutionContext(executionContext);
+
+        StepScopeTestUtils.doInStepScope(stepExecution, () -> {
+            ChunkContext chunkContext = new ChunkContext(new StepContext(stepExecution));
+            while (vepAnnotationGeneratorStep.execute(null, chunkContext) == RepeatStatus.CONTINUABLE) {
+            }
+            return null;
+        });
+
+        // only the second shard went through VEP again, and mockvep.pl writes 537 lines plus its last variant
+        assertEquals(2 + 537 + 1, JobTestUtils.getLines(new GZIPInputStream(new FileInputStream(vepOutputFile))));
+        assertEquals(2 + 537 + 1, executionContext.getLong(ExecutionContextParametersNames.VEP_OUTPUT_LINES));
+        assertFalse(shardsFolder.exists());
+    }
+
+    private void writeVepInput(File vepOutputFolder) throws IOException {
+        File vepInput = new File(URLHelper.resolveVepInput(vepOutputFolder.getAbsolutePath(), STUDY_ID, FILE_ID));
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(vepInput)))) {
+            writer.write(VEP_INPUT_CONTENT);
+        }
     }
 
 }
@@ -41,8 +41,10 @@ import uk.ac.ebi.eva.utils.URLHelper;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static uk.ac.ebi.eva.test.utils.JobTestUtils.getLines;
 import static uk.ac.ebi.eva.test.utils.JobTestUtils.readFirstLine;
@@ -88,6 +90,34 @@ public class VepInputGeneratorStepTest {
         assertVepInputWasGenerated(ALL_STUDIES);
     }
 
+    @Test
+    public void shouldGenerateVepInputInPartitions() throws Exception {
+        String randomTemporaryDatabaseName = mongoRule.restoreDumpInTemporaryDatabase(getResourceUrl(MONGO_DUMP));
+        String outputDirAnnot = temporaryFolderRule.getRoot().getAbsolutePath();
+        File vepInput = new File(URLHelper.resolveVepInput(outputDirAnnot, STUDY_ID, FILE_ID));
+
+        JobParameters jobParameters = new EvaJobParameterBuilder()
+                .collectionVariantsName(COLLECTION_VARIANTS_NAME)
+                .databaseName(randomTemporaryDatabaseName)
+                .inputStudyId(STUDY_ID)
+                .inputVcfId(FILE_ID)
+                .outputDirAnnotation(outputDirAnnot)
+                .readPartitions("3")
+                .toJobParameters();
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep(BeanNames.GENERATE_VEP_INPUT_PARTITIONED_STEP,
+                                                                    jobParameters);
+
+        assertEquals(ExitStatus.COMPLETED, jobExecution.getExitStatus());
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        // the partitioned step and its 3 partitions
+        assertEquals(4, jobExecution.getStepExecutions().size());
+
+        assertTrue(vepInput.exists());
+        assertFalse(new File(vepInput.getPath() + ".parts").exists());
+        assertEquals(EXPECTED_NON_ANNOTATED_VARIANTS, getLines(new GZIPInputStream(new FileInputStream(vepInput))));
+    }
+
     private void assertVepInputWasGenerated(String inputStudyId) throws IOException, InterruptedException {
         String randomTemporaryDatabaseName = mongoRule.restoreDumpInTemporaryDatabase(getResourceUrl(MONGO_DUMP));
         String outputDirAnnot = temporaryFolderRule.getRoot().getAbsolutePath();
@@ -108,7 +138,7 @@ public class VepInputGeneratorStepTest {
         assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
 
         assertTrue(vepInput.exists());
-        assertEquals("20\t60343\t60343\tG/A\t+", readFirstLine(vepInput));
-        assertEquals(EXPECTED_NON_ANNOTATED_VARIANTS, getLines(new FileInputStream(vepInput)));
+        assertEquals("20\t60343\t60343\tG/A\t+", readFirstLine(new GZIPInputStream(new FileInputStream(vepInput))));
+        assertEquals(EXPECTED_NON_ANNOTATED_VARIANTS, getLines(new GZIPInputStream(new FileInputStream(vepInput))));
     }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps.partitioners;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link VepInputPartitioner}
+ * input: the parts of the VEP input written by every partition
+ * output: the VEP input, with the parts concatenated in the order of the partitions
+ */
+public class VepInputPartitionerTest {
+
+    private static final int NUM_PARTITIONS = 2;
+
+    @Rule
+    public PipelineTemporaryFolderRule temporaryFolderRule = new PipelineTemporaryFolderRule();
+
+    @Test
+    public void shouldConcatenateThePartsInOrder() throws Exception {
+        File vepInput = new File(temporaryFolderRule.getRoot(), "vep_input.tsv.gz");
+        File partsFolder = writeParts(vepInput, NUM_PARTITIONS);
+
+        StepExecution stepExecution = buildCompletedStepExecution();
+        ExitStatus exitStatus = new VepInputPartitioner(null, null, null, NUM_PARTITIONS, vepInput).afterStep(
+                stepExecution);
+
+        assertNull(exitStatus);
+        assertEquals(BatchStatus.COMPLETED, stepExecution.getStatus());
+        assertArrayEquals(new byte[]{0, 1}, Files.readAllBytes(vepInput.toPath()));
+        assertFalse(partsFolder.exists());
+    }
+
+    @Test
+    public void shouldFailIfAPartIsMissing() throws Exception {
+        File vepInput = new File(temporaryFolderRule.getRoot(), "vep_input.tsv.gz");
+        File partsFolder = writeParts(vepInput, NUM_PARTITIONS - 1);
+
+        StepExecution stepExecution = buildCompletedStepExecution();
+        ExitStatus exitStatus = new VepInputPartitioner(null, null, null, NUM_PARTITIONS, vepInput).afterStep(
+                stepExecution);
+
+        assertEquals(ExitStatus.FAILED.getExitCode(), exitStatus.getExitCode());
+        assertEquals(BatchStatus.FAILED, stepExecution.getStatus());
+        assertTrue(partsFolder.exists());
+    }
+
+    private File writeParts(File vepInput, int numParts) throws Exception {
+        File partsFolder = new File(vepInput.getPath() + ".parts");
+        assertTrue(partsFolder.mkdirs());
+        for (int i = 0; i < numParts; i++) {
+            Files.write(new File(partsFolder, "input_" + i + ".tsv.gz").toPath(), new byte[]{(byte) i});
+        }
+        return partsFolder;
+    }
+
+    private StepExecution buildCompletedStepExecution() {
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        stepExecution.setStatus(BatchStatus.COMPLETED);
+        return stepExecution;
+    }
+}
@@ -15,9 +15,11 @@
  */
 package uk.ac.ebi.eva.pipeline.jobs.steps.processor;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
 import org.junit.Test;
 import org.springframework.batch.item.ItemProcessor;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
 import uk.ac.ebi.eva.pipeline.jobs.steps.processors.AnnotationProcessor;
 import uk.ac.ebi.eva.pipeline.model.VariantWrapper;
 import uk.ac.ebi.eva.test.data.VariantData;
@@ -45,4 +47,36 @@ public class AnnotationProcessorTest {
         assertEquals(60343, variant.getStart());
     }
 
+    @Test
+    public void shouldConvertInsertionsToEnsemblFormat() throws Exception {
+        VariantWrapper variant = new AnnotationProcessor().process(buildVariantDbObject(100, 100, "A", "ATT"));
+        assertEquals(101, variant.getStart());
+        assertEquals(100, variant.getEnd());
+        assertEquals("-/TT", variant.getRefAlt());
+    }
+
+    @Test
+    public void shouldConvertDeletionsToEnsemblFormat() throws Exception {
+        VariantWrapper variant = new AnnotationProcessor().process(buildVariantDbObject(100, 102, "ATT", "A"));
+        assertEquals(101, variant.getStart());
+        assertEquals(102, variant.getEnd());
+        assertEquals("TT/-", variant.getRefAlt());
+    }
+
+    @Test
+    public void shouldConvertMnvsToEnsemblFormat() throws Exception {
+        VariantWrapper variant = new AnnotationProcessor().process(buildVariantDbObject(100, 101, "AT", "GC"));
+        assertEquals(100, variant.getStart());
+        assertEquals(101, variant.getEnd());
+        assertEquals("AT/GC", variant.getRefAlt());
+    }
+
+    private DBObject buildVariantDbObject(int start, int end, String reference, String alternate) {
+        return new BasicDBObject(VariantToDBObjectConverter.CHROMOSOME_FIELD, "20")
+                .append(VariantToDBObjectConverter.START_FIELD, start)
+                .append(VariantToDBObjectConverter.END_FIELD, end)
+                .append(VariantToDBObjectConverter.REFERENCE_FIELD, reference)
+                .append(VariantToDBObjectConverter.ALTERNATE_FIELD, alternate);
+    }
+
 }
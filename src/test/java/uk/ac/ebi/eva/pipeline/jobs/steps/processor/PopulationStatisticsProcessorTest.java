@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps.processor;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Test;
+
+import uk.ac.ebi.eva.pipeline.jobs.steps.processors.PopulationStatisticsProcessor;
+import uk.ac.ebi.eva.pipeline.model.PopulationStatistics;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * {@link PopulationStatisticsProcessor}
+ * input: a DBObject of a variant with statistics of several studies, files and cohorts
+ * output: a PopulationStatistics for every cohort of the study and file of the processor
+ */
+public class PopulationStatisticsProcessorTest {
+
+    private static final String STUDY_ID = "7";
+
+    private static final String FILE_ID = "5";
+
+    @Test
+    public void shouldCopyTheStatisticsOfEveryCohortOfTheFile() throws Exception {
+        BasicDBList stats = new BasicDBList();
+        stats.add(buildStats(STUDY_ID, FILE_ID, "ALL", 0.25));
+        stats.add(buildStats(STUDY_ID, FILE_ID, "EUR", 0.5));
+        stats.add(buildStats(STUDY_ID, "6", "ALL", 0.0));
+        stats.add(buildStats("8", FILE_ID, "ALL", 0.0));
+
+        List<PopulationStatistics> populationStatistics = new PopulationStatisticsProcessor(STUDY_ID, FILE_ID)
+                .process(buildVariant(stats));
+
+        assertEquals(2, populationStatistics.size());
+        PopulationStatistics all = populationStatistics.get(0);
+        assertEquals("20_67765_C_T", all.getVariantId());
+        assertEquals("20", all.getChromosome());
+        assertEquals(67765, all.getStart());
+        assertEquals("C", all.getReference());
+        assertEquals("T", all.getAlternate());
+        assertEquals(STUDY_ID, all.getStudyId());
+        assertEquals(FILE_ID, all.getFileId());
+        assertEquals("ALL", all.getCohortId());
+        assertEquals(0.25, all.getMaf(), 0);
+        assertEquals("T", all.getMafAllele());
+        assertEquals(-1, all.getMissingGenotypes());
+        assertEquals(Integer.valueOf(3), all.getGenotypeCount().get("0|0"));
+        assertEquals(Integer.valueOf(1), all.getGenotypeCount().get("0|1"));
+        assertEquals("EUR", populationStatistics.get(1).getCohortId());
+        assertEquals(0.5, populationStatistics.get(1).getMaf(), 0);
+    }
+
+    @Test
+    public void shouldFilterOutVariantsWithoutStatisticsOfTheFile() throws Exception {
+        BasicDBList stats = new BasicDBList();
+        stats.add(buildStats(STUDY_ID, "6", "ALL", 0.0));
+        PopulationStatisticsProcessor processor = new PopulationStatisticsProcessor(STUDY_ID, FILE_ID);
+
+        assertNull(processor.process(buildVariant(stats)));
+        assertNull(processor.process(buildVariant(null)));
+    }
+
+    private DBObject buildVariant(BasicDBList stats) {
+        BasicDBObject variant = new BasicDBObject("_id", "20_67765_C_T")
+                .append("chr", "20")
+                .append("start", 67765)
+                .append("ref", "C")
+                .append("alt", "T");
+        if (stats != null) {
+            variant.append("st", stats);
+        }
+        return variant;
+    }
+
+    private DBObject buildStats(String studyId, String fileId, String cohortId, double maf) {
+        return new BasicDBObject("cid", cohortId)
+                .append("sid", studyId)
+                .append("fid", fileId)
+                .append("maf", (float) maf)
+                .append("mgf", 0.0f)
+                .append("mafAl", "T")
+                .append("mgfGt", "0|1")
+                .append("missAl", 0)
+                .append("missGt", -1)
+                .append("numGt", new BasicDBObject("0|0", 3).append("0|1", 1));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps.processor;
+
+import org.junit.Test;
+
+import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
+import uk.ac.ebi.eva.commons.models.data.VariantStats;
+import uk.ac.ebi.eva.pipeline.jobs.steps.processors.VariantCohortStatsProcessor;
+import uk.ac.ebi.eva.pipeline.model.Cohort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link VariantCohortStatsProcessor}
+ * input: a genotyped Variant, as read from a VCF
+ * output: the same Variant, with the statistics of all its samples and of every cohort
+ */
+public class VariantCohortStatsProcessorTest {
+
+    private static final String STUDY_ID = "1";
+
+    private static final String FILE_ID = "1";
+
+    private static final String[] GENOTYPES = {"0|0", "0|1", "0|1", "1|0", "1|1", ".|.", "0|0", "0|0"};
+
+    @Test
+    public void shouldCalculateTheSameStatisticsAsFromEverySample() throws Exception {
+        List<Cohort> cohorts = Arrays.asList(new Cohort("COHORT_1", samples(1, 4, 5)),
+                                             new Cohort("COHORT_2", samples(0, 6)));
+
+        Variant variant = new VariantCohortStatsProcessor(cohorts).process(buildVariant());
+
+        VariantSourceEntry sourceEntry = variant.getSourceEntry(FILE_ID, STUDY_ID);
+        assertEquals(Arrays.asList(VariantSourceEntry.DEFAULT_COHORT, "COHORT_1", "COHORT_2"),
+                     new ArrayList<>(sourceEntry.getCohortStats().keySet()));
+        assertSameStats(new VariantStats(variant).calculate(samplesData(0, 1, 2, 3, 4, 5, 6, 7), attributes(), null),
+                        sourceEntry.getStats());
+        assertSameStats(new VariantStats(variant).calculate(samplesData(1, 4, 5), attributes(), null),
+                        sourceEntry.getCohortStats("COHORT_1"));
+        assertSameStats(new VariantStats(variant).calculate(samplesData(0, 6), attributes(), null),
+                        sourceEntry.getCohortStats("COHORT_2"));
+    }
+
+    private void assertSameStats(VariantStats expectedStats, VariantStats stats) {
+        assertEquals(expectedStats.getNumSamples(), stats.getNumSamples());
+        assertEquals(expectedStats.getGenotypesCount(), stats.getGenotypesCount());
+        assertEquals(expectedStats.getRefAlleleCount(), stats.getRefAlleleCount());
+        assertEquals(expectedStats.getAltAlleleCount(), stats.getAltAlleleCount());
+        assertEquals(expectedStats.getMissingAlleles(), stats.getMissingAlleles());
+        assertEquals(expectedStats.getMissingGenotypes(), stats.getMissingGenotypes());
+        assertEquals(expectedStats.getMaf(), stats.getMaf(), 0);
+        assertEquals(expectedStats.getMgf(), stats.getMgf(), 0);
+        assertEquals(expectedStats.getMafAllele(), stats.getMafAllele());
+        assertEquals(expectedStats.getMgfGenotype(), stats.getMgfGenotype());
+        assertEquals(expectedStats.getGenotypesFreq(), stats.getGenotypesFreq());
+        assertEquals(expectedStats.getQuality(), stats.getQuality(), 0);
+    }
+
+    private BitSet samples(int... sampleIndexes) {
+        BitSet samples = new BitSet();
+        for (int sampleIndex : sampleIndexes) {
+            samples.set(sampleIndex);
+        }
+        return samples;
+    }
+
+    private Variant buildVariant() {
+        Variant variant = new Variant("20", 60343, 60343, "G", "A");
+        VariantSourceEntry sourceEntry = new VariantSourceEntry(FILE_ID, STUDY_ID);
+        sourceEntry.setAttributes(attributes());
+        for (Map<String, String> sampleData : samplesData(0, 1, 2, 3, 4, 5, 6, 7)) {
+            sourceEntry.addSampleData(sampleData);
+        }
+        variant.addSourceEntry(sourceEntry);
+        return variant;
+    }
+
+    private List<Map<String, String>> samplesData(int... sampleIndexes) {
+        List<Map<String, String>> samplesData = new ArrayList<>();
+        for (int sampleIndex : sampleIndexes) {
+            samplesData.add(Collections.singletonMap("GT", GENOTYPES[sampleIndex]));
+        }
+        return samplesData;
+    }
+
+    private Map<String, String> attributes() {
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("FILTER", "PASS");
+        attributes.put("QUAL", "100.0");
+        return attributes;
+    }
+}
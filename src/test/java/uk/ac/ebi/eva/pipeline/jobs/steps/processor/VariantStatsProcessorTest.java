@@ -0,0 +1,229 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.jobs.steps.processor;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Test;
+
+import uk.ac.ebi.eva.commons.models.converters.data.VariantSourceEntryToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.converters.data.VariantToDBObjectConverter;
+import uk.ac.ebi.eva.commons.models.data.Variant;
+import uk.ac.ebi.eva.commons.models.data.VariantSourceEntry;
+import uk.ac.ebi.eva.commons.models.data.VariantStats;
+import uk.ac.ebi.eva.pipeline.jobs.steps.processors.VariantStatsProcessor;
+import uk.ac.ebi.eva.pipeline.model.Cohort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link VariantStatsProcessor}
+ * input: a DBObject with the genotypes of the samples of the file, grouped by genotype
+ * output: a Variant with the statistics of all the samples of the file, and of every cohort
+ */
+public class VariantStatsProcessorTest {
+
+    private static final String STUDY_ID = "1";
+
+    private static final String FILE_ID = "1";
+
+    // samples 1 and 2 are 0|1, 3 is 1|0, 4 is 1|1, 5 is missing, and the rest have the default 0|0
+    private static final String[] GENOTYPES = {"0|0", "0|1", "0|1", "1|0", "1|1", ".|.", "0|0", "0|0"};
+
+    @Test
+    public void shouldCalculateTheSameStatisticsAsFromEverySample() throws Exception {
+        BasicDBObject samples = new BasicDBObject("def", "0|0")
+                .append("0|1", list(1, 2))
+                .append("1|0", list(3))
+                .append("1|1", list(4))
+                .append("-1|-1", list(5));
+        DBObject variantObject = buildVariantDbObject(buildFile(STUDY_ID, FILE_ID, samples));
+
+        Variant variant = new VariantStatsProcessor(STUDY_ID, FILE_ID, GENOTYPES.length).process(variantObject);
+
+        VariantSourceEntry sourceEntry = variant.getSourceEntry(FILE_ID, STUDY_ID);
+        VariantStats stats = sourceEntry.getStats();
+        VariantStats expectedStats = new VariantStats(variant).calculate(expandSamples(), attributes(), null);
+
+        assertEquals(Collections.singleton(VariantSourceEntry.DEFAULT_COHORT), sourceEntry.getCohortStats().keySet());
+        assertEquals(expectedStats.getNumSamples(), stats.getNumSamples());
+        assertEquals(expectedStats.getGenotypesCount(), stats.getGenotypesCount());
+        assertEquals(expectedStats.getRefAlleleCount(), stats.getRefAlleleCount());
+        assertEquals(expectedStats.getAltAlleleCount(), stats.getAltAlleleCount());
+        assertEquals(expectedStats.getMissingAlleles(), stats.getMissingAlleles());
+        assertEquals(expectedStats.getMissingGenotypes(), stats.getMissingGenotypes());
+        assertEquals(expectedStats.getMaf(), stats.getMaf(), 0);
+        assertEquals(expectedStats.getMgf(), stats.getMgf(), 0);
+        assertEquals(expectedStats.getMafAllele(), stats.getMafAllele());
+        assertEquals(expectedStats.getMgfGenotype(), stats.getMgfGenotype());
+        assertEquals(expectedStats.getGenotypesFreq(), stats.getGenotypesFreq());
+        assertTrue(stats.hasPassedFilters());
+        assertEquals(100, stats.getQuality(), 0);
+    }
+
+    @Test
+    public void shouldCalculateTheStatisticsOfEveryCohort() throws Exception {
+        BasicDBObject samples = new BasicDBObject("def", "0|0")
+                .append("0|1", list(1, 2))
+                .append("1|0", list(3))
+                .append("1|1", list(4))
+                .append("-1|-1", list(5));
+        DBObject variantObject = buildVariantDbObject(buildFile(STUDY_ID, FILE_ID, samples));
+        List<Cohort> cohorts = Arrays.asList(new Cohort("COHORT_1", samples(1, 4, 5)),
+                                             new Cohort("COHORT_2", samples(0, 6)));
+
+        Variant variant = new VariantStatsProcessor(STUDY_ID, FILE_ID, GENOTYPES.length, cohorts)
+                .process(variantObject);
+
+        VariantSourceEntry sourceEntry = variant.getSourceEntry(FILE_ID, STUDY_ID);
+        assertEquals(3, sourceEntry.getCohortStats().size());
+        assertSameStats(new VariantStats(variant).calculate(expandSamples(GENOTYPES, 1, 4, 5), attributes(), null),
+                        sourceEntry.getCohortStats("COHORT_1"));
+        assertSameStats(new VariantStats(variant).calculate(expandSamples(GENOTYPES, 0, 6), attributes(), null),
+                        sourceEntry.getCohortStats("COHORT_2"));
+    }
+
+    @Test
+    public void shouldCountTheCohortsOfManySamples() throws Exception {
+        String[] storedGenotypes = {"0|1", "1|1", "-1|-1"};
+        String[] genotypes = new String[150];
+        Arrays.fill(genotypes, "0|0");
+        Map<String, BasicDBList> indexesByGenotype = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < genotypes.length; i++) {
+            int genotype = random.nextInt(storedGenotypes.length + 1);
+            if (genotype < storedGenotypes.length) {
+                genotypes[i] = storedGenotypes[genotype].replace("-1", ".");
+                indexesByGenotype.computeIfAbsent(storedGenotypes[genotype], g -> new BasicDBList()).add(i);
+            }
+        }
+        BasicDBObject samples = new BasicDBObject("def", "0|0");
+        samples.putAll(indexesByGenotype);
+        int[] cohortSamples = {0, 5, 63, 64, 65, 127, 128, 149};
+
+        Variant variant = new VariantStatsProcessor(STUDY_ID, FILE_ID, genotypes.length,
+                                                    Collections.singletonList(new Cohort("COHORT",
+                                                                                         samples(cohortSamples))))
+                .process(buildVariantDbObject(buildFile(STUDY_ID, FILE_ID, samples)));
+
+        VariantSourceEntry sourceEntry = variant.getSourceEntry(FILE_ID, STUDY_ID);
+        assertSameStats(new VariantStats(variant).calculate(expandSamples(genotypes, cohortSamples), attributes(),
+                                                            null),
+                        sourceEntry.getCohortStats("COHORT"));
+    }
+
+    @Test
+    public void shouldIgnoreTheGenotypesOfOtherFiles() throws Exception {
+        DBObject variantObject = buildVariantDbObject(
+                buildFile(STUDY_ID, "2", new BasicDBObject("def", "1|1")),
+                buildFile(STUDY_ID, FILE_ID, new BasicDBObject("def", "0|0").append("0|1", list(0))));
+
+        Variant variant = new VariantStatsProcessor(STUDY_ID, FILE_ID, 4).process(variantObject);
+
+        VariantStats stats = variant.getSourceEntry(FILE_ID, STUDY_ID).getStats();
+        assertEquals(1, variant.getSourceEntries().size());
+        assertEquals(7, stats.getRefAlleleCount());
+        assertEquals(1, stats.getAltAlleleCount());
+    }
+
+    @Test
+    public void shouldFilterOutVariantsWithoutTheFile() throws Exception {
+        DBObject variantObject = buildVariantDbObject(buildFile(STUDY_ID, "2", new BasicDBObject("def", "0|0")));
+
+        assertNull(new VariantStatsProcessor(STUDY_ID, FILE_ID, 4).process(variantObject));
+    }
+
+    private void assertSameStats(VariantStats expectedStats, VariantStats stats) {
+        assertEquals(expectedStats.getNumSamples(), stats.getNumSamples());
+        assertEquals(expectedStats.getGenotypesCount(), stats.getGenotypesCount());
+        assertEquals(expectedStats.getRefAlleleCount(), stats.getRefAlleleCount());
+        assertEquals(expectedStats.getAltAlleleCount(), stats.getAltAlleleCount());
+        assertEquals(expectedStats.getMissingAlleles(), stats.getMissingAlleles());
+        assertEquals(expectedStats.getMissingGenotypes(), stats.getMissingGenotypes());
+        assertEquals(expectedStats.getMaf(), stats.getMaf(), 0);
+        assertEquals(expectedStats.getMgf(), stats.getMgf(), 0);
+        assertEquals(expectedStats.getMafAllele(), stats.getMafAllele());
+        assertEquals(expectedStats.getMgfGenotype(), stats.getMgfGenotype());
+        assertEquals(expectedStats.getGenotypesFreq(), stats.getGenotypesFreq());
+    }
+
+    private BitSet samples(int... sampleIndexes) {
+        BitSet samples = new BitSet();
+        for (int sampleIndex : sampleIndexes) {
+            samples.set(sampleIndex);
+        }
+        return samples;
+    }
+
+    private List<Map<String, String>> expandSamples(String[] genotypes, int... sampleIndexes) {
+        List<Map<String, String>> samplesData = new ArrayList<>();
+        for (int sampleIndex : sampleIndexes) {
+            samplesData.add(Collections.singletonMap("GT", genotypes[sampleIndex]));
+        }
+        return samplesData;
+    }
+
+    private List<Map<String, String>> expandSamples() {
+        List<Map<String, String>> samplesData = new ArrayList<>();
+        for (String genotype : GENOTYPES) {
+            samplesData.add(Collections.singletonMap("GT", genotype));
+        }
+        return samplesData;
+    }
+
+    private Map<String, String> attributes() {
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("FILTER", "PASS");
+        attributes.put("QUAL", "100.0");
+        return attributes;
+    }
+
+    private BasicDBList list(Integer... sampleIndexes) {
+        BasicDBList list = new BasicDBList();
+        list.addAll(Arrays.asList(sampleIndexes));
+        return list;
+    }
+
+    private DBObject buildFile(String studyId, String fileId, DBObject samples) {
+        return new BasicDBObject(VariantSourceEntryToDBObjectConverter.STUDYID_FIELD, studyId)
+                .append(VariantSourceEntryToDBObjectConverter.FILEID_FIELD, fileId)
+                .append(VariantSourceEntryToDBObjectConverter.ATTRIBUTES_FIELD, new BasicDBObject(attributes()))
+                .append(VariantSourceEntryToDBObjectConverter.SAMPLES_FIELD, samples);
+    }
+
+    private DBObject buildVariantDbObject(DBObject... files) {
+        BasicDBList filesList = new BasicDBList();
+        filesList.addAll(Arrays.asList(files));
+        return new BasicDBObject(VariantToDBObjectConverter.CHROMOSOME_FIELD, "20")
+                .append(VariantToDBObjectConverter.START_FIELD, 60343)
+                .append(VariantToDBObjectConverter.END_FIELD, 60343)
+                .append(VariantToDBObjectConverter.REFERENCE_FIELD, "G")
+                .append(VariantToDBObjectConverter.ALTERNATE_FIELD, "A")
+                .append(VariantToDBObjectConverter.FILES_FIELD, filesList);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.eva.pipeline.parameters.validation;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.JobParametersInvalidException;
+
+import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
+
+public class StatisticsPedigreeCohortsValidatorTest {
+
+    private StatisticsPedigreeCohortsValidator validator;
+
+    @Before
+    public void setUp() throws Exception {
+        validator = new StatisticsPedigreeCohortsValidator();
+    }
+
+    @Test(expected = JobParametersInvalidException.class)
+    public void invalidGroupingShouldThrow() throws Exception {
+        JobParametersBuilder jobParametersBuilder = new JobParametersBuilder();
+        jobParametersBuilder.addString(JobParametersNames.STATISTICS_PEDIGREE_COHORTS, "invalid");
+        validator.validate(jobParametersBuilder.toJobParameters());
+    }
+
+    @Test(expected = JobParametersInvalidException.class)
+    public void emptyGroupingShouldThrow() throws Exception {
+        JobParametersBuilder jobParametersBuilder = new JobParametersBuilder();
+        jobParametersBuilder.addString(JobParametersNames.STATISTICS_PEDIGREE_COHORTS, "");
+        validator.validate(jobParametersBuilder.toJobParameters());
+    }
+
+    @Test
+    public void familyGroupingIsValid() throws Exception {
+        JobParametersBuilder jobParametersBuilder = new JobParametersBuilder();
+        jobParametersBuilder.addString(JobParametersNames.STATISTICS_PEDIGREE_COHORTS, "FAMILY");
+        validator.validate(jobParametersBuilder.toJobParameters());
+    }
+
+    @Test
+    public void phenotypeGroupingIsValid() throws Exception {
+        JobParametersBuilder jobParametersBuilder = new JobParametersBuilder();
+        jobParametersBuilder.addString(JobParametersNames.STATISTICS_PEDIGREE_COHORTS, "PHENOTYPE");
+        validator.validate(jobParametersBuilder.toJobParameters());
+    }
+}
@@ -59,6 +59,12 @@ public class AnnotationLoaderStepParametersValidatorTest {
         optionalParameters = new TreeMap<>();
         optionalParameters.put(JobParametersNames.CONFIG_CHUNK_SIZE, new JobParameter("100"));
         optionalParameters.put(JobParametersNames.CONFIG_RESTARTABILITY_ALLOW, new JobParameter("true"));
+        optionalParameters.put(JobParametersNames.APP_VEP_ANNOTATION_CACHE_PATH, new JobParameter(dir));
+        optionalParameters.put(JobParametersNames.APP_VEP_ANNOTATION_CACHE_MAX_ENTRIES, new JobParameter("1000"));
+        optionalParameters.put(JobParametersNames.ANNOTATION_OVERWRITE, new JobParameter("true"));
+        optionalParameters.put(JobParametersNames.ANNOTATION_WRITE_STRATEGY, new JobParameter("REPLACE"));
+        optionalParameters.put(JobParametersNames.DB_COLLECTIONS_ANNOTATIONS_NAME, new JobParameter("annotations"));
+        optionalParameters.put(JobParametersNames.CONFIG_ANNOTATION_LOAD_PARTITIONS, new JobParameter("4"));
     }
 
     @Test
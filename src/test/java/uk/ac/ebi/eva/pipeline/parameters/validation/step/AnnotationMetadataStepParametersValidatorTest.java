@@ -58,6 +58,18 @@ public class AnnotationMetadataStepParametersValidatorTest {
         validator.validate(new JobParameters(requiredParameters));
     }
 
+    @Test
+    public void allJobParametersIncludingOptionalAreValid() throws JobParametersInvalidException, IOException {
+        requiredParameters.put(JobParametersNames.DB_COLLECTIONS_ANNOTATIONS_NAME, new JobParameter("annotations"));
+        validator.validate(new JobParameters(requiredParameters));
+    }
+
+    @Test(expected = JobParametersInvalidException.class)
+    public void whitespaceDbCollectionsAnnotationsNameIsInvalid() throws JobParametersInvalidException, IOException {
+        requiredParameters.put(JobParametersNames.DB_COLLECTIONS_ANNOTATIONS_NAME, new JobParameter(" "));
+        validator.validate(new JobParameters(requiredParameters));
+    }
+
     @Test(expected = JobParametersInvalidException.class)
     public void dbCollectionsAnnotationMetadataNameIsRequired() throws JobParametersInvalidException, IOException {
         requiredParameters.remove(JobParametersNames.DB_COLLECTIONS_ANNOTATION_METADATA_NAME);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -57,6 +57,12 @@ public class PopulationStatisticsGeneratorStepParametersValidatorTest {
 
         optionalParameters = new TreeMap<>();
         optionalParameters.put(JobParametersNames.STATISTICS_OVERWRITE, new JobParameter("true"));
+        optionalParameters.put(JobParametersNames.STATISTICS_NATIVE, new JobParameter("true"));
+        optionalParameters.put(JobParametersNames.STATISTICS_INCREMENTAL, new JobParameter("true"));
+        optionalParameters.put(JobParametersNames.CONFIG_DB_READ_PARTITIONS, new JobParameter("4"));
+        optionalParameters.put(JobParametersNames.INPUT_COHORTS,
+                               new JobParameter(temporaryFolderRule.newFile().getCanonicalPath()));
+        optionalParameters.put(JobParametersNames.STATISTICS_PEDIGREE_COHORTS, new JobParameter("PHENOTYPE"));
     }
 
     @Test
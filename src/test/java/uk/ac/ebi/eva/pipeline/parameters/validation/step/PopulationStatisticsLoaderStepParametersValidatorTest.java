@@ -22,7 +22,7 @@ import org.springframework.batch.core.JobParameter;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersInvalidException;
 
-import uk.ac.ebi.eva.pipeline.jobs.steps.tasklets.PopulationStatisticsLoaderStep;
+import uk.ac.ebi.eva.pipeline.jobs.steps.LoadStatisticsStep;
 import uk.ac.ebi.eva.pipeline.parameters.JobParametersNames;
 import uk.ac.ebi.eva.test.rules.PipelineTemporaryFolderRule;
 
@@ -31,7 +31,7 @@ import java.util.Map;
 import java.util.TreeMap;
 
 /**
- * Tests that the arguments necessary to run a {@link PopulationStatisticsLoaderStep} are
+ * Tests that the arguments necessary to run a {@link LoadStatisticsStep} are
  * correctly validated
  */
 public class PopulationStatisticsLoaderStepParametersValidatorTest {
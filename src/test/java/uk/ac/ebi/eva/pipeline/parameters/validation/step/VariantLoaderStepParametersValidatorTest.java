@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -63,6 +63,11 @@ public class VariantLoaderStepParametersValidatorTest {
         optionalParameters = new TreeMap<>();
         optionalParameters.put(JobParametersNames.CONFIG_CHUNK_SIZE, new JobParameter("100"));
         optionalParameters.put(JobParametersNames.CONFIG_RESTARTABILITY_ALLOW, new JobParameter("true"));
+        optionalParameters.put(JobParametersNames.INPUT_VCF_IMPORT_ANNOTATION, new JobParameter("true"));
+        optionalParameters.put(JobParametersNames.STATISTICS_INLINE, new JobParameter("true"));
+        optionalParameters.put(JobParametersNames.INPUT_COHORTS,
+                               new JobParameter(temporaryFolderRule.newFile().getCanonicalPath()));
+        optionalParameters.put(JobParametersNames.STATISTICS_PEDIGREE_COHORTS, new JobParameter("PHENOTYPE"));
     }
 
     @Test
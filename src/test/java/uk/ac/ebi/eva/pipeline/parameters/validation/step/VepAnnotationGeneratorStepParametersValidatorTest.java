@@ -40,6 +40,8 @@ public class VepAnnotationGeneratorStepParametersValidatorTest {
 
     private Map<String, JobParameter> requiredParameters;
 
+    private Map<String, JobParameter> optionalParameters;
+
     @Rule
     public PipelineTemporaryFolderRule temporaryFolderRule = new PipelineTemporaryFolderRule();
 
@@ -62,6 +64,9 @@ public class VepAnnotationGeneratorStepParametersValidatorTest {
         requiredParameters.put(JobParametersNames.OUTPUT_DIR_ANNOTATION,
                                new JobParameter(temporaryFolderRule.getRoot().getCanonicalPath()));
 
+        optionalParameters = new TreeMap<>();
+        optionalParameters.put(JobParametersNames.APP_VEP_NUM_SHARDS, new JobParameter("4"));
+        optionalParameters.put(JobParametersNames.APP_VEP_MAX_PROCESSES, new JobParameter("2"));
     }
 
     @Test
@@ -69,6 +74,20 @@ public class VepAnnotationGeneratorStepParametersValidatorTest {
         validator.validate(new JobParameters(requiredParameters));
     }
 
+    @Test
+    public void allJobParametersIncludingOptionalAreValid() throws JobParametersInvalidException, IOException {
+        Map<String, JobParameter> parameters = new TreeMap<>();
+        parameters.putAll(requiredParameters);
+        parameters.putAll(optionalParameters);
+        validator.validate(new JobParameters(parameters));
+    }
+
+    @Test(expected = JobParametersInvalidException.class)
+    public void appVepNumShardsMustBePositive() throws JobParametersInvalidException, IOException {
+        requiredParameters.put(JobParametersNames.APP_VEP_NUM_SHARDS, new JobParameter("0"));
+        validator.validate(new JobParameters(requiredParameters));
+    }
+
     @Test(expected = JobParametersInvalidException.class)
     public void appVepCachePathIsRequired() throws JobParametersInvalidException, IOException {
         requiredParameters.remove(JobParametersNames.APP_VEP_CACHE_PATH);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 EMBL - European Bioinformatics Institute
+ * Copyright 2016-2017 EMBL - European Bioinformatics Institute
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -60,6 +60,16 @@ public class VepInputGeneratorStepParametersValidatorTest {
         optionalParameters = new TreeMap<>();
         optionalParameters.put(JobParametersNames.CONFIG_CHUNK_SIZE, new JobParameter("100"));
         optionalParameters.put(JobParametersNames.CONFIG_RESTARTABILITY_ALLOW, new JobParameter("true"));
+        optionalParameters.put(JobParametersNames.APP_VEP_ANNOTATION_CACHE_PATH, new JobParameter(dir));
+        optionalParameters.put(JobParametersNames.APP_VEP_ANNOTATION_CACHE_MAX_ENTRIES, new JobParameter("1000"));
+        optionalParameters.put(JobParametersNames.CONFIG_DB_READ_THREADS, new JobParameter("4"));
+        optionalParameters.put(JobParametersNames.CONFIG_DB_CURSOR_BATCH_SIZE, new JobParameter("1000"));
+        optionalParameters.put(JobParametersNames.CONFIG_DB_READ_PREFETCH, new JobParameter("5000"));
+        optionalParameters.put(JobParametersNames.CONFIG_DB_READ_LAZY_DECODING, new JobParameter("true"));
+        optionalParameters.put(JobParametersNames.CONFIG_DB_READ_PARTITIONS, new JobParameter("4"));
+        optionalParameters.put(JobParametersNames.ANNOTATION_OVERWRITE, new JobParameter("true"));
+        optionalParameters.put(JobParametersNames.ANNOTATION_WRITE_STRATEGY, new JobParameter("REPLACE"));
+        optionalParameters.put(JobParametersNames.DB_COLLECTIONS_ANNOTATIONS_NAME, new JobParameter("annotations"));
     }
 
     @Test
@@ -72,8 +72,8 @@ public class GenotypedVcfJobTestUtils {
     public static void checkAnnotationInput(File vepInputFile) throws IOException {
         BufferedReader testReader = new BufferedReader(new InputStreamReader(new FileInputStream(
                 getResource("/expected-output/preannot.sorted"))));
-        BufferedReader actualReader = new BufferedReader(new InputStreamReader(new FileInputStream(
-                vepInputFile.toString())));
+        BufferedReader actualReader = new BufferedReader(new InputStreamReader(new GZIPInputStream(
+                new FileInputStream(vepInputFile))));
 
         ArrayList<String> rows = new ArrayList<>();
 
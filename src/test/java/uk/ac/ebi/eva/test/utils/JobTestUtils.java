@@ -28,7 +28,6 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -55,8 +54,15 @@ public abstract class JobTestUtils {
      * @throws IOException
      */
     public static String readFirstLine(File file) throws IOException {
+        return readFirstLine(new FileInputStream(file));
+    }
+
+    /**
+     * reads the stream and sorts it in memory to return the first ordered line. Don't use for big files!
+     */
+    public static String readFirstLine(InputStream in) throws IOException {
         Set<String> lines = new TreeSet<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
             String line = reader.readLine();
             while (line != null) {
                 lines.add(line);
@@ -55,6 +55,16 @@ public class EvaJobParameterBuilder extends JobParametersBuilder {
         return this;
     }
 
+    public EvaJobParameterBuilder inputPedigree(String inputPedigree) {
+        addParameter(JobParametersNames.INPUT_PEDIGREE, new JobParameter(inputPedigree));
+        return this;
+    }
+
+    public EvaJobParameterBuilder inputCohorts(String inputCohorts) {
+        addParameter(JobParametersNames.INPUT_COHORTS, new JobParameter(inputCohorts));
+        return this;
+    }
+
     public EvaJobParameterBuilder timestamp() {
         addParameter("timestamp", new JobParameter(new Timestamp(new Date().getTime())));
         return this;
@@ -85,6 +95,16 @@ public class EvaJobParameterBuilder extends JobParametersBuilder {
         return this;
     }
 
+    public EvaJobParameterBuilder collectionAnnotationsName(String collectionAnnotationsName) {
+        addParameter(JobParametersNames.DB_COLLECTIONS_ANNOTATIONS_NAME, new JobParameter(collectionAnnotationsName));
+        return this;
+    }
+
+    public EvaJobParameterBuilder collectionStatisticsName(String collectionStatisticsName) {
+        addParameter(JobParametersNames.DB_COLLECTIONS_STATISTICS_NAME, new JobParameter(collectionStatisticsName));
+        return this;
+    }
+
     public EvaJobParameterBuilder vepPath(String vepPath) {
         addParameter(JobParametersNames.APP_VEP_PATH, new JobParameter(vepPath));
         return this;
@@ -115,6 +135,26 @@ public class EvaJobParameterBuilder extends JobParametersBuilder {
         return this;
     }
 
+    public EvaJobParameterBuilder vepNumShards(String vepNumShards) {
+        addParameter(JobParametersNames.APP_VEP_NUM_SHARDS, new JobParameter(vepNumShards));
+        return this;
+    }
+
+    public EvaJobParameterBuilder vepMaxProcesses(String vepMaxProcesses) {
+        addParameter(JobParametersNames.APP_VEP_MAX_PROCESSES, new JobParameter(vepMaxProcesses));
+        return this;
+    }
+
+    public EvaJobParameterBuilder annotationLoadPartitions(String annotationLoadPartitions) {
+        addParameter(JobParametersNames.CONFIG_ANNOTATION_LOAD_PARTITIONS, new JobParameter(annotationLoadPartitions));
+        return this;
+    }
+
+    public EvaJobParameterBuilder readPartitions(String readPartitions) {
+        addParameter(JobParametersNames.CONFIG_DB_READ_PARTITIONS, new JobParameter(readPartitions));
+        return this;
+    }
+
     public EvaJobParameterBuilder inputFasta(String inputFasta) {
         addParameter(JobParametersNames.INPUT_FASTA, new JobParameter(inputFasta));
         return this;
@@ -139,4 +179,25 @@ public class EvaJobParameterBuilder extends JobParametersBuilder {
         addParameter(JobParametersNames.STATISTICS_SKIP, new JobParameter(Boolean.toString(statisticsSkip)));
         return this;
     }
+
+    public EvaJobParameterBuilder statisticsNative(boolean statisticsNative) {
+        addParameter(JobParametersNames.STATISTICS_NATIVE, new JobParameter(Boolean.toString(statisticsNative)));
+        return this;
+    }
+
+    public EvaJobParameterBuilder statisticsInline(boolean statisticsInline) {
+        addParameter(JobParametersNames.STATISTICS_INLINE, new JobParameter(Boolean.toString(statisticsInline)));
+        return this;
+    }
+
+    public EvaJobParameterBuilder statisticsIncremental(boolean statisticsIncremental) {
+        addParameter(JobParametersNames.STATISTICS_INCREMENTAL,
+                     new JobParameter(Boolean.toString(statisticsIncremental)));
+        return this;
+    }
+
+    public EvaJobParameterBuilder statisticsPedigreeCohorts(String statisticsPedigreeCohorts) {
+        addParameter(JobParametersNames.STATISTICS_PEDIGREE_COHORTS, new JobParameter(statisticsPedigreeCohorts));
+        return this;
+    }
 }
@@ -583,4 +583,39 @@ my $annot = "## ENSEMBL VARIANT EFFECT PREDICTOR v78
 20_71822_C/G	20:71822	G	ENSG00000178591	ENST00000608838	Transcript	intron_variant,non_coding_transcript_variant	-	-	-	-	-	-	STRAND=1;SYMBOL=DEFB125;SYMBOL_SOURCE=HGNC;HGNC_ID=18105;BIOTYPE=processed_transcript;INTRON=1/1;HGVSc=ENST00000608838.1:n.110+3822T>G
 ";
 
-print $annot;
\ No newline at end of file
+# Mock of a VEP worker: prints the header when it starts, and the whole annotation above for every batch of variants
+# read from the standard input. Like VEP, the output of a batch ends with its last variant, which is annotated as
+# intergenic if the annotation above doesn't end with it. A variant whose identifier starts with EVA_BATCH_END_ ends
+# the batch, and is annotated with its own identifier.
+
+$| = 1;
+
+my @annotLines = split(/\n/, $annot);
+print join("\n", grep { /^#/ } @annotLines) . "\n";
+my @bodyLines = grep { !/^#/ } @annotLines;
+my $body = join("\n", @bodyLines) . "\n";
+my ($bodyLastVariant) = split(/\t/, $bodyLines[-1]);
+
+my $inBatch = 0;
+my @lastColumns;
+while (my $line = <STDIN>) {
+    chomp $line;
+    my @columns = split(/\t/, $line);
+    if (@columns > 5 && $columns[5] =~ /^EVA_BATCH_END_/) {
+        if (@lastColumns) {
+            my $lastVariant = "$lastColumns[0]_$lastColumns[1]_$lastColumns[3]";
+            if ($lastVariant ne $bodyLastVariant) {
+                print "$lastVariant\t$lastColumns[0]:$lastColumns[1]\t-\t-\t-\t-\tintergenic_variant\t-\t-\t-\t-\t-\t-\n";
+            }
+        }
+        print "$columns[5]\t$columns[0]:$columns[1]\t-\t-\t-\t-\tintergenic_variant\t-\t-\t-\t-\t-\t-\n";
+        $inBatch = 0;
+        @lastColumns = ();
+    } else {
+        if (!$inBatch) {
+            print $body;
+            $inBatch = 1;
+        }
+        @lastColumns = @columns;
+    }
+}
@@ -0,0 +1,98 @@
+use warnings;
+use strict;
+
+use IO::Uncompress::Gunzip qw($GunzipError);
+use Time::HiRes qw(sleep time);
+
+# Mock of VEP for benchmarks: unlike mockvep.pl, the output depends on the input, so the amount of annotation
+# loaded grows with the number of variants. It writes MOCKVEP_TRANSCRIPTS lines per variant (3 by default) with the
+# fields and Extra keys that VEP writes for a transcript, and writes at most MOCKVEP_VARIANTS_PER_SECOND variants per
+# second (0, the default, means as fast as possible). Like a VEP worker, it reads the variants from the standard
+# input unless an input file is given with -i, and a variant whose identifier starts with EVA_BATCH_END_ is annotated
+# with its own identifier.
+
+my $input;
+for (my $i = 0; $i < @ARGV; $i++) {
+    if ($ARGV[$i] eq '-i' || $ARGV[$i] eq '--input_file') {
+        $input = $ARGV[$i + 1];
+    }
+}
+
+my $transcripts = defined $ENV{MOCKVEP_TRANSCRIPTS} ? $ENV{MOCKVEP_TRANSCRIPTS} : 3;
+my $variantsPerSecond = defined $ENV{MOCKVEP_VARIANTS_PER_SECOND} ? $ENV{MOCKVEP_VARIANTS_PER_SECOND} : 0;
+
+my @consequences = ('missense_variant', 'synonymous_variant', 'intron_variant', 'upstream_gene_variant',
+                    'downstream_gene_variant', '3_prime_UTR_variant', 'splice_region_variant,intron_variant');
+my @biotypes = ('protein_coding', 'processed_transcript', 'nonsense_mediated_decay', 'retained_intron');
+
+my $in;
+if (!defined $input) {
+    $in = \*STDIN;
+} elsif ($input =~ /\.gz$/) {
+    $in = IO::Uncompress::Gunzip->new($input) or die "mockvep_benchmark.pl: $GunzipError\n";
+} else {
+    open($in, '<', $input) or die "mockvep_benchmark.pl: can't open $input: $!\n";
+}
+
+$| = 1;
+print "## ENSEMBL VARIANT EFFECT PREDICTOR v80\n";
+print "## Output produced by mockvep_benchmark.pl\n";
+print "## Extra column keys:\n";
+print "## STRAND : Strand of the feature (1/-1)\n";
+print "## SYMBOL : Gene symbol (e.g. HGNC)\n";
+print "## BIOTYPE : Biotype of transcript or regulatory feature\n";
+print "## SIFT : SIFT prediction and/or score\n";
+print "## PolyPhen : PolyPhen prediction and/or score\n";
+print "## HGVSc : HGVS coding sequence name\n";
+print "## HGVSp : HGVS protein sequence name\n";
+print "#Uploaded_variation\tLocation\tAllele\tGene\tFeature\tFeature_type\tConsequence\tcDNA_position\t"
+    . "CDS_position\tProtein_position\tAmino_acids\tCodons\tExisting_variation\tExtra\n";
+
+my $startTime = time();
+my $variants = 0;
+while (my $line = <$in>) {
+    chomp $line;
+    next if $line eq '';
+    my ($chromosome, $start, $end, $alleles, undef, $inputId) = split(/\t/, $line);
+    my ($reference, $alternate) = split(/\//, $alleles);
+    my $location = $start == $end ? "$chromosome:$start" : "$chromosome:$start-$end";
+    if (defined $inputId && $inputId =~ /^EVA_BATCH_END_/) {
+        print join("\t", $inputId, $location, $alternate, '-', '-', '-', 'intergenic_variant', '-', '-', '-', '-', '-',
+                   '-'), "\n";
+        next;
+    }
+    my $id = "${chromosome}_${start}_${reference}/${alternate}";
+    my $gene = sprintf("ENSG%011d", int($start / 10000));
+    my $symbol = sprintf("GENE%d", int($start / 10000));
+
+    for (my $t = 0; $t < $transcripts; $t++) {
+        my $transcript = sprintf("ENST%011d", int($start / 10000) * 10 + $t);
+        my $consequence = $consequences[($start + $t) % @consequences];
+        my $biotype = $biotypes[$t % @biotypes];
+        my $strand = $t % 2 == 0 ? 1 : -1;
+        my $cdsPosition = $start % 3000 + 1;
+        my $extra = "STRAND=$strand;SYMBOL=$symbol;BIOTYPE=$biotype"
+            . ";HGVSc=$transcript.1:c.$cdsPosition$reference>$alternate";
+
+        my @coding = ('-', '-', '-', '-', '-');
+        if ($consequence eq 'missense_variant') {
+            my $proteinPosition = int(($cdsPosition + 2) / 3);
+            @coding = ($cdsPosition + 100, $cdsPosition, $proteinPosition, 'R/G', "${reference}gg/${alternate}gg");
+            $extra .= ";SIFT=deleterious(0.01);PolyPhen=probably_damaging(0.998)"
+                . ";HGVSp=ENSP00000371835.3:p.Arg${proteinPosition}Gly";
+        } elsif ($consequence eq 'synonymous_variant') {
+            my $proteinPosition = int(($cdsPosition + 2) / 3);
+            @coding = ($cdsPosition + 100, $cdsPosition, $proteinPosition, 'L', "ctG/ctA");
+        }
+
+        print join("\t", $id, $location, $alternate, $gene, $transcript, 'Transcript', $consequence, @coding, '-',
+                   $extra), "\n";
+    }
+
+    $variants++;
+    if ($variantsPerSecond > 0) {
+        my $ahead = $variants / $variantsPerSecond - (time() - $startTime);
+        sleep($ahead) if $ahead > 0;
+    }
+}
+close($in);
@@ -0,0 +1,51 @@
+use warnings;
+use strict;
+
+# Mock of a VEP worker that fails the first time it is started with a given cache folder, and annotates every variant
+# read from the standard input as intergenic the next times. The failure is remembered with a marker file in the
+# cache folder. The variants are annotated in buffers of --buffer_size variants, like VEP does, and the header tells
+# which process produced the output.
+
+my $dir;
+my $bufferSize = 1;
+for (my $i = 0; $i < @ARGV; $i++) {
+    if ($ARGV[$i] eq "-dir") {
+        $dir = $ARGV[$i + 1];
+    } elsif ($ARGV[$i] eq "--buffer_size") {
+        $bufferSize = $ARGV[$i + 1];
+    }
+}
+die "No cache folder provided with -dir\n" unless defined $dir;
+
+my $marker = "$dir/mockvep.failed";
+unless (-e $marker) {
+    open(my $markerHandle, ">", $marker) or die "Could not create $marker: $!\n";
+    close($markerHandle);
+    print STDERR "Mock VEP failure in process $$\n";
+    exit 1;
+}
+
+$| = 1;
+print "## ENSEMBL VARIANT EFFECT PREDICTOR v78\n";
+print "## Output produced by process $$\n";
+print "#Uploaded_variation\tLocation\tAllele\tGene\tFeature\tFeature_type\tConsequence\tcDNA_position\tCDS_position\tProtein_position\tAmino_acids\tCodons\tExisting_variation\tExtra\n";
+
+my @buffer;
+while (my $line = <STDIN>) {
+    chomp $line;
+    push(@buffer, $line);
+    if (@buffer >= $bufferSize) {
+        annotate(@buffer);
+        @buffer = ();
+    }
+}
+annotate(@buffer);
+
+sub annotate {
+    foreach my $line (@_) {
+        my ($chromosome, $start, $end, $alleles, $strand, $id) = split(/\t/, $line);
+        my ($reference, $alternate) = split(/\//, $alleles);
+        $id = "${chromosome}_${start}_${alleles}" unless defined $id && $id ne "";
+        print "${id}\t${chromosome}:${start}\t${alternate}\t-\t-\t-\tintergenic_variant\t-\t-\t-\t-\t-\t-\n";
+    }
+}
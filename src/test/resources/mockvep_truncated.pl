@@ -0,0 +1,24 @@
+use warnings;
+use strict;
+
+# Mock of a VEP worker that annotates every variant read from the standard input as intergenic, but the last one of
+# every batch, as a VEP that stopped writing before the end of its output. A variant whose identifier starts with
+# EVA_BATCH_END_ ends the batch, and is annotated with its own identifier.
+
+$| = 1;
+print "## ENSEMBL VARIANT EFFECT PREDICTOR v78\n";
+print "#Uploaded_variation\tLocation\tAllele\tGene\tFeature\tFeature_type\tConsequence\tcDNA_position\tCDS_position\tProtein_position\tAmino_acids\tCodons\tExisting_variation\tExtra\n";
+
+my $previous;
+while (my $line = <STDIN>) {
+    chomp $line;
+    my ($chromosome, $start, $end, $alleles, $strand, $id) = split(/\t/, $line);
+    my ($reference, $alternate) = split(/\//, $alleles);
+    if (defined $id && $id =~ /^EVA_BATCH_END_/) {
+        print "${id}\t${chromosome}:${start}\t${alternate}\t-\t-\t-\tintergenic_variant\t-\t-\t-\t-\t-\t-\n";
+        $previous = undef;
+        next;
+    }
+    print $previous if defined $previous;
+    $previous = "${chromosome}_${start}_${alleles}\t${chromosome}:${start}\t${alternate}\t-\t-\t-\tintergenic_variant\t-\t-\t-\t-\t-\t-\n";
+}